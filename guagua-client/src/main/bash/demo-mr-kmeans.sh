@@ -28,6 +28,9 @@ hadoop fs -put $BIN_DIR/../data/kmeans /user/$USER/
 #      If user doesn't specify this parameter, a zookeeper server in CLI host will be embeded.
 #  '-w ml.shifu.guagua.example.kmeans.KMeansWorker': Worker computable implementation class setting
 #  '-m ml.shifu.guagua.example.kmeans.KMeansMaster': Master computable implementation class setting
+#      Use 'ml.shifu.guagua.example.kmeans.FastKMeansWorker' and 'ml.shifu.guagua.example.kmeans.FastKMeansMaster' for
+#      euclidean KMeans accelerated by triangle inequality bounds, with '-Dkmeans.bound=hamerly|elkan' and
+#      '-Dkmeans.thread.count=<threads>' (default number of cores).
 #  '-c 10': Total iteration number setting
 #      If user doesn't specify this parameter, default 10 will be used.
 #  '-n Guagua-Sum-Master-Workers-Job': Hadoop job name or YARN application name specified
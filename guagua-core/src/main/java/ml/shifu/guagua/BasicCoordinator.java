@@ -115,6 +115,12 @@ public class BasicCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT exten
                 .append(GuaguaConstants.GUAGUA_ZK_MASTER_NODE);
     }
 
+    protected StringBuilder getMasterShardBaseNode(final String appId, final int shard) {
+        return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_MASTER_NODE).append(GuaguaConstants.GUAGUA_ZK_SHARD_SEPARATOR)
+                .append(shard);
+    }
+
     protected StringBuilder getMasterNode(final String appId, final int iteration) {
         return new StringBuilder(50).append(getMasterBaseNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
                 .append(iteration);
@@ -153,6 +159,28 @@ public class BasicCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT exten
         return new StringBuilder(20).append(getRootNode()).append(GuaguaConstants.ZOOKEEPER_SEPARATOR).append(appId);
     }
 
+    protected StringBuilder getCheckpointNode(final String appId) {
+        return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_CHECKPOINT_NODE);
+    }
+
+    protected StringBuilder getRepartitionNode(final String appId, final int iteration) {
+        return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_REPARTITION_NODE).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(iteration);
+    }
+
+    protected StringBuilder getRepartitionDisabledNode(final String appId) {
+        return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_REPARTITION_NODE).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_REPARTITION_DISABLED_NODE);
+    }
+
+    protected StringBuilder getRingNode(final String appId) {
+        return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
+                .append(GuaguaConstants.GUAGUA_ZK_RING_NODE);
+    }
+
     protected StringBuilder getWorkerBaseNode(final String appId) {
         return new StringBuilder(50).append(getAppNode(appId)).append(GuaguaConstants.ZOOKEEPER_SEPARATOR)
                 .append(GuaguaConstants.GUAGUA_ZK_WORKERS_NODE);
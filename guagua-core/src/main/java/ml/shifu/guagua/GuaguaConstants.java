@@ -19,9 +19,12 @@ import ml.shifu.guagua.master.GcMasterInterceptor;
 import ml.shifu.guagua.master.MasterTimer;
 import ml.shifu.guagua.master.MemoryStatsMasterInterceptor;
 import ml.shifu.guagua.master.NettyMasterCoordinator;
+import ml.shifu.guagua.master.ShardedMasterCoordinator;
 import ml.shifu.guagua.worker.GcWorkerInterceptor;
 import ml.shifu.guagua.worker.MemoryStatsWorkerInterceptor;
 import ml.shifu.guagua.worker.NettyWorkerCoordinator;
+import ml.shifu.guagua.worker.RingAllReduceWorkerCoordinator;
+import ml.shifu.guagua.worker.ShardedWorkerCoordinator;
 import ml.shifu.guagua.worker.WorkerTimer;
 
 public final class GuaguaConstants {
@@ -95,6 +98,13 @@ public final class GuaguaConstants {
 
     public static final String GUAGUA_ZK_DEFAULT_CLEANUP_VALUE = "true";
 
+    /**
+     * Max time in milliseconds master waits at the end of application for app znode being deleted in background.
+     */
+    public static final String GUAGUA_ZK_CLEANUP_WAIT_TIMEOUT = "guagua.zk.cleanup.wait.timeout";
+
+    public static final long GUAGUA_ZK_DEFAULT_CLEANUP_WAIT_TIMEOUT = 30 * 1000L;
+
     public static final String GUAGUA_MASTER_IO_SERIALIZER = "guagua.master.io.serializer";
 
     public static final String GUAGUA_WORKER_IO_SERIALIZER = "guagua.worker.io.serializer";
@@ -161,6 +171,105 @@ public final class GuaguaConstants {
 
     public static final int GUAGUA_NETTY_SEVER_DEFAULT_PORT = 44323;
 
+    /**
+     * Fraction of master max heap for worker result frames buffered by master Netty server, reading of workers is
+     * suspended if it is exhausted. By default 0 to disable admission control.
+     */
+    public static final String GUAGUA_NETTY_SERVER_INFLIGHT_MEMORY_FRACTION = "guagua.netty.server.inflight.memoryFraction";
+
+    public static final String GUAGUA_NETTY_SERVER_DEFAULT_INFLIGHT_MEMORY_FRACTION = "0";
+
+    /**
+     * Worker result larger than chunk size in bytes is streamed to master in {@link ml.shifu.guagua.io.ResultChunk}s,
+     * set it to 0 to always send worker result in one message.
+     * 
+     * <p>
+     * Streamed results which are {@link ml.shifu.guagua.io.AllReducible} and {@link ml.shifu.guagua.io.Combinable} are
+     * summed into one worker result, so if k of N worker results are streamed, master computable receives N-k+1 worker
+     * results. Master computable should then count workers by a count summed in worker result instead of number of
+     * worker results.
+     */
+    public static final String GUAGUA_NETTY_CHUNK_SIZE = "guagua.netty.chunk.size";
+
+    public static final int GUAGUA_NETTY_DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Class name of {@link ml.shifu.guagua.transport.Transport} to create Netty bootstraps.
+     */
+    public static final String GUAGUA_NETTY_TRANSPORT = "guagua.netty.transport";
+
+    public static final String GUAGUA_DEFAULT_NETTY_TRANSPORT = "ml.shifu.guagua.transport.NioTransport";
+
+    /**
+     * I/O threads of Netty servers, 0 to use Netty default which is two times of available processors.
+     */
+    public static final String GUAGUA_NETTY_SERVER_IO_THREADS = "guagua.netty.server.ioThreads";
+
+    public static final int GUAGUA_NETTY_DEFAULT_SERVER_IO_THREADS = 0;
+
+    /**
+     * I/O threads of Netty clients.
+     */
+    public static final String GUAGUA_NETTY_CLIENT_IO_THREADS = "guagua.netty.client.ioThreads";
+
+    public static final int GUAGUA_NETTY_DEFAULT_CLIENT_IO_THREADS = 1;
+
+    /**
+     * Whether to set TCP_NODELAY on Netty channels, false by default.
+     */
+    public static final String GUAGUA_NETTY_TCP_NODELAY = "guagua.netty.tcpNoDelay";
+
+    /**
+     * Whether to set SO_KEEPALIVE on Netty channels, false by default.
+     */
+    public static final String GUAGUA_NETTY_KEEPALIVE = "guagua.netty.keepAlive";
+
+    /**
+     * Socket send buffer size in bytes, 0 to use OS default.
+     */
+    public static final String GUAGUA_NETTY_SEND_BUFFER_SIZE = "guagua.netty.sendBufferSize";
+
+    /**
+     * Socket receive buffer size in bytes, 0 to use OS default.
+     */
+    public static final String GUAGUA_NETTY_RECEIVE_BUFFER_SIZE = "guagua.netty.receiveBufferSize";
+
+    /**
+     * Whether to read into buffers sliced from pre-allocated direct memory chunks instead of heap buffers, chunks are
+     * not pooled or recycled.
+     */
+    public static final String GUAGUA_NETTY_DIRECT_BUFFER = "guagua.netty.directBuffer";
+
+    /**
+     * Size in bytes of each pre-allocated direct memory chunk if direct buffer is enabled.
+     */
+    public static final String GUAGUA_NETTY_DIRECT_BUFFER_PREALLOCATED_SIZE = "guagua.netty.directBuffer.preallocatedSize";
+
+    public static final int GUAGUA_NETTY_DEFAULT_DIRECT_BUFFER_PREALLOCATED_SIZE = 1024 * 1024;
+
+    /**
+     * Interval in milliseconds of heartbeats sent by worker to master Netty server, 0 to disable heartbeats. By default
+     * heartbeats are disabled, in which case master only waits for worker results by min workers ratio and timeout.
+     */
+    public static final String GUAGUA_NETTY_HEARTBEAT_INTERVAL = "guagua.netty.heartbeat.interval";
+
+    public static final long GUAGUA_NETTY_DEFAULT_HEARTBEAT_INTERVAL = 0L;
+
+    /**
+     * Master marks a worker dead if no heartbeat received in this time in milliseconds or its channel is disconnected,
+     * barrier is released by {@link #GUAGUA_MIN_WORKERS_RATIO} at once without waiting for dead workers.
+     */
+    public static final String GUAGUA_NETTY_HEARTBEAT_TIMEOUT = "guagua.netty.heartbeat.timeout";
+
+    public static final long GUAGUA_NETTY_DEFAULT_HEARTBEAT_TIMEOUT = 10 * 1000L;
+
+    /**
+     * Max time in milliseconds worker waits for master to acknowledge its stop message.
+     */
+    public static final String GUAGUA_NETTY_STOP_ACK_TIMEOUT = "guagua.netty.stop.ack.timeout";
+
+    public static final long GUAGUA_NETTY_DEFAULT_STOP_ACK_TIMEOUT = 30 * 1000L;
+
     public static final String GUAGUA_MASTER_WORKERESULTS_DEFAULT_MEMORY_FRACTION = "0.7";
 
     public static final String GUAGUA_MASTER_WORKERESULTS_MEMORY_FRACTION = "guagua.master.workeresults.memoryFraction";
@@ -183,10 +292,274 @@ public final class GuaguaConstants {
     public static final String GUAGUA_MASTER_RESULT_MERGE_THRESHOLD = "guagua.master.result.merge.threshold";
 
     public static final String GUAGUA_MASTER_RESULT_NONSPILL = "guagua.master.result.nonspill";
+
+    /**
+     * Whether non-combinable worker results over memory threshold are spilled by a background writer thread in master,
+     * which keeps disk writing out of netty receiving threads. By default false to keep synchronous
+     * {@link ml.shifu.guagua.util.BytableMemoryDiskList}.
+     */
+    public static final String GUAGUA_MASTER_RESULT_ASYNC_SPILL = "guagua.master.result.async.spill";
+
+    /**
+     * Capacity of spill writing queue and read-ahead queue of worker results in master.
+     */
+    public static final String GUAGUA_MASTER_RESULT_SPILL_QUEUE_SIZE = "guagua.master.result.spill.queue.size";
+
+    public static final int GUAGUA_MASTER_RESULT_DEFAULT_SPILL_QUEUE_SIZE = 64;
     
     public static final String GUAGUA_UNREGISTER_MASTER_TIMEROUT = "guagua.master.unregister.wait.timeout";
     
     public static final String GUAGUA_ZK_EMBEDED = "guagua.zk.embeded";
 
+    public static final String GUAGUA_ZK_CHECKPOINT_NODE = "checkpoint";
+
+    public static final String GUAGUA_CHECKPOINT_ENABLE = "guagua.checkpoint.enable";
+
+    public static final String GUAGUA_CHECKPOINT_INTERVAL = "guagua.checkpoint.interval";
+
+    public static final int GUAGUA_DEFAULT_CHECKPOINT_INTERVAL = 1;
+
+    public static final String GUAGUA_CHECKPOINT_DIR = "guagua.checkpoint.dir";
+
+    public static final String GUAGUA_CHECKPOINT_STORAGE = "guagua.checkpoint.storage";
+
+    public static final String GUAGUA_DEFAULT_CHECKPOINT_STORAGE = "ml.shifu.guagua.io.LocalCheckpointStorage";
+
+    public static final String GUAGUA_CHECKPOINT_CLOSE_TIMEOUT = "guagua.checkpoint.close.timeout";
+
+    public static final long GUAGUA_DEFAULT_CHECKPOINT_CLOSE_TIMEOUT = 60 * 1000L;
+
+    public static final String GUAGUA_METRICS_ENABLE = "guagua.metrics.enable";
+
+    public static final String GUAGUA_METRICS_REPORTERS = "guagua.metrics.reporters";
+
+    public static final String GUAGUA_METRICS_JSON_DIR = "guagua.metrics.json.dir";
+
+    public static final String GUAGUA_STRAGGLER_DETECTION_ENABLE = "guagua.straggler.detection.enable";
+
+    public static final String GUAGUA_STRAGGLER_SLOW_FACTOR = "guagua.straggler.slow.factor";
+
+    public static final double GUAGUA_DEFAULT_STRAGGLER_SLOW_FACTOR = 1.5d;
+
+    public static final String GUAGUA_STRAGGLER_SKEW_FACTOR = "guagua.straggler.skew.factor";
+
+    public static final double GUAGUA_DEFAULT_STRAGGLER_SKEW_FACTOR = 1.5d;
+
+    public static final String GUAGUA_STRAGGLER_PERSIST_ITERATIONS = "guagua.straggler.persist.iterations";
+
+    public static final int GUAGUA_DEFAULT_STRAGGLER_PERSIST_ITERATIONS = 3;
+
+    public static final String GUAGUA_STRAGGLER_POLICIES = "guagua.straggler.policies";
+
+    public static final String GUAGUA_STRAGGLER_MIN_WORKERS_RATIO_FLOOR = "guagua.straggler.min.workers.ratio.floor";
+
+    public static final double GUAGUA_DEFAULT_STRAGGLER_MIN_WORKERS_RATIO_FLOOR = 0.9d;
+
+    public static final String GUAGUA_STRAGGLER_TIMEOUT_FACTOR = "guagua.straggler.timeout.factor";
+
+    public static final double GUAGUA_DEFAULT_STRAGGLER_TIMEOUT_FACTOR = 2d;
+
+    public static final String GUAGUA_ZK_REPARTITION_NODE = "repartition";
+
+    /**
+     * Znode under re-partition znode created once any fail-over happens, no re-partitioning plan is made after it.
+     */
+    public static final String GUAGUA_ZK_REPARTITION_DISABLED_NODE = "disabled";
+
+    public static final String GUAGUA_REPARTITION_ENABLE = "guagua.repartition.enable";
+
+    public static final String GUAGUA_REPARTITION_THRESHOLD = "guagua.repartition.threshold";
+
+    public static final double GUAGUA_DEFAULT_REPARTITION_THRESHOLD = 1.2d;
+
+    public static final String GUAGUA_REPARTITION_INTERVAL = "guagua.repartition.interval";
+
+    public static final int GUAGUA_DEFAULT_REPARTITION_INTERVAL = 5;
+
+    public static final String GUAGUA_REPARTITION_DIR = "guagua.repartition.dir";
+
+    /**
+     * Default re-partitioning folder for distributed storage, relative to home folder of the job user.
+     */
+    public static final String GUAGUA_DEFAULT_REPARTITION_DIR = "_guagua_repartition";
+
+    public static final String GUAGUA_REPARTITION_STORAGE = "guagua.repartition.storage";
+
+    public static final String GUAGUA_REPARTITION_TIMEOUT = "guagua.repartition.timeout";
+
+    public static final long GUAGUA_DEFAULT_REPARTITION_TIMEOUT = 10 * 60 * 1000L;
+
+    /**
+     * Whether combinable splits are packed by estimated load cost instead of on-disk bytes, by default false.
+     */
+    public static final String GUAGUA_SPLIT_COST_BALANCED = "guagua.split.costBalanced";
+
+    public static final String GUAGUA_SPLIT_COST_GZIP_RATIO = "guagua.split.cost.gzipRatio";
+
+    public static final float GUAGUA_DEFAULT_SPLIT_COST_GZIP_RATIO = 5f;
+
+    public static final String GUAGUA_SPLIT_COST_BZIP2_RATIO = "guagua.split.cost.bzip2Ratio";
+
+    public static final float GUAGUA_DEFAULT_SPLIT_COST_BZIP2_RATIO = 7f;
+
+    /**
+     * Compression ratio of other codecs like snappy or lz4.
+     */
+    public static final String GUAGUA_SPLIT_COST_CODEC_RATIO = "guagua.split.cost.codecRatio";
+
+    public static final float GUAGUA_DEFAULT_SPLIT_COST_CODEC_RATIO = 3f;
+
+    /**
+     * Sequence file records are binary without text parsing, so cheaper than text with the same bytes.
+     */
+    public static final String GUAGUA_SPLIT_COST_SEQUENCE_FACTOR = "guagua.split.cost.sequenceFactor";
+
+    public static final float GUAGUA_DEFAULT_SPLIT_COST_SEQUENCE_FACTOR = 0.8f;
+
+    /**
+     * Decompressed bytes sampled from each text file to measure compression ratio and record density, 0 to disable.
+     */
+    public static final String GUAGUA_SPLIT_COST_SAMPLE_BYTES = "guagua.split.cost.sampleBytes";
+
+    public static final int GUAGUA_DEFAULT_SPLIT_COST_SAMPLE_BYTES = 0;
+
+    /**
+     * Whether to load data of {@link ml.shifu.guagua.worker.Preloadable} worker computable in background at container
+     * start, concurrently with waiting for master and other workers.
+     */
+    public static final String GUAGUA_WORKER_PRELOAD_ENABLE = "guagua.worker.preload.enable";
+
+    /**
+     * Read buffer size of guagua record readers on HDFS.
+     */
+    public static final String GUAGUA_READER_BUFFER_SIZE = "guagua.reader.buffer.size";
+
+    public static final int GUAGUA_DEFAULT_READER_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Number of buffers read ahead in background thread by record readers, 0 to read in caller thread.
+     */
+    public static final String GUAGUA_READER_READAHEAD_DEPTH = "guagua.reader.readahead.depth";
+
+    public static final int GUAGUA_DEFAULT_READER_READAHEAD_DEPTH = 4;
+
+    /**
+     * Comma separated columns read by columnar record reader, empty to read all columns.
+     */
+    public static final String GUAGUA_COLUMNAR_PROJECTION = "guagua.columnar.projection";
+
+    /**
+     * Comma separated numeric predicates like 'age>=18,score<0.5' pushed down to columnar record reader.
+     */
+    public static final String GUAGUA_COLUMNAR_FILTER = "guagua.columnar.filter";
+
+    /**
+     * Runtime of {@link ml.shifu.guagua.unit.GuaguaUnitDriver}: 'memory' to coordinate master and workers in memory,
+     * 'netty' to run real ZooKeeper and Netty coordinators in local threads, which serializes results like production.
+     */
+    public static final String GUAGUA_UNIT_RUNTIME = "guagua.unit.runtime";
+
+    public static final String GUAGUA_UNIT_RUNTIME_MEMORY = "memory";
+
+    public static final String GUAGUA_UNIT_RUNTIME_NETTY = "netty";
+
+    /**
+     * Number of model configurations trained together by {@link ml.shifu.guagua.sweep.SweepMasterComputable} in one
+     * application.
+     */
+    public static final String GUAGUA_SWEEP_SIZE = "guagua.sweep.size";
+
+    public static final int GUAGUA_DEFAULT_SWEEP_SIZE = 1;
+
+    /**
+     * Master computable class run for each configuration by {@link ml.shifu.guagua.sweep.SweepMasterComputable}.
+     */
+    public static final String GUAGUA_SWEEP_MASTER_COMPUTABLE_CLASS = "guagua.sweep.master.computable.class";
+
+    /**
+     * Prefix of configuration specific properties in sweep mode, for example 'guagua.sweep.2.lr.learning.rate'
+     * overrides 'lr.learning.rate' for the third configuration.
+     */
+    public static final String GUAGUA_SWEEP_PREFIX = "guagua.sweep.";
+
+    public static final String GUAGUA_ZK_RING_NODE = "ring";
+
+    /**
+     * Port of worker Netty server in ring all-reduce, if it is used, next valid port is used.
+     */
+    public static final String GUAGUA_RING_ALLREDUCE_SERVER_PORT = "guagua.ring.allreduce.server.port";
+
+    public static final int GUAGUA_RING_ALLREDUCE_DEFAULT_SERVER_PORT = 44343;
+
+    /**
+     * Timeout in milliseconds to wait for ring setup or a chunk from previous worker in ring all-reduce. It should
+     * cover computation time of the slowest worker as workers wait for each other in all-reduce.
+     */
+    public static final String GUAGUA_RING_ALLREDUCE_TIMEOUT = "guagua.ring.allreduce.timeout";
+
+    public static final long GUAGUA_RING_ALLREDUCE_DEFAULT_TIMEOUT = 30 * 60 * 1000L;
+
+    /**
+     * Worker system interceptors to reduce {@link ml.shifu.guagua.io.AllReducible} worker results in a ring of workers
+     * before sending to master. Master system interceptors are not changed, master only receives the reduced result.
+     */
+    public static final String GUAGUA_WORKER_RING_ALLREDUCE_SYSTEM_INTERCEPTERS = WorkerTimer.class.getName() + ","
+            + GcWorkerInterceptor.class.getName() + "," + MemoryStatsWorkerInterceptor.class.getName() + ","
+            + RingAllReduceWorkerCoordinator.class.getName();
+
+    /**
+     * Separator between master node name and shard index like 'master_1' in sharded parameter-server mode.
+     */
+    public static final String GUAGUA_ZK_SHARD_SEPARATOR = "_";
+
+    /**
+     * Master system interceptors in sharded parameter-server mode, in which {@link #GUAGUA_MASTER_NUMBER} masters each
+     * own a range of {@link ml.shifu.guagua.io.Shardable} results.
+     */
+    public static final String GUAGUA_MASTER_SHARDED_SYSTEM_INTERCEPTERS = MasterTimer.class.getName() + ","
+            + GcMasterInterceptor.class.getName() + "," + MemoryStatsMasterInterceptor.class.getName() + ","
+            + ShardedMasterCoordinator.class.getName();
+
+    /**
+     * Worker system interceptors in sharded parameter-server mode, used together with
+     * {@link #GUAGUA_MASTER_SHARDED_SYSTEM_INTERCEPTERS}.
+     */
+    public static final String GUAGUA_WORKER_SHARDED_SYSTEM_INTERCEPTERS = WorkerTimer.class.getName() + ","
+            + GcWorkerInterceptor.class.getName() + "," + MemoryStatsWorkerInterceptor.class.getName() + ","
+            + ShardedWorkerCoordinator.class.getName();
+
+    /**
+     * Fraction of entries sent by {@link ml.shifu.guagua.worker.SparsifyWorkerInterceptor} in each iteration, entries
+     * with the largest absolute values are sent and others are kept as residual in worker.
+     */
+    public static final String GUAGUA_SPARSIFY_RATIO = "guagua.sparsify.ratio";
+
+    public static final double GUAGUA_DEFAULT_SPARSIFY_RATIO = 0.01d;
+
+    /**
+     * If set to a positive value, {@link ml.shifu.guagua.worker.SparsifyWorkerInterceptor} sends entries whose absolute
+     * values are not less than it instead of top-k entries by {@link #GUAGUA_SPARSIFY_RATIO}.
+     */
+    public static final String GUAGUA_SPARSIFY_THRESHOLD = "guagua.sparsify.threshold";
+
+    /**
+     * Whether worker containers on the same host share master result by files in
+     * {@link #GUAGUA_MASTER_RESULT_CACHE_DIR}, only one container of a host fetches master result from zookeeper.
+     */
+    public static final String GUAGUA_MASTER_RESULT_CACHE_ENABLE = "guagua.master.result.cache.enable";
+
+    /**
+     * Local folder shared by containers of the same host, container temporary folder cannot be used.
+     */
+    public static final String GUAGUA_MASTER_RESULT_CACHE_DIR = "guagua.master.result.cache.dir";
+
+    public static final String GUAGUA_DEFAULT_MASTER_RESULT_CACHE_DIR = "/tmp/_guagua_result_cache";
+
+    /**
+     * Time in milliseconds to wait for master result published by another container before fetching it.
+     */
+    public static final String GUAGUA_MASTER_RESULT_CACHE_WAIT = "guagua.master.result.cache.wait";
+
+    public static final long GUAGUA_DEFAULT_MASTER_RESULT_CACHE_WAIT = 10 * 1000L;
 
 }
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Properties;
 
 import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.metrics.MetricsRegistry;
 import ml.shifu.guagua.util.Progressable;
 
 /**
@@ -98,4 +99,10 @@ public interface GuaguaService {
      */
     void setContainerId(String containerId);
 
-}
\ No newline at end of file
+    /**
+     * Metrics registry of this service, which is available after {@link #init(Properties)}. Platform code can add its
+     * own reporters like Hadoop counters reporter.
+     */
+    MetricsRegistry getMetricsRegistry();
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+/**
+ * {@link AllReducible} is a dense counterpart of {@link Combinable}: worker result which can be flattened to a double
+ * array and combined by element-wise sum, which is what ring all-reduce needs to reduce results among workers without
+ * master.
+ * 
+ * <p>
+ * Scalars which should be summed together with the array, like error or loss, can be appended to the array. Arrays of
+ * all workers in the same iteration should be in the same length.
+ * 
+ * @see ml.shifu.guagua.worker.RingAllReduceWorkerCoordinator
+ */
+public interface AllReducible {
+
+    /**
+     * Flatten current result to a double array which will be summed element-wise with results of other workers.
+     */
+    double[] getAllReduceValues();
+
+    /**
+     * Set summed values back to current result, values are in the same layout of {@link #getAllReduceValues()}.
+     */
+    void setAllReduceValues(double[] values);
+
+}
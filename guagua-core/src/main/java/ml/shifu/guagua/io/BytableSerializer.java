@@ -20,6 +20,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 
 import ml.shifu.guagua.GuaguaRuntimeException;
@@ -31,7 +32,7 @@ import ml.shifu.guagua.util.ReflectionUtils;
  * <p>
  * This is the default serializer in guagua.
  */
-public class BytableSerializer<RESULT extends Bytable> implements Serializer<RESULT> {
+public class BytableSerializer<RESULT extends Bytable> implements StreamSerializer<RESULT> {
 
     /**
      * Serialize from object to bytes.
@@ -77,11 +78,27 @@ public class BytableSerializer<RESULT extends Bytable> implements Serializer<RES
             throw new NullPointerException(String.format(
                     "data and className should not be null. data:%s, className:%s", Arrays.toString(data), className));
         }
+        return streamToObject(new ByteArrayInputStream(data), className);
+    }
+
+    /**
+     * De-serialize from stream to object, stream is closed after reading.
+     * 
+     * @throws NullPointerException
+     *             if className or in is null.
+     * @throws GuaguaRuntimeException
+     *             if any io exception or other reflection exception.
+     */
+    @Override
+    public RESULT streamToObject(InputStream in, String className) {
+        if(in == null || className == null) {
+            throw new NullPointerException(String.format("in and className should not be null. in:%s, className:%s",
+                    in, className));
+        }
         @SuppressWarnings("unchecked")
         RESULT result = (RESULT) ReflectionUtils.newInstance(className);
         DataInputStream dataIn = null;
         try {
-            ByteArrayInputStream in = new ByteArrayInputStream(data);
             dataIn = new DataInputStream(in);
             result.readFields(dataIn);
         } catch (Exception e) {
@@ -21,6 +21,8 @@ import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 
+import ml.shifu.guagua.metrics.IterationMetrics;
+
 /**
  * A {@link Bytable} wrapper to wrap some useful information to netty server and client communication.
  */
@@ -37,6 +39,17 @@ public class BytableWrapper implements Bytable {
 
     private boolean isStopMessage;
 
+    /**
+     * Worker metrics of current iteration sent to master for cluster metrics summary, can be null.
+     */
+    private IterationMetrics metrics;
+
+    /**
+     * Number of {@link ResultChunk}s sent before this message if worker result is streamed in chunks, 0 if worker result
+     * is in {@link #bytes}.
+     */
+    private int chunks;
+
     public BytableWrapper() {
     }
 
@@ -100,6 +113,36 @@ public class BytableWrapper implements Bytable {
         this.bytes = bytes;
     }
 
+    /**
+     * @return the metrics
+     */
+    public IterationMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param metrics
+     *            the metrics to set
+     */
+    public void setMetrics(IterationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the chunks
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @param chunks
+     *            the chunks to set
+     */
+    public void setChunks(int chunks) {
+        this.chunks = chunks;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -122,6 +165,11 @@ public class BytableWrapper implements Bytable {
         } else {
             out.writeInt(0);
         }
+        out.writeBoolean(this.metrics != null);
+        if(this.metrics != null) {
+            this.metrics.write(out);
+        }
+        out.writeInt(this.chunks);
     }
 
     private void writeBytes(DataOutput out, byte[] bytes) throws IOException {
@@ -157,6 +205,13 @@ public class BytableWrapper implements Bytable {
                 this.bytes[i] = in.readByte();
             }
         }
+        if(in.readBoolean()) {
+            this.metrics = new IterationMetrics();
+            this.metrics.readFields(in);
+        } else {
+            this.metrics = null;
+        }
+        this.chunks = in.readInt();
     }
 
     /*
@@ -167,7 +222,7 @@ public class BytableWrapper implements Bytable {
     @Override
     public String toString() {
         return "BytableWrapper [bytes=" + Arrays.toString(bytes) + ", currentIteration=" + currentIteration
-                + ", containerId=" + containerId + ", isStopMessage=" + isStopMessage + "]";
+                + ", containerId=" + containerId + ", isStopMessage=" + isStopMessage + ", metrics=" + metrics + ", chunks=" + chunks + "]";
     }
 
 }
@@ -39,7 +39,7 @@ import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream
  * @see Serializer
  * @see BytableSerializer
  */
-public class Bzip2BytableSerializer<RESULT extends Bytable> implements Serializer<RESULT> {
+public class Bzip2BytableSerializer<RESULT extends Bytable> implements StreamSerializer<RESULT> {
 
     /**
      * Serialize from object to bytes.
@@ -86,13 +86,28 @@ public class Bzip2BytableSerializer<RESULT extends Bytable> implements Serialize
             throw new NullPointerException(String.format(
                     "data and className should not be null. data:%s, className:%s", Arrays.toString(data), className));
         }
+        return streamToObject(new ByteArrayInputStream(data), className);
+    }
+
+    /**
+     * De-serialize from stream to object, stream is closed after reading.
+     * 
+     * @throws NullPointerException
+     *             if className or in is null.
+     * @throws GuaguaRuntimeException
+     *             if any io exception or other reflection exception.
+     */
+    @Override
+    public RESULT streamToObject(InputStream in, String className) {
+        if(in == null || className == null) {
+            throw new NullPointerException(String.format("in and className should not be null. in:%s, className:%s",
+                    in, className));
+        }
         @SuppressWarnings("unchecked")
         RESULT result = (RESULT) ReflectionUtils.newInstance(className);
         DataInputStream dataIn = null;
         try {
-            InputStream in = new ByteArrayInputStream(data);
-            InputStream gzipInput = new BZip2CompressorInputStream(in);
-            dataIn = new DataInputStream(gzipInput);
+            dataIn = new DataInputStream(new BZip2CompressorInputStream(in));
             result.readFields(dataIn);
         } catch (Exception e) {
             throw new GuaguaRuntimeException(e);
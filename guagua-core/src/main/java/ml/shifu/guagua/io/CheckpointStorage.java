@@ -0,0 +1,66 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * {@link CheckpointStorage} is the file system abstraction used to persist master checkpoints.
+ *
+ * <p>
+ * guagua-core doesn't depend on Hadoop, so only {@link LocalCheckpointStorage} is provided here. Check
+ * HdfsCheckpointStorage in guagua-mapreduce and guagua-yarn to store checkpoints into HDFS.
+ *
+ * <p>
+ * Paths are '/' separated strings. Implementations should make {@link #rename(String, String)} atomic as it is used to
+ * publish a checkpoint only after it is completely written.
+ */
+public interface CheckpointStorage {
+
+    /**
+     * Initialize storage with guagua properties. Called once before any other method.
+     */
+    void init(Properties props) throws IOException;
+
+    /**
+     * Create a new file and return its output stream, an existing file will be overwritten.
+     */
+    OutputStream create(String path) throws IOException;
+
+    /**
+     * Open an existing file to read.
+     */
+    InputStream open(String path) throws IOException;
+
+    /**
+     * Rename file from src to dst.
+     */
+    boolean rename(String src, String dst) throws IOException;
+
+    /**
+     * Delete file or folder recursively.
+     */
+    boolean delete(String path) throws IOException;
+
+    /**
+     * Whether such path exists.
+     */
+    boolean exists(String path) throws IOException;
+
+}
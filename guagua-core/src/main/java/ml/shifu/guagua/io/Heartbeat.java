@@ -0,0 +1,70 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Heartbeat sent by worker to master periodically on the same Netty channel as worker results, master marks a worker
+ * dead if its channel is disconnected or no heartbeat is received in heartbeat timeout.
+ */
+public class Heartbeat implements Bytable {
+
+    private int currentIteration;
+
+    private String containerId;
+
+    public Heartbeat() {
+    }
+
+    public Heartbeat(int currentIteration, String containerId) {
+        this.currentIteration = currentIteration;
+        this.containerId = containerId;
+    }
+
+    public int getCurrentIteration() {
+        return currentIteration;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.currentIteration);
+        byte[] containerIdBytes = this.containerId.getBytes(Charset.forName("UTF-8"));
+        out.writeInt(containerIdBytes.length);
+        out.write(containerIdBytes);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.currentIteration = in.readInt();
+        byte[] containerIdBytes = new byte[in.readInt()];
+        in.readFully(containerIdBytes);
+        this.containerId = new String(containerIdBytes, Charset.forName("UTF-8"));
+    }
+
+    @Override
+    public String toString() {
+        return "Heartbeat [currentIteration=" + currentIteration + ", containerId=" + containerId + "]";
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import ml.shifu.guagua.util.FileUtils;
+
+/**
+ * {@link CheckpointStorage} implementation on local file system, which is used in unit test or in a cluster with
+ * shared mounted folder.
+ */
+public class LocalCheckpointStorage implements CheckpointStorage {
+
+    @Override
+    public void init(Properties props) throws IOException {
+        // nothing to initialize for local file system
+    }
+
+    @Override
+    public OutputStream create(String path) throws IOException {
+        File file = new File(path);
+        File parent = file.getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists()) {
+            throw new IOException("Cannot create checkpoint folder " + parent);
+        }
+        return new FileOutputStream(file);
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        return new FileInputStream(path);
+    }
+
+    @Override
+    public boolean rename(String src, String dst) throws IOException {
+        File dstFile = new File(dst);
+        // File#renameTo cannot overwrite existing file on some platforms
+        if(dstFile.exists()) {
+            FileUtils.forceDelete(dstFile);
+        }
+        return new File(src).renameTo(dstFile);
+    }
+
+    @Override
+    public boolean delete(String path) throws IOException {
+        return FileUtils.deleteQuietly(new File(path));
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        return new File(path).exists();
+    }
+
+}
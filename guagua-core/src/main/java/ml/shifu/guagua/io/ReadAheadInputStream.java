@@ -0,0 +1,241 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link ReadAheadInputStream} reads underlying stream in a background thread into a ring of buffers, so that I/O (and
+ * decompression if underlying stream is a decompression stream) is overlapped with record parsing in caller thread.
+ * 
+ * <p>
+ * Buffers are allocated once and recycled between reading thread and caller thread by two blocking queues, so at most
+ * {@code depth * bufferSize} bytes are read ahead.
+ * 
+ * <p>
+ * Read-ahead stops after {@code limit} bytes, for example the end of a file split; later bytes are read directly from
+ * underlying stream in caller thread. This keeps a line record reader from reading much data of next split while still
+ * being able to finish the last line crossing split boundary.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+    /**
+     * Underlying stream, only accessed in reading thread before read-ahead is finished.
+     */
+    private final InputStream in;
+
+    /**
+     * Max bytes to read ahead, {@link Long#MAX_VALUE} means reading until end of stream.
+     */
+    private final long limit;
+
+    /**
+     * Empty buffers to be filled by reading thread.
+     */
+    private final BlockingQueue<Chunk> free;
+
+    /**
+     * Filled buffers to be consumed by caller thread.
+     */
+    private final BlockingQueue<Chunk> filled;
+
+    private final Thread readThread;
+
+    /**
+     * Current buffer in consuming, null if no buffer taken.
+     */
+    private Chunk current;
+
+    /**
+     * Whether read-ahead is finished by reaching limit, after that caller reads from underlying stream directly.
+     */
+    private boolean direct;
+
+    private boolean eof;
+
+    private volatile boolean closed;
+
+    private final byte[] single = new byte[1];
+
+    public ReadAheadInputStream(InputStream in, int bufferSize, int depth) {
+        this(in, bufferSize, depth, Long.MAX_VALUE);
+    }
+
+    public ReadAheadInputStream(InputStream in, int bufferSize, int depth, long limit) {
+        if(bufferSize <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Buffer size and depth should be positive.");
+        }
+        this.in = in;
+        this.limit = limit;
+        this.free = new ArrayBlockingQueue<Chunk>(depth);
+        this.filled = new ArrayBlockingQueue<Chunk>(depth + 1);
+        for(int i = 0; i < depth; i++) {
+            this.free.add(new Chunk(new byte[bufferSize]));
+        }
+        this.readThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAhead();
+            }
+        }, "guagua-read-ahead");
+        this.readThread.setDaemon(true);
+        this.readThread.start();
+    }
+
+    private void readAhead() {
+        long remaining = this.limit;
+        try {
+            while(!this.closed) {
+                if(remaining <= 0) {
+                    this.filled.put(Chunk.LIMIT);
+                    return;
+                }
+                Chunk chunk = this.free.take();
+                int max = (int) Math.min(chunk.data.length, remaining);
+                int length = 0;
+                while(length < max) {
+                    int n = this.in.read(chunk.data, length, max - length);
+                    if(n < 0) {
+                        break;
+                    }
+                    length += n;
+                }
+                remaining -= length;
+                chunk.length = length;
+                chunk.offset = 0;
+                if(length > 0) {
+                    this.filled.put(chunk);
+                }
+                if(length < max) {
+                    this.filled.put(Chunk.EOF);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed by caller
+        } catch (IOException e) {
+            if(!this.closed) {
+                this.filled.offer(Chunk.error(e));
+            }
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(this.single, 0, 1);
+        return n < 0 ? -1 : (this.single[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(this.direct) {
+            return this.in.read(b, off, len);
+        }
+        if(this.eof) {
+            return -1;
+        }
+        if(this.current == null || this.current.offset >= this.current.length) {
+            if(this.current != null) {
+                this.free.offer(this.current);
+                this.current = null;
+            }
+            Chunk chunk = takeChunk();
+            if(chunk == Chunk.EOF) {
+                this.eof = true;
+                return -1;
+            }
+            if(chunk == Chunk.LIMIT) {
+                // reading thread is finished, safe to use underlying stream in this thread
+                this.direct = true;
+                return this.in.read(b, off, len);
+            }
+            if(chunk.error != null) {
+                this.eof = true;
+                throw chunk.error;
+            }
+            this.current = chunk;
+        }
+        int n = Math.min(len, this.current.length - this.current.offset);
+        System.arraycopy(this.current.data, this.current.offset, b, off, n);
+        this.current.offset += n;
+        return n;
+    }
+
+    private Chunk takeChunk() throws IOException {
+        try {
+            return this.filled.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted in waiting for read-ahead buffer.");
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if(this.direct) {
+            return this.in.available();
+        }
+        return this.current == null ? 0 : this.current.length - this.current.offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.readThread.interrupt();
+        try {
+            // underlying stream is not thread-safe, close it after reading thread exits
+            this.readThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.in.close();
+    }
+
+    private static class Chunk {
+
+        private static final Chunk EOF = new Chunk(new byte[0]);
+
+        private static final Chunk LIMIT = new Chunk(new byte[0]);
+
+        private final byte[] data;
+
+        private int offset;
+
+        private int length;
+
+        private IOException error;
+
+        public Chunk(byte[] data) {
+            this.data = data;
+        }
+
+        public static Chunk error(IOException error) {
+            Chunk chunk = new Chunk(new byte[0]);
+            chunk.error = error;
+            return chunk;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link RepartitionPlan} is published by master to tell overloaded workers how many records should be handed off to
+ * which underloaded workers before next iteration.
+ */
+public class RepartitionPlan implements Bytable {
+
+    /**
+     * Iteration in which this plan is made, plan is executed after master result of this iteration.
+     */
+    private int iteration;
+
+    private List<Transfer> transfers = new ArrayList<Transfer>();
+
+    /**
+     * Records to be moved from one worker to another.
+     */
+    public static class Transfer {
+
+        private final String from;
+
+        private final String to;
+
+        private final long count;
+
+        public Transfer(String from, String to, long count) {
+            this.from = from;
+            this.to = to;
+            this.count = count;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String toString() {
+            return from + "->" + to + ":" + count;
+        }
+    }
+
+    public RepartitionPlan() {
+    }
+
+    public RepartitionPlan(int iteration) {
+        this.iteration = iteration;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public List<Transfer> getTransfers() {
+        return transfers;
+    }
+
+    public void addTransfer(String from, String to, long count) {
+        this.transfers.add(new Transfer(from, to, count));
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.iteration);
+        out.writeInt(this.transfers.size());
+        for(Transfer transfer: this.transfers) {
+            out.writeUTF(transfer.from);
+            out.writeUTF(transfer.to);
+            out.writeLong(transfer.count);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.iteration = in.readInt();
+        int size = in.readInt();
+        this.transfers = new ArrayList<Transfer>(size);
+        for(int i = 0; i < size; i++) {
+            this.transfers.add(new Transfer(in.readUTF(), in.readUTF(), in.readLong()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RepartitionPlan [iteration=" + iteration + ", transfers=" + transfers + "]";
+    }
+
+}
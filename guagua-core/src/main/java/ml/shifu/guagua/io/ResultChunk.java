@@ -0,0 +1,162 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * A chunk of worker result streamed from worker to master when worker result is larger than chunk size.
+ * 
+ * <p>
+ * Chunk holds either a slice of serialized worker result bytes, or a slice of {@link AllReducible#getAllReduceValues()}
+ * if worker result is also {@link Combinable}, which master sums into its accumulator once all chunks of the worker are
+ * received. Chunks of one worker are sent in sequence and followed by a {@link BytableWrapper} whose
+ * {@link BytableWrapper#getChunks()} is the number of chunks.
+ */
+public class ResultChunk implements Bytable {
+
+    private int currentIteration;
+
+    private String containerId;
+
+    /**
+     * Sequence number of chunk in current iteration, starting from 0.
+     */
+    private int sequence;
+
+    /**
+     * Offset of chunk in whole bytes or values.
+     */
+    private int offset;
+
+    /**
+     * Length of whole bytes or values.
+     */
+    private int totalLength;
+
+    /**
+     * Slice of serialized worker result, null if {@link #values} is set.
+     */
+    private byte[] bytes;
+
+    /**
+     * Slice of all-reduce values, null if {@link #bytes} is set.
+     */
+    private double[] values;
+
+    public ResultChunk() {
+    }
+
+    public ResultChunk(int currentIteration, String containerId, int sequence, int offset, int totalLength,
+            byte[] bytes, double[] values) {
+        this.currentIteration = currentIteration;
+        this.containerId = containerId;
+        this.sequence = sequence;
+        this.offset = offset;
+        this.totalLength = totalLength;
+        this.bytes = bytes;
+        this.values = values;
+    }
+
+    public int getCurrentIteration() {
+        return currentIteration;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getTotalLength() {
+        return totalLength;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     * Size of chunk payload in bytes.
+     */
+    public int getPayloadSize() {
+        return this.values != null ? this.values.length * 8 : (this.bytes == null ? 0 : this.bytes.length);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.currentIteration);
+        byte[] containerIdBytes = this.containerId.getBytes(Charset.forName("UTF-8"));
+        out.writeInt(containerIdBytes.length);
+        out.write(containerIdBytes);
+        out.writeInt(this.sequence);
+        out.writeInt(this.offset);
+        out.writeInt(this.totalLength);
+        out.writeBoolean(this.values != null);
+        if(this.values != null) {
+            out.writeInt(this.values.length);
+            for(double value: this.values) {
+                out.writeDouble(value);
+            }
+        } else {
+            out.writeInt(this.bytes.length);
+            out.write(this.bytes);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.currentIteration = in.readInt();
+        byte[] containerIdBytes = new byte[in.readInt()];
+        in.readFully(containerIdBytes);
+        this.containerId = new String(containerIdBytes, Charset.forName("UTF-8"));
+        this.sequence = in.readInt();
+        this.offset = in.readInt();
+        this.totalLength = in.readInt();
+        if(in.readBoolean()) {
+            this.values = new double[in.readInt()];
+            for(int i = 0; i < this.values.length; i++) {
+                this.values[i] = in.readDouble();
+            }
+            this.bytes = null;
+        } else {
+            this.bytes = new byte[in.readInt()];
+            in.readFully(this.bytes);
+            this.values = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ResultChunk [currentIteration=" + currentIteration + ", containerId=" + containerId + ", sequence="
+                + sequence + ", offset=" + offset + ", totalLength=" + totalLength + ", size=" + getPayloadSize()
+                + "]";
+    }
+
+}
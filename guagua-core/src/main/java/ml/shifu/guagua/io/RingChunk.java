@@ -0,0 +1,95 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A chunk of {@link AllReducible} values sent from one worker to its next worker in ring all-reduce.
+ */
+public class RingChunk implements Bytable {
+
+    private int currentIteration;
+
+    /**
+     * Step in ring all-reduce, steps [0, n-1) are reduce-scatter steps and [n-1, 2n-2) are all-gather steps.
+     */
+    private int step;
+
+    /**
+     * Chunk index in values array.
+     */
+    private int index;
+
+    private double[] values;
+
+    public RingChunk() {
+    }
+
+    public RingChunk(int currentIteration, int step, int index, double[] values) {
+        this.currentIteration = currentIteration;
+        this.step = step;
+        this.index = index;
+        this.values = values;
+    }
+
+    public int getCurrentIteration() {
+        return currentIteration;
+    }
+
+    public int getStep() {
+        return step;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.currentIteration);
+        out.writeInt(this.step);
+        out.writeInt(this.index);
+        out.writeInt(this.values.length);
+        for(double value: this.values) {
+            out.writeDouble(value);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.currentIteration = in.readInt();
+        this.step = in.readInt();
+        this.index = in.readInt();
+        this.values = new double[in.readInt()];
+        for(int i = 0; i < this.values.length; i++) {
+            this.values[i] = in.readDouble();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RingChunk [currentIteration=" + currentIteration + ", step=" + step + ", index=" + index
+                + ", length=" + values.length + "]";
+    }
+
+}
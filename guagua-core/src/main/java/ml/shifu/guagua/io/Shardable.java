@@ -0,0 +1,47 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.util.List;
+
+/**
+ * {@link Shardable} result can be range-partitioned into shards which are owned by different masters in sharded
+ * parameter-server mode.
+ * 
+ * <p>
+ * Worker result is split by {@link #getShard(int, int)} and each slice is sent to its master shard, master results
+ * of all shards are merged by {@link #mergeShards(List)} into the master result for next iteration in workers.
+ * 
+ * <p>
+ * Check {@link ml.shifu.guagua.util.ShardUtils} to compute range of shard for array fields.
+ * 
+ * @see ml.shifu.guagua.master.ShardedMasterCoordinator
+ * @see ml.shifu.guagua.worker.ShardedWorkerCoordinator
+ */
+public interface Shardable<RESULT extends Bytable> {
+
+    /**
+     * Slice of current result owned by shard (in [0, shards)). Fields not partitioned like error should only be kept in
+     * one shard or they will be counted several times.
+     */
+    RESULT getShard(int shard, int shards);
+
+    /**
+     * Merge slices of all shards into a new result, slices are in shard order.
+     */
+    RESULT mergeShards(List<RESULT> shards);
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+/**
+ * {@link Sparsifiable} worker result has a dense double array like gradients, in which only a few entries are sent by
+ * {@link ml.shifu.guagua.worker.SparsifyWorkerInterceptor} in each iteration.
+ * 
+ * <p>
+ * Dropped entries are set to zero in place in {@link #getSparsifyValues()} and then {@link #setSparse(boolean)} is
+ * called, in which case result should write its array by
+ * {@link ml.shifu.guagua.util.SparseUtils#writeSparse(java.io.DataOutput, double[])} to only send non-zero entries as
+ * index/value pairs. {@link ml.shifu.guagua.util.SparseUtils#readDoubles(java.io.DataInput)} decodes both dense and
+ * sparse arrays into dense arrays, so master computation is not changed.
+ */
+public interface Sparsifiable {
+
+    /**
+     * Dense values to be sparsified in place, null or empty array if nothing to send in this iteration.
+     */
+    double[] getSparsifyValues();
+
+    /**
+     * Whether values should be written as index/value pairs of non-zero entries.
+     */
+    void setSparse(boolean sparse);
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.InputStream;
+
+/**
+ * {@link StreamSerializer} reads object from a stream, so that bytes received in chunks can be de-serialized without
+ * being copied into one byte array.
+ */
+public interface StreamSerializer<RESULT extends Bytable> extends Serializer<RESULT> {
+
+    /**
+     * Transform bytes in stream to object. Because of generic erasion, className should be provided.
+     */
+    RESULT streamToObject(InputStream in, String className);
+}
@@ -15,6 +15,10 @@
  */
 package ml.shifu.guagua.master;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -54,6 +58,16 @@ public abstract class AbstractMasterCoordinator<MASTER_RESULT extends Bytable, W
 
     private String myBid;
 
+    /**
+     * Master computable instance, which is used to checkpoint its state if it is {@link Checkpointable}.
+     */
+    private MasterComputable<MASTER_RESULT, WORKER_RESULT> masterComputable;
+
+    /**
+     * Checkpoint service, null if checkpoint is not enabled.
+     */
+    private MasterCheckpointService checkpointService;
+
     @Override
     public void postIteration(final MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
         new BasicCoordinatorCommand() {
@@ -402,6 +416,124 @@ public abstract class AbstractMasterCoordinator<MASTER_RESULT extends Bytable, W
 
     }
 
+    /**
+     * Initialize checkpoint service if {@link GuaguaConstants#GUAGUA_CHECKPOINT_ENABLE} is set to true.
+     */
+    protected void initCheckpointService(final MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(MasterCheckpointService.isEnabled(context.getProps())) {
+            this.checkpointService = new MasterCheckpointService(context.getProps(), getCheckpointName(context));
+        }
+    }
+
+    /**
+     * Name of checkpoint folder of current master, application id by default.
+     */
+    protected String getCheckpointName(final MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        return context.getAppId();
+    }
+
+    /**
+     * Checkpoint master result bytes and master computable state asynchronously. Master state is snapshotted in caller
+     * thread, only file writing and checkpoint znode updating are in checkpoint thread.
+     */
+    protected void checkpoint(final MasterContext<MASTER_RESULT, WORKER_RESULT> context, byte[] masterResultBytes) {
+        if(this.checkpointService == null
+                || !this.checkpointService.isCheckpointIteration(context.getCurrentIteration())) {
+            return;
+        }
+        byte[] state;
+        try {
+            state = MasterCheckpointService.snapshotState(this.masterComputable);
+        } catch (IOException e) {
+            LOG.error("Error in snapshot of master state, skip checkpoint.", e);
+            return;
+        }
+        final String checkpointNode = getCheckpointNode(context.getAppId()).toString();
+        this.checkpointService.submit(context.getCurrentIteration(), masterResultBytes, state,
+                new MasterCheckpointService.Callback() {
+                    @Override
+                    public void onCheckpoint(int iteration, String path) throws Exception {
+                        String value = iteration + ":" + path;
+                        getZooKeeper().createOrSetExt(checkpointNode, value.getBytes(Charset.forName("UTF-8")),
+                                Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT, false, -1);
+                    }
+                });
+    }
+
+    /**
+     * Recover master computable state and master result (if not recovered from master znode) from checkpoint which
+     * is pointed by checkpoint znode. Checkpoint of another iteration than master result recovered from master znode
+     * is ignored.
+     */
+    @SuppressWarnings("unchecked")
+    protected void recoverFromCheckpoint(final MasterContext<MASTER_RESULT, WORKER_RESULT> context)
+            throws KeeperException, InterruptedException {
+        if(this.checkpointService == null) {
+            return;
+        }
+        String checkpointNode = getCheckpointNode(context.getAppId()).toString();
+        if(getZooKeeper().exists(checkpointNode, false) == null) {
+            LOG.info("No checkpoint found for fail-over master.");
+            return;
+        }
+        String value = new String(getZooKeeper().getData(checkpointNode, null, null), Charset.forName("UTF-8"));
+        int index = value.indexOf(':');
+        String path = value.substring(index + 1);
+        MasterCheckpointService.Checkpoint checkpoint;
+        try {
+            checkpoint = this.checkpointService.read(path);
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+        if(checkpoint == null) {
+            LOG.warn("Checkpoint file {} doesn't exist.", path);
+            return;
+        }
+        if(context.getMasterResult() != null && checkpoint.getIteration() != context.getCurrentIteration()) {
+            // state of another iteration is not consistent with master result, master computable restarts from master
+            // result as if checkpoint is not enabled.
+            LOG.warn("Checkpoint iteration {} is not the same as restarted iteration {}, checkpoint is ignored.",
+                    checkpoint.getIteration(), context.getCurrentIteration());
+            return;
+        }
+        if(context.getMasterResult() == null) {
+            context.setMasterResult(getMasterSerializer().bytesToObject(checkpoint.getMasterResult(),
+                    context.getMasterResultClassName()));
+            context.setCurrentIteration(checkpoint.getIteration());
+        }
+        if(checkpoint.getState() != null && this.masterComputable instanceof Checkpointable) {
+            try {
+                ((Checkpointable) this.masterComputable).restoreState(new DataInputStream(new ByteArrayInputStream(
+                        checkpoint.getState())));
+            } catch (IOException e) {
+                throw new GuaguaRuntimeException(e);
+            }
+        }
+        LOG.info("Master is recovered from checkpoint {} of iteration {}.", path, checkpoint.getIteration());
+    }
+
+    /**
+     * Iteration of last published checkpoint, -1 if checkpoint is not enabled or no checkpoint is published yet.
+     */
+    protected int getLastCheckpointIteration() {
+        return this.checkpointService == null ? -1 : this.checkpointService.getLastIteration();
+    }
+
+    /**
+     * Wait for pending checkpoint and delete checkpoint files if cleanup is true.
+     */
+    protected void closeCheckpointService(final MasterContext<MASTER_RESULT, WORKER_RESULT> context, boolean cleanup) {
+        if(this.checkpointService == null) {
+            return;
+        }
+        this.checkpointService.close(NumberFormatUtils.getLong(
+                context.getProps().getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_CLOSE_TIMEOUT),
+                GuaguaConstants.GUAGUA_DEFAULT_CHECKPOINT_CLOSE_TIMEOUT));
+        if(cleanup) {
+            this.checkpointService.cleanup();
+        }
+    }
+
     public String getMyBid() {
         return myBid;
     }
@@ -410,4 +542,12 @@ public abstract class AbstractMasterCoordinator<MASTER_RESULT extends Bytable, W
         this.myBid = myBid;
     }
 
+    public MasterComputable<MASTER_RESULT, WORKER_RESULT> getMasterComputable() {
+        return masterComputable;
+    }
+
+    public void setMasterComputable(MasterComputable<MASTER_RESULT, WORKER_RESULT> masterComputable) {
+        this.masterComputable = masterComputable;
+    }
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AdaptiveMinWorkersPolicy} adjusts min workers ratio and min workers timeout by {@link StragglerReport}.
+ * 
+ * <p>
+ * If there are stragglers on slow nodes, min workers ratio is decreased to not wait for them, but not lower than
+ * {@link GuaguaConstants#GUAGUA_STRAGGLER_MIN_WORKERS_RATIO_FLOOR}. Skewed stragglers are not excluded as their
+ * results are dropped in each iteration which biases the model. Min workers timeout is set to
+ * {@link GuaguaConstants#GUAGUA_STRAGGLER_TIMEOUT_FACTOR} times of median worker busy time to follow real iteration
+ * time, unless {@link GuaguaConstants#GUAGUA_MIN_WORKERS_TIMEOUT} is explicitly configured.
+ * 
+ * <p>
+ * Notice that in {@link ml.shifu.guagua.BasicCoordinator}, min workers ratio is not used if workers are not more than
+ * 10.
+ */
+public class AdaptiveMinWorkersPolicy implements StragglerPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveMinWorkersPolicy.class);
+
+    /**
+     * Min workers timeout is not adjusted lower than this value.
+     */
+    private static final long MIN_TIMEOUT_MILLIS = 1000L;
+
+    private double ratioFloor;
+
+    private double timeoutFactor;
+
+    /**
+     * Whether min workers timeout is configured by user, which is respected and not adjusted.
+     */
+    private boolean isTimeoutConfigured;
+
+    /**
+     * Configured min workers ratio, -1 before first report.
+     */
+    private double initRatio = -1d;
+
+    @Override
+    public void init(Properties props) {
+        this.ratioFloor = NumberFormatUtils.getDouble(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_MIN_WORKERS_RATIO_FLOOR),
+                GuaguaConstants.GUAGUA_DEFAULT_STRAGGLER_MIN_WORKERS_RATIO_FLOOR);
+        this.timeoutFactor = NumberFormatUtils.getDouble(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_TIMEOUT_FACTOR),
+                GuaguaConstants.GUAGUA_DEFAULT_STRAGGLER_TIMEOUT_FACTOR);
+        this.isTimeoutConfigured = props.getProperty(GuaguaConstants.GUAGUA_MIN_WORKERS_TIMEOUT) != null;
+    }
+
+    @Override
+    public void onReport(MasterContext<?, ?> context, StragglerReport report) {
+        if(this.initRatio < 0d) {
+            this.initRatio = context.getMinWorkersRatio();
+        }
+        double ratio = this.initRatio;
+        int stragglers = report.getStragglers().size();
+        if(stragglers > 0 && context.getWorkers() > 0) {
+            double excluded = (context.getWorkers() - stragglers) / (double) context.getWorkers();
+            ratio = Math.max(Math.min(this.ratioFloor, this.initRatio), Math.min(this.initRatio, excluded));
+        }
+        if(ratio != context.getMinWorkersRatio()) {
+            LOG.info("Iteration {}, min workers ratio is adjusted from {} to {} with stragglers {}.",
+                    report.getIteration(), context.getMinWorkersRatio(), ratio, report.getStragglers());
+            context.setMinWorkersRatio(ratio);
+        }
+        if(!this.isTimeoutConfigured) {
+            long timeout = Math.max(MIN_TIMEOUT_MILLIS, (long) (report.getMedianTime() * this.timeoutFactor));
+            LOG.debug("Iteration {}, min workers timeout is adjusted from {}ms to {}ms.", report.getIteration(),
+                    context.getMinWorkersTimeOut(), timeout);
+            context.setMinWorkersTimeOut(timeout);
+        }
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelHandler.Sharable;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelStateEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link AdmissionControlHandler} caps bytes of worker result frames buffered by master Netty server, which can be
+ * large when hundreds of workers send results at the same time at the end of an iteration.
+ * 
+ * <p>
+ * It should be the first upstream handler before {@link ml.shifu.guagua.io.NettyBytableDecoder} and is shared by all
+ * channels. A frame is admitted once its length field is read: the whole frame size including length field is charged
+ * to in-flight budget, and released once the frame is decoded and handled by next handlers. If budget cannot hold a
+ * new frame, the frame waits for admission and reading of its channel is suspended by
+ * {@link Channel#setReadable(boolean)}, then workers are blocked by TCP flow control.
+ * 
+ * <p>
+ * Admitted frames are never suspended, so they always complete and release budget. A frame is always admitted if
+ * nothing is in flight, so a frame larger than budget is not blocked forever. Suspended channels are resumed in FIFO
+ * order once their waiting frames fit into free budget, which are charged at resuming. Bytes of a waiting frame
+ * received in the same socket read as its length field are not charged, so peak memory is about budget plus one
+ * socket read for each suspended channel.
+ */
+@Sharable
+public class AdmissionControlHandler extends SimpleChannelUpstreamHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdmissionControlHandler.class);
+
+    /**
+     * Length of frame length field written by {@link ml.shifu.guagua.io.NettyBytableEncoder}.
+     */
+    private static final int LENGTH_FIELD_SIZE = 4;
+
+    /**
+     * Max bytes of frames in flight.
+     */
+    private final long budget;
+
+    /**
+     * Bytes charged but not released, guarded by this.
+     */
+    private long inFlight;
+
+    /**
+     * Suspended channels in suspending order, guarded by this.
+     */
+    private final LinkedList<FrameState> suspended = new LinkedList<FrameState>();
+
+    public AdmissionControlHandler(long budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+        if(!(e.getMessage() instanceof ChannelBuffer)) {
+            super.messageReceived(ctx, e);
+            return;
+        }
+        FrameState state = getFrameState(ctx);
+        long completed = consume(state, (ChannelBuffer) e.getMessage());
+        try {
+            super.messageReceived(ctx, e);
+        } finally {
+            release(completed);
+            suspendIfWaiting(state);
+        }
+    }
+
+    @Override
+    public void channelClosed(ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+        FrameState state = getFrameState(ctx);
+        long charged;
+        synchronized(this) {
+            this.suspended.remove(state);
+            state.isSuspended = false;
+            state.waiting = 0L;
+            // bytes of unfinished frame will never be handled
+            charged = state.charged;
+            state.charged = 0L;
+        }
+        release(charged);
+        super.channelClosed(ctx, e);
+    }
+
+    private FrameState getFrameState(ChannelHandlerContext ctx) {
+        synchronized(ctx) {
+            FrameState state = (FrameState) ctx.getAttachment();
+            if(state == null) {
+                state = new FrameState(ctx.getChannel());
+                ctx.setAttachment(state);
+            }
+            return state;
+        }
+    }
+
+    /**
+     * Walk through readable bytes without changing reader index, admit frames whose length field is read and return
+     * charged bytes of completed frames.
+     */
+    private long consume(FrameState state, ChannelBuffer buffer) {
+        long completed = 0L;
+        int index = buffer.readerIndex();
+        int end = buffer.writerIndex();
+        while(index < end) {
+            if(state.remaining == 0) {
+                state.length = (state.length << 8) | (buffer.getByte(index) & 0xFF);
+                state.lengthFieldRead += 1;
+                index += 1;
+                if(state.lengthFieldRead < LENGTH_FIELD_SIZE) {
+                    continue;
+                }
+                state.remaining = state.length;
+                state.lengthFieldRead = 0;
+                state.length = 0;
+                admit(state, LENGTH_FIELD_SIZE + state.remaining);
+            } else {
+                int n = (int) Math.min(state.remaining, end - index);
+                index += n;
+                state.remaining -= n;
+            }
+            if(state.remaining == 0 && state.lengthFieldRead == 0) {
+                completed += complete(state);
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Charge frame if budget can hold it, otherwise the frame waits for admission.
+     */
+    private synchronized void admit(FrameState state, long bytes) {
+        if(this.inFlight == 0L || (this.suspended.isEmpty() && this.inFlight + bytes <= this.budget)) {
+            this.inFlight += bytes;
+            state.charged = bytes;
+        } else {
+            state.waiting = bytes;
+        }
+    }
+
+    /**
+     * Finish current frame and return its charged bytes, frame not admitted in the same socket read isn't charged.
+     */
+    private synchronized long complete(FrameState state) {
+        long charged = state.charged;
+        state.charged = 0L;
+        state.waiting = 0L;
+        return charged;
+    }
+
+    private void suspendIfWaiting(FrameState state) {
+        synchronized(this) {
+            if(state.waiting == 0L || state.isSuspended) {
+                return;
+            }
+            state.isSuspended = true;
+            this.suspended.add(state);
+        }
+        LOG.debug("Frame of {} bytes cannot be admitted with in-flight bytes {} and budget {}, suspend reading of "
+                + "channel {}.", new Object[] { state.waiting, this.inFlight, this.budget, state.channel });
+        state.channel.setReadable(false);
+        boolean isResumed;
+        synchronized(this) {
+            isResumed = !state.isSuspended;
+        }
+        if(isResumed && state.channel.isOpen()) {
+            // resumed by another thread before reading is suspended
+            state.channel.setReadable(true);
+        }
+    }
+
+    private void release(long bytes) {
+        if(bytes == 0L) {
+            return;
+        }
+        List<FrameState> resumed = new ArrayList<FrameState>();
+        synchronized(this) {
+            this.inFlight -= bytes;
+            while(!this.suspended.isEmpty()) {
+                FrameState state = this.suspended.getFirst();
+                if(this.inFlight > 0L && this.inFlight + state.waiting > this.budget) {
+                    break;
+                }
+                // admit waiting frame before resuming, so it is not suspended again by later frames
+                this.suspended.removeFirst();
+                this.inFlight += state.waiting;
+                state.charged = state.waiting;
+                state.waiting = 0L;
+                state.isSuspended = false;
+                resumed.add(state);
+            }
+        }
+        for(FrameState state: resumed) {
+            if(state.channel.isOpen()) {
+                state.channel.setReadable(true);
+            }
+        }
+    }
+
+    public synchronized long getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Frame boundaries and admission of one channel. Length field is parsed only in I/O thread of that channel, while
+     * charged and waiting bytes are guarded by the handler.
+     */
+    private static class FrameState {
+
+        private final Channel channel;
+
+        /**
+         * Bytes of length field read for current frame.
+         */
+        private int lengthFieldRead;
+
+        /**
+         * Frame length being read from length field.
+         */
+        private int length;
+
+        /**
+         * Body bytes not received of current frame.
+         */
+        private long remaining;
+
+        /**
+         * Bytes charged for current frame, 0 if it is not admitted.
+         */
+        private long charged;
+
+        /**
+         * Bytes of current frame waiting for admission.
+         */
+        private long waiting;
+
+        /**
+         * Whether channel is in suspended queue.
+         */
+        private boolean isSuspended;
+
+        FrameState(Channel channel) {
+            this.channel = channel;
+        }
+    }
+
+}
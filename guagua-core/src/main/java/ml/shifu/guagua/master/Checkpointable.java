@@ -0,0 +1,44 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link MasterComputable} can implement {@link Checkpointable} to save its internal state (for example last deltas
+ * and last gradients in a weight updater) together with master result in each checkpoint.
+ *
+ * <p>
+ * {@link #saveState(DataOutput)} is called in master iteration thread after {@link MasterComputable#compute} to make a
+ * consistent snapshot, only writing of the snapshot to storage is done asynchronously.
+ *
+ * @see MasterCheckpointService
+ */
+public interface Checkpointable {
+
+    /**
+     * Write internal state to output.
+     */
+    void saveState(DataOutput out) throws IOException;
+
+    /**
+     * Recover internal state from input, this is called in fail-over master before first iteration.
+     */
+    void restoreState(DataInput in) throws IOException;
+
+}
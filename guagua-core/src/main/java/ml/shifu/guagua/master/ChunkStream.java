@@ -0,0 +1,126 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.ResultChunk;
+
+/**
+ * {@link ChunkStream} keeps {@link ResultChunk}s received from one worker in current iteration until the worker message
+ * completes the stream with number of chunks sent.
+ * 
+ * <p>
+ * Chunks must be received in sequence, a lost or out of sequence chunk breaks the stream and result of the worker is
+ * dropped.
+ */
+class ChunkStream {
+
+    /**
+     * Sequence number of next expected chunk.
+     */
+    private int nextSequence;
+
+    /**
+     * Chunks received in sequence, referenced as decoded until the stream completes.
+     */
+    private List<ResultChunk> chunks = new ArrayList<ResultChunk>();
+
+    /**
+     * If chunks are lost or out of sequence, worker result is dropped.
+     */
+    private boolean broken;
+
+    /**
+     * Add chunk if it is the next one in sequence, otherwise stream is broken and false is returned.
+     */
+    boolean add(ResultChunk chunk) {
+        if(this.broken || this.nextSequence != chunk.getSequence()) {
+            this.broken = true;
+            this.chunks.clear();
+            return false;
+        }
+        this.nextSequence += 1;
+        this.chunks.add(chunk);
+        return true;
+    }
+
+    /**
+     * Whether all chunks sent by worker are received in sequence.
+     */
+    boolean isComplete(int sentChunks) {
+        return !this.broken && sentChunks > 0 && this.nextSequence == sentChunks;
+    }
+
+    /**
+     * Whether chunks are slices of all-reduce values instead of serialized bytes, stream should be complete.
+     */
+    boolean isValues() {
+        return this.chunks.get(0).getValues() != null;
+    }
+
+    /**
+     * Length of whole bytes or values, stream should be complete.
+     */
+    int getTotalLength() {
+        return this.chunks.get(0).getTotalLength();
+    }
+
+    /**
+     * Sum values chunks into sum at their offsets, sum should be in length of {@link #getTotalLength()}.
+     */
+    void sumValuesTo(double[] sum) {
+        if(sum.length != getTotalLength()) {
+            throw new GuaguaRuntimeException("Streamed values length " + getTotalLength()
+                    + " is not consistent with " + sum.length);
+        }
+        for(ResultChunk chunk: this.chunks) {
+            double[] values = chunk.getValues();
+            for(int i = 0; i < values.length; i++) {
+                sum[chunk.getOffset() + i] += values[i];
+            }
+        }
+    }
+
+    /**
+     * Bytes chunks as one stream without copying them into one byte array.
+     */
+    InputStream toInputStream() {
+        List<InputStream> inputs = new ArrayList<InputStream>(this.chunks.size());
+        for(ResultChunk chunk: this.chunks) {
+            inputs.add(new ByteArrayInputStream(chunk.getBytes()));
+        }
+        return new SequenceInputStream(Collections.enumeration(inputs));
+    }
+
+    /**
+     * Bytes chunks copied into one byte array at their offsets.
+     */
+    byte[] toBytes() {
+        byte[] bytes = new byte[getTotalLength()];
+        for(ResultChunk chunk: this.chunks) {
+            System.arraycopy(chunk.getBytes(), 0, bytes, chunk.getOffset(), chunk.getBytes().length);
+        }
+        return bytes;
+    }
+
+}
@@ -18,9 +18,9 @@ package ml.shifu.guagua.master;
 import java.lang.management.GarbageCollectorMXBean;
 import java.lang.management.ManagementFactory;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.metrics.Metric;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,15 +66,17 @@ public class GcMasterInterceptor<MASTER_RESULT extends Bytable, WORKER_RESULT ex
 
     @Override
     public void postIteration(MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        // gc time from GarbageCollectorMXBean is in milliseconds
+        long gcTime = computeGCTime() - this.iterGCStartTime;
+        context.getMetrics().set(Metric.GC_TIME, gcTime);
         LOG.info("Application {} container {} iteration {} ends with {}ms gc time.", context.getAppId(),
-                context.getContainerId(), context.getCurrentIteration(),
-                TimeUnit.NANOSECONDS.toMillis(computeGCTime() - this.iterGCStartTime));
+                context.getContainerId(), context.getCurrentIteration(), gcTime);
     }
 
     @Override
     public void postApplication(MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
         LOG.info("Application {} container {} ends with {}ms gc time.", context.getAppId(), context.getContainerId(),
-                TimeUnit.NANOSECONDS.toMillis(computeGCTime() - this.appGCStartTime));
+                computeGCTime() - this.appGCStartTime);
     }
 
     private long computeGCTime() {
@@ -36,6 +36,8 @@ import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.HaltBytable;
 import ml.shifu.guagua.io.Serializer;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
 import ml.shifu.guagua.master.MasterContext.MasterCompletionCallBack;
 import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.guagua.util.Progressable;
@@ -78,6 +80,11 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
      */
     private Properties props;
 
+    /**
+     * Metrics registry of master container.
+     */
+    private MetricsRegistry metricsRegistry;
+
     /**
      * All interceptors which includes system interceptors like {@link SyncMasterCoordinator} and customized
      * interceptors.
@@ -219,6 +226,8 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
      */
     protected MASTER_RESULT iterate(final MasterContext<MASTER_RESULT, WORKER_RESULT> context, int iteration,
             Progressable progress) {
+        long iterStart = System.nanoTime();
+        context.getMetrics().startIteration(iteration);
         String status = "Start master iteration ( %s/%s ), progress %s%%";
         if(progress != null) {
             progress.progress(iteration - 1, getTotalIteration(), String.format(status, iteration, getTotalIteration(),
@@ -233,6 +242,7 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
                     ((iteration - 1) * 100 / getTotalIteration())), false, false);
         }
 
+        long computeStart = System.nanoTime();
         MASTER_RESULT masterResult = null;
         // if time out in thread
         @SuppressWarnings("unused")
@@ -271,6 +281,7 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
             masterResult = masterComputable.compute(context);
         }
         context.setMasterResult(masterResult);
+        context.getMetrics().set(Metric.COMPUTE, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - computeStart));
 
         // the reverse order with preIteration to make sure a complete wrapper for masterComputable.
         status = "Complete master computing ( %s/%s ), progress %s%%";
@@ -282,6 +293,8 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         for(int i = 0; i < interceptorsSize; i++) {
             getMasterInterceptors().get(interceptorsSize - 1 - i).postIteration(context);
         }
+        context.getMetrics().set(Metric.ITERATION, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - iterStart));
+        context.getMetrics().endIteration();
         status = "Complete master iteration ( %s/%s ), progress %s%%";
         if(progress != null) {
             // TODO kill function add to master, look master
@@ -299,6 +312,7 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         this.context = new MasterContext<MASTER_RESULT, WORKER_RESULT>(getTotalIteration(), getWorkers(), getProps(),
                 getAppId(), getContainerId(), getMasterResultClassName(), getWorkerResultClassName(),
                 getMinWorkersRatio(), getMinWorkersTimeOut());
+        this.context.setMetrics(getMetricsRegistry());
         return getContext();
     }
 
@@ -330,6 +344,9 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
                 }
             }
         }
+        if(this.metricsRegistry != null) {
+            this.metricsRegistry.close();
+        }
         // throw first exception to caller
         if(exception != null) {
             throw new GuaguaRuntimeException(exception);
@@ -342,8 +359,16 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
     @Override
     public void init(Properties props) {
         this.setProps(props);
+        this.metricsRegistry = new MetricsRegistry(props, getContainerId());
         checkAndSetMasterInterceptors(props);
         this.setMasterComputable(newMasterComputable());
+        // inject master computable into coordinator for checkpoint of master state
+        for(MasterInterceptor<MASTER_RESULT, WORKER_RESULT> interceptor: this.getMasterInterceptors()) {
+            if(interceptor instanceof AbstractMasterCoordinator) {
+                ((AbstractMasterCoordinator<MASTER_RESULT, WORKER_RESULT>) interceptor).setMasterComputable(this
+                        .getMasterComputable());
+            }
+        }
         this.isMonitored = this.getMasterComputable().getClass().isAnnotationPresent(ComputableMonitor.class);
         if(this.isMonitored) {
             this.isSoftForComputableTimeout = masterComputable.getClass().getAnnotation(ComputableMonitor.class)
@@ -454,6 +479,11 @@ public class GuaguaMasterService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         this.containerId = containerId;
     }
 
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
     public MasterContext<MASTER_RESULT, WORKER_RESULT> getContext() {
         return context;
     }
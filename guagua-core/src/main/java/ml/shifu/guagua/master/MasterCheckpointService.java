@@ -0,0 +1,334 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.CheckpointStorage;
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.util.ReflectionUtils;
+import ml.shifu.guagua.util.StringUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MasterCheckpointService} persists master result (and {@link Checkpointable} master state) to a
+ * {@link CheckpointStorage} in a background thread.
+ *
+ * <p>
+ * Snapshot is taken synchronously in master thread because master result and model state are always updated in place by
+ * next iteration, while writing to storage is asynchronous to keep checkpoint cost out of iteration critical path. If
+ * last checkpoint is still in writing, current checkpoint is skipped rather than blocking the master.
+ *
+ * <p>
+ * Checkpoint file is written to a temporary file at first and then renamed, after that {@link Callback} is called to
+ * publish the new checkpoint, for example to update a ZooKeeper pointer znode to this file.
+ *
+ * <p>
+ * Checkpoint file format: magic, version, iteration, master result bytes and state bytes (length -1 if no state).
+ */
+public class MasterCheckpointService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MasterCheckpointService.class);
+
+    private static final int MAGIC = 0x47434b50;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Callback after checkpoint file is successfully published.
+     */
+    public static interface Callback {
+
+        /**
+         * Called in checkpoint thread with iteration and path of the new checkpoint file.
+         */
+        void onCheckpoint(int iteration, String path) throws Exception;
+    }
+
+    /**
+     * Checkpoint content read from storage.
+     */
+    public static class Checkpoint {
+
+        private final int iteration;
+
+        private final byte[] masterResult;
+
+        private final byte[] state;
+
+        public Checkpoint(int iteration, byte[] masterResult, byte[] state) {
+            this.iteration = iteration;
+            this.masterResult = masterResult;
+            this.state = state;
+        }
+
+        public int getIteration() {
+            return iteration;
+        }
+
+        public byte[] getMasterResult() {
+            return masterResult;
+        }
+
+        public byte[] getState() {
+            return state;
+        }
+    }
+
+    /**
+     * Checkpoint storage.
+     */
+    private final CheckpointStorage storage;
+
+    /**
+     * Folder of checkpoint files for current application.
+     */
+    private final String checkpointDir;
+
+    /**
+     * Checkpoint each {@link #interval} iterations.
+     */
+    private final int interval;
+
+    /**
+     * Single thread executor to write checkpoint files.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Pending checkpoint writing, only accessed in master thread.
+     */
+    private Future<?> pending;
+
+    /**
+     * Last published checkpoint file, which will be deleted when a newer checkpoint is published.
+     */
+    private volatile String lastPath;
+
+    /**
+     * Iteration of last published checkpoint, -1 if no checkpoint is published.
+     */
+    private volatile int lastIteration = -1;
+
+    public MasterCheckpointService(Properties props, String appId) {
+        this.interval = Math.max(1, NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_INTERVAL),
+                GuaguaConstants.GUAGUA_DEFAULT_CHECKPOINT_INTERVAL));
+        String rootDir = StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_DIR),
+                System.getProperty("java.io.tmpdir") + File.separator + "_guagua_checkpoint");
+        this.checkpointDir = rootDir + "/" + appId;
+        String storageClass = StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE),
+                GuaguaConstants.GUAGUA_DEFAULT_CHECKPOINT_STORAGE);
+        this.storage = ReflectionUtils.newInstance(storageClass);
+        try {
+            this.storage.init(props);
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "guagua-master-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        LOG.info("Master checkpoint is enabled with storage {}, folder {} and interval {}.", storageClass,
+                this.checkpointDir, this.interval);
+    }
+
+    /**
+     * Whether checkpoint is enabled by {@link GuaguaConstants#GUAGUA_CHECKPOINT_ENABLE}, by default false.
+     */
+    public static boolean isEnabled(Properties props) {
+        return Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_ENABLE, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * Whether current iteration should be checkpointed.
+     */
+    public boolean isCheckpointIteration(int iteration) {
+        return iteration % this.interval == 0;
+    }
+
+    /**
+     * Snapshot state of masterComputable if it is {@link Checkpointable}, return null if not.
+     */
+    public static byte[] snapshotState(Object masterComputable) throws IOException {
+        if(!(masterComputable instanceof Checkpointable)) {
+            return null;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        ((Checkpointable) masterComputable).saveState(dos);
+        dos.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Submit a checkpoint writing task. Bytes should be a snapshot owned by this service. If last writing is not
+     * finished, this checkpoint will be skipped and false is returned.
+     */
+    public boolean submit(final int iteration, final byte[] masterResult, final byte[] state, final Callback callback) {
+        if(this.pending != null && !this.pending.isDone()) {
+            LOG.warn("Last checkpoint is still in writing, skip checkpoint of iteration {}.", iteration);
+            return false;
+        }
+        this.pending = this.executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                String path = getCheckpointPath(iteration);
+                String tmpPath = path + ".tmp";
+                try {
+                    write(tmpPath, iteration, masterResult, state);
+                    if(!MasterCheckpointService.this.storage.rename(tmpPath, path)) {
+                        throw new IOException("Failed to rename " + tmpPath + " to " + path);
+                    }
+                    if(callback != null) {
+                        callback.onCheckpoint(iteration, path);
+                    }
+                    String lastPath = MasterCheckpointService.this.lastPath;
+                    MasterCheckpointService.this.lastPath = path;
+                    MasterCheckpointService.this.lastIteration = iteration;
+                    if(lastPath != null && !lastPath.equals(path)) {
+                        MasterCheckpointService.this.storage.delete(lastPath);
+                    }
+                    LOG.info("Checkpoint of iteration {} is written to {} with {}ms.", iteration, path,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } catch (Exception e) {
+                    // checkpoint failure shouldn't fail master, next checkpoint will try again.
+                    LOG.error("Error in writing checkpoint of iteration " + iteration, e);
+                    try {
+                        MasterCheckpointService.this.storage.delete(tmpPath);
+                    } catch (IOException ignore) {
+                        // ignore
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    private String getCheckpointPath(int iteration) {
+        return this.checkpointDir + "/checkpoint-" + iteration;
+    }
+
+    private void write(String path, int iteration, byte[] masterResult, byte[] state) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(this.storage.create(path),
+                GuaguaConstants.DEFAULT_IO_BUFFER_SIZE));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(iteration);
+            out.writeInt(masterResult.length);
+            out.write(masterResult);
+            if(state == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(state.length);
+                out.write(state);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Read checkpoint from storage, null is returned if no such file.
+     */
+    public Checkpoint read(String path) throws IOException {
+        if(path == null || !this.storage.exists(path)) {
+            return null;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(this.storage.open(path),
+                GuaguaConstants.DEFAULT_IO_BUFFER_SIZE));
+        try {
+            if(in.readInt() != MAGIC) {
+                throw new IOException("Invalid checkpoint file " + path);
+            }
+            int version = in.readInt();
+            if(version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + " in " + path);
+            }
+            int iteration = in.readInt();
+            byte[] masterResult = new byte[in.readInt()];
+            in.readFully(masterResult);
+            byte[] state = null;
+            int stateLen = in.readInt();
+            if(stateLen >= 0) {
+                state = new byte[stateLen];
+                in.readFully(state);
+            }
+            this.lastPath = path;
+            this.lastIteration = iteration;
+            return new Checkpoint(iteration, masterResult, state);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Iteration of last published (or recovered) checkpoint, -1 if there is no checkpoint.
+     */
+    public int getLastIteration() {
+        return lastIteration;
+    }
+
+    /**
+     * Wait for pending checkpoint writing and stop checkpoint thread.
+     */
+    public void close(long timeoutMillis) {
+        this.executor.shutdown();
+        try {
+            if(!this.executor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Checkpoint writing is not finished in {}ms.", timeoutMillis);
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Delete all checkpoint files of current application.
+     */
+    public void cleanup() {
+        try {
+            this.storage.delete(this.checkpointDir);
+        } catch (IOException e) {
+            LOG.warn("Error in deleting checkpoint folder " + this.checkpointDir, e);
+        }
+    }
+
+}
@@ -22,6 +22,7 @@ import java.util.Properties;
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.metrics.MetricsRegistry;
 
 /**
  * {@link MasterContext} is a context object which contains all useful info used in master computation.
@@ -103,14 +104,16 @@ public class MasterContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
     private final String containerId;
 
     /**
-     * The ratio of minimal workers which are done to determine done of that iteration.
+     * The ratio of minimal workers which are done to determine done of that iteration. It can be adjusted at running
+     * time by {@link StragglerPolicy}.
      */
-    private final double minWorkersRatio;
+    private volatile double minWorkersRatio;
 
     /**
-     * After this time elapsed, we can use {@link #minWorkersRatio} to determine done of that iteration.
+     * After this time elapsed, we can use {@link #minWorkersRatio} to determine done of that iteration. It can be
+     * adjusted at running time by {@link StragglerPolicy}.
      */
-    private final long minWorkersTimeOut;
+    private volatile long minWorkersTimeOut;
 
     /**
      * This attachment is for {@link MasterComputable} and {@link MasterInterceptor} to transfer object. It can be set
@@ -120,6 +123,23 @@ public class MasterContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
      */
     private Object attachment;
 
+    /**
+     * Metrics registry of current container, {@link MasterComputable} and {@link MasterInterceptor} can record their own
+     * metrics into it.
+     */
+    private MetricsRegistry metrics;
+
+    /**
+     * Shard index of current master in sharded parameter-server mode, 0 if not sharded.
+     */
+    private int shard = 0;
+
+    /**
+     * Number of master shards, 1 if not sharded. In sharded mode, worker results and master result in this context are
+     * slices of current shard, {@link MasterComputable} should only update its own range of model.
+     */
+    private int shards = 1;
+
     /**
      * Call back list
      * 
@@ -200,6 +220,14 @@ public class MasterContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
         return minWorkersTimeOut;
     }
 
+    public void setMinWorkersRatio(double minWorkersRatio) {
+        this.minWorkersRatio = minWorkersRatio;
+    }
+
+    public void setMinWorkersTimeOut(long minWorkersTimeOut) {
+        this.minWorkersTimeOut = minWorkersTimeOut;
+    }
+
     public Object getAttachment() {
         return attachment;
     }
@@ -208,6 +236,30 @@ public class MasterContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
         this.attachment = attachment;
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(int shard) {
+        this.shard = shard;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public void setShards(int shards) {
+        this.shards = shards;
+    }
+
     /**
      * Whether is in first iteration, default first iteration is 1.
      */
@@ -18,35 +18,47 @@ package ml.shifu.guagua.master;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.lang.reflect.Method;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.AllReducible;
 import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.BytableSerializer;
 import ml.shifu.guagua.io.BytableWrapper;
 import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.io.Heartbeat;
 import ml.shifu.guagua.io.NettyBytableDecoder;
 import ml.shifu.guagua.io.NettyBytableEncoder;
+import ml.shifu.guagua.io.RepartitionPlan;
+import ml.shifu.guagua.io.ResultChunk;
 import ml.shifu.guagua.io.Serializer;
+import ml.shifu.guagua.io.StreamSerializer;
+import ml.shifu.guagua.metrics.ClusterMetricsSummary;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
+import ml.shifu.guagua.transport.Transports;
 import ml.shifu.guagua.util.AppendList;
 import ml.shifu.guagua.util.BytableDiskList;
 import ml.shifu.guagua.util.BytableMemoryDiskList;
+import ml.shifu.guagua.util.BytableSpillList;
 import ml.shifu.guagua.util.ClassUtils;
 import ml.shifu.guagua.util.MemoryDiskList;
 import ml.shifu.guagua.util.NetworkUtils;
@@ -58,7 +70,9 @@ import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooDefs.Ids;
 import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelException;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
@@ -69,7 +83,6 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -145,6 +158,69 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
      */
     private static Serializer<Bytable> serializer;
 
+    /**
+     * Metrics registry of master, io bytes and de-serialization time are recorded in {@link ServerHandler}.
+     */
+    private MetricsRegistry metrics;
+
+    /**
+     * Cluster metrics summary built by worker metrics of current iteration, guarded by {@link #LOCK}.
+     */
+    private ClusterMetricsSummary clusterSummary;
+
+    /**
+     * Straggler detector on worker metrics, null if straggler detection is disabled.
+     */
+    private StragglerDetector stragglerDetector;
+
+    /**
+     * Master znodes of iterations not greater than this are already deleted, only accessed in master thread.
+     */
+    private int lastCleanedIteration = 0;
+
+    /**
+     * Data re-partitioning planner on worker metrics, null if re-partitioning is disabled.
+     */
+    private RepartitionPlanner repartitionPlanner;
+
+    /**
+     * Chunk streams of workers in current iteration keyed by container id, guarded by {@link #LOCK}.
+     */
+    private Map<String, ChunkStream> chunkStreams = new HashMap<String, ChunkStream>();
+
+    /**
+     * Sum of values of completed chunk streams of {@link AllReducible} and {@link Combinable} worker results in current
+     * iteration, null if no such streams, guarded by {@link #LOCK}.
+     */
+    private double[] streamedValues;
+
+    /**
+     * Daemon thread deleting app znode in background, which closes zookeeper after deleting, null if not started.
+     */
+    private Thread appNodeCleaner;
+
+    /**
+     * Channels of workers which send heartbeats keyed by container id, guarded by {@link #LOCK}.
+     */
+    private Map<String, Channel> workerChannels = new HashMap<String, Channel>();
+
+    /**
+     * Time in milliseconds of last heartbeat or bytes read of workers keyed by container id. Bytes read are also
+     * counted as a large result may take longer than heartbeat timeout, during which heartbeats are queued behind it.
+     */
+    private Map<String, Long> lastActivities = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * Workers marked dead by channel disconnection or heartbeat timeout, guarded by {@link #LOCK}. A dead worker is
+     * alive again once its heartbeat is received, for example after it is restarted.
+     */
+    private Set<String> deadWorkers = new HashSet<String>();
+
+    /**
+     * Worker is dead if no heartbeat received in heartbeat timeout, 0 to only check channel disconnection.
+     */
+    private long heartbeatTimeout;
+
     /**
      * Merge internal elements together to save memory.
      */
@@ -252,14 +328,25 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                         props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_MERGE_THRESHOLD, "10"), 10);
                 this.iterResults = new MergeWorkerResultList(mergeThreshold);
             } else {
-                BytableDiskList<WorkerResultWrapper> bytableDiskList = new BytableDiskList<WorkerResultWrapper>(
-                        System.currentTimeMillis() + "", WorkerResultWrapper.class.getName());
                 double memoryFraction = Double.valueOf(props.getProperty(
                         GuaguaConstants.GUAGUA_MASTER_WORKERESULTS_MEMORY_FRACTION,
                         GuaguaConstants.GUAGUA_MASTER_WORKERESULTS_DEFAULT_MEMORY_FRACTION));
                 long memoryStoreSize = (long) (Runtime.getRuntime().maxMemory() * memoryFraction);
-                LOG.info("Memory size in BytableMemoryDiskList for worker result list: {}", memoryStoreSize);
-                this.iterResults = new BytableMemoryDiskList<WorkerResultWrapper>(memoryStoreSize, bytableDiskList);
+                if("true".equalsIgnoreCase(props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_ASYNC_SPILL,
+                        "false"))) {
+                    int queueSize = NumberFormatUtils.getInt(
+                            props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_SPILL_QUEUE_SIZE),
+                            GuaguaConstants.GUAGUA_MASTER_RESULT_DEFAULT_SPILL_QUEUE_SIZE);
+                    LOG.info("Memory size in BytableSpillList for worker result list: {}", memoryStoreSize);
+                    this.iterResults = new BytableSpillList<WorkerResultWrapper>(memoryStoreSize,
+                            System.currentTimeMillis() + "", WorkerResultWrapper.class.getName(), queueSize);
+                } else {
+                    BytableDiskList<WorkerResultWrapper> bytableDiskList = new BytableDiskList<WorkerResultWrapper>(
+                            System.currentTimeMillis() + "", WorkerResultWrapper.class.getName());
+                    LOG.info("Memory size in BytableMemoryDiskList for worker result list: {}", memoryStoreSize);
+                    this.iterResults = new BytableMemoryDiskList<WorkerResultWrapper>(memoryStoreSize,
+                            bytableDiskList);
+                }
             }
         }
     }
@@ -279,11 +366,28 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         // cache worker class name
         this.workerClassName = context.getWorkerResultClassName();
 
+        this.metrics = context.getMetrics();
+        if(StragglerDetector.isEnabled(context.getProps())) {
+            this.stragglerDetector = new StragglerDetector(context.getProps());
+        }
+
         // init total iteration for later usage
         this.totalInteration = context.getTotalIteration();
 
+        // init checkpoint service before fail-over to recover master state from checkpoint
+        initCheckpointService(context);
+
         // Fail over checking to check current iteration.
         new FailOverCommand(context).execute();
+        // records moved before master fail-over may be moved again by a plan made from partial metrics, no plan is
+        // made after any fail-over.
+        if(RepartitionPlanner.isEnabled(context.getProps())) {
+            if(context.isInitIteration()) {
+                this.repartitionPlanner = new RepartitionPlanner(context.getProps());
+            } else {
+                LOG.warn("Data re-partitioning is disabled in fail-over master.");
+            }
+        }
         // if not init iteration, which means fail over from failed iteration, currentIteration is set in
         // FailOverCommand; we need recover last master result for MasterComputable fail over.
         if(!context.isInitIteration()) {
@@ -296,8 +400,15 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                     final String appMasterSplitNode = getCurrentMasterSplitNode(appId, lastIteration).toString();
                     // actually, this is last master result for fault recovery
                     setMasterResult(context, appMasterNode, appMasterSplitNode);
+                    // master computable state is only in checkpoint
+                    recoverFromCheckpoint(context);
                 }
             }.execute();
+            // former master already cleaned znodes older than cleanup interval when writing restored iteration
+            int resultCleanUpInterval = NumberFormatUtils.getInt(
+                    context.getProps().getProperty(GuaguaConstants.GUAGUA_CLEANUP_INTERVAL),
+                    GuaguaConstants.GUAGUA_DEFAULT_CLEANUP_INTERVAL);
+            this.lastCleanedIteration = Math.max(0, context.getCurrentIteration() - resultCleanUpInterval);
         }
 
         // Start master netty server
@@ -330,10 +441,17 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
     private void clear(Properties props) {
         synchronized(LOCK) {
             // clear and wait for next iteration.
-            this.closeIterResults();
-            this.iterResults.clear();
-            this.initIterResults(props);
+            if(this.iterResults instanceof BytableSpillList) {
+                // spill file and writer thread are reused across iterations
+                this.iterResults.clear();
+            } else {
+                this.closeIterResults();
+                this.iterResults.clear();
+                this.initIterResults(props);
+            }
             this.indexMap.clear();
+            this.chunkStreams.clear();
+            this.streamedValues = null;
             this.canUpdateWorkerResultMap = true;
         }
     }
@@ -399,14 +517,29 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         this.messageServerPort = NumberFormatUtils.getInt(props.getProperty(GuaguaConstants.GUAGUA_NETTY_SEVER_PORT),
                 GuaguaConstants.GUAGUA_NETTY_SEVER_DEFAULT_PORT);
         this.messageServerPort = NetworkUtils.getValidServerPort(this.messageServerPort);
-        this.messageServer = new ServerBootstrap(new NioServerSocketChannelFactory(Executors.newFixedThreadPool(
-                GuaguaConstants.GUAGUA_NETTY_SERVER_DEFAULT_THREAD_COUNT, new MasterThreadFactory()),
-                Executors.newCachedThreadPool(new MasterThreadFactory())));
+        this.messageServer = Transports.newTransport(props).newServerBootstrap("master-server");
+        this.heartbeatTimeout = NumberFormatUtils.getLong(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_HEARTBEAT_TIMEOUT),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_HEARTBEAT_TIMEOUT);
+
+        double inFlightFraction = Double.valueOf(props.getProperty(
+                GuaguaConstants.GUAGUA_NETTY_SERVER_INFLIGHT_MEMORY_FRACTION,
+                GuaguaConstants.GUAGUA_NETTY_SERVER_DEFAULT_INFLIGHT_MEMORY_FRACTION));
+        final AdmissionControlHandler admissionHandler = inFlightFraction > 0d ? new AdmissionControlHandler(
+                (long) (Runtime.getRuntime().maxMemory() * inFlightFraction)) : null;
+        LOG.info("Master netty server in-flight memory fraction is {}.", inFlightFraction);
+
+        final ActivityHandler activityHandler = new ActivityHandler();
 
         // Set up the pipeline factory.
         this.messageServer.setPipelineFactory(new ChannelPipelineFactory() {
             public ChannelPipeline getPipeline() throws Exception {
-                return Channels.pipeline(new NettyBytableEncoder(), new NettyBytableDecoder(), new ServerHandler());
+                if(admissionHandler != null) {
+                    return Channels.pipeline(admissionHandler, activityHandler, new NettyBytableEncoder(),
+                            new NettyBytableDecoder(), new ServerHandler());
+                }
+                return Channels.pipeline(activityHandler, new NettyBytableEncoder(), new NettyBytableDecoder(),
+                        new ServerHandler());
             }
         });
 
@@ -428,37 +561,19 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
     }
 
     /**
-     * The master thread factory. Main feature is to print error log of worker thread.
+     * {@link ActivityHandler} refreshes activity time of worker on bytes read, channel attachment is the container id
+     * set on its first heartbeat.
      */
-    private static class MasterThreadFactory implements ThreadFactory {
-        static final AtomicInteger poolNumber = new AtomicInteger(1);
-        final ThreadGroup group;
-        final AtomicInteger threadNumber = new AtomicInteger(1);
-        final String namePrefix;
-
-        MasterThreadFactory() {
-            SecurityManager s = System.getSecurityManager();
-            group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            namePrefix = "pool-" + poolNumber.getAndIncrement() + "-thread-";
-        }
+    @Sharable
+    private class ActivityHandler extends SimpleChannelUpstreamHandler {
 
-        public Thread newThread(Runnable r) {
-            Thread thread = new Thread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
-            if(thread.isDaemon()) {
-                thread.setDaemon(false);
-            }
-            if(thread.getPriority() != Thread.NORM_PRIORITY) {
-                thread.setPriority(Thread.NORM_PRIORITY);
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+            Object containerId = e.getChannel().getAttachment();
+            if(containerId != null) {
+                NettyMasterCoordinator.this.lastActivities.put((String) containerId, System.currentTimeMillis());
             }
-            thread.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
-                @Override
-                public void uncaughtException(Thread t, Throwable e) {
-                    LOG.warn("Error message in thread {} with error message {}, error root cause {}.", t, e,
-                            e.getCause());
-                    // print stack???
-                }
-            });
-            return thread;
+            super.messageReceived(ctx, e);
         }
     }
 
@@ -480,25 +595,31 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
             if(!(e.getMessage() instanceof Bytable)) {
                 throw new IllegalStateException("Message should be bytable instance.");
             }
+            if(e.getMessage() instanceof Heartbeat) {
+                receiveHeartbeat(ctx.getChannel(), (Heartbeat) e.getMessage());
+                return;
+            }
+            if(e.getMessage() instanceof ResultChunk) {
+                receiveChunk((ResultChunk) e.getMessage());
+                return;
+            }
 
             BytableWrapper bytableWrapper = (BytableWrapper) e.getMessage();
             LOG.debug("Received container id {} with message:{}", bytableWrapper.getContainerId(), bytableWrapper);
             LOG.debug("Received message size {}",
                     bytableWrapper != null && bytableWrapper.getBytes() != null ? bytableWrapper.getBytes().length : 0);
             String containerId = bytableWrapper.getContainerId();
+            awaitWritable();
             synchronized(LOCK) {
                 if(!NettyMasterCoordinator.this.canUpdateWorkerResultMap) {
                     LOG.info("Cannot update worker result with message: containerId {} iteration {} currentIteration",
                             containerId, bytableWrapper.getCurrentIteration(),
                             NettyMasterCoordinator.this.currentInteration);
-                    return;
-                }
-                if(bytableWrapper.isStopMessage()) {
+                } else if(bytableWrapper.isStopMessage()) {
                     // only accept stop message in unregistered iteration(total iteration +1) or halt condition is
                     // accepted, stop messages not in unregistered iteration will be ignored.
-                    MASTER_RESULT masterResult = NettyMasterCoordinator.this.masterResult;
-                    if((bytableWrapper.getCurrentIteration() == NettyMasterCoordinator.this.totalInteration + 1)
-                            || ((masterResult instanceof HaltBytable) && ((HaltBytable) masterResult).isHalt())) {
+                    if(isStopAccepted(bytableWrapper.getCurrentIteration(), NettyMasterCoordinator.this.totalInteration,
+                            NettyMasterCoordinator.this.masterResult)) {
                         // for stop message, no need to check current iteration.
                         if(!NettyMasterCoordinator.this.indexMap.containsKey(containerId)) {
                             WorkerResultWrapper wrw = new WorkerResultWrapper(bytableWrapper.getCurrentIteration(),
@@ -511,14 +632,34 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                             // if already exits, no need update, we hope it is the same result as the worker restarted
                             // and result computed again. or result is not for current iteration, throw that result.
                         }
+                        // ignored stop message is not acknowledged.
+                        acknowledgeStop(e.getChannel(), bytableWrapper);
+                        LOCK.notifyAll();
                     }
                 } else {
                     if(!NettyMasterCoordinator.this.indexMap.containsKey(containerId)
                             && NettyMasterCoordinator.this.currentInteration == bytableWrapper.getCurrentIteration()) {
                         String clazzName = NettyMasterCoordinator.this.workerClassName;
 
-                        WORKER_RESULT wr = NettyMasterCoordinator.this.getWorkerSerializer().bytesToObject(
-                                bytableWrapper.getBytes(), clazzName);
+                        long start = System.nanoTime();
+                        WORKER_RESULT wr;
+                        if(bytableWrapper.getChunks() > 0) {
+                            ChunkStream stream = NettyMasterCoordinator.this.chunkStreams.remove(containerId);
+                            if(stream == null || !stream.isComplete(bytableWrapper.getChunks())) {
+                                LOG.warn("Container {} sent {} chunks in iteration {} but not all are received, "
+                                        + "result is dropped.", containerId, bytableWrapper.getChunks(),
+                                        bytableWrapper.getCurrentIteration());
+                                return;
+                            }
+                            wr = completeChunkStream(stream, clazzName);
+                        } else {
+                            // no bytes means the worker only acknowledges current iteration without result, for
+                            // example workers other than the reduced one in ring all-reduce.
+                            byte[] bytes = bytableWrapper.getBytes();
+                            wr = bytes == null ? null : NettyMasterCoordinator.this.getWorkerSerializer()
+                                    .bytesToObject(bytes, clazzName);
+                        }
+                        recordWorkerMetrics(bytableWrapper, System.nanoTime() - start);
                         WorkerResultWrapper wrw = new WorkerResultWrapper(bytableWrapper.getCurrentIteration(), wr,
                                 clazzName);
                         NettyMasterCoordinator.this.iterResults.append(wrw);
@@ -532,6 +673,19 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
             }
         }
 
+        @Override
+        public void channelDisconnected(ChannelHandlerContext ctx, ChannelStateEvent e) {
+            synchronized(LOCK) {
+                for(Map.Entry<String, Channel> entry: NettyMasterCoordinator.this.workerChannels.entrySet()) {
+                    // a restarted worker may be registered with a new channel already
+                    if(entry.getValue() == e.getChannel()) {
+                        markDead(entry.getKey(), "channel is disconnected");
+                        break;
+                    }
+                }
+            }
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
             LOG.error("error in service handler", e.getCause());
@@ -545,6 +699,195 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         }
     }
 
+    /**
+     * Register worker channel and refresh its activity time, a dead worker is alive again.
+     */
+    private void receiveHeartbeat(Channel channel, Heartbeat heartbeat) {
+        String containerId = heartbeat.getContainerId();
+        channel.setAttachment(containerId);
+        synchronized(LOCK) {
+            this.workerChannels.put(containerId, channel);
+            this.lastActivities.put(containerId, System.currentTimeMillis());
+            if(this.deadWorkers.remove(containerId)) {
+                LOG.info("Worker {} is alive again in iteration {}.", containerId, heartbeat.getCurrentIteration());
+            }
+        }
+    }
+
+    /**
+     * Mark worker dead, should be called in {@link #LOCK}.
+     */
+    private void markDead(String containerId, String reason) {
+        if(this.deadWorkers.add(containerId)) {
+            LOG.warn("Worker {} is dead in iteration {}: {}.", containerId, this.currentInteration, reason);
+        }
+    }
+
+    /**
+     * Check heartbeat timeout and return number of dead workers without result in current iteration, should be
+     * called in {@link #LOCK}.
+     * 
+     * <p>
+     * Heartbeat time is compared with the latest heartbeat of all workers but not current time, so a pause of master
+     * like a long GC doesn't make all workers dead. Channels whose reading is suspended by
+     * {@link AdmissionControlHandler} are skipped as their heartbeats are not read.
+     */
+    private int checkDeadWorkers() {
+        for(String containerId: getTimedOutWorkers(this.lastActivities, this.workerChannels, this.heartbeatTimeout)) {
+            markDead(containerId, "no heartbeat in " + this.heartbeatTimeout + "ms");
+        }
+        int dead = 0;
+        for(String containerId: this.deadWorkers) {
+            if(!this.indexMap.containsKey(containerId)) {
+                dead += 1;
+            }
+        }
+        return dead;
+    }
+
+    /**
+     * Stop message is only accepted in unregistered iteration (total iteration + 1) or if master result is halt.
+     */
+    static boolean isStopAccepted(int stopIteration, int totalIteration, Bytable masterResult) {
+        return stopIteration == totalIteration + 1
+                || ((masterResult instanceof HaltBytable) && ((HaltBytable) masterResult).isHalt());
+    }
+
+    /**
+     * Acknowledge accepted stop message by sending it back, worker closes its channel once ack is received.
+     */
+    protected void acknowledgeStop(Channel channel, BytableWrapper stopMessage) {
+        channel.write(stopMessage);
+    }
+
+    /**
+     * Workers whose last activity is more than heartbeat timeout before the latest activity of all workers, workers
+     * without channel or with reading suspended are skipped. Empty if heartbeat timeout is not positive.
+     */
+    static List<String> getTimedOutWorkers(Map<String, Long> lastActivities, Map<String, Channel> workerChannels,
+            long heartbeatTimeout) {
+        List<String> timedOut = new ArrayList<String>();
+        if(heartbeatTimeout <= 0L || lastActivities.isEmpty()) {
+            return timedOut;
+        }
+        long latest = 0L;
+        for(Long time: lastActivities.values()) {
+            latest = Math.max(latest, time);
+        }
+        for(Map.Entry<String, Long> entry: lastActivities.entrySet()) {
+            Channel channel = workerChannels.get(entry.getKey());
+            if(latest - entry.getValue() > heartbeatTimeout && channel != null && channel.isReadable()) {
+                timedOut.add(entry.getKey());
+            }
+        }
+        return timedOut;
+    }
+
+    /**
+     * Whether barrier can be released before min workers timeout: dead workers won't send results, so no need to wait
+     * if all other workers are done and done workers are enough by min workers ratio.
+     */
+    static boolean canReleaseWithDeadWorkers(int doneWorkers, int deadWorkers, int workers, double minWorkersRatio) {
+        return deadWorkers > 0 && doneWorkers + deadWorkers >= workers
+                && doneWorkers >= (int) (workers * minWorkersRatio);
+    }
+
+    /**
+     * Keep chunk of worker in sequence until its stream is completed by worker message, a stream restarted from sequence
+     * 0 by a restarted worker replaces the former one. Out of sequence chunk breaks the stream and result of this worker
+     * is dropped.
+     */
+    private void receiveChunk(ResultChunk chunk) {
+        String containerId = chunk.getContainerId();
+        synchronized(LOCK) {
+            if(!this.canUpdateWorkerResultMap || this.currentInteration != chunk.getCurrentIteration()
+                    || this.indexMap.containsKey(containerId)) {
+                return;
+            }
+            ChunkStream stream = this.chunkStreams.get(containerId);
+            if(chunk.getSequence() == 0) {
+                stream = new ChunkStream();
+                this.chunkStreams.put(containerId, stream);
+            }
+            if(stream == null || !stream.add(chunk)) {
+                LOG.warn("Chunk {} of container {} is out of sequence, result of this worker is dropped.",
+                        chunk.getSequence(), containerId);
+                return;
+            }
+            this.metrics.add(Metric.BYTES_RECEIVED, chunk.getPayloadSize());
+        }
+    }
+
+    /**
+     * Complete chunk stream of one worker, should be called in {@link #LOCK}. Values chunks are summed into
+     * {@link #streamedValues} only now, so a dropped or restarted stream leaves nothing in the sum, and null is returned
+     * as the worker only acknowledges current iteration. Bytes chunks are de-serialized as one stream without copying
+     * them into one byte array if worker serializer is a {@link StreamSerializer}.
+     */
+    private WORKER_RESULT completeChunkStream(ChunkStream stream, String clazzName) {
+        if(stream.isValues()) {
+            if(this.streamedValues == null) {
+                this.streamedValues = new double[stream.getTotalLength()];
+            }
+            stream.sumValuesTo(this.streamedValues);
+            return null;
+        }
+        Serializer<WORKER_RESULT> workerSerializer = getWorkerSerializer();
+        if(workerSerializer instanceof StreamSerializer) {
+            return ((StreamSerializer<WORKER_RESULT>) workerSerializer).streamToObject(stream.toInputStream(),
+                    clazzName);
+        }
+        return workerSerializer.bytesToObject(stream.toBytes(), clazzName);
+    }
+
+    /**
+     * Wait out of {@link #LOCK} until spill queue of worker results has free capacity. Appending in {@link #LOCK} then
+     * doesn't block on a slow spill disk, which only stalls the netty thread of current worker while other threads
+     * waiting for {@link #LOCK} go on.
+     */
+    private void awaitWritable() {
+        AppendList<WorkerResultWrapper> results = this.iterResults;
+        if(results instanceof BytableSpillList) {
+            ((BytableSpillList<WorkerResultWrapper>) results).awaitWritable();
+        }
+    }
+
+    /**
+     * Worker result built by {@link #streamedValues}, null if no values streamed, should be called in {@link #LOCK}.
+     */
+    @SuppressWarnings("unchecked")
+    private WORKER_RESULT buildStreamedResult() {
+        if(this.streamedValues == null) {
+            return null;
+        }
+        WORKER_RESULT result = (WORKER_RESULT) ReflectionUtils.newInstance(this.workerClassName);
+        ((AllReducible) result).setAllReduceValues(this.streamedValues);
+        return result;
+    }
+
+    /**
+     * Record io metrics of worker message and add worker metrics to cluster summary, should be called in {@link #LOCK}.
+     */
+    private void recordWorkerMetrics(BytableWrapper bytableWrapper, long deserializeNanos) {
+        this.metrics.add(Metric.DESERIALIZE, TimeUnit.NANOSECONDS.toMillis(deserializeNanos));
+        if(bytableWrapper.getBytes() != null) {
+            this.metrics.add(Metric.BYTES_RECEIVED, bytableWrapper.getBytes().length);
+        }
+        if(bytableWrapper.getMetrics() != null) {
+            if(this.clusterSummary == null
+                    || this.clusterSummary.getIteration() != bytableWrapper.getCurrentIteration()) {
+                this.clusterSummary = new ClusterMetricsSummary(bytableWrapper.getCurrentIteration());
+            }
+            this.clusterSummary.add(bytableWrapper.getMetrics());
+            if(this.stragglerDetector != null) {
+                this.stragglerDetector.addWorkerMetrics(bytableWrapper.getMetrics());
+            }
+            if(this.repartitionPlanner != null) {
+                this.repartitionPlanner.addWorkerMetrics(bytableWrapper.getMetrics());
+            }
+        }
+    }
+
     /**
      * Wait for all workers done in current iteration.
      */
@@ -563,9 +906,12 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
             public boolean retryExecution() throws KeeperException, InterruptedException {
                 // long to int is assumed successful as no such many workers need using long
                 int doneWorkers;
+                int deadWorkers;
                 synchronized(LOCK) {
                     doneWorkers = (int) NettyMasterCoordinator.this.iterResults.size();
+                    deadWorkers = checkDeadWorkers();
                 }
+                context.getMetrics().set(Metric.DEAD_WORKERS, deadWorkers);
                 // to avoid log flood
                 if(System.nanoTime() % 30 == 0) {
                     LOG.info("Iteration {}, workers compelted: {}, still {} workers are not synced.",
@@ -583,6 +929,13 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
                 boolean isTerminated = isTerminated(doneWorkers, context.getWorkers(), context.getMinWorkersRatio(),
                         timeOut);
+                if(!isTerminated
+                        && canReleaseWithDeadWorkers(doneWorkers, deadWorkers, context.getWorkers(),
+                                context.getMinWorkersRatio())) {
+                    LOG.warn("Iteration {}, barrier is released with {} dead workers and {} done workers.",
+                            context.getCurrentIteration(), deadWorkers, doneWorkers);
+                    isTerminated = true;
+                }
                 if(isTerminated) {
                     // update canUpdateWorkerResultsMap to false no accept other results
                     synchronized(LOCK) {
@@ -598,12 +951,22 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         }.execute();
 
         // switch state to read and not accept other results
+        final WORKER_RESULT streamedResult;
         synchronized(LOCK) {
             this.canUpdateWorkerResultMap = false;
             this.iterResults.switchState();
+            streamedResult = buildStreamedResult();
         }
-
-        if(this.iterResults instanceof BytableMemoryDiskList) {
+        context.getMetrics().add(Metric.BARRIER_WAIT, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        if(this.iterResults instanceof BytableSpillList) {
+            BytableSpillList<WorkerResultWrapper> spillList = (BytableSpillList<WorkerResultWrapper>) this.iterResults;
+            context.getMetrics().set(Metric.SPILL_COUNT, spillList.getDiskCount());
+            LOG.info("Worker result memory count and disk count in iteration {} are {}, {}.",
+                    this.currentInteration, spillList.getMemoryCount(), spillList.getDiskCount());
+        } else if(this.iterResults instanceof BytableMemoryDiskList) {
+            context.getMetrics().set(Metric.SPILL_COUNT,
+                    ((BytableMemoryDiskList<WorkerResultWrapper>) this.iterResults).getDiskCount());
             LOG.info("Worker result memory count in iteration {} is {}.", this.currentInteration,
                     ((BytableMemoryDiskList<WorkerResultWrapper>) this.iterResults).getMemoryCount());
             LOG.info("Worker result dist count in iteration {} is {}.", this.currentInteration,
@@ -624,6 +987,11 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
                     private volatile AtomicBoolean isStart = new AtomicBoolean();
 
+                    /**
+                     * Whether streamed result is returned after all results in iterResults.
+                     */
+                    private boolean isStreamedReturned = false;
+
                     WorkerResultWrapper current = null;
 
                     @Override
@@ -636,8 +1004,9 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                             hasNext = this.localItr.hasNext();
                             if(hasNext) {
                                 this.current = this.localItr.next();
-                                // check if iteration number is the same, remove unnecessary results.
-                                while(this.current.currIter != currentIter) {
+                                // check if iteration number is the same, remove unnecessary results, results
+                                // without worker result like stop messages or ring all-reduce acks are also skipped.
+                                while(this.current.currIter != currentIter || this.current.workerResult == null) {
                                     hasNext = this.localItr.hasNext();
                                     if(hasNext) {
                                         this.current = this.localItr.next();
@@ -648,10 +1017,17 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                                     }
                                 }
                             }
+                            if(!hasNext && streamedResult != null && !this.isStreamedReturned) {
+                                // sum of streamed values is the last result
+                                this.isStreamedReturned = true;
+                                this.current = new WorkerResultWrapper(currentIter, streamedResult, null);
+                                return true;
+                            }
                             if(!hasNext) {
                                 // to make sure it can be iterated again, it shouldn't be a good case for iterator, we
                                 // will iterate again to check if all workers are halt.
                                 this.localItr = NettyMasterCoordinator.this.iterResults.iterator();
+                                this.isStreamedReturned = false;
                                 return false;
                             }
                         }
@@ -702,17 +1078,38 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                 final long start = System.nanoTime();
                 try {
                     byte[] bytes = getMasterSerializer().objectToBytes(context.getMasterResult());
+                    long sendStart = System.nanoTime();
+                    context.getMetrics().add(Metric.SERIALIZE, TimeUnit.NANOSECONDS.toMillis(sendStart - start));
+                    context.getMetrics().add(Metric.BYTES_SENT, bytes.length);
+                    // plan should be visible before master result as workers check it after master result is read
+                    publishRepartitionPlan(context);
                     isSplit = setBytesToZNode(appCurrentMasterNode, appCurrentMasterSplitNode, bytes,
                             CreateMode.PERSISTENT);
+                    context.getMetrics().add(Metric.SEND, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart));
+                    // reuse serialized bytes for checkpoint, writing is in checkpoint thread
+                    checkpoint(context, bytes);
                     // after master result and status set in zookeeper, clear resources here at once for next iteration.
                     // there is race condition here, after master znode is visible, worker computes result and send
                     // results to master, while at here current iteration is still not next iteration.
+                    ClusterMetricsSummary summary = null;
                     synchronized(LOCK) {
+                        if(NettyMasterCoordinator.this.clusterSummary != null
+                                && NettyMasterCoordinator.this.clusterSummary.getIteration() == context
+                                        .getCurrentIteration()) {
+                            summary = NettyMasterCoordinator.this.clusterSummary;
+                            NettyMasterCoordinator.this.clusterSummary = null;
+                        }
                         clear(context.getProps());
                         // update current iteration to avoid receive messages of last iteration in ServerHandler
                         NettyMasterCoordinator.this.currentInteration = context.getCurrentIteration() + 1;
                         NettyMasterCoordinator.this.canUpdateWorkerResultMap = true;
                     }
+                    if(summary != null) {
+                        context.getMetrics().reportSummary(summary);
+                    }
+                    if(NettyMasterCoordinator.this.stragglerDetector != null) {
+                        NettyMasterCoordinator.this.stragglerDetector.detectAndApply(context);
+                    }
                 } catch (KeeperException.NodeExistsException e) {
                     LOG.warn("Has such node:", e);
                 }
@@ -723,14 +1120,20 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                 int resultCleanUpInterval = NumberFormatUtils.getInt(
                         context.getProps().getProperty(GuaguaConstants.GUAGUA_CLEANUP_INTERVAL),
                         GuaguaConstants.GUAGUA_DEFAULT_CLEANUP_INTERVAL);
-                if(context.getCurrentIteration() >= (resultCleanUpInterval + 1)) {
-                    String znode = getMasterNode(context.getAppId(),
-                            context.getCurrentIteration() - resultCleanUpInterval).toString();
+                int cleanUpIteration = context.getCurrentIteration() - resultCleanUpInterval;
+                int checkpointIteration = getLastCheckpointIteration();
+                if(checkpointIteration > 0) {
+                    // fail-over master recovers from checkpoint, older master results in zookeeper are only needed
+                    // by workers still reading last iteration result, znode of checkpoint iteration is kept as well.
+                    cleanUpIteration = Math.max(cleanUpIteration,
+                            Math.min(checkpointIteration, context.getCurrentIteration()) - 1);
+                }
+                for(int i = NettyMasterCoordinator.this.lastCleanedIteration + 1; i <= cleanUpIteration; i++) {
+                    String znode = getMasterNode(context.getAppId(), i).toString();
                     try {
                         getZooKeeper().deleteExt(znode, -1, false);
                         if(isSplit) {
-                            znode = getCurrentMasterSplitNode(context.getAppId(),
-                                    context.getCurrentIteration() - resultCleanUpInterval).toString();
+                            znode = getCurrentMasterSplitNode(context.getAppId(), i).toString();
                             getZooKeeper().deleteExt(znode, -1, true);
                         }
                     } catch (KeeperException.NoNodeException e) {
@@ -738,6 +1141,7 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                             LOG.warn("No such node:{}", znode);
                         }
                     }
+                    NettyMasterCoordinator.this.lastCleanedIteration = i;
                 }
 
                 LOG.info("master results write to znode.");
@@ -745,6 +1149,32 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         }.execute();
     }
 
+    /**
+     * Make re-partitioning plan and write it to re-partition znode of current iteration if records need to be moved.
+     */
+    private void publishRepartitionPlan(final MasterContext<MASTER_RESULT, WORKER_RESULT> context)
+            throws KeeperException, InterruptedException {
+        if(this.repartitionPlanner == null || context.getCurrentIteration() >= context.getTotalIteration()) {
+            return;
+        }
+        MASTER_RESULT result = context.getMasterResult();
+        if((result instanceof HaltBytable) && ((HaltBytable) result).isHalt()) {
+            return;
+        }
+        if(getZooKeeper().exists(getRepartitionDisabledNode(context.getAppId()).toString(), false) != null) {
+            LOG.warn("Data re-partitioning is disabled after fail-over of worker.");
+            this.repartitionPlanner = null;
+            return;
+        }
+        RepartitionPlan plan = this.repartitionPlanner.plan(context.getCurrentIteration(), context.getWorkers());
+        if(plan != null) {
+            getZooKeeper().createOrSetExt(
+                    getRepartitionNode(context.getAppId(), context.getCurrentIteration()).toString(),
+                    new BytableSerializer<RepartitionPlan>().objectToBytes(plan), Ids.OPEN_ACL_UNSAFE,
+                    CreateMode.PERSISTENT, true, -1);
+        }
+    }
+
     /**
      * Wait for unregister message for all workers and then clean all znodes existing for this job.
      */
@@ -769,43 +1199,35 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                             GuaguaConstants.GUAGUA_UNREGISTER_MASTER_TIMEROUT, "200000"));
                     LOG.info("guagua master un register timeout is {}", masterUnregisterTimeout);
                     final long start = System.nanoTime();
+                    // make sure last checkpoint is written, checkpoint files are cleaned together with znodes
+                    closeCheckpointService(context, Boolean.TRUE.toString().equalsIgnoreCase(zkCleanUpEnabled));
                     if(Boolean.TRUE.toString().equalsIgnoreCase(zkCleanUpEnabled)) {
-                        new RetryCoordinatorCommand(isFixedTime(), getSleepTime()) {
-                            @Override
-                            public boolean retryExecution() throws KeeperException, InterruptedException {
-                                int doneWorkers;
-                                synchronized(LOCK) {
-                                    // long to int is assumed successful as no such many workers need using long
-                                    doneWorkers = (int) NettyMasterCoordinator.this.iterResults.size();
+                        // master should wait for all workers' stop messages, which are acknowledged once received.
+                        synchronized(LOCK) {
+                            while(true) {
+                                // long to int is assumed successful as no such many workers need using long
+                                int doneWorkers = (int) NettyMasterCoordinator.this.iterResults.size();
+                                // dead workers won't send stop messages
+                                int deadWorkers = checkDeadWorkers();
+                                if(doneWorkers + deadWorkers >= context.getWorkers()) {
+                                    LOG.info("unregister step, worker(s) compelted: {}, dead worker(s): {}.",
+                                            doneWorkers, deadWorkers);
+                                    break;
                                 }
-                                if(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > masterUnregisterTimeout) {
+                                long remaining = masterUnregisterTimeout
+                                        - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                                if(remaining <= 0L) {
                                     LOG.info("unregister step, worker(s) compelted: {}, still {} workers are "
                                             + "not unregistered, but time out to terminate.", doneWorkers,
                                             (context.getWorkers() - doneWorkers));
-                                    return true;
-                                }
-                                // to avoid log flood
-                                if(System.nanoTime() % 30 == 0) {
-                                    LOG.info("unregister step, worker(s) compelted: {}, still {} workers are "
-                                            + "not unregistered.", doneWorkers, (context.getWorkers() - doneWorkers));
+                                    break;
                                 }
-
-                                // master should wait for all workers done in post application.
-                                return isTerminated(doneWorkers, context.getWorkers(),
-                                        GuaguaConstants.GUAGUA_DEFAULT_MIN_WORKERS_RATIO,
-                                        GuaguaConstants.GUAGUA_DEFAULT_MIN_WORKERS_TIMEOUT);
-                            }
-                        }.execute();
-
-                        // delete app znode
-                        String appNode = getAppNode(context.getAppId()).toString();
-                        try {
-                            getZooKeeper().deleteExt(appNode, -1, true);
-                        } catch (KeeperException.NoNodeException e) {
-                            if(System.nanoTime() % 20 == 0) {
-                                LOG.warn("No such node:{}", appNode);
+                                // wake up periodically to check heartbeats
+                                LOCK.wait(Math.min(remaining, 1000L));
                             }
                         }
+
+                        cleanAppNodeAsync(context.getAppId());
                     }
                 } finally {
                     if(NettyMasterCoordinator.this.messageServer != null) {
@@ -816,14 +1238,55 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                         }
                         NettyMasterCoordinator.this.messageServer.releaseExternalResources();
                     }
-                    NettyMasterCoordinator.super.closeZooKeeper();
                     NettyMasterCoordinator.this.closeIterResults();
                     NettyMasterCoordinator.this.iterResults.clear();
+                    Thread cleaner = NettyMasterCoordinator.this.appNodeCleaner;
+                    if(cleaner == null) {
+                        NettyMasterCoordinator.super.closeZooKeeper();
+                    } else {
+                        long cleanupTimeout = NumberFormatUtils.getLong(
+                                context.getProps().getProperty(GuaguaConstants.GUAGUA_ZK_CLEANUP_WAIT_TIMEOUT),
+                                GuaguaConstants.GUAGUA_ZK_DEFAULT_CLEANUP_WAIT_TIMEOUT);
+                        cleaner.join(cleanupTimeout);
+                        if(cleaner.isAlive()) {
+                            LOG.warn("App znode is still being deleted after {}ms, stop waiting.", cleanupTimeout);
+                        }
+                    }
                 }
             }
         }.execute();
     }
 
+    /**
+     * Delete app znode recursively in background daemon thread, which closes zookeeper after deleting, so that master
+     * shuts down netty server and worker results in parallel. The thread is joined with
+     * {@link GuaguaConstants#GUAGUA_ZK_CLEANUP_WAIT_TIMEOUT} at last and never blocks jvm exit.
+     */
+    private void cleanAppNodeAsync(String appId) {
+        final String appNode = getAppNode(appId).toString();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    getZooKeeper().deleteExt(appNode, -1, true);
+                } catch (KeeperException.NoNodeException e) {
+                    LOG.warn("No such node:{}", appNode);
+                } catch (Exception e) {
+                    LOG.warn("Error to delete app znode " + appNode, e);
+                } finally {
+                    try {
+                        NettyMasterCoordinator.super.closeZooKeeper();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        }, "guagua-znode-cleanup");
+        thread.setDaemon(true);
+        this.appNodeCleaner = thread;
+        thread.start();
+    }
+
     /**
      * Wrapper worker result for master merging.
      * 
@@ -838,6 +1301,12 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
         private String className;
 
+        /**
+         * Used by reflection when worker results spilled to disk are read back.
+         */
+        public WorkerResultWrapper() {
+        }
+
         public WorkerResultWrapper(int currIter, Bytable workerResult, String className) {
             this.currIter = currIter;
             this.workerResult = workerResult;
@@ -855,7 +1324,7 @@ public class NettyMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
         @Override
         public WorkerResultWrapper combine(WorkerResultWrapper wrw) {
-            if(isWorkerCombinable()) {
+            if(isWorkerCombinable() && wrw.workerResult != null) {
                 @SuppressWarnings("unchecked")
                 Combinable<Bytable> cwr = ((Combinable<Bytable>) workerResult);
                 cwr.combine(wrw.workerResult);
@@ -0,0 +1,189 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.RepartitionPlan;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RepartitionPlanner} makes {@link RepartitionPlan} from record count and computation time of each worker to
+ * make computation time of workers converge.
+ * 
+ * <p>
+ * Speed of each worker is estimated by records per millisecond of its last computation, target records of a worker is
+ * in proportion to its speed. Only half of the difference to target is moved in one plan to damp timing noise, and a
+ * plan is made only if max computation time is over {@link #threshold} times of mean time and at least
+ * {@link #interval} iterations after last plan, as moving records has its own cost.
+ * 
+ * <p>
+ * Worker metrics are added by {@link #addWorkerMetrics(IterationMetrics)} in netty threads and {@link #plan(int, int)}
+ * is called in master thread, all methods are synchronized.
+ */
+public class RepartitionPlanner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepartitionPlanner.class);
+
+    /**
+     * Fraction of difference to target records moved in one plan.
+     */
+    private static final double DAMPING = 0.5d;
+
+    /**
+     * Imbalance under this gap is not re-partitioned, to avoid noise in very short iterations.
+     */
+    private static final long MIN_GAP_MILLIS = 100L;
+
+    private final double threshold;
+
+    private final int interval;
+
+    private int lastPlanIteration;
+
+    /**
+     * Record count and computation time of workers reported in current iteration.
+     */
+    private final Map<String, long[]> current = new HashMap<String, long[]>();
+
+    private int currentIteration = -1;
+
+    public RepartitionPlanner(Properties props) {
+        this.threshold = NumberFormatUtils.getDouble(props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_THRESHOLD),
+                GuaguaConstants.GUAGUA_DEFAULT_REPARTITION_THRESHOLD);
+        this.interval = Math.max(1, NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_INTERVAL),
+                GuaguaConstants.GUAGUA_DEFAULT_REPARTITION_INTERVAL));
+        LOG.info("Data re-partitioning is enabled with threshold {} and interval {}.", this.threshold, this.interval);
+    }
+
+    /**
+     * Whether data re-partitioning is enabled by {@link GuaguaConstants#GUAGUA_REPARTITION_ENABLE}, by default false.
+     */
+    public static boolean isEnabled(Properties props) {
+        return Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * Add metrics of one worker in current iteration.
+     */
+    public synchronized void addWorkerMetrics(IterationMetrics metrics) {
+        if(metrics.getIteration() != this.currentIteration) {
+            this.currentIteration = metrics.getIteration();
+            this.current.clear();
+        }
+        long time = Math.max(0L, metrics.get(Metric.COMPUTE) - metrics.get(Metric.LOAD_TIME));
+        this.current.put(metrics.getContainerId(), new long[] { metrics.get(Metric.RECORD_COUNT), time });
+    }
+
+    /**
+     * Make plan for given iteration, null is returned if no records need to be moved. Plan is only made when all
+     * workers are reported in this iteration.
+     */
+    public synchronized RepartitionPlan plan(int iteration, int workers) {
+        if(iteration != this.currentIteration || iteration <= GuaguaConstants.GUAGUA_FIRST_ITERATION
+                || iteration - this.lastPlanIteration < this.interval || this.current.size() < workers
+                || this.current.size() < 2) {
+            return null;
+        }
+
+        long totalRecords = 0L, totalTime = 0L, maxTime = 0L;
+        double totalSpeed = 0d;
+        for(long[] value: this.current.values()) {
+            totalRecords += value[0];
+            totalTime += value[1];
+            maxTime = Math.max(maxTime, value[1]);
+            totalSpeed += speed(value);
+        }
+        double meanTime = totalTime / (double) this.current.size();
+        if(totalRecords == 0L || maxTime <= meanTime * this.threshold || maxTime - meanTime <= MIN_GAP_MILLIS) {
+            return null;
+        }
+
+        // surplus records of each worker compared with target in proportion to its speed
+        List<Map.Entry<String, Long>> donors = new ArrayList<Map.Entry<String, Long>>();
+        List<Map.Entry<String, Long>> receivers = new ArrayList<Map.Entry<String, Long>>();
+        long minMoved = Math.max(1L, totalRecords / this.current.size() / 100);
+        for(Map.Entry<String, long[]> entry: this.current.entrySet()) {
+            double target = totalRecords * speed(entry.getValue()) / totalSpeed;
+            long surplus = (long) ((entry.getValue()[0] - target) * DAMPING);
+            if(surplus >= minMoved) {
+                donors.add(new AbstractMap.SimpleEntry<String, Long>(entry.getKey(), surplus));
+            } else if(-surplus >= minMoved) {
+                receivers.add(new AbstractMap.SimpleEntry<String, Long>(entry.getKey(), -surplus));
+            }
+        }
+        if(donors.isEmpty() || receivers.isEmpty()) {
+            return null;
+        }
+        Comparator<Map.Entry<String, Long>> descending = new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        };
+        Collections.sort(donors, descending);
+        Collections.sort(receivers, descending);
+
+        RepartitionPlan plan = new RepartitionPlan(iteration);
+        int i = 0, j = 0;
+        while(i < donors.size() && j < receivers.size()) {
+            Map.Entry<String, Long> donor = donors.get(i);
+            Map.Entry<String, Long> receiver = receivers.get(j);
+            long count = Math.min(donor.getValue(), receiver.getValue());
+            if(count >= minMoved) {
+                plan.addTransfer(donor.getKey(), receiver.getKey(), count);
+            }
+            donor.setValue(donor.getValue() - count);
+            receiver.setValue(receiver.getValue() - count);
+            if(donor.getValue() < minMoved) {
+                i++;
+            }
+            if(receiver.getValue() < minMoved) {
+                j++;
+            }
+        }
+        if(plan.getTransfers().isEmpty()) {
+            return null;
+        }
+        this.lastPlanIteration = iteration;
+        LOG.info("Iteration {}, max computation time {}ms, mean time {}ms, {}.", iteration, maxTime, (long) meanTime,
+                plan);
+        return plan;
+    }
+
+    /**
+     * Records per millisecond, worker without computation time is taken as 1ms.
+     */
+    private static double speed(long[] value) {
+        return value[0] / (double) Math.max(1L, value[1]);
+    }
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ShardedMasterCoordinator} is the master coordinator in sharded parameter-server mode, in which model is
+ * range-partitioned over {@link GuaguaConstants#GUAGUA_MASTER_NUMBER} masters and each master only holds its own
+ * range.
+ * 
+ * <p>
+ * Each shard master is a normal Netty master with its own znodes 'master_&lt;shard&gt;' and its own Netty server.
+ * Workers send a slice of worker result to each shard master and merge slices of master results from all shards, see
+ * {@link ml.shifu.guagua.worker.ShardedWorkerCoordinator}. Worker results and master result in {@link MasterContext}
+ * are slices of current shard, {@link MasterComputable} can check {@link MasterContext#getShard()} and
+ * {@link MasterContext#getShards()} to know its range of model.
+ * 
+ * <p>
+ * Shard index is parsed from master container id, which should be in [0, masters). In MapReduce it is task partition
+ * as master splits are the first splits. Masters in this mode are not backups of each other, so a failed shard master
+ * is only recovered by task retry like a single master.
+ */
+public class ShardedMasterCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> extends
+        NettyMasterCoordinator<MASTER_RESULT, WORKER_RESULT> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedMasterCoordinator.class);
+
+    /**
+     * Shard index of current master.
+     */
+    private int shard;
+
+    @Override
+    public void preApplication(final MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        int shards = NumberFormatUtils.getInt(context.getProps().getProperty(GuaguaConstants.GUAGUA_MASTER_NUMBER),
+                GuaguaConstants.DEFAULT_MASTER_NUMBER);
+        try {
+            this.shard = Integer.parseInt(context.getContainerId());
+        } catch (NumberFormatException e) {
+            throw new GuaguaRuntimeException("Master container id " + context.getContainerId()
+                    + " should be shard index in sharded mode.", e);
+        }
+        if(this.shard < 0 || this.shard >= shards) {
+            throw new GuaguaRuntimeException("Shard index " + this.shard + " should be in [0, " + shards + ").");
+        }
+        context.setShard(this.shard);
+        context.setShards(shards);
+        LOG.info("Master is started as shard {} of {} shards.", this.shard, shards);
+        super.preApplication(context);
+    }
+
+    @Override
+    protected StringBuilder getMasterBaseNode(final String appId) {
+        return getMasterShardBaseNode(appId, this.shard);
+    }
+
+    @Override
+    protected StringBuilder getCheckpointNode(final String appId) {
+        return super.getCheckpointNode(appId).append(GuaguaConstants.GUAGUA_ZK_SHARD_SEPARATOR).append(this.shard);
+    }
+
+    @Override
+    protected String getCheckpointName(final MasterContext<MASTER_RESULT, WORKER_RESULT> context) {
+        return super.getCheckpointName(context) + GuaguaConstants.GUAGUA_ZK_SHARD_SEPARATOR + this.shard;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+}
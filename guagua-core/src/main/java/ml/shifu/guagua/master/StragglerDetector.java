@@ -0,0 +1,227 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.util.ReflectionUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link StragglerDetector} finds persistent stragglers and data skewed partitions from worker metrics sent together
+ * with worker results.
+ * 
+ * <p>
+ * A worker is slow in one iteration if its busy time is over {@link #slowFactor} times of median busy time, or it is
+ * not reported in that iteration (for example its result is dropped by min workers ratio). A worker slow in
+ * {@link #persistIterations} consecutive iterations is a straggler. A worker with records or input bytes over
+ * {@link #skewFactor} times of median value is data skewed; skewed stragglers are reported separately because they are
+ * slow because of their data but not their nodes.
+ * 
+ * <p>
+ * Detector only reports, reactions are made by {@link StragglerPolicy}s, of which only {@link AdaptiveMinWorkersPolicy}
+ * is shipped.
+ * 
+ * <p>
+ * Worker metrics are added by {@link #addWorkerMetrics(IterationMetrics)} in netty threads and {@link #detect(int)} is
+ * called in master thread, all methods are synchronized.
+ */
+public class StragglerDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StragglerDetector.class);
+
+    /**
+     * Workers not slower than median with this gap are not slow, to avoid noise in very short iterations.
+     */
+    private static final long MIN_SLOW_GAP_MILLIS = 100L;
+
+    private final double slowFactor;
+
+    private final double skewFactor;
+
+    private final int persistIterations;
+
+    private final List<StragglerPolicy> policies = new ArrayList<StragglerPolicy>();
+
+    /**
+     * State of each known container.
+     */
+    private final Map<String, ContainerState> states = new HashMap<String, ContainerState>();
+
+    /**
+     * Busy time of workers reported in current iteration.
+     */
+    private final Map<String, Long> currentTimes = new HashMap<String, Long>();
+
+    private int currentIteration = -1;
+
+    private static class ContainerState {
+
+        private long records;
+
+        private long inputBytes;
+
+        private int slowIterations;
+    }
+
+    public StragglerDetector(Properties props) {
+        this.slowFactor = NumberFormatUtils.getDouble(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_SLOW_FACTOR),
+                GuaguaConstants.GUAGUA_DEFAULT_STRAGGLER_SLOW_FACTOR);
+        this.skewFactor = NumberFormatUtils.getDouble(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_SKEW_FACTOR),
+                GuaguaConstants.GUAGUA_DEFAULT_STRAGGLER_SKEW_FACTOR);
+        this.persistIterations = Math.max(1, NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_PERSIST_ITERATIONS),
+                GuaguaConstants.GUAGUA_DEFAULT_STRAGGLER_PERSIST_ITERATIONS));
+        String policiesStr = props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_POLICIES);
+        if(policiesStr != null && policiesStr.trim().length() > 0) {
+            for(String policyClass: policiesStr.split(GuaguaConstants.GUAGUA_INTERCEPTOR_SEPARATOR)) {
+                if(policyClass.trim().length() == 0) {
+                    continue;
+                }
+                Object policy = ReflectionUtils.newInstance(policyClass.trim());
+                if(!(policy instanceof StragglerPolicy)) {
+                    throw new GuaguaRuntimeException(policyClass + " is not a StragglerPolicy.");
+                }
+                ((StragglerPolicy) policy).init(props);
+                this.policies.add((StragglerPolicy) policy);
+            }
+        }
+        LOG.info("Straggler detection with slow factor {}, skew factor {}, persist iterations {} and policies {}.",
+                this.slowFactor, this.skewFactor, this.persistIterations, this.policies);
+    }
+
+    /**
+     * Whether detection is enabled by {@link GuaguaConstants#GUAGUA_STRAGGLER_DETECTION_ENABLE}, by default false.
+     */
+    public static boolean isEnabled(Properties props) {
+        return Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_STRAGGLER_DETECTION_ENABLE, Boolean.FALSE.toString()));
+    }
+
+    /**
+     * Add metrics of one worker in current iteration.
+     */
+    public synchronized void addWorkerMetrics(IterationMetrics metrics) {
+        if(metrics.getIteration() != this.currentIteration) {
+            this.currentIteration = metrics.getIteration();
+            this.currentTimes.clear();
+        }
+        ContainerState state = this.states.get(metrics.getContainerId());
+        if(state == null) {
+            state = new ContainerState();
+            this.states.put(metrics.getContainerId(), state);
+        }
+        state.records = metrics.get(Metric.RECORD_COUNT);
+        state.inputBytes = metrics.get(Metric.INPUT_BYTES);
+        long busy = metrics.get(Metric.RESULT_FETCH) + metrics.get(Metric.DESERIALIZE) + metrics.get(Metric.COMPUTE)
+                + metrics.get(Metric.SERIALIZE) - metrics.get(Metric.LOAD_TIME);
+        this.currentTimes.put(metrics.getContainerId(), Math.max(0L, busy));
+    }
+
+    /**
+     * Detect stragglers and data skew of given iteration, null is returned if not enough workers are reported.
+     */
+    public synchronized StragglerReport detect(int iteration) {
+        if(iteration != this.currentIteration || this.currentTimes.size() < 2) {
+            return null;
+        }
+        List<Long> times = new ArrayList<Long>(this.currentTimes.values());
+        long medianTime = median(times);
+        StragglerReport report = new StragglerReport(iteration, times.size(), medianTime, Collections.max(times));
+
+        List<Long> records = new ArrayList<Long>();
+        List<Long> inputBytes = new ArrayList<Long>();
+        for(ContainerState state: this.states.values()) {
+            records.add(state.records);
+            inputBytes.add(state.inputBytes);
+        }
+        long medianRecords = median(records);
+        long medianInputBytes = median(inputBytes);
+
+        for(Map.Entry<String, ContainerState> entry: this.states.entrySet()) {
+            String containerId = entry.getKey();
+            ContainerState state = entry.getValue();
+            Long time = this.currentTimes.get(containerId);
+            boolean isSlow;
+            if(time == null) {
+                report.getMissingContainers().add(containerId);
+                isSlow = true;
+            } else {
+                isSlow = time > medianTime * this.slowFactor && time - medianTime > MIN_SLOW_GAP_MILLIS;
+            }
+            state.slowIterations = isSlow ? state.slowIterations + 1 : 0;
+
+            boolean isSkewed = (medianRecords > 0 && state.records > medianRecords * this.skewFactor)
+                    || (medianInputBytes > 0 && state.inputBytes > medianInputBytes * this.skewFactor);
+            if(isSkewed) {
+                report.getSkewedContainers().add(containerId);
+            }
+            if(state.slowIterations >= this.persistIterations) {
+                if(isSkewed) {
+                    report.getSkewedStragglers().add(containerId);
+                } else {
+                    report.getStragglers().add(containerId);
+                }
+            }
+        }
+        this.currentTimes.clear();
+
+        if(report.hasFindings()) {
+            LOG.info("Straggler detection in iteration {}: {}", iteration, report);
+        }
+        return report;
+    }
+
+    /**
+     * Detect stragglers of given iteration and call all policies with the report.
+     */
+    public void detectAndApply(MasterContext<?, ?> context) {
+        StragglerReport report = detect(context.getCurrentIteration());
+        if(report == null) {
+            return;
+        }
+        for(StragglerPolicy policy: this.policies) {
+            try {
+                policy.onReport(context, report);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in straggler policy " + policy.getClass().getName(), e);
+            }
+        }
+    }
+
+    private static long median(List<Long> values) {
+        if(values.isEmpty()) {
+            return 0L;
+        }
+        Collections.sort(values);
+        return values.get(values.size() / 2);
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.Properties;
+
+/**
+ * {@link StragglerPolicy} is used to react on stragglers and data skew found by {@link StragglerDetector}.
+ * 
+ * <p>
+ * Policies are configured by {@link ml.shifu.guagua.GuaguaConstants#GUAGUA_STRAGGLER_POLICIES} in comma separated
+ * class names, each should have a default constructor. {@link #onReport(MasterContext, StragglerReport)} is called in
+ * master thread after master result of each iteration is published, so changes on {@link MasterContext} like
+ * {@link MasterContext#setMinWorkersRatio(double)} take effect from next iteration.
+ * 
+ * <p>
+ * {@link AdaptiveMinWorkersPolicy} is the only policy shipped, guagua itself only detects stragglers and skew and
+ * mitigates them by min workers ratio and timeout. Re-balancing skewed partitions or killing straggler containers to
+ * re-start them on other nodes are not implemented as policies, they are left to user policies. Skewed partitions can
+ * also be re-balanced independently of detection by {@link RepartitionPlanner}.
+ */
+public interface StragglerPolicy {
+
+    /**
+     * Initialize policy with guagua properties.
+     */
+    void init(Properties props);
+
+    /**
+     * Called in each iteration with detection report.
+     */
+    void onReport(MasterContext<?, ?> context, StragglerReport report);
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link StragglerReport} is the result of {@link StragglerDetector} in one iteration, which is passed to each
+ * {@link StragglerPolicy}.
+ * 
+ * <p>
+ * Worker busy time is fetch, de-serialization, computation and serialization time without data loading time, which is
+ * reported by worker together with its result.
+ */
+public class StragglerReport {
+
+    private final int iteration;
+
+    /**
+     * Number of workers reported in this iteration.
+     */
+    private final int reportedWorkers;
+
+    /**
+     * Median busy time of reported workers in milliseconds.
+     */
+    private final long medianTime;
+
+    /**
+     * Max busy time of reported workers in milliseconds.
+     */
+    private final long maxTime;
+
+    /**
+     * Containers slow in consecutive iterations with normal data size, they are likely on slow or busy nodes.
+     */
+    private final List<String> stragglers = new ArrayList<String>();
+
+    /**
+     * Containers slow in consecutive iterations with much more data than others.
+     */
+    private final List<String> skewedStragglers = new ArrayList<String>();
+
+    /**
+     * Containers with much more records or input bytes than others, no matter they are slow or not.
+     */
+    private final List<String> skewedContainers = new ArrayList<String>();
+
+    /**
+     * Known containers which are not reported in this iteration.
+     */
+    private final List<String> missingContainers = new ArrayList<String>();
+
+    public StragglerReport(int iteration, int reportedWorkers, long medianTime, long maxTime) {
+        this.iteration = iteration;
+        this.reportedWorkers = reportedWorkers;
+        this.medianTime = medianTime;
+        this.maxTime = maxTime;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public int getReportedWorkers() {
+        return reportedWorkers;
+    }
+
+    public long getMedianTime() {
+        return medianTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public List<String> getStragglers() {
+        return stragglers;
+    }
+
+    public List<String> getSkewedStragglers() {
+        return skewedStragglers;
+    }
+
+    public List<String> getSkewedContainers() {
+        return skewedContainers;
+    }
+
+    public List<String> getMissingContainers() {
+        return missingContainers;
+    }
+
+    /**
+     * Whether any straggler or skewed container is found.
+     */
+    public boolean hasFindings() {
+        return !this.stragglers.isEmpty() || !this.skewedStragglers.isEmpty() || !this.skewedContainers.isEmpty()
+                || !this.missingContainers.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StragglerReport [iteration=%s, reportedWorkers=%s, medianTime=%s, maxTime=%s, "
+                + "stragglers=%s, skewedStragglers=%s, skewedContainers=%s, missingContainers=%s]", iteration,
+                reportedWorkers, medianTime, maxTime, stragglers, skewedStragglers, skewedContainers,
+                missingContainers);
+    }
+
+}
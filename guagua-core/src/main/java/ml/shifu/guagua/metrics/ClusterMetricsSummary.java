@@ -0,0 +1,117 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+/**
+ * {@link ClusterMetricsSummary} aggregates {@link IterationMetrics} of all workers in one iteration: min, mean and max
+ * of each {@link Metric}, and the slowest worker by {@link Metric#COMPUTE}.
+ * 
+ * <p>
+ * Summary is built in master by metrics sent with worker results and is not thread safe, caller should synchronize it.
+ */
+public class ClusterMetricsSummary {
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final int iteration;
+
+    private int workers;
+
+    private final long[] min = new long[METRICS.length];
+
+    private final long[] max = new long[METRICS.length];
+
+    private final long[] sum = new long[METRICS.length];
+
+    private String slowestContainer;
+
+    private long slowestCompute = -1L;
+
+    public ClusterMetricsSummary(int iteration) {
+        this.iteration = iteration;
+    }
+
+    /**
+     * Add metrics of one worker.
+     */
+    public void add(IterationMetrics metrics) {
+        for(Metric metric: METRICS) {
+            int i = metric.ordinal();
+            long value = metrics.get(metric);
+            if(this.workers == 0 || value < this.min[i]) {
+                this.min[i] = value;
+            }
+            if(this.workers == 0 || value > this.max[i]) {
+                this.max[i] = value;
+            }
+            this.sum[i] += value;
+        }
+        if(metrics.get(Metric.COMPUTE) > this.slowestCompute) {
+            this.slowestCompute = metrics.get(Metric.COMPUTE);
+            this.slowestContainer = metrics.getContainerId();
+        }
+        this.workers += 1;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public long getMin(Metric metric) {
+        return this.min[metric.ordinal()];
+    }
+
+    public long getMax(Metric metric) {
+        return this.max[metric.ordinal()];
+    }
+
+    public long getSum(Metric metric) {
+        return this.sum[metric.ordinal()];
+    }
+
+    public double getMean(Metric metric) {
+        return this.workers == 0 ? 0d : ((double) this.sum[metric.ordinal()]) / this.workers;
+    }
+
+    public String getSlowestContainer() {
+        return slowestContainer;
+    }
+
+    /**
+     * Single line JSON string like {"iteration":1,"workers":2,"compute":{"min":1,"mean":1.5,"max":2}, ...}.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"iteration\":").append(this.iteration).append(",\"workers\":").append(this.workers)
+                .append(",\"slowest\":\"").append(this.slowestContainer).append('"');
+        for(Metric metric: METRICS) {
+            sb.append(",\"").append(metric.getKey()).append("\":{\"min\":").append(getMin(metric))
+                    .append(",\"mean\":").append(String.format("%.2f", getMean(metric))).append(",\"max\":")
+                    .append(getMax(metric)).append('}');
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterMetricsSummary " + toJson();
+    }
+
+}
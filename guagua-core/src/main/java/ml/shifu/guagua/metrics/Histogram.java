@@ -0,0 +1,138 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+/**
+ * A low-overhead histogram with power-of-two buckets for non-negative long values.
+ * 
+ * <p>
+ * Bucket i counts values in [2^(i-1), 2^i), bucket 0 is for 0. Percentiles are estimated by bucket upper bound,
+ * which is enough to find where iteration time goes without keeping all samples.
+ * 
+ * <p>
+ * Histogram is thread safe.
+ */
+public class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final long[] buckets = new long[BUCKETS];
+
+    private long count;
+
+    private long sum;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max = Long.MIN_VALUE;
+
+    public synchronized void update(long value) {
+        long v = value < 0 ? 0 : value;
+        this.buckets[bucketIndex(v)] += 1;
+        this.count += 1;
+        this.sum += v;
+        if(v < this.min) {
+            this.min = v;
+        }
+        if(v > this.max) {
+            this.max = v;
+        }
+    }
+
+    private static int bucketIndex(long value) {
+        return Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Merge other histogram into this one.
+     */
+    public void merge(Histogram other) {
+        long[] otherBuckets;
+        long otherCount, otherSum, otherMin, otherMax;
+        synchronized(other) {
+            otherBuckets = other.buckets.clone();
+            otherCount = other.count;
+            otherSum = other.sum;
+            otherMin = other.min;
+            otherMax = other.max;
+        }
+        synchronized(this) {
+            for(int i = 0; i < BUCKETS; i++) {
+                this.buckets[i] += otherBuckets[i];
+            }
+            this.count += otherCount;
+            this.sum += otherSum;
+            this.min = Math.min(this.min, otherMin);
+            this.max = Math.max(this.max, otherMax);
+        }
+    }
+
+    public synchronized long getCount() {
+        return this.count;
+    }
+
+    public synchronized long getSum() {
+        return this.sum;
+    }
+
+    public synchronized long getMin() {
+        return this.count == 0 ? 0 : this.min;
+    }
+
+    public synchronized long getMax() {
+        return this.count == 0 ? 0 : this.max;
+    }
+
+    public synchronized double getMean() {
+        return this.count == 0 ? 0d : ((double) this.sum) / this.count;
+    }
+
+    /**
+     * Estimated percentile, percentile should be in (0, 1].
+     */
+    public synchronized long getPercentile(double percentile) {
+        if(this.count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(percentile * this.count);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets[i];
+            if(seen >= target) {
+                long upper = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+                return Math.min(upper, this.max);
+            }
+        }
+        return this.max;
+    }
+
+    public synchronized void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] = 0;
+        }
+        this.count = 0;
+        this.sum = 0;
+        this.min = Long.MAX_VALUE;
+        this.max = Long.MIN_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%s, min=%s, mean=%.2f, p50=%s, p99=%s, max=%s", getCount(), getMin(), getMean(),
+                getPercentile(0.5d), getPercentile(0.99d), getMax());
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ml.shifu.guagua.io.Bytable;
+
+/**
+ * {@link IterationMetrics} is a snapshot of all {@link Metric}s of one container in one iteration.
+ * 
+ * <p>
+ * It is {@link Bytable} to be sent from worker to master together with worker result.
+ */
+public class IterationMetrics implements Bytable {
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private String containerId;
+
+    private int iteration;
+
+    /**
+     * Metric values indexed by {@link Metric#ordinal()}.
+     */
+    private long[] values = new long[METRICS.length];
+
+    public IterationMetrics() {
+    }
+
+    public IterationMetrics(String containerId, int iteration) {
+        this.containerId = containerId;
+        this.iteration = iteration;
+    }
+
+    public long get(Metric metric) {
+        return this.values[metric.ordinal()];
+    }
+
+    public void set(Metric metric, long value) {
+        this.values[metric.ordinal()] = value;
+    }
+
+    public void add(Metric metric, long delta) {
+        this.values[metric.ordinal()] += delta;
+    }
+
+    public String getContainerId() {
+        return containerId;
+    }
+
+    public void setContainerId(String containerId) {
+        this.containerId = containerId;
+    }
+
+    public int getIteration() {
+        return iteration;
+    }
+
+    public void setIteration(int iteration) {
+        this.iteration = iteration;
+    }
+
+    /**
+     * Metric values with {@link Metric#getKey()} as key.
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new LinkedHashMap<String, Long>();
+        for(Metric metric: METRICS) {
+            map.put(metric.getKey(), this.values[metric.ordinal()]);
+        }
+        return map;
+    }
+
+    /**
+     * Build metrics from map built by {@link #toMap()}, unknown keys are ignored.
+     */
+    public static IterationMetrics fromMap(String containerId, int iteration, Map<String, Long> map) {
+        IterationMetrics metrics = new IterationMetrics(containerId, iteration);
+        if(map != null) {
+            for(Metric metric: METRICS) {
+                Long value = map.get(metric.getKey());
+                if(value != null) {
+                    metrics.set(metric, value);
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Single line JSON string of this metrics.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"container\":\"").append(this.containerId).append("\",\"iteration\":").append(this.iteration);
+        for(Metric metric: METRICS) {
+            sb.append(",\"").append(metric.getKey()).append("\":").append(this.values[metric.ordinal()]);
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(this.containerId == null ? "" : this.containerId);
+        out.writeInt(this.iteration);
+        out.writeInt(this.values.length);
+        for(long value: this.values) {
+            out.writeLong(value);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        this.containerId = in.readUTF();
+        this.iteration = in.readInt();
+        int len = in.readInt();
+        this.values = new long[METRICS.length];
+        for(int i = 0; i < len; i++) {
+            long value = in.readLong();
+            // skip unknown metrics from other versions
+            if(i < this.values.length) {
+                this.values[i] = value;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IterationMetrics " + toJson();
+    }
+
+}
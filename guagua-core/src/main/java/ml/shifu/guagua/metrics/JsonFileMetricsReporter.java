@@ -0,0 +1,109 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link JsonFileMetricsReporter} writes metrics as JSON lines to 'metrics-&lt;containerId&gt;.json' in folder set by
+ * 'guagua.metrics.json.dir' (current folder by default). Cluster summaries in master are written to
+ * 'summary-&lt;containerId&gt;.json'.
+ */
+public class JsonFileMetricsReporter implements MetricsReporter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JsonFileMetricsReporter.class);
+
+    private Writer metricsWriter;
+
+    private Writer summaryWriter;
+
+    private File dir;
+
+    private String containerId;
+
+    @Override
+    public void init(Properties props, String containerId) {
+        this.dir = new File(props.getProperty(GuaguaConstants.GUAGUA_METRICS_JSON_DIR, "."));
+        if(!this.dir.exists() && !this.dir.mkdirs()) {
+            LOG.warn("Cannot create metrics folder {}.", this.dir);
+        }
+        this.containerId = containerId;
+        this.metricsWriter = newWriter("metrics-" + containerId + ".json");
+    }
+
+    private Writer newWriter(String fileName) {
+        try {
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(this.dir, fileName)),
+                    Charset.forName("UTF-8")));
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void report(IterationMetrics metrics) {
+        writeLine(this.metricsWriter, metrics.toJson());
+    }
+
+    @Override
+    public void reportSummary(ClusterMetricsSummary summary) {
+        if(this.summaryWriter == null) {
+            this.summaryWriter = newWriter("summary-" + this.containerId + ".json");
+        }
+        writeLine(this.summaryWriter, summary.toJson());
+    }
+
+    private void writeLine(Writer writer, String line) {
+        try {
+            writer.write(line);
+            writer.write('\n');
+            // flush each line to make metrics visible if task is killed.
+            writer.flush();
+        } catch (IOException e) {
+            LOG.warn("Error in writing metrics.", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(this.metricsWriter);
+        closeQuietly(this.summaryWriter);
+    }
+
+    private void closeQuietly(Writer writer) {
+        if(writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+}
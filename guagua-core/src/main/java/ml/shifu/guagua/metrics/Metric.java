@@ -0,0 +1,155 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+/**
+ * All metrics recorded in each iteration by {@link MetricsRegistry}.
+ * 
+ * <p>
+ * Time metrics are in milliseconds, memory and io metrics are in bytes.
+ */
+public enum Metric {
+
+    /**
+     * Time waiting for all workers (in master) or master result (in worker).
+     */
+    BARRIER_WAIT,
+
+    /**
+     * Time to fetch result bytes, in worker it is to fetch master result from zookeeper.
+     */
+    RESULT_FETCH,
+
+    /**
+     * Time to de-serialize results.
+     */
+    DESERIALIZE,
+
+    /**
+     * Time of master or worker computation.
+     */
+    COMPUTE,
+
+    /**
+     * Time to serialize results.
+     */
+    SERIALIZE,
+
+    /**
+     * Time to send results, master result is sent to zookeeper, worker result to master netty server.
+     */
+    SEND,
+
+    /**
+     * Time of the whole iteration including all interceptors.
+     */
+    ITERATION,
+
+    /**
+     * Bytes sent in iteration.
+     */
+    BYTES_SENT,
+
+    /**
+     * Bytes received in iteration.
+     */
+    BYTES_RECEIVED,
+
+    /**
+     * GC time in iteration.
+     */
+    GC_TIME,
+
+    /**
+     * Used heap memory at the end of iteration.
+     */
+    HEAP_USED(true),
+
+    /**
+     * Number of results spilled to disk.
+     */
+    SPILL_COUNT,
+
+    /**
+     * Time to load input data, only recorded in the iteration data is loaded.
+     */
+    LOAD_TIME,
+
+    /**
+     * Number of records loaded by worker.
+     */
+    RECORD_COUNT(true),
+
+    /**
+     * Bytes of input splits of worker.
+     */
+    INPUT_BYTES(true),
+
+    /**
+     * Time to hand off or receive records in data re-partitioning.
+     */
+    REPARTITION,
+
+    /**
+     * Time of ring all-reduce among workers, including waiting for chunks of slower workers.
+     */
+    ALLREDUCE,
+
+    /**
+     * Number of dense entries of worker result before sparsification.
+     */
+    SPARSIFY_DENSE,
+
+    /**
+     * Number of entries sent as index/value pairs after sparsification.
+     */
+    SPARSIFY_SENT,
+
+    /**
+     * Number of master results read from files published by another container on the same host.
+     */
+    RESULT_CACHE_HIT,
+
+    /**
+     * Number of workers marked dead by master in iteration, which have no result in iteration.
+     */
+    DEAD_WORKERS(true);
+
+    /**
+     * Gauge metric is a current value but not an accumulation in iteration, so it shouldn't be summed over iterations.
+     */
+    private final boolean gauge;
+
+    private Metric() {
+        this(false);
+    }
+
+    private Metric(boolean gauge) {
+        this.gauge = gauge;
+    }
+
+    public boolean isGauge() {
+        return gauge;
+    }
+
+    /**
+     * Name used in reporters like 'barrier_wait'.
+     */
+    public String getKey() {
+        return name().toLowerCase();
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.ReflectionUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MetricsRegistry} records {@link Metric}s of one container per iteration.
+ * 
+ * <p>
+ * Master or worker service calls {@link #startIteration(int)} and {@link #endIteration()} around each iteration, while
+ * coordinators and interceptors call {@link #add(Metric, long)} or {@link #set(Metric, long)} to record values.
+ * Recording is lock free as netty threads also record io bytes.
+ * 
+ * <p>
+ * At the end of each iteration, values are added into per-metric {@link Histogram}s and reported to all
+ * {@link MetricsReporter}s.
+ */
+public class MetricsRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final String containerId;
+
+    private final boolean enabled;
+
+    private volatile int iteration;
+
+    private final AtomicLongArray current = new AtomicLongArray(METRICS.length);
+
+    private final Histogram[] histograms = new Histogram[METRICS.length];
+
+    private final List<MetricsReporter> reporters = new CopyOnWriteArrayList<MetricsReporter>();
+
+    private volatile IterationMetrics lastMetrics;
+
+    public MetricsRegistry(Properties props, String containerId) {
+        this.containerId = containerId;
+        this.enabled = Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_METRICS_ENABLE, Boolean.TRUE.toString()));
+        for(int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new Histogram();
+        }
+        String reporterClasses = props.getProperty(GuaguaConstants.GUAGUA_METRICS_REPORTERS);
+        if(this.enabled && reporterClasses != null && reporterClasses.trim().length() != 0) {
+            for(String reporterClass: reporterClasses.split(GuaguaConstants.GUAGUA_INTERCEPTOR_SEPARATOR)) {
+                MetricsReporter reporter = ReflectionUtils.newInstance(reporterClass.trim());
+                reporter.init(props, containerId);
+                this.reporters.add(reporter);
+            }
+        }
+    }
+
+    /**
+     * Add reporter which is already initialized.
+     */
+    public void addReporter(MetricsReporter reporter) {
+        this.reporters.add(reporter);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Reset current values for new iteration.
+     */
+    public void startIteration(int iteration) {
+        this.iteration = iteration;
+        for(int i = 0; i < METRICS.length; i++) {
+            this.current.set(i, 0L);
+        }
+    }
+
+    public void add(Metric metric, long delta) {
+        this.current.addAndGet(metric.ordinal(), delta);
+    }
+
+    public void set(Metric metric, long value) {
+        this.current.set(metric.ordinal(), value);
+    }
+
+    public long get(Metric metric) {
+        return this.current.get(metric.ordinal());
+    }
+
+    /**
+     * Snapshot of current iteration values.
+     */
+    public IterationMetrics snapshot() {
+        IterationMetrics metrics = new IterationMetrics(this.containerId, this.iteration);
+        for(Metric metric: METRICS) {
+            metrics.set(metric, this.current.get(metric.ordinal()));
+        }
+        return metrics;
+    }
+
+    /**
+     * Update histograms and report metrics of current iteration.
+     */
+    public IterationMetrics endIteration() {
+        IterationMetrics metrics = snapshot();
+        this.lastMetrics = metrics;
+        if(!this.enabled) {
+            return metrics;
+        }
+        for(Metric metric: METRICS) {
+            this.histograms[metric.ordinal()].update(metrics.get(metric));
+        }
+        for(MetricsReporter reporter: this.reporters) {
+            try {
+                reporter.report(metrics);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in metrics reporter " + reporter.getClass().getName(), e);
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Report cluster summary in master.
+     */
+    public void reportSummary(ClusterMetricsSummary summary) {
+        if(!this.enabled) {
+            return;
+        }
+        LOG.info("Iteration {} cluster metrics {}", summary.getIteration(), summary.toJson());
+        for(MetricsReporter reporter: this.reporters) {
+            try {
+                reporter.reportSummary(summary);
+            } catch (RuntimeException e) {
+                LOG.warn("Error in metrics reporter " + reporter.getClass().getName(), e);
+            }
+        }
+    }
+
+    /**
+     * Metrics of last ended iteration, null if no iteration ended.
+     */
+    public IterationMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    /**
+     * Histogram of one metric over all ended iterations.
+     */
+    public Histogram getHistogram(Metric metric) {
+        return this.histograms[metric.ordinal()];
+    }
+
+    /**
+     * Log histograms and close all reporters.
+     */
+    public void close() {
+        if(this.enabled) {
+            for(Metric metric: METRICS) {
+                LOG.info("Container {} metric {} over iterations: {}", this.containerId, metric.getKey(),
+                        this.histograms[metric.ordinal()]);
+            }
+        }
+        for(MetricsReporter reporter: this.reporters) {
+            reporter.close();
+        }
+        this.reporters.clear();
+    }
+
+}
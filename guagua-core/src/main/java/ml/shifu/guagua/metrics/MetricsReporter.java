@@ -0,0 +1,53 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import java.util.Properties;
+
+/**
+ * {@link MetricsReporter} exports metrics recorded by {@link MetricsRegistry}.
+ * 
+ * <p>
+ * Reporters can be set by 'guagua.metrics.reporters' with comma separated class names, or be added by
+ * {@link MetricsRegistry#addReporter(MetricsReporter)} for reporters depending on platform objects like Hadoop mapper
+ * context.
+ * 
+ * <p>
+ * Reporters are called in master or worker iteration thread, so they should be fast.
+ */
+public interface MetricsReporter {
+
+    /**
+     * Initialize reporter with guagua properties and current container id.
+     */
+    void init(Properties props, String containerId);
+
+    /**
+     * Report metrics of current container at the end of each iteration.
+     */
+    void report(IterationMetrics metrics);
+
+    /**
+     * Report cluster summary, only called in master.
+     */
+    void reportSummary(ClusterMetricsSummary summary);
+
+    /**
+     * Release resources like files.
+     */
+    void close();
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package contains guagua metrics subsystem.
+ * 
+ * <p>
+ * {@link ml.shifu.guagua.metrics.MetricsRegistry} records phase timings, io bytes, gc time, heap usage and spill count
+ * of each container in each iteration, which are then exported by {@link ml.shifu.guagua.metrics.MetricsReporter}s.
+ * 
+ * <p>
+ * Master collects worker metrics sent together with worker results to build a
+ * {@link ml.shifu.guagua.metrics.ClusterMetricsSummary} in each iteration.
+ */
+package ml.shifu.guagua.metrics;
@@ -0,0 +1,95 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.sweep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.worker.AbstractWorkerComputable;
+import ml.shifu.guagua.worker.WorkerContext;
+
+/**
+ * {@link AbstractSweepWorkerComputable} loads data once and computes one worker result per configuration in each
+ * iteration of sweep mode.
+ * 
+ * <p>
+ * Data is loaded by {@link #load(Bytable, Bytable, WorkerContext)} like any {@link AbstractWorkerComputable} and shared
+ * by all configurations. {@link #computeConfig(int, Properties, Bytable, WorkerContext)} is called for each
+ * configuration not halted yet, with configuration properties and last master result of that configuration.
+ * 
+ * @param <MASTER_RESULT>
+ *            master result of each configuration.
+ * @param <WORKER_RESULT>
+ *            worker result of each configuration.
+ * @param <KEY>
+ *            key type for each record
+ * @param <VALUE>
+ *            value type for each record
+ * 
+ * @see SweepMasterComputable
+ */
+public abstract class AbstractSweepWorkerComputable<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable, KEY extends Bytable, VALUE extends Bytable>
+        extends AbstractWorkerComputable<SweepResult, SweepResult, KEY, VALUE> {
+
+    /**
+     * Properties of all configurations.
+     */
+    private List<Properties> configProps;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public SweepResult doCompute(WorkerContext<SweepResult, SweepResult> context) {
+        if(this.configProps == null) {
+            int size = SweepUtils.getSweepSize(context.getProps());
+            this.configProps = new ArrayList<Properties>(size);
+            for(int i = 0; i < size; i++) {
+                this.configProps.add(SweepUtils.getConfigProps(context.getProps(), i));
+            }
+        }
+        SweepResult lastResult = context.getLastMasterResult();
+        List<Bytable> results = new ArrayList<Bytable>(this.configProps.size());
+        for(int i = 0; i < this.configProps.size(); i++) {
+            MASTER_RESULT lastMasterResult = lastResult == null ? null : (MASTER_RESULT) lastResult.get(i);
+            if(lastMasterResult instanceof HaltBytable && ((HaltBytable) lastMasterResult).isHalt()) {
+                // no need to compute halted configuration any more
+                results.add(null);
+            } else {
+                results.add(computeConfig(i, this.configProps.get(i), lastMasterResult, context));
+            }
+        }
+        return new SweepResult(results);
+    }
+
+    /**
+     * Compute worker result of one configuration.
+     * 
+     * @param index
+     *            configuration index, from 0 to sweep size - 1.
+     * @param configProps
+     *            properties of this configuration.
+     * @param lastMasterResult
+     *            last master result of this configuration, null in the first iteration.
+     * @param context
+     *            the worker context.
+     * @return worker result of this configuration.
+     */
+    public abstract WORKER_RESULT computeConfig(int index, Properties configProps, MASTER_RESULT lastMasterResult,
+            WorkerContext<SweepResult, SweepResult> context);
+
+}
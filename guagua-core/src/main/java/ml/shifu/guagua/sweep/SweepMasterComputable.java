@@ -0,0 +1,164 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.sweep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.master.MasterComputable;
+import ml.shifu.guagua.master.MasterContext;
+import ml.shifu.guagua.master.MasterContext.MasterCompletionCallBack;
+import ml.shifu.guagua.util.ReflectionUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SweepMasterComputable} runs one master computable per configuration in sweep mode.
+ * 
+ * <p>
+ * Master computable class of each configuration is set by {@link GuaguaConstants#GUAGUA_SWEEP_MASTER_COMPUTABLE_CLASS},
+ * and number of configurations by {@link GuaguaConstants#GUAGUA_SWEEP_SIZE}. Each delegate master is given its own
+ * {@link MasterContext} with configuration properties from {@link SweepUtils#getConfigProps(Properties, int)}, its own
+ * last master result and worker results of its configuration, so existing master computables can be used without any
+ * change.
+ * 
+ * <p>
+ * A configuration halted by its master result is not computed any more and its last result is kept. The whole
+ * application is halted if all configurations are halted.
+ * 
+ * <p>
+ * Completion callbacks registered by delegates in their contexts are called at the end of the application.
+ */
+public class SweepMasterComputable implements MasterComputable<SweepResult, SweepResult> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SweepMasterComputable.class);
+
+    /**
+     * Master computables of all configurations.
+     */
+    private List<MasterComputable<Bytable, Bytable>> masters;
+
+    /**
+     * Master contexts of all configurations.
+     */
+    private List<MasterContext<Bytable, Bytable>> contexts;
+
+    @Override
+    public SweepResult compute(MasterContext<SweepResult, SweepResult> context) {
+        if(this.masters == null) {
+            init(context);
+        }
+        int size = this.masters.size();
+
+        // split worker results by configuration in one pass
+        List<List<Bytable>> workerResults = new ArrayList<List<Bytable>>(size);
+        for(int i = 0; i < size; i++) {
+            workerResults.add(new ArrayList<Bytable>());
+        }
+        if(context.getWorkerResults() != null) {
+            for(SweepResult workerResult: context.getWorkerResults()) {
+                if(workerResult == null) {
+                    continue;
+                }
+                for(int i = 0; i < size; i++) {
+                    Bytable result = workerResult.get(i);
+                    if(result != null) {
+                        workerResults.get(i).add(result);
+                    }
+                }
+            }
+        }
+
+        List<Bytable> results = new ArrayList<Bytable>(size);
+        int halted = 0;
+        for(int i = 0; i < size; i++) {
+            MasterContext<Bytable, Bytable> subContext = this.contexts.get(i);
+            Bytable result = subContext.getMasterResult();
+            if(!isHalt(result)) {
+                subContext.setCurrentIteration(context.getCurrentIteration());
+                subContext.setWorkerResults(workerResults.get(i));
+                subContext.setMetrics(context.getMetrics());
+                result = this.masters.get(i).compute(subContext);
+                subContext.setMasterResult(result);
+                if(isHalt(result)) {
+                    LOG.info("Sweep configuration {} is halted at iteration {}.", i, context.getCurrentIteration());
+                }
+            }
+            if(isHalt(result)) {
+                halted += 1;
+            }
+            results.add(result);
+        }
+
+        SweepResult sweepResult = new SweepResult(results);
+        sweepResult.setHalt(halted == size);
+        return sweepResult;
+    }
+
+    private static boolean isHalt(Bytable result) {
+        return result instanceof HaltBytable && ((HaltBytable) result).isHalt();
+    }
+
+    private void init(final MasterContext<SweepResult, SweepResult> context) {
+        Properties props = context.getProps();
+        int size = SweepUtils.getSweepSize(props);
+        String masterClass = props.getProperty(GuaguaConstants.GUAGUA_SWEEP_MASTER_COMPUTABLE_CLASS);
+        if(masterClass == null) {
+            throw new IllegalArgumentException(GuaguaConstants.GUAGUA_SWEEP_MASTER_COMPUTABLE_CLASS
+                    + " should be set in sweep mode.");
+        }
+        // master result may be recovered from checkpoint in fail-over master
+        SweepResult lastResult = context.getMasterResult();
+        this.masters = new ArrayList<MasterComputable<Bytable, Bytable>>(size);
+        this.contexts = new ArrayList<MasterContext<Bytable, Bytable>>(size);
+        for(int i = 0; i < size; i++) {
+            MasterComputable<Bytable, Bytable> master = ReflectionUtils.newInstance(masterClass);
+            MasterContext<Bytable, Bytable> subContext = new MasterContext<Bytable, Bytable>(
+                    context.getTotalIteration(), context.getWorkers(), SweepUtils.getConfigProps(props, i),
+                    context.getAppId(), context.getContainerId(), context.getMasterResultClassName(),
+                    context.getWorkerResultClassName(), context.getMinWorkersRatio(), context.getMinWorkersTimeOut());
+            if(lastResult != null) {
+                subContext.setMasterResult(lastResult.get(i));
+            }
+            this.masters.add(master);
+            this.contexts.add(subContext);
+        }
+        context.addCompletionCallBack(new MasterCompletionCallBack<SweepResult, SweepResult>() {
+            @Override
+            public void callback(MasterContext<SweepResult, SweepResult> sweepContext) {
+                for(MasterContext<Bytable, Bytable> subContext: SweepMasterComputable.this.contexts) {
+                    for(MasterCompletionCallBack<Bytable, Bytable> callback: subContext.getCallBackList()) {
+                        callback.callback(subContext);
+                    }
+                }
+            }
+        });
+        LOG.info("Sweep mode with {} configurations of master {}.", size, masterClass);
+    }
+
+    /**
+     * Master context of configuration {@code index}, which can be used to get its last master result.
+     */
+    public MasterContext<Bytable, Bytable> getContext(int index) {
+        return this.contexts.get(index);
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.sweep;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.util.ReflectionUtils;
+
+/**
+ * {@link SweepResult} packs master or worker results of all configurations in sweep mode.
+ * 
+ * <p>
+ * Result of a configuration can be null, for example worker result of a configuration already halted by master. Class
+ * name is serialized with each non-null result, so result classes should have a constructor without parameters.
+ * 
+ * <p>
+ * Halt status of {@link SweepResult} is set by {@link SweepMasterComputable} only if all configurations are halted.
+ */
+public class SweepResult extends HaltBytable {
+
+    private List<Bytable> results;
+
+    public SweepResult() {
+        this.results = new ArrayList<Bytable>();
+    }
+
+    public SweepResult(List<Bytable> results) {
+        this.results = results;
+    }
+
+    public int size() {
+        return this.results.size();
+    }
+
+    /**
+     * Result of configuration {@code index}, null if no such result.
+     */
+    public Bytable get(int index) {
+        return index < this.results.size() ? this.results.get(index) : null;
+    }
+
+    public List<Bytable> getResults() {
+        return results;
+    }
+
+    @Override
+    public void doWrite(DataOutput out) throws IOException {
+        out.writeInt(this.results.size());
+        for(Bytable result: this.results) {
+            if(result == null) {
+                out.writeBoolean(false);
+            } else {
+                out.writeBoolean(true);
+                out.writeUTF(result.getClass().getName());
+                result.write(out);
+            }
+        }
+    }
+
+    @Override
+    public void doReadFields(DataInput in) throws IOException {
+        int size = in.readInt();
+        this.results = new ArrayList<Bytable>(size);
+        for(int i = 0; i < size; i++) {
+            if(in.readBoolean()) {
+                Bytable result = ReflectionUtils.newInstance(in.readUTF());
+                result.readFields(in);
+                this.results.add(result);
+            } else {
+                this.results.add(null);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SweepResult [results=" + results + ", isHalt=" + isHalt() + "]";
+    }
+
+}
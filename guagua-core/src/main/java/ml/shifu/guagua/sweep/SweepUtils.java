@@ -0,0 +1,62 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.sweep;
+
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+/**
+ * Helper methods to read sweep mode settings.
+ */
+public final class SweepUtils {
+
+    // avoid new
+    private SweepUtils() {
+    }
+
+    /**
+     * Number of configurations set by {@link GuaguaConstants#GUAGUA_SWEEP_SIZE}.
+     */
+    public static int getSweepSize(Properties props) {
+        int size = NumberFormatUtils.getInt(props.getProperty(GuaguaConstants.GUAGUA_SWEEP_SIZE),
+                GuaguaConstants.GUAGUA_DEFAULT_SWEEP_SIZE);
+        if(size <= 0) {
+            throw new IllegalArgumentException("Sweep size should be positive, but it is " + size);
+        }
+        return size;
+    }
+
+    /**
+     * Properties of configuration {@code index}: all properties overridden by the ones with prefix
+     * {@link GuaguaConstants#GUAGUA_SWEEP_PREFIX} + index + '.'.
+     */
+    public static Properties getConfigProps(Properties props, int index) {
+        String prefix = GuaguaConstants.GUAGUA_SWEEP_PREFIX + index + ".";
+        Properties configProps = new Properties();
+        configProps.putAll(props);
+        for(Entry<Object, Object> entry: props.entrySet()) {
+            String key = entry.getKey().toString();
+            if(key.startsWith(prefix) && key.length() > prefix.length()) {
+                configProps.put(key.substring(prefix.length()), entry.getValue());
+            }
+        }
+        return configProps;
+    }
+
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package contains sweep mode to train multiple model configurations in one guagua application.
+ * 
+ * <p>
+ * Workers load data once by {@link ml.shifu.guagua.sweep.AbstractSweepWorkerComputable} and compute one result per
+ * configuration in each iteration, {@link ml.shifu.guagua.sweep.SweepMasterComputable} runs one master computable per
+ * configuration. Results of all configurations are packed into one {@link ml.shifu.guagua.sweep.SweepResult}, so data
+ * loading, containers and coordination are shared by the whole sweep.
+ */
+package ml.shifu.guagua.sweep;
+
@@ -0,0 +1,170 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.transport;
+
+import java.nio.ByteOrder;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.jboss.netty.bootstrap.Bootstrap;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.DirectChannelBufferFactory;
+import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link NioTransport} is the default {@link Transport} on Netty NIO channel factories. On Linux, JDK NIO selector is
+ * backed by epoll.
+ * 
+ * <p>
+ * I/O thread counts, TCP_NODELAY, keep-alive and socket buffer sizes are configurable, TCP_NODELAY and keep-alive are
+ * off by default as socket defaults. If {@link GuaguaConstants#GUAGUA_NETTY_DIRECT_BUFFER} is enabled, channels use
+ * {@link DirectChannelBufferFactory}, which slices small buffers from pre-allocated direct memory chunks to avoid
+ * allocating direct memory for each read. It is not a pool: buffers are never recycled, a used-up chunk is replaced by
+ * a new one and freed by GC only after all buffers sliced from it are unreachable.
+ */
+public class NioTransport implements Transport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioTransport.class);
+
+    private int serverIoThreads;
+
+    private int clientIoThreads;
+
+    private boolean tcpNoDelay;
+
+    private boolean keepAlive;
+
+    private int sendBufferSize;
+
+    private int receiveBufferSize;
+
+    private boolean directBuffer;
+
+    private int directBufferPreallocatedSize;
+
+    @Override
+    public void init(Properties props) {
+        this.serverIoThreads = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_SERVER_IO_THREADS),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_SERVER_IO_THREADS);
+        this.clientIoThreads = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_CLIENT_IO_THREADS),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_CLIENT_IO_THREADS);
+        this.tcpNoDelay = Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_TCP_NODELAY, Boolean.FALSE.toString()));
+        this.keepAlive = Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_KEEPALIVE, Boolean.FALSE.toString()));
+        this.sendBufferSize = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_SEND_BUFFER_SIZE), 0);
+        this.receiveBufferSize = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_RECEIVE_BUFFER_SIZE), 0);
+        this.directBuffer = Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_DIRECT_BUFFER, Boolean.FALSE.toString()));
+        this.directBufferPreallocatedSize = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_NETTY_DIRECT_BUFFER_PREALLOCATED_SIZE),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_DIRECT_BUFFER_PREALLOCATED_SIZE);
+        LOG.info("Netty transport with server io threads {}, client io threads {}, tcpNoDelay {}, keepAlive {}, "
+                + "send buffer {}, receive buffer {}, direct buffer {}.", this.serverIoThreads, this.clientIoThreads,
+                this.tcpNoDelay, this.keepAlive, this.sendBufferSize, this.receiveBufferSize, this.directBuffer);
+    }
+
+    @Override
+    public ServerBootstrap newServerBootstrap(String name) {
+        NioServerSocketChannelFactory factory;
+        if(this.serverIoThreads > 0) {
+            factory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(new TransportThreadFactory(name
+                    + "-boss")), Executors.newCachedThreadPool(new TransportThreadFactory(name + "-io")),
+                    this.serverIoThreads);
+        } else {
+            factory = new NioServerSocketChannelFactory(Executors.newCachedThreadPool(new TransportThreadFactory(name
+                    + "-boss")), Executors.newCachedThreadPool(new TransportThreadFactory(name + "-io")));
+        }
+        ServerBootstrap bootstrap = new ServerBootstrap(factory);
+        bootstrap.setOption("reuseAddress", true);
+        setOptions(bootstrap, "child.");
+        return bootstrap;
+    }
+
+    @Override
+    public ClientBootstrap newClientBootstrap(String name) {
+        ClientBootstrap bootstrap = new ClientBootstrap(new NioClientSocketChannelFactory(
+                Executors.newCachedThreadPool(new TransportThreadFactory(name + "-boss")),
+                Executors.newCachedThreadPool(new TransportThreadFactory(name + "-io")), 1, Math.max(1,
+                        this.clientIoThreads)));
+        setOptions(bootstrap, "");
+        return bootstrap;
+    }
+
+    /**
+     * Set socket options of accepted channels (prefix 'child.') or client channels (no prefix).
+     */
+    protected void setOptions(Bootstrap bootstrap, String prefix) {
+        if(this.tcpNoDelay) {
+            bootstrap.setOption(prefix + "tcpNoDelay", true);
+        }
+        if(this.keepAlive) {
+            bootstrap.setOption(prefix + "keepAlive", true);
+        }
+        if(this.sendBufferSize > 0) {
+            bootstrap.setOption(prefix + "sendBufferSize", this.sendBufferSize);
+        }
+        if(this.receiveBufferSize > 0) {
+            bootstrap.setOption(prefix + "receiveBufferSize", this.receiveBufferSize);
+        }
+        if(this.directBuffer) {
+            bootstrap.setOption(prefix + "bufferFactory", new DirectChannelBufferFactory(ByteOrder.BIG_ENDIAN,
+                    this.directBufferPreallocatedSize));
+        }
+    }
+
+    /**
+     * Thread factory to name I/O threads and log uncaught errors.
+     */
+    private static class TransportThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        private final String namePrefix;
+
+        TransportThreadFactory(String name) {
+            this.namePrefix = "guagua-" + name + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, this.namePrefix + this.threadNumber.getAndIncrement());
+            thread.setDaemon(false);
+            thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                @Override
+                public void uncaughtException(Thread t, Throwable e) {
+                    LOG.warn("Error message in thread {} with error message {}, error root cause {}.", t, e,
+                            e.getCause());
+                }
+            });
+            return thread;
+        }
+    }
+
+}
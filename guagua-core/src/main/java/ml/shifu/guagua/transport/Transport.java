@@ -0,0 +1,50 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.transport;
+
+import java.util.Properties;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+
+/**
+ * {@link Transport} is the SPI to create Netty bootstraps for master, worker and application master traffic.
+ * 
+ * <p>
+ * Bootstraps returned are fully configured with channel factory and options, callers only set pipeline factory, bind
+ * or connect, and release them by {@link ServerBootstrap#releaseExternalResources()} or
+ * {@link ClientBootstrap#releaseExternalResources()} as before.
+ * 
+ * @see Transports#newTransport(Properties)
+ */
+public interface Transport {
+
+    /**
+     * Initialize transport with guagua properties. Called once before any other method.
+     */
+    void init(Properties props);
+
+    /**
+     * Create a new server bootstrap, name is used to name I/O threads.
+     */
+    ServerBootstrap newServerBootstrap(String name);
+
+    /**
+     * Create a new client bootstrap, name is used to name I/O threads.
+     */
+    ClientBootstrap newClientBootstrap(String name);
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.transport;
+
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.ReflectionUtils;
+import ml.shifu.guagua.util.StringUtils;
+
+/**
+ * Factory of {@link Transport} set by {@link GuaguaConstants#GUAGUA_NETTY_TRANSPORT}.
+ */
+public final class Transports {
+
+    /** Do not instantiate. */
+    private Transports() {
+    }
+
+    /**
+     * Create and initialize transport by properties.
+     */
+    public static Transport newTransport(Properties props) {
+        String transportClass = StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_NETTY_TRANSPORT),
+                GuaguaConstants.GUAGUA_DEFAULT_NETTY_TRANSPORT);
+        Transport transport = ReflectionUtils.newInstance(transportClass);
+        transport.init(props);
+        return transport;
+    }
+
+}
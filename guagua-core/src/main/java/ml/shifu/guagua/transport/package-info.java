@@ -0,0 +1,25 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * This package contains the transport SPI used by guagua Netty coordinators.
+ * 
+ * <p>
+ * {@link ml.shifu.guagua.transport.Transport} creates Netty server and client bootstraps with channel factories, I/O
+ * threads, buffer factory and socket options, so coordinators only set their pipelines. Implementation is set by
+ * {@link ml.shifu.guagua.GuaguaConstants#GUAGUA_NETTY_TRANSPORT} and {@link ml.shifu.guagua.transport.NioTransport}
+ * is used by default.
+ */
+package ml.shifu.guagua.transport;
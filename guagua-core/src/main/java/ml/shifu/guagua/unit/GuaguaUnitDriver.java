@@ -17,6 +17,7 @@ package ml.shifu.guagua.unit;
 
 import java.io.IOException;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -31,10 +32,12 @@ import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.GuaguaService;
 import ml.shifu.guagua.InMemoryCoordinator;
+import ml.shifu.guagua.coordinator.zk.ZooKeeperUtils;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.master.GuaguaMasterService;
 import ml.shifu.guagua.master.LocalMasterCoordinator;
+import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.guagua.worker.GuaguaWorkerService;
 import ml.shifu.guagua.worker.LocalWorkerCoordinator;
 
@@ -44,6 +47,15 @@ import ml.shifu.guagua.worker.LocalWorkerCoordinator;
  * <p>
  * One should provide all the properties by using {@link #GuaguaUnitDriver(Properties)}.
  * 
+ * <p>
+ * By default master and workers are coordinated by {@link InMemoryCoordinator}, results are passed by reference without
+ * serialization. Set {@link GuaguaConstants#GUAGUA_UNIT_RUNTIME} to {@link GuaguaConstants#GUAGUA_UNIT_RUNTIME_NETTY}
+ * to run the production system intercepters (Netty coordinators by default) in local threads instead. In this mode an
+ * embedded ZooKeeper server is started once per jvm if {@link GuaguaConstants#GUAGUA_ZK_SERVERS} is not set, and
+ * master/worker results are serialized and sent by Netty like in a cluster. Metrics reporters configured by
+ * {@link GuaguaConstants#GUAGUA_METRICS_REPORTERS} work the same as in production, which makes it possible to profile
+ * iteration latency without a Hadoop cluster.
+ * 
  * @param <MASTER_RESULT>
  *            master result for computation in each iteration.
  * @param <WORKER_RESULT>
@@ -53,6 +65,15 @@ public abstract class GuaguaUnitDriver<MASTER_RESULT extends Bytable, WORKER_RES
 
     private static final String GUAGUA_UNIT_TEST = "Guagua Unit Test";
 
+    private static final String GUAGUA_LOCAL_APP_PREFIX = "guagua_local_";
+
+    private static final AtomicInteger LOCAL_APP_SEQ = new AtomicInteger(0);
+
+    /**
+     * Embedded zookeeper server address shared by all netty runtime drivers in current jvm.
+     */
+    private static String embedZooKeeperServer;
+
     /**
      * Properties for all configuration information.
      */
@@ -63,6 +84,12 @@ public abstract class GuaguaUnitDriver<MASTER_RESULT extends Bytable, WORKER_RES
      */
     private GuaguaService masterService;
 
+    /**
+     * All master services, more than one master is only started in netty runtime for sharded parameter-server mode,
+     * the first one is {@link #masterService}.
+     */
+    private List<GuaguaService> masterServices;
+
     /**
      * This list mocks services for all workers which will be run in different threads.
      */
@@ -145,31 +172,53 @@ public abstract class GuaguaUnitDriver<MASTER_RESULT extends Bytable, WORKER_RES
         } catch (IOException e) {
             throw new GuaguaRuntimeException(e);
         }
-        this.executor = Executors.newFixedThreadPool(this.fileSplits.size() + 1, new UtDefaultThreadFactory() );
-
-        // hard code system interceptors for unit test.
-        this.props.setProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS,
-                LocalMasterCoordinator.class.getName());
-        this.props.setProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS,
-                LocalWorkerCoordinator.class.getName());
+        boolean isNettyRuntime = GuaguaConstants.GUAGUA_UNIT_RUNTIME_NETTY.equalsIgnoreCase(this.props.getProperty(
+                GuaguaConstants.GUAGUA_UNIT_RUNTIME, GuaguaConstants.GUAGUA_UNIT_RUNTIME_MEMORY));
+        // master container ids are 0 to masters-1 which are shard indexes in sharded mode, like mapreduce partitions
+        int masters = 1;
+        if(isNettyRuntime) {
+            masters = Math.max(1, NumberFormatUtils.getInt(this.props.getProperty(GuaguaConstants.GUAGUA_MASTER_NUMBER),
+                    GuaguaConstants.DEFAULT_MASTER_NUMBER));
+        }
+        this.executor = Executors.newFixedThreadPool(this.fileSplits.size() + masters, new UtDefaultThreadFactory());
+        String appId = GUAGUA_UNIT_TEST;
+        if(isNettyRuntime) {
+            setUpNettyRuntime();
+            // znodes are organized by application id, a new id for each run to avoid conflicts in a shared zookeeper.
+            appId = GUAGUA_LOCAL_APP_PREFIX + System.currentTimeMillis() + "_" + LOCAL_APP_SEQ.incrementAndGet();
+        } else {
+            // hard code system interceptors for unit test.
+            this.props.setProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS,
+                    LocalMasterCoordinator.class.getName());
+            this.props.setProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS,
+                    LocalWorkerCoordinator.class.getName());
+        }
         this.props.setProperty(GuaguaConstants.GUAGUA_WORKER_NUMBER, this.fileSplits.size() + "");
 
         this.iteration = Integer.parseInt(this.props.getProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT));
 
         this.workerServices = new ArrayList<GuaguaService>();
-        this.masterService = new GuaguaMasterService<MASTER_RESULT, WORKER_RESULT>();
+        this.masterServices = new ArrayList<GuaguaService>();
 
-        InMemoryCoordinator<MASTER_RESULT, WORKER_RESULT> coordinator = new InMemoryCoordinator<MASTER_RESULT, WORKER_RESULT>(
-                this.fileSplits.size(), this.iteration);
-        this.masterService.setAppId(GUAGUA_UNIT_TEST);
-        this.masterService.setContainerId("0");
-        ((GuaguaMasterService<MASTER_RESULT, WORKER_RESULT>) this.masterService).setCoordinator(coordinator);
-        this.masterService.init(this.props);
+        InMemoryCoordinator<MASTER_RESULT, WORKER_RESULT> coordinator = null;
+        if(!isNettyRuntime) {
+            coordinator = new InMemoryCoordinator<MASTER_RESULT, WORKER_RESULT>(this.fileSplits.size(),
+                    this.iteration);
+        }
+        for(int i = 0; i < masters; i++) {
+            GuaguaService masterService = new GuaguaMasterService<MASTER_RESULT, WORKER_RESULT>();
+            masterService.setAppId(appId);
+            masterService.setContainerId(i + "");
+            ((GuaguaMasterService<MASTER_RESULT, WORKER_RESULT>) masterService).setCoordinator(coordinator);
+            masterService.init(this.props);
+            this.masterServices.add(masterService);
+        }
+        this.masterService = this.masterServices.get(0);
 
         for(int i = 0; i < this.fileSplits.size(); i++) {
             GuaguaService workerService = new GuaguaWorkerService<MASTER_RESULT, WORKER_RESULT>();
-            workerService.setAppId(GUAGUA_UNIT_TEST);
-            workerService.setContainerId((i + 1) + "");
+            workerService.setAppId(appId);
+            workerService.setContainerId((i + masters) + "");
             workerService.setSplits(Arrays.asList(this.fileSplits.get(i)));
             ((GuaguaWorkerService<MASTER_RESULT, WORKER_RESULT>) workerService).setCoordinator(coordinator);
             workerService.init(this.props);
@@ -177,6 +226,60 @@ public abstract class GuaguaUnitDriver<MASTER_RESULT extends Bytable, WORKER_RES
         }
     }
 
+    /**
+     * Use production system intercepters and make sure a zookeeper server is available for netty runtime.
+     */
+    private void setUpNettyRuntime() {
+        if(this.props.getProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS) == null) {
+            this.props.setProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS,
+                    GuaguaConstants.GUAGUA_MASTER_DEFAULT_SYSTEM_INTERCEPTERS);
+        }
+        if(this.props.getProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS) == null) {
+            this.props.setProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS,
+                    GuaguaConstants.GUAGUA_WORKER_DEFAULT_SYSTEM_INTERCEPTERS);
+        }
+        if(this.props.getProperty(GuaguaConstants.GUAGUA_ZK_SERVERS) == null) {
+            this.props.setProperty(GuaguaConstants.GUAGUA_ZK_SERVERS, getEmbedZooKeeperServer());
+        }
+    }
+
+    /**
+     * Start embedded zookeeper server at the first call and return its address.
+     */
+    private static synchronized String getEmbedZooKeeperServer() {
+        if(embedZooKeeperServer == null) {
+            try {
+                int embedZkClientPort = ZooKeeperUtils.startEmbedZooKeeper();
+                ZooKeeperUtils.checkIfEmbedZooKeeperStarted(embedZkClientPort);
+                embedZooKeeperServer = InetAddress.getLocalHost().getHostName() + ":" + embedZkClientPort;
+            } catch (IOException e) {
+                throw new GuaguaRuntimeException(e);
+            }
+        }
+        return embedZooKeeperServer;
+    }
+
+    /**
+     * Master service, which can be used to check metrics by {@link GuaguaService#getMetricsRegistry()} after running.
+     */
+    public GuaguaService getMasterService() {
+        return masterService;
+    }
+
+    /**
+     * All master services, which are more than one only in sharded parameter-server mode.
+     */
+    public List<GuaguaService> getMasterServices() {
+        return masterServices;
+    }
+
+    /**
+     * Worker services, which can be used to check metrics by {@link GuaguaService#getMetricsRegistry()} after running.
+     */
+    public List<GuaguaService> getWorkerServices() {
+        return workerServices;
+    }
+
     /**
      * To run master-workers iteration.
      */
@@ -194,14 +297,16 @@ public abstract class GuaguaUnitDriver<MASTER_RESULT extends Bytable, WORKER_RES
      * Real running logic
      */
     protected void doRun() {
-        this.executor.submit(new Runnable() {
-            @Override
-            public void run() {
-                GuaguaUnitDriver.this.masterService.start();
-                GuaguaUnitDriver.this.masterService.run(null);
-                GuaguaUnitDriver.this.masterService.stop();
-            }
-        });
+        for(final GuaguaService masterService: this.masterServices) {
+            this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    masterService.start();
+                    masterService.run(null);
+                    masterService.stop();
+                }
+            });
+        }
 
         for(final GuaguaService workerService: this.workerServices) {
             this.executor.submit(new Runnable() {
@@ -0,0 +1,487 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.BytableSerializer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A list to store {@link Bytable} data into memory firstly then spill into disk by a background writer thread if over
+ * memory threshold.
+ * 
+ * <p>
+ * Compared with {@link BytableMemoryDiskList}, {@link #append(Bytable)} only puts elements over memory threshold into a
+ * bounded queue, serialization and disk writing are done in writer thread. If writer thread cannot catch up, append is
+ * blocked when the queue is full to keep memory bounded. Callers appending in a lock shared with other threads should
+ * call {@link #awaitWritable()} before taking the lock, so a slow disk only stalls the appending thread but not the
+ * lock holders.
+ * 
+ * <p>
+ * Iterators return elements in memory at first, elements on disk are read back and deserialized ahead by a reader
+ * thread with another bounded queue, which is started by the first {@link Iterator#hasNext()} call and overlapped with
+ * consuming elements in memory.
+ * 
+ * <p>
+ * {@link #clear()} resets this list to {@link AppendList.State#WRITE} state for reuse, spill file and writer thread are
+ * kept and file is truncated. {@link #close()} should be called at last to stop threads and delete spill file.
+ */
+public class BytableSpillList<T extends Bytable> implements AppendList<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BytableSpillList.class);
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private static final long READ_AHEAD_WAIT_MILLS = 100L;
+
+    private static final long WRITE_WAIT_MILLS = 10L;
+
+    /**
+     * Limited size setting for memory
+     */
+    private final long maxByteSize;
+
+    /**
+     * Spill file which is created at the first spill and reused after {@link #clear()}.
+     */
+    private final File file;
+
+    /**
+     * Class name used for deserialization.
+     */
+    private final String className;
+
+    private final BytableSerializer<T> serializer = new BytableSerializer<T>();
+
+    /**
+     * Capacity of writing and read-ahead queues.
+     */
+    private final int queueSize;
+
+    private final List<T> memoryList = new ArrayList<T>();
+
+    /**
+     * Elements and commands to be processed by writer thread.
+     */
+    private final BlockingQueue<Object> writeQueue;
+
+    private volatile Thread writer;
+
+    /**
+     * Only accessed in writer thread.
+     */
+    private DataOutputStream outputStream;
+
+    /**
+     * First error in writer thread, reported in {@link #switchState()}.
+     */
+    private volatile Throwable writeError;
+
+    /**
+     * Read-ahead of last iterator, cancelled when a new iterator is created or list is cleared.
+     */
+    private ReadAhead readAhead;
+
+    private long byteSize;
+
+    private long count;
+
+    private long memoryCount;
+
+    private State state = State.WRITE;
+
+    private boolean isClosed;
+
+    /**
+     * Constructor with max bytes size of memory, spill file name, element class name and queue capacity.
+     */
+    public BytableSpillList(long maxByteSize, String fileName, String className, int queueSize) {
+        this.maxByteSize = maxByteSize;
+        this.file = new File(fileName);
+        this.className = className;
+        this.queueSize = Math.max(1, queueSize);
+        this.writeQueue = new ArrayBlockingQueue<Object>(this.queueSize);
+    }
+
+    @Override
+    public boolean append(T t) {
+        if(this.state != State.WRITE) {
+            throw new IllegalStateException();
+        }
+        this.count += 1;
+        this.byteSize += SizeEstimator.estimate(t);
+        if(this.byteSize > this.maxByteSize) {
+            if(this.writeError != null) {
+                throw new GuaguaRuntimeException(this.writeError);
+            }
+            startWriter();
+            put(this.writeQueue, t);
+        } else {
+            this.memoryCount += 1;
+            this.memoryList.add(t);
+        }
+        return true;
+    }
+
+    private void startWriter() {
+        if(this.writer != null) {
+            return;
+        }
+        try {
+            this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file),
+                    IO_BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "guagua-spill-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        LOG.info("Start spilling elements to file {}.", this.file.getAbsolutePath());
+    }
+
+    /**
+     * Writer thread loop, elements are serialized and written in order, commands are executed after all elements before
+     * them.
+     */
+    @SuppressWarnings("unchecked")
+    private void write() {
+        while(true) {
+            Object item;
+            try {
+                item = this.writeQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if(item instanceof Command) {
+                Command command = (Command) item;
+                try {
+                    if(command.type == Command.FLUSH) {
+                        this.outputStream.flush();
+                    } else if(command.type == Command.RESET) {
+                        this.outputStream.close();
+                        // truncate and reuse the same file
+                        this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                                this.file), IO_BUFFER_SIZE));
+                    } else {
+                        this.outputStream.close();
+                    }
+                } catch (Throwable e) {
+                    recordWriteError(e);
+                } finally {
+                    command.latch.countDown();
+                }
+                if(command.type == Command.CLOSE) {
+                    return;
+                }
+            } else if(this.writeError == null) {
+                try {
+                    byte[] bytes = this.serializer.objectToBytes((T) item);
+                    this.outputStream.writeInt(bytes.length);
+                    this.outputStream.write(bytes);
+                } catch (Throwable e) {
+                    recordWriteError(e);
+                }
+            }
+        }
+    }
+
+    private void recordWriteError(Throwable e) {
+        LOG.error("Error in writing spill file " + this.file, e);
+        if(this.writeError == null) {
+            this.writeError = e;
+        }
+    }
+
+    /**
+     * Send command to writer thread and wait for its execution.
+     */
+    private void execute(int type) {
+        if(this.writer == null) {
+            return;
+        }
+        Command command = new Command(type);
+        put(this.writeQueue, command);
+        try {
+            command.latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+    }
+
+    private static void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+    }
+
+    /**
+     * Wait until writer queue has free capacity or writer thread is stopped. It is safe to be called by any thread
+     * without lock, append after it is not blocked unless another thread fills the queue in between.
+     */
+    public void awaitWritable() {
+        Thread current = this.writer;
+        while(current != null && current.isAlive() && this.writeQueue.remainingCapacity() == 0) {
+            try {
+                Thread.sleep(WRITE_WAIT_MILLS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GuaguaRuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public void switchState() {
+        // make sure all spilled elements are on disk before reading
+        execute(Command.FLUSH);
+        if(this.writeError != null) {
+            throw new GuaguaRuntimeException(this.writeError);
+        }
+        this.state = State.READ;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        if(this.state != State.READ) {
+            throw new IllegalStateException();
+        }
+        cancelReadAhead();
+        final Iterator<T> memoryItr = Collections.unmodifiableList(this.memoryList).iterator();
+        final long diskCount = getDiskCount();
+        final ReadAhead current = diskCount > 0 ? new ReadAhead(diskCount) : null;
+        this.readAhead = current;
+        return new Iterator<T>() {
+
+            private long read = 0L;
+
+            @Override
+            public boolean hasNext() {
+                if(current != null) {
+                    current.start();
+                }
+                return memoryItr.hasNext() || this.read < diskCount;
+            }
+
+            @Override
+            public T next() {
+                if(memoryItr.hasNext()) {
+                    return memoryItr.next();
+                }
+                if(this.read >= diskCount) {
+                    throw new NoSuchElementException();
+                }
+                current.start();
+                this.read += 1;
+                return current.take();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void cancelReadAhead() {
+        if(this.readAhead != null) {
+            this.readAhead.cancel();
+            this.readAhead = null;
+        }
+    }
+
+    /**
+     * Number of elements, {@link Integer#MAX_VALUE} if more than that, use {@link #getMemoryCount()} and
+     * {@link #getDiskCount()} for the exact count.
+     */
+    @Override
+    public int size() {
+        return (int) Math.min(this.count, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Clear all elements and switch to {@link AppendList.State#WRITE} state, spill file is truncated and reused.
+     */
+    @Override
+    public void clear() {
+        cancelReadAhead();
+        this.memoryList.clear();
+        if(!this.isClosed) {
+            execute(Command.RESET);
+        }
+        this.writeError = null;
+        this.byteSize = 0L;
+        this.count = 0L;
+        this.memoryCount = 0L;
+        this.state = State.WRITE;
+    }
+
+    /**
+     * Stop writer thread and delete spill file. Should be called at the end of usage of {@link BytableSpillList}.
+     */
+    public void close() {
+        if(this.isClosed) {
+            return;
+        }
+        this.isClosed = true;
+        cancelReadAhead();
+        execute(Command.CLOSE);
+        FileUtils.deleteQuietly(this.file);
+    }
+
+    public long getMemoryCount() {
+        return this.memoryCount;
+    }
+
+    public long getDiskCount() {
+        return this.count - this.memoryCount;
+    }
+
+    /**
+     * Command executed in writer thread.
+     */
+    private static class Command {
+
+        static final int FLUSH = 0;
+
+        static final int RESET = 1;
+
+        static final int CLOSE = 2;
+
+        final int type;
+
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        Command(int type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * Read spilled elements in a background thread into a bounded queue.
+     */
+    private class ReadAhead implements Runnable {
+
+        private final long total;
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(BytableSpillList.this.queueSize);
+
+        private volatile boolean isCancelled;
+
+        private boolean isStarted;
+
+        ReadAhead(long total) {
+            this.total = total;
+        }
+
+        void start() {
+            if(!this.isStarted) {
+                this.isStarted = true;
+                Thread thread = new Thread(this, "guagua-spill-reader");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        void cancel() {
+            this.isCancelled = true;
+        }
+
+        @SuppressWarnings("unchecked")
+        T take() {
+            Object item;
+            try {
+                item = this.queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GuaguaRuntimeException(e);
+            }
+            if(item instanceof Throwable) {
+                throw new GuaguaRuntimeException((Throwable) item);
+            }
+            return (T) item;
+        }
+
+        @Override
+        public void run() {
+            DataInputStream input = null;
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(BytableSpillList.this.file),
+                        IO_BUFFER_SIZE));
+                for(long i = 0; i < this.total && !this.isCancelled; i++) {
+                    byte[] bytes = new byte[input.readInt()];
+                    input.readFully(bytes);
+                    offer(BytableSpillList.this.serializer.bytesToObject(bytes, BytableSpillList.this.className));
+                }
+            } catch (Throwable e) {
+                offer(e);
+            } finally {
+                if(input != null) {
+                    try {
+                        input.close();
+                    } catch (IOException ignore) {
+                    }
+                }
+            }
+        }
+
+        /**
+         * Offer item to queue until succeed or cancelled, abandoned iterators shouldn't block reader thread forever.
+         */
+        private void offer(Object item) {
+            try {
+                while(!this.isCancelled) {
+                    if(this.queue.offer(item, READ_AHEAD_WAIT_MILLS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+}
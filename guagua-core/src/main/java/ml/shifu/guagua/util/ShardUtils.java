@@ -0,0 +1,76 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.util;
+
+import java.util.List;
+
+/**
+ * Util class to range-partition arrays into shards in sharded parameter-server mode.
+ */
+public final class ShardUtils {
+
+    /** Do not instantiate. */
+    private ShardUtils() {
+    }
+
+    /**
+     * Begin index (inclusive) of shard in array with such length.
+     */
+    public static int getShardBegin(int length, int shard, int shards) {
+        return (int) ((long) length * shard / shards);
+    }
+
+    /**
+     * End index (exclusive) of shard in array with such length.
+     */
+    public static int getShardEnd(int length, int shard, int shards) {
+        return getShardBegin(length, shard + 1, shards);
+    }
+
+    /**
+     * Copy slice of shard from values, empty array is returned if values is null.
+     */
+    public static double[] getShard(double[] values, int shard, int shards) {
+        if(values == null) {
+            return new double[0];
+        }
+        int begin = getShardBegin(values.length, shard, shards);
+        int end = getShardEnd(values.length, shard, shards);
+        double[] slice = new double[end - begin];
+        System.arraycopy(values, begin, slice, 0, slice.length);
+        return slice;
+    }
+
+    /**
+     * Concatenate slices in shard order, null slice is taken as empty.
+     */
+    public static double[] mergeShards(List<double[]> slices) {
+        int length = 0;
+        for(double[] slice: slices) {
+            length += slice == null ? 0 : slice.length;
+        }
+        double[] values = new double[length];
+        int offset = 0;
+        for(double[] slice: slices) {
+            if(slice != null) {
+                System.arraycopy(slice, 0, values, offset, slice.length);
+                offset += slice.length;
+            }
+        }
+        return values;
+    }
+
+}
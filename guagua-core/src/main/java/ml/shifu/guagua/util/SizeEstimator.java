@@ -280,7 +280,8 @@ public final class SizeEstimator {
         Class<?> superClass = cls.getSuperclass();
         ClassInfo parent = getClassInfo(superClass);
         long shellSize = parent.shellSize;
-        List<Field> pointerFields = parent.pointerFields;
+        // copy parent fields, parent list is cached and shared by all its sub classes.
+        List<Field> pointerFields = new ArrayList<Field>(parent.pointerFields);
 
         for(Field field: cls.getDeclaredFields()) {
             if(!Modifier.isStatic(field.getModifiers())) {
@@ -288,9 +289,13 @@ public final class SizeEstimator {
                 if(fieldClass.isPrimitive()) {
                     shellSize += primitiveSize(fieldClass);
                 } else {
-                    field.setAccessible(true); // Enable future get()'s on this field
                     shellSize += pointerSize;
-                    pointerFields.add(0, field);
+                    try {
+                        field.setAccessible(true); // Enable future get()'s on this field
+                        pointerFields.add(0, field);
+                    } catch (RuntimeException e) {
+                        // jdk internal fields cannot be accessed in jvm with module system, only pointer size counted
+                    }
                 }
             }
         }
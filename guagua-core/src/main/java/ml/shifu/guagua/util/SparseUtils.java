@@ -0,0 +1,106 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Util class to write double arrays in dense or sparse format, used by {@link ml.shifu.guagua.io.Sparsifiable}
+ * results.
+ * 
+ * <p>
+ * Dense format is length and all values. Sparse format is negative length '-(length + 1)', number of non-zero entries
+ * and then index/value pairs of them, so that {@link #readDoubles(DataInput)} can read both formats.
+ */
+public final class SparseUtils {
+
+    /** Do not instantiate. */
+    private SparseUtils() {
+    }
+
+    /**
+     * Write all values, null is written as empty array.
+     */
+    public static void writeDense(DataOutput out, double[] values) throws IOException {
+        if(values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(values.length);
+        for(int i = 0; i < values.length; i++) {
+            out.writeDouble(values[i]);
+        }
+    }
+
+    /**
+     * Write non-zero values as index/value pairs, null is written as empty array.
+     */
+    public static void writeSparse(DataOutput out, double[] values) throws IOException {
+        if(values == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(-(values.length + 1));
+        out.writeInt(countNonZeros(values));
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] != 0d) {
+                out.writeInt(i);
+                out.writeDouble(values[i]);
+            }
+        }
+    }
+
+    /**
+     * Read dense array written by {@link #writeDense(DataOutput, double[])} or
+     * {@link #writeSparse(DataOutput, double[])}.
+     */
+    public static double[] readDoubles(DataInput in) throws IOException {
+        int length = in.readInt();
+        if(length >= 0) {
+            double[] values = new double[length];
+            for(int i = 0; i < length; i++) {
+                values[i] = in.readDouble();
+            }
+            return values;
+        }
+        double[] values = new double[-length - 1];
+        int nonZeros = in.readInt();
+        for(int i = 0; i < nonZeros; i++) {
+            int index = in.readInt();
+            values[index] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Number of non-zero entries, 0 if values is null.
+     */
+    public static int countNonZeros(double[] values) {
+        if(values == null) {
+            return 0;
+        }
+        int count = 0;
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] != 0d) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+}
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.GuaguaRecordReader;
+import ml.shifu.guagua.metrics.Metric;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -122,9 +123,12 @@ public abstract class AbstractCombineWorkerComputable<MASTER_RESULT extends Byta
                     }
                 }
                 postLoad(context);
+                long loadTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                if(context.getMetrics() != null) {
+                    context.getMetrics().set(Metric.LOAD_TIME, loadTime);
+                }
                 LOG.info("Load {} records.", count);
-                LOG.info("Data loading time with first iteration computing:{}ms",
-                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                LOG.info("Data loading time with first iteration computing:{}ms", loadTime);
             }
         } else {
             long start = System.nanoTime();
@@ -138,6 +142,9 @@ public abstract class AbstractCombineWorkerComputable<MASTER_RESULT extends Byta
                         TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             }
         }
+        if(context.getMetrics() != null) {
+            context.getMetrics().set(Metric.RECORD_COUNT, this.dataMap.size());
+        }
         return context.getWorkerResult();
     }
 
@@ -16,18 +16,24 @@
 package ml.shifu.guagua.worker;
 
 import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.GuaguaRecordReader;
+import ml.shifu.guagua.metrics.Metric;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Abstract {@link WorkerComputable} implementation to load data one by one and only in the very 1st iteration.
+ * Abstract {@link WorkerComputable} implementation to load data one by one and only in the very 1st iteration, or in
+ * background at container start if {@link Preloadable#preload(WorkerContext)} is called.
  * 
  * <p>
  * To load data successfully, make sure {@link GuaguaRecordReader} is initialized firstly.
@@ -49,7 +55,7 @@ import org.slf4j.LoggerFactory;
  *            value type for each record
  */
 public abstract class AbstractWorkerComputable<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable, KEY extends Bytable, VALUE extends Bytable>
-        implements WorkerComputable<MASTER_RESULT, WORKER_RESULT> {
+        implements WorkerComputable<MASTER_RESULT, WORKER_RESULT>, Preloadable<MASTER_RESULT, WORKER_RESULT> {
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractWorkerComputable.class);
 
@@ -57,6 +63,23 @@ public abstract class AbstractWorkerComputable<MASTER_RESULT extends Bytable, WO
 
     private GuaguaRecordReader<KEY, VALUE> recordReader;
 
+    /**
+     * Number of records loaded, reported in each iteration for data skew detection in master.
+     */
+    private long recordCount;
+
+    /**
+     * Time in milliseconds of data loading, reported in the first iteration.
+     */
+    private long loadTime;
+
+    private boolean isLoadTimeReported = false;
+
+    /**
+     * Data loading task started by {@link #preload(WorkerContext)}, null if data is loaded in computation.
+     */
+    private volatile FutureTask<Void> loadFuture;
+
     /*
      * (non-Javadoc)
      * 
@@ -65,29 +88,16 @@ public abstract class AbstractWorkerComputable<MASTER_RESULT extends Bytable, WO
     @Override
     public WORKER_RESULT compute(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) throws IOException {
         if(this.isLoaded.compareAndSet(false, true)) {
-            init(context);
-            long start = System.nanoTime();
-            preLoad(context);
-            long count = 0;
-            for(GuaguaFileSplit fileSplit: context.getFileSplits()) {
-                LOG.info("Loading filesplit: {}", fileSplit);
-                try {
-                    initRecordReader(fileSplit);
-                    LOG.info("file_extension:"+" extension:"+fileSplit.getExtension()+" "+fileSplit);
-                    context.setAttachment(fileSplit.getExtension());
-                    while(getRecordReader().nextKeyValue()) {
-                        load(getRecordReader().getCurrentKey(), getRecordReader().getCurrentValue(), context);
-                        ++count;
-                    }
-                } finally {
-                    if(getRecordReader() != null) {
-                        getRecordReader().close();
-                    }
-                }
+            loadData(context);
+        } else if(this.loadFuture != null) {
+            waitForPreload();
+        }
+        if(context.getMetrics() != null) {
+            if(!this.isLoadTimeReported) {
+                context.getMetrics().set(Metric.LOAD_TIME, this.loadTime);
+                this.isLoadTimeReported = true;
             }
-            postLoad(context);
-            LOG.info("Load {} records.", count);
-            LOG.info("Data loading time:{}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            context.getMetrics().set(Metric.RECORD_COUNT, this.recordCount);
         }
 
         long start = System.nanoTime();
@@ -100,6 +110,82 @@ public abstract class AbstractWorkerComputable<MASTER_RESULT extends Bytable, WO
         }
     }
 
+    /**
+     * Start loading data in a background thread, {@link #compute(WorkerContext)} of the first iteration waits for it.
+     * Data is not loaded twice if loading is already started.
+     */
+    @Override
+    public void preload(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(!this.isLoaded.compareAndSet(false, true)) {
+            return;
+        }
+        this.loadFuture = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                loadData(context);
+                return null;
+            }
+        });
+        Thread thread = new Thread(this.loadFuture, "guagua-data-preload");
+        thread.setDaemon(true);
+        thread.start();
+        LOG.info("Data loading is started in background.");
+    }
+
+    /**
+     * Wait for data loading started by {@link #preload(WorkerContext)}, errors in loading are thrown.
+     */
+    private void waitForPreload() throws IOException {
+        long start = System.nanoTime();
+        try {
+            this.loadFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new GuaguaRuntimeException(cause);
+            }
+        }
+        LOG.info("Waiting time for data preloading:{}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Load all records of file splits, called only once.
+     */
+    private void loadData(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) throws IOException {
+        init(context);
+        long start = System.nanoTime();
+        preLoad(context);
+        long count = 0;
+        for(GuaguaFileSplit fileSplit: context.getFileSplits()) {
+            LOG.info("Loading filesplit: {}", fileSplit);
+            try {
+                initRecordReader(fileSplit);
+                LOG.info("file_extension:"+" extension:"+fileSplit.getExtension()+" "+fileSplit);
+                context.setAttachment(fileSplit.getExtension());
+                while(getRecordReader().nextKeyValue()) {
+                    load(getRecordReader().getCurrentKey(), getRecordReader().getCurrentValue(), context);
+                    ++count;
+                }
+            } finally {
+                if(getRecordReader() != null) {
+                    getRecordReader().close();
+                }
+            }
+        }
+        postLoad(context);
+        this.recordCount = count;
+        this.loadTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        LOG.info("Load {} records.", count);
+        LOG.info("Data loading time:{}ms", this.loadTime);
+    }
+
     /**
      * Do some pre work before loading data.
      */
@@ -15,14 +15,29 @@
  */
 package ml.shifu.guagua.worker;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import ml.shifu.guagua.BasicCoordinator;
 import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.coordinator.zk.GuaguaZooKeeper.Filter;
 import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.BytableSerializer;
+import ml.shifu.guagua.io.CheckpointStorage;
+import ml.shifu.guagua.io.LocalCheckpointStorage;
+import ml.shifu.guagua.io.RepartitionPlan;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.util.ReflectionUtils;
 import ml.shifu.guagua.util.StringUtils;
 
 import org.apache.zookeeper.CreateMode;
@@ -47,6 +62,31 @@ public abstract class AbstractWorkerCoordinator<MASTER_RESULT extends Bytable, W
 
     private static final Logger LOG = LoggerFactory.getLogger(AbstractWorkerCoordinator.class);
 
+    /**
+     * Worker computable instance, which is used to hand off records if it is {@link Repartitionable}.
+     */
+    private WorkerComputable<MASTER_RESULT, WORKER_RESULT> workerComputable;
+
+    /**
+     * Storage to exchange records in data re-partitioning, null if re-partitioning is disabled.
+     */
+    private CheckpointStorage repartitionStorage;
+
+    /**
+     * Folder of record files for data re-partitioning of current application.
+     */
+    private String repartitionDir;
+
+    /**
+     * Cache of master results shared by containers on the same host, null if it is disabled.
+     */
+    private MasterResultCache masterResultCache;
+
+    /**
+     * If {@link #masterResultCache} is initialized.
+     */
+    private boolean isMasterResultCacheInitialized = false;
+
     @Override
     public void preIteration(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
         LOG.info("Start itertion {} with container id {} and app id {}.", context.getCurrentIteration(),
@@ -84,6 +124,9 @@ public abstract class AbstractWorkerCoordinator<MASTER_RESULT extends Bytable, W
                                 .createExt(appWorkerNode, null, Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT, false);
                     }
                 } finally {
+                    if(AbstractWorkerCoordinator.this.masterResultCache != null) {
+                        AbstractWorkerCoordinator.this.masterResultCache.close();
+                    }
                     closeZooKeeper();
                 }
             }
@@ -95,15 +138,268 @@ public abstract class AbstractWorkerCoordinator<MASTER_RESULT extends Bytable, W
         if(context.getCurrentIteration() == GuaguaConstants.GUAGUA_INIT_STEP) {
             return;
         }
-        byte[] data = getBytesFromZNode(appMasterNode, appMasterSplitNode);
-        LOG.info("Master result size is {}", data.length);
+        long start = System.nanoTime();
+        MasterResultCache cache = getMasterResultCache(context);
+        byte[] data;
+        final boolean[] isFetched = new boolean[] { true };
+        if(cache == null) {
+            data = getBytesFromZNode(appMasterNode, appMasterSplitNode);
+        } else {
+            isFetched[0] = false;
+            try {
+                data = cache.get(context.getCurrentIteration(), appMasterNode, new MasterResultCache.Fetcher() {
+                    @Override
+                    public byte[] fetch() throws Exception {
+                        isFetched[0] = true;
+                        return getBytesFromZNode(appMasterNode, appMasterSplitNode);
+                    }
+                });
+            } catch (KeeperException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new GuaguaRuntimeException(e);
+            }
+        }
+        context.getMetrics().add(Metric.RESULT_FETCH, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if(!isFetched[0]) {
+            context.getMetrics().add(Metric.RESULT_CACHE_HIT, 1);
+        }
+        LOG.info("Master result size is {}", data == null ? 0 : data.length);
         if(data != null && data.length > 0) {
+            if(isFetched[0]) {
+                context.getMetrics().add(Metric.BYTES_RECEIVED, data.length);
+            }
+            start = System.nanoTime();
             MASTER_RESULT lastMasterResult = getMasterSerializer().bytesToObject(data,
                     context.getMasterResultClassName());
+            context.getMetrics().add(Metric.DESERIALIZE, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
             context.setLastMasterResult(lastMasterResult);
         }
     }
 
+    /**
+     * Get master result cache, it is initialized at the first call by
+     * {@link GuaguaConstants#GUAGUA_MASTER_RESULT_CACHE_ENABLE}.
+     */
+    private synchronized MasterResultCache getMasterResultCache(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(!this.isMasterResultCacheInitialized) {
+            Properties props = context.getProps();
+            if(Boolean.TRUE.toString().equalsIgnoreCase(
+                    props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CACHE_ENABLE, Boolean.FALSE.toString()))) {
+                String dir = StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CACHE_DIR),
+                        GuaguaConstants.GUAGUA_DEFAULT_MASTER_RESULT_CACHE_DIR);
+                long wait = NumberFormatUtils.getLong(
+                        props.getProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CACHE_WAIT),
+                        GuaguaConstants.GUAGUA_DEFAULT_MASTER_RESULT_CACHE_WAIT);
+                this.masterResultCache = new MasterResultCache(dir, context.getAppId(), context.getContainerId(), wait);
+                LOG.info("Master result cache is enabled in folder {}.", dir);
+            }
+            this.isMasterResultCacheInitialized = true;
+        }
+        return this.masterResultCache;
+    }
+
+    /**
+     * Initialize storage for data re-partitioning if {@link GuaguaConstants#GUAGUA_REPARTITION_ENABLE} is set to true.
+     * Storage is set by {@link GuaguaConstants#GUAGUA_REPARTITION_STORAGE}, or the same as checkpoint storage if not
+     * set.
+     * 
+     * <p>
+     * Records are handed off through files read by workers on other hosts. {@link LocalCheckpointStorage} is only
+     * accepted with {@link GuaguaConstants#GUAGUA_REPARTITION_DIR} set to a folder shared by all workers, a local temp
+     * folder is never seen by other hosts and receivers would wait for records until timeout.
+     */
+    protected void initRepartition(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        Properties props = context.getProps();
+        if(!Boolean.TRUE.toString().equalsIgnoreCase(
+                props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, Boolean.FALSE.toString()))) {
+            return;
+        }
+        String storageClass = StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_STORAGE),
+                StringUtils.get(props.getProperty(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE),
+                        GuaguaConstants.GUAGUA_DEFAULT_CHECKPOINT_STORAGE));
+        String dir = props.getProperty(GuaguaConstants.GUAGUA_REPARTITION_DIR);
+        CheckpointStorage storage = ReflectionUtils.newInstance(storageClass);
+        if(storage instanceof LocalCheckpointStorage && (dir == null || dir.trim().length() == 0)) {
+            throw new GuaguaRuntimeException(String.format(
+                    "Data re-partitioning with %s needs '%s' set to a folder shared by all workers, or set '%s' to a "
+                            + "distributed storage like ml.shifu.guagua.hadoop.io.HdfsCheckpointStorage.",
+                    storageClass, GuaguaConstants.GUAGUA_REPARTITION_DIR, GuaguaConstants.GUAGUA_REPARTITION_STORAGE));
+        }
+        try {
+            storage.init(props);
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+        this.repartitionStorage = storage;
+        this.repartitionDir = StringUtils.get(dir, GuaguaConstants.GUAGUA_DEFAULT_REPARTITION_DIR) + "/"
+                + context.getAppId();
+        if(!(this.workerComputable instanceof Repartitionable)) {
+            LOG.warn("Data re-partitioning is enabled but worker computable is not Repartitionable, "
+                    + "no records will be handed off by this worker.");
+        }
+    }
+
+    /**
+     * Stop data re-partitioning in fail-over worker, which reloads its original splits. Master makes no plan once
+     * re-partitioning disabled znode is created. If records were already moved from or to this worker, they cannot be
+     * recovered from original splits, so worker fails instead of training on missing or duplicated records.
+     */
+    protected void disableRepartitionOnFailOver(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context)
+            throws KeeperException, InterruptedException {
+        if(this.repartitionStorage == null || context.isInitIteration()) {
+            return;
+        }
+        this.repartitionStorage = null;
+        String appId = context.getAppId();
+        getZooKeeper().createOrSetExt(getRepartitionDisabledNode(appId).toString(), null, Ids.OPEN_ACL_UNSAFE,
+                CreateMode.PERSISTENT, true, -1);
+        String containerId = context.getContainerId();
+        for(int i = GuaguaConstants.GUAGUA_FIRST_ITERATION; i <= context.getCurrentIteration(); i++) {
+            String planNode = getRepartitionNode(appId, i).toString();
+            if(getZooKeeper().exists(planNode, false) == null) {
+                continue;
+            }
+            RepartitionPlan plan = new BytableSerializer<RepartitionPlan>().bytesToObject(
+                    getZooKeeper().getData(planNode, null, null), RepartitionPlan.class.getName());
+            for(RepartitionPlan.Transfer transfer: plan.getTransfers()) {
+                if(containerId.equals(transfer.getFrom()) || containerId.equals(transfer.getTo())) {
+                    throw new GuaguaRuntimeException(String.format(
+                            "Records of fail-over worker %s were moved by re-partitioning in iteration %s, they cannot "
+                                    + "be recovered from original splits.", containerId, i));
+                }
+            }
+        }
+        LOG.info("Data re-partitioning is disabled after fail-over of worker {}.", containerId);
+    }
+
+    /**
+     * Execute re-partitioning plan of current iteration if master published one. Records are handed off at first and
+     * then received, so no worker waits for a worker which is waiting for it.
+     */
+    protected void repartition(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) throws KeeperException,
+            InterruptedException {
+        if(this.repartitionStorage == null) {
+            return;
+        }
+        String planNode = getRepartitionNode(context.getAppId(), context.getCurrentIteration()).toString();
+        if(getZooKeeper().exists(planNode, false) == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        RepartitionPlan plan = new BytableSerializer<RepartitionPlan>().bytesToObject(
+                getZooKeeper().getData(planNode, null, null), RepartitionPlan.class.getName());
+        String containerId = context.getContainerId();
+        try {
+            for(RepartitionPlan.Transfer transfer: plan.getTransfers()) {
+                if(containerId.equals(transfer.getFrom())) {
+                    handOffRecords(transfer, getRepartitionPath(plan, transfer));
+                }
+            }
+            for(RepartitionPlan.Transfer transfer: plan.getTransfers()) {
+                if(containerId.equals(transfer.getTo())) {
+                    receiveRecords(context, transfer, getRepartitionPath(plan, transfer));
+                }
+            }
+        } catch (IOException e) {
+            throw new GuaguaRuntimeException(e);
+        }
+        context.getMetrics().add(Metric.REPARTITION, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private String getRepartitionPath(RepartitionPlan plan, RepartitionPlan.Transfer transfer) {
+        return this.repartitionDir + "/" + plan.getIteration() + "-" + transfer.getFrom() + "-" + transfer.getTo();
+    }
+
+    private void handOffRecords(RepartitionPlan.Transfer transfer, String path) throws IOException {
+        long records = exportRecords(this.repartitionStorage, path, this.workerComputable, transfer.getCount());
+        LOG.info("Hand off {} records to {}.", records, transfer.getTo());
+    }
+
+    /**
+     * Export at most count records of computable to a new file in storage. A file with only header is still written to
+     * release receiver if computable is not {@link Repartitionable}.
+     * 
+     * @return number of records exported
+     */
+    static long exportRecords(CheckpointStorage storage, String path, Object computable, long count)
+            throws IOException {
+        String tmpPath = path + ".tmp";
+        long records = 0L;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(storage.create(tmpPath),
+                GuaguaConstants.DEFAULT_IO_BUFFER_SIZE));
+        try {
+            boolean isRepartitionable = computable instanceof Repartitionable;
+            out.writeBoolean(isRepartitionable);
+            if(isRepartitionable) {
+                records = ((Repartitionable) computable).exportRecords(count, out);
+            }
+        } finally {
+            out.close();
+        }
+        if(!storage.rename(tmpPath, path)) {
+            throw new IOException("Failed to rename " + tmpPath + " to " + path);
+        }
+        return records;
+    }
+
+    /**
+     * Import records written by {@link #exportRecords(CheckpointStorage, String, Object, long)} into computable and
+     * delete the file.
+     * 
+     * @return number of records imported
+     */
+    static long importRecords(CheckpointStorage storage, String path, Object computable) throws IOException {
+        long records = 0L;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(storage.open(path),
+                GuaguaConstants.DEFAULT_IO_BUFFER_SIZE));
+        try {
+            if(in.readBoolean() && computable instanceof Repartitionable) {
+                records = ((Repartitionable) computable).importRecords(in);
+            }
+        } finally {
+            in.close();
+        }
+        storage.delete(path);
+        return records;
+    }
+
+    private void receiveRecords(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context,
+            RepartitionPlan.Transfer transfer, final String path) throws IOException {
+        final long timeout = NumberFormatUtils.getLong(
+                context.getProps().getProperty(GuaguaConstants.GUAGUA_REPARTITION_TIMEOUT),
+                GuaguaConstants.GUAGUA_DEFAULT_REPARTITION_TIMEOUT);
+        new RetryCoordinatorCommand(isFixedTime(), getSleepTime()) {
+            @Override
+            public boolean retryExecution() throws KeeperException, InterruptedException {
+                try {
+                    if(AbstractWorkerCoordinator.this.repartitionStorage.exists(path)) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    throw new GuaguaRuntimeException(e);
+                }
+                if(getElapsedTime() >= timeout) {
+                    throw new GuaguaRuntimeException("Timeout to receive records from " + path);
+                }
+                return false;
+            }
+        }.execute();
+
+        long records = importRecords(this.repartitionStorage, path, this.workerComputable);
+        LOG.info("Receive {} records from {}.", records, transfer.getFrom());
+    }
+
+    public WorkerComputable<MASTER_RESULT, WORKER_RESULT> getWorkerComputable() {
+        return workerComputable;
+    }
+
+    public void setWorkerComputable(WorkerComputable<MASTER_RESULT, WORKER_RESULT> workerComputable) {
+        this.workerComputable = workerComputable;
+    }
+
     protected class FailOverCoordinatorCommand extends BasicCoordinatorCommand {
 
         private final WorkerContext<MASTER_RESULT, WORKER_RESULT> context;
@@ -37,6 +37,8 @@ import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.HaltBytable;
 import ml.shifu.guagua.io.Serializer;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
 import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.guagua.util.Progressable;
 import ml.shifu.guagua.util.ReflectionUtils;
@@ -79,6 +81,11 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
      */
     private Properties props;
 
+    /**
+     * Metrics registry of worker container.
+     */
+    private MetricsRegistry metricsRegistry;
+
     /**
      * Worker computable class, should be created from class name.
      */
@@ -158,12 +165,19 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
 
     /**
      * Start services from interceptors, all services started logic should be wrapperd in
-     * {@link WorkerInterceptor#preApplication(WorkerContext)};
+     * {@link WorkerInterceptor#preApplication(WorkerContext)}; if worker computable is {@link Preloadable} and
+     * preloading is enabled, data loading is started before that.
      */
+    @SuppressWarnings("unchecked")
     @Override
     public void start() {
         WorkerContext<MASTER_RESULT, WORKER_RESULT> context = buildContext();
         context.setCurrentIteration(GuaguaConstants.GUAGUA_INIT_STEP);
+        boolean isPreload = Boolean.TRUE.toString().equalsIgnoreCase(
+                getProps().getProperty(GuaguaConstants.GUAGUA_WORKER_PRELOAD_ENABLE, Boolean.FALSE.toString()));
+        if(isPreload && this.workerComputable instanceof Preloadable) {
+            ((Preloadable<MASTER_RESULT, WORKER_RESULT>) this.workerComputable).preload(context);
+        }
         for(WorkerInterceptor<MASTER_RESULT, WORKER_RESULT> workerInterceptor: getWorkerInterceptors()) {
             workerInterceptor.preApplication(context);
         }
@@ -196,6 +210,9 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
                 }
             }
         }
+        if(this.metricsRegistry != null) {
+            this.metricsRegistry.close();
+        }
         // throw first exception to caller
         if(exception != null) {
             throw new GuaguaRuntimeException(exception);
@@ -246,6 +263,9 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
     protected WORKER_RESULT iterate(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context, int initialIteration,
             Progressable progress) {
         int iteration = context.getCurrentIteration();
+        long iterStart = System.nanoTime();
+        context.getMetrics().startIteration(iteration);
+        context.getMetrics().set(Metric.INPUT_BYTES, getInputBytes(context));
         String status = "Start worker iteration ( %s/%s ), progress %s%%";
         if(progress != null) {
             progress.progress(iteration - 1, getTotalIteration(), String.format(status, iteration, getTotalIteration(),
@@ -302,6 +322,12 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
             context.setWorkerResult(workerResult);
 
             long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            context.getMetrics().set(Metric.COMPUTE, time);
+            if(this.workerComputable instanceof Repartitionable) {
+                // record count is changed by data re-partitioning
+                context.getMetrics().set(Metric.RECORD_COUNT,
+                        ((Repartitionable) this.workerComputable).getRecordCount());
+            }
             long threashold = NumberFormatUtils.getLong(
                     context.getProps().getProperty(GuaguaConstants.GUAGUA_COMPUTATION_TIME_THRESHOLD),
                     GuaguaConstants.GUAGUA_DEFAULT_COMPUTATION_TIME_THRESHOLD);
@@ -329,6 +355,8 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         for(int i = 0; i < interceptorsSize; i++) {
             getWorkerInterceptors().get(interceptorsSize - 1 - i).postIteration(context);
         }
+        context.getMetrics().set(Metric.ITERATION, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - iterStart));
+        context.getMetrics().endIteration();
         // isKill should be set here because of some work on postIteration should be finished.
         status = "Complete worker iteration ( %s/%s ), progress %s%%";
         if(progress != null) {
@@ -340,6 +368,19 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         return workerResult;
     }
 
+    /**
+     * Total length of input splits in this worker, which is sent to master to detect data skew.
+     */
+    private long getInputBytes(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        long bytes = 0L;
+        if(context.getFileSplits() != null) {
+            for(GuaguaFileSplit fileSplit: context.getFileSplits()) {
+                bytes += fileSplit.getLength();
+            }
+        }
+        return bytes;
+    }
+
     /**
      * Should be called before {@link #init(Properties)}
      */
@@ -349,6 +390,7 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         }
         this.context = new WorkerContext<MASTER_RESULT, WORKER_RESULT>(getTotalIteration(), getAppId(), getProps(),
                 getContainerId(), getSplits(), getMasterResultClassName(), getWorkerResultClassName());
+        this.context.setMetrics(getMetricsRegistry());
         return getContext();
     }
 
@@ -358,9 +400,17 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
     @Override
     public void init(Properties props) {
         this.setProps(props);
+        this.metricsRegistry = new MetricsRegistry(props, getContainerId());
         checkAndSetWorkerInterceptors(props);
 
         this.setWorkerComputable(newWorkerComputable());
+        // inject worker computable into coordinator for data re-partitioning
+        for(WorkerInterceptor<MASTER_RESULT, WORKER_RESULT> interceptor: this.getWorkerInterceptors()) {
+            if(interceptor instanceof AbstractWorkerCoordinator) {
+                ((AbstractWorkerCoordinator<MASTER_RESULT, WORKER_RESULT>) interceptor).setWorkerComputable(this
+                        .getWorkerComputable());
+            }
+        }
         this.isMonitored = this.getWorkerComputable().getClass().isAnnotationPresent(ComputableMonitor.class);
         if(this.isMonitored) {
             this.isSoftForComputableTimeout = workerComputable.getClass().getAnnotation(ComputableMonitor.class)
@@ -439,6 +489,11 @@ public class GuaguaWorkerService<MASTER_RESULT extends Bytable, WORKER_RESULT ex
         return workerComputable;
     }
 
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
     private WorkerContext<MASTER_RESULT, WORKER_RESULT> getContext() {
         return context;
     }
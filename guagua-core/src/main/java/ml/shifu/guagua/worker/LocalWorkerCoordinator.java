@@ -62,6 +62,8 @@ public class LocalWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         this.coordinator.signalMaster(context.getCurrentIteration(), Integer.parseInt(context.getContainerId()) - 1,
                 context.getWorkerResult());
         this.coordinator.awaitMaster(context.getCurrentIteration());
+        // the same as zookeeper coordinator, master result is set after iteration to check master halt status
+        context.setLastMasterResult(this.coordinator.getMasterResult());
         LOG.info("Worker {} is done in iteration {}.", context.getContainerId(), context.getCurrentIteration());
     }
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link MasterResultCache} shares master result bytes among worker containers on the same host by files in a local
+ * folder, so only one container of each host fetches master result from zookeeper in each iteration.
+ * 
+ * <p>
+ * Files are in folder of current application, named by iteration and master znode. Publish protocol:
+ * <ul>
+ * <li>1. The container who creates lock file '&lt;name&gt;.lock' fetches master result;</li>
+ * <li>2. Bytes are written to a temporary file and renamed to '&lt;name&gt;', rename is atomic in local file system,
+ * so a published file is always complete;</li>
+ * <li>3. Other containers wait for the published file and read it by memory mapping. If it is not published in wait
+ * timeout (publisher is failed or slow), they fetch master result by themselves.</li>
+ * </ul>
+ * 
+ * <p>
+ * Files of iterations before last iteration are deleted by publishers, files published by current container are
+ * deleted in {@link #close()}.
+ */
+public class MasterResultCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MasterResultCache.class);
+
+    private static final String LOCK_SUFFIX = ".lock";
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private static final String ITERATION_SEPARATOR = "-";
+
+    private static final long POLL_INTERVAL = 10L;
+
+    /**
+     * Fetcher to get master result bytes if current container is the publisher or wait is timeout.
+     */
+    public static interface Fetcher {
+        byte[] fetch() throws Exception;
+    }
+
+    private final File dir;
+
+    private final String containerId;
+
+    private final long waitTimeout;
+
+    /**
+     * Files published by current container.
+     */
+    private final List<File> published = new ArrayList<File>();
+
+    public MasterResultCache(String baseDir, String appId, String containerId, long waitTimeout) {
+        this.dir = new File(baseDir, appId);
+        this.containerId = containerId;
+        this.waitTimeout = waitTimeout;
+    }
+
+    /**
+     * Get master result bytes of the znode in the iteration, from file published by another container, or by fetcher
+     * and publish it. Null is returned only if fetcher returns null.
+     */
+    public byte[] get(int iteration, String znode, Fetcher fetcher) throws Exception {
+        String name = iteration + ITERATION_SEPARATOR + znode.replace('/', '_');
+        File file = new File(this.dir, name);
+        File lock = new File(this.dir, name + LOCK_SUFFIX);
+        long start = System.currentTimeMillis();
+        while(true) {
+            if(file.exists()) {
+                try {
+                    return read(file);
+                } catch (FileNotFoundException e) {
+                    // deleted by cleaning, try again
+                    continue;
+                }
+            }
+            if(tryLock(lock)) {
+                byte[] data = fetcher.fetch();
+                publish(file, data == null ? new byte[0] : data);
+                cleanStale(iteration);
+                return data;
+            }
+            if(System.currentTimeMillis() - start >= this.waitTimeout) {
+                LOG.warn("Master result {} is not published in {}ms, fetch it in current container.", name,
+                        this.waitTimeout);
+                return fetcher.fetch();
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+    }
+
+    /**
+     * Create lock file, true means current container is the publisher.
+     */
+    private boolean tryLock(File lock) {
+        try {
+            if(!this.dir.exists() && !this.dir.mkdirs() && !this.dir.exists()) {
+                return false;
+            }
+            return lock.createNewFile();
+        } catch (IOException e) {
+            LOG.warn("Error to create lock file " + lock, e);
+            return false;
+        }
+    }
+
+    private byte[] read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            return data;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void publish(File file, byte[] data) throws IOException {
+        File tmp = new File(this.dir, file.getName() + TMP_SUFFIX + this.containerId);
+        RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            raf.close();
+        }
+        if(!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        this.published.add(file);
+    }
+
+    /**
+     * Delete files of iterations before last iteration.
+     */
+    private void cleanStale(int iteration) {
+        File[] files = this.dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file: files) {
+            String name = file.getName();
+            int index = name.indexOf(ITERATION_SEPARATOR);
+            if(index <= 0) {
+                continue;
+            }
+            try {
+                if(Integer.parseInt(name.substring(0, index)) < iteration - 1) {
+                    file.delete();
+                }
+            } catch (NumberFormatException e) {
+                // not a cache file
+            }
+        }
+    }
+
+    /**
+     * Delete files published by current container. A published file is deleted before its lock file, so a container
+     * waiting on the lock file never misses a result: it publishes the result again after lock file is deleted.
+     */
+    public void close() {
+        for(File file: this.published) {
+            file.delete();
+            new File(this.dir, file.getName() + LOCK_SUFFIX).delete();
+        }
+        this.published.clear();
+        // only succeeds if folder is empty
+        this.dir.delete();
+    }
+
+}
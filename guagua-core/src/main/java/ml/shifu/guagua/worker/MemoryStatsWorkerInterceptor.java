@@ -16,6 +16,7 @@
 package ml.shifu.guagua.worker;
 
 import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.metrics.Metric;
 import ml.shifu.guagua.util.MemoryUtils;
 
 import org.slf4j.Logger;
@@ -42,6 +43,8 @@ public class MemoryStatsWorkerInterceptor<MASTER_RESULT extends Bytable, WORKER_
 
     @Override
     public void postIteration(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        Runtime runtime = Runtime.getRuntime();
+        context.getMetrics().set(Metric.HEAP_USED, runtime.totalMemory() - runtime.freeMemory());
         LOG.info("post iteration:{} with memory info {}.", context.getCurrentIteration(),
                 MemoryUtils.getRuntimeMemoryStats());
     }
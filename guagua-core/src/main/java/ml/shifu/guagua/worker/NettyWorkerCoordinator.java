@@ -24,17 +24,27 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.coordinator.zk.GuaguaZooKeeper.Filter;
+import ml.shifu.guagua.io.AllReducible;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.BytableWrapper;
+import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.io.Heartbeat;
 import ml.shifu.guagua.io.NettyBytableDecoder;
 import ml.shifu.guagua.io.NettyBytableEncoder;
+import ml.shifu.guagua.io.ResultChunk;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
+import ml.shifu.guagua.transport.Transport;
+import ml.shifu.guagua.transport.Transports;
 import ml.shifu.guagua.util.NetworkUtils;
 import ml.shifu.guagua.util.NumberFormatUtils;
 import ml.shifu.guagua.util.ReflectionUtils;
@@ -44,6 +54,7 @@ import org.jboss.netty.bootstrap.ClientBootstrap;
 import org.jboss.netty.channel.Channel;
 import org.jboss.netty.channel.ChannelEvent;
 import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipeline;
 import org.jboss.netty.channel.ChannelPipelineFactory;
@@ -52,7 +63,6 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -81,6 +91,11 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
      */
     private String masterServerAddress;
 
+    /**
+     * Transport to create Netty client bootstraps.
+     */
+    private Transport transport;
+
     /**
      * Netty client instance to communicate with master.
      */
@@ -89,7 +104,17 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
     /**
      * Client channel used to connect to master server.
      */
-    private Channel clientChannel;
+    private volatile Channel clientChannel;
+
+    /**
+     * Stop handshake with master, null before stop message is sent.
+     */
+    private volatile StopAck stopAck;
+
+    /**
+     * Executor to send heartbeats to master, null if heartbeats are disabled.
+     */
+    private ScheduledExecutorService heartbeatExecutor;
 
     /**
      * If server is shutdown.
@@ -112,6 +137,11 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
      */
     private boolean isTimeoutToGetMasterServerAddress = false;
 
+    /**
+     * Worker result larger than chunk size in bytes is streamed in {@link ResultChunk}s, 0 to disable.
+     */
+    private int chunkSize;
+
     /**
      * Worker coordinator initialization.
      * 
@@ -126,10 +156,24 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
     public void preApplication(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
         // Initialize zookeeper and other props
         initialize(context.getProps());
+        this.chunkSize = NumberFormatUtils.getInt(context.getProps().getProperty(GuaguaConstants.GUAGUA_NETTY_CHUNK_SIZE),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_CHUNK_SIZE);
+        this.transport = Transports.newTransport(context.getProps());
+
+        // Initialize storage to exchange records if data re-partitioning is enabled.
+        initRepartition(context);
 
         // Fail over check to get last successful iteration.
         new FailOverCoordinatorCommand(context).execute();
 
+        // fail-over worker reloads original splits, records moved by re-partitioning are not recovered.
+        new BasicCoordinatorCommand() {
+            @Override
+            public void doExecute() throws KeeperException, InterruptedException {
+                disableRepartitionOnFailOver(context);
+            }
+        }.execute();
+
         // Wait for master init and get master server address.
         new BasicCoordinatorCommand() {
             @Override
@@ -159,6 +203,7 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
         // Connect to master server
         connectMasterServer();
+        startHeartbeat(context);
 
         // If not start with iteration 0, it is fail over task, should recover from laster point.
         if(!context.isInitIteration()) {
@@ -175,12 +220,49 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         }
     }
 
+    /**
+     * Transport to create Netty bootstraps, available after {@link #preApplication(WorkerContext)}.
+     */
+    protected Transport getTransport() {
+        return this.transport;
+    }
+
+    /**
+     * Send heartbeats to master in {@link GuaguaConstants#GUAGUA_NETTY_HEARTBEAT_INTERVAL} on current client channel,
+     * heartbeats are sent on the new channel after reconnection to a new master.
+     */
+    private void startHeartbeat(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        long interval = NumberFormatUtils.getLong(
+                context.getProps().getProperty(GuaguaConstants.GUAGUA_NETTY_HEARTBEAT_INTERVAL),
+                GuaguaConstants.GUAGUA_NETTY_DEFAULT_HEARTBEAT_INTERVAL);
+        if(interval <= 0L) {
+            return;
+        }
+        this.heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "guagua-worker-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.heartbeatExecutor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                Channel channel = NettyWorkerCoordinator.this.clientChannel;
+                // skip if channel is not writable, heartbeats shouldn't be queued behind large results.
+                if(channel != null && channel.isConnected() && channel.isWritable()) {
+                    channel.write(new Heartbeat(context.getCurrentIteration(), context.getContainerId()));
+                }
+            }
+        }, 0L, interval, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Connect master server for message communication.
      */
     private void connectMasterServer() {
-        this.messageClient = new ClientBootstrap(new NioClientSocketChannelFactory(Executors.newSingleThreadExecutor(),
-                Executors.newSingleThreadExecutor()));
+        this.messageClient = this.transport.newClientBootstrap("worker-client");
 
         // Set up the pipeline factory.
         this.messageClient.setPipelineFactory(new ChannelPipelineFactory() {
@@ -217,6 +299,11 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         @Override
         public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
             LOG.info("Receive status:{}", e.getMessage());
+            StopAck ack = NettyWorkerCoordinator.this.stopAck;
+            if(ack != null && e.getMessage() instanceof BytableWrapper
+                    && ((BytableWrapper) e.getMessage()).isStopMessage()) {
+                ack.acknowledge();
+            }
         }
 
         @Override
@@ -236,6 +323,11 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
             // channel is disconnected, master server is down or client connection failed.
             LOG.info("Master server is down or channel client is disconnected with event {}", e);
             NettyWorkerCoordinator.this.isServerShutdownOrClientDisconnect.compareAndSet(false, true);
+            // no ack will be received from a disconnected channel.
+            StopAck ack = NettyWorkerCoordinator.this.stopAck;
+            if(ack != null) {
+                ack.disconnect();
+            }
         }
 
     }
@@ -362,14 +454,43 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
 
                         // send message
                         // TODO do we need to send several times.
+                        final MetricsRegistry metrics = context.getMetrics();
+                        long serializeStart = System.nanoTime();
                         BytableWrapper workerMessage = new BytableWrapper();
-                        workerMessage.setBytes(NettyWorkerCoordinator.this.getWorkerSerializer().objectToBytes(
-                                context.getWorkerResult()));
+                        double[] values = getStreamedValues(context);
+                        if(values == null) {
+                            workerMessage.setBytes(serializeWorkerResult(context));
+                        }
+                        metrics.add(Metric.SERIALIZE,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - serializeStart));
                         workerMessage.setCurrentIteration(context.getCurrentIteration());
                         workerMessage.setContainerId(context.getContainerId());
                         workerMessage.setStopMessage(false);
+                        final long sendStart = System.nanoTime();
+                        // large worker result is streamed in chunks before worker message
+                        byte[] bytes = workerMessage.getBytes();
+                        if(values != null) {
+                            workerMessage.setChunks(sendChunks(context, null, values));
+                            metrics.add(Metric.BYTES_SENT, values.length * 8L);
+                        } else if(bytes != null) {
+                            if(NettyWorkerCoordinator.this.chunkSize > 0
+                                    && bytes.length > NettyWorkerCoordinator.this.chunkSize) {
+                                workerMessage.setChunks(sendChunks(context, bytes, null));
+                                workerMessage.setBytes(null);
+                            }
+                            metrics.add(Metric.BYTES_SENT, bytes.length);
+                        }
+                        // metrics collected so far in this iteration are sent to master for cluster summary
+                        workerMessage.setMetrics(metrics.snapshot());
                         LOG.debug("Message:{}", workerMessage);
-                        NettyWorkerCoordinator.this.clientChannel.write(workerMessage);
+                        NettyWorkerCoordinator.this.clientChannel.write(workerMessage).addListener(
+                                new ChannelFutureListener() {
+                                    @Override
+                                    public void operationComplete(ChannelFuture future) throws Exception {
+                                        metrics.add(Metric.SEND,
+                                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sendStart));
+                                    }
+                                });
 
                         final long start = System.nanoTime();
                         // wait for master computation stop
@@ -393,6 +514,7 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                             }
                         }.execute();
 
+                        metrics.add(Metric.BARRIER_WAIT, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
                         if(!NettyWorkerCoordinator.this.isTimeoutToGetCurrentMasterResult) {
                             LOG.info("Application {} container {} iteration {} waiting ends with {}ms execution time.",
                                     context.getAppId(), context.getContainerId(), context.getCurrentIteration(),
@@ -404,6 +526,8 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                                         .toString();
                                 try {
                                     setMasterResult(context, appMasterNode, appMasterSplitNode);
+                                    // move records between workers before next iteration if master planned it
+                                    repartition(context);
                                 } catch (KeeperException.NoNodeException e) {
                                     // this exception may happen after checking znode existing, cleaned by master znode
                                     NettyWorkerCoordinator.this.isMasterZnodeCleaned = true;
@@ -478,12 +602,26 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
                         stopMessage.setCurrentIteration(context.getCurrentIteration());
                         stopMessage.setContainerId(context.getContainerId());
                         stopMessage.setStopMessage(true);
-                        ChannelFuture future = NettyWorkerCoordinator.this.clientChannel.write(stopMessage);
-                        future.await(30, TimeUnit.SECONDS);
-                        // wait 2s to send stop message out.
-                        Thread.sleep(2 * 1000L);
+                        long timeout = NumberFormatUtils.getLong(
+                                context.getProps().getProperty(GuaguaConstants.GUAGUA_NETTY_STOP_ACK_TIMEOUT),
+                                GuaguaConstants.GUAGUA_NETTY_DEFAULT_STOP_ACK_TIMEOUT);
+                        StopAck ack = new StopAck();
+                        NettyWorkerCoordinator.this.stopAck = ack;
+                        // set before checking so that disconnection is seen either here or by client handler.
+                        if(NettyWorkerCoordinator.this.isServerShutdownOrClientDisconnect.get()) {
+                            ack.disconnect();
+                        }
+                        NettyWorkerCoordinator.this.clientChannel.write(stopMessage);
+                        // wait for master's ack to make sure stop message is received before closing channel.
+                        if(!ack.await(timeout)) {
+                            LOG.warn("Stop message is not acknowledged by master in {}ms or channel is disconnected.",
+                                    timeout);
+                        }
                     }
                 } finally {
+                    if(NettyWorkerCoordinator.this.heartbeatExecutor != null) {
+                        NettyWorkerCoordinator.this.heartbeatExecutor.shutdownNow();
+                    }
                     NettyWorkerCoordinator.this.clientChannel.close();
                     Method shutDownMethod = ReflectionUtils.getMethod(
                             NettyWorkerCoordinator.this.messageClient.getClass(), "shutdown");
@@ -497,6 +635,70 @@ public class NettyWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT
         }.execute();
     }
 
+    /**
+     * Whether worker result is sent to master in current iteration. If not, the message is only an acknowledgement of
+     * current iteration, master will see a null worker result of this worker.
+     */
+    protected boolean isWorkerResultSent(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        return true;
+    }
+
+    /**
+     * Serialize worker result sent to master in current iteration, null if worker result is not sent.
+     */
+    protected byte[] serializeWorkerResult(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(!isWorkerResultSent(context)) {
+            return null;
+        }
+        return getWorkerSerializer().objectToBytes(context.getWorkerResult());
+    }
+
+    /**
+     * Values of worker result to be streamed and summed chunk by chunk in master, only for {@link AllReducible} and
+     * {@link Combinable} worker result larger than chunk size; null if worker result should be serialized.
+     */
+    private double[] getStreamedValues(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        WORKER_RESULT workerResult = context.getWorkerResult();
+        if(this.chunkSize <= 0 || !isWorkerResultSent(context) || !(workerResult instanceof AllReducible)
+                || !(workerResult instanceof Combinable)) {
+            return null;
+        }
+        double[] values = ((AllReducible) workerResult).getAllReduceValues();
+        return values.length * 8L > this.chunkSize ? values : null;
+    }
+
+    /**
+     * Send bytes or values in chunks with sequence numbers and return number of chunks. Writing is blocked if channel
+     * is not writable, so that only a few chunks are queued in worker memory.
+     */
+    private int sendChunks(WorkerContext<MASTER_RESULT, WORKER_RESULT> context, byte[] bytes, double[] values) {
+        int length = values != null ? values.length : bytes.length;
+        int step = values != null ? Math.max(1, this.chunkSize / 8) : this.chunkSize;
+        int sequence = 0;
+        for(int offset = 0; offset < length; offset += step) {
+            int size = Math.min(step, length - offset);
+            ResultChunk chunk;
+            if(values != null) {
+                double[] slice = new double[size];
+                System.arraycopy(values, offset, slice, 0, size);
+                chunk = new ResultChunk(context.getCurrentIteration(), context.getContainerId(), sequence, offset,
+                        length, null, slice);
+            } else {
+                byte[] slice = new byte[size];
+                System.arraycopy(bytes, offset, slice, 0, size);
+                chunk = new ResultChunk(context.getCurrentIteration(), context.getContainerId(), sequence, offset,
+                        length, slice, null);
+            }
+            ChannelFuture future = this.clientChannel.write(chunk);
+            sequence += 1;
+            if(!this.clientChannel.isWritable()) {
+                future.awaitUninterruptibly();
+            }
+        }
+        LOG.debug("Worker result of length {} is sent in {} chunks.", length, sequence);
+        return sequence;
+    }
+
     private int getLatestMasterIteration(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
         try {
             String masterBaseNode = getMasterBaseNode(context.getAppId()).toString();
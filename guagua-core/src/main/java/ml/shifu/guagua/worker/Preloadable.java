@@ -0,0 +1,40 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import ml.shifu.guagua.io.Bytable;
+
+/**
+ * {@link WorkerComputable} can implement {@link Preloadable} to load data in a background thread at container start,
+ * which is enabled by {@link ml.shifu.guagua.GuaguaConstants#GUAGUA_WORKER_PRELOAD_ENABLE}.
+ * 
+ * <p>
+ * {@link #preload(WorkerContext)} is called before worker interceptors' preApplication, so data is loaded while worker
+ * is waiting for master and other workers; computation of the first iteration waits for loading to finish.
+ * 
+ * @param <MASTER_RESULT>
+ *            master result for computation in each iteration.
+ * @param <WORKER_RESULT>
+ *            worker result for computation in each iteration.
+ */
+public interface Preloadable<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> {
+
+    /**
+     * Start loading data in a background thread and return at once.
+     */
+    void preload(WorkerContext<MASTER_RESULT, WORKER_RESULT> context);
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * {@link WorkerComputable} can implement {@link Repartitionable} to let master move loaded records from overloaded
+ * workers to underloaded workers between iterations, which is enabled by
+ * {@link ml.shifu.guagua.GuaguaConstants#GUAGUA_REPARTITION_ENABLE}.
+ * 
+ * <p>
+ * Records are handed off in serialized batch form: {@link #exportRecords(long, DataOutput)} is called in donor worker
+ * and the output is read by {@link #importRecords(DataInput)} in receiver worker. Both are called in worker thread
+ * after master result is received and before next computation.
+ * 
+ * <p>
+ * A restarted worker reloads its original splits, so re-partitioning is stopped after any fail-over. A fail-over
+ * worker from or to which records were already moved fails the application instead of training on duplicated or
+ * missing records.
+ */
+public interface Repartitionable {
+
+    /**
+     * Number of records currently owned by this worker.
+     */
+    long getRecordCount();
+
+    /**
+     * Remove at most count records from this worker and write them to output.
+     * 
+     * @return number of records written
+     */
+    long exportRecords(long count, DataOutput out) throws IOException;
+
+    /**
+     * Read records written by {@link #exportRecords(long, DataOutput)} of another worker and add them to this worker.
+     * 
+     * @return number of records read
+     */
+    long importRecords(DataInput in) throws IOException;
+
+}
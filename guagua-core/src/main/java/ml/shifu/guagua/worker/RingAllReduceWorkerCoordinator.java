@@ -0,0 +1,367 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.AllReducible;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.NettyBytableDecoder;
+import ml.shifu.guagua.io.NettyBytableEncoder;
+import ml.shifu.guagua.io.RingChunk;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
+import ml.shifu.guagua.util.NetworkUtils;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooDefs.Ids;
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelException;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.ExceptionEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link RingAllReduceWorkerCoordinator} reduces {@link AllReducible} worker results among workers by ring all-reduce
+ * before sending to master.
+ * 
+ * <p>
+ * Each worker starts a Netty server and registers its address in ZooKeeper app node, workers are sorted by container
+ * id into a ring and each worker only sends chunks to its next worker. With n workers values are split into n chunks,
+ * in n-1 reduce-scatter steps each worker sums one chunk received from previous worker, then in n-1 all-gather steps
+ * the summed chunks are passed around the ring. So each worker sends and receives about 2 times of model size in one
+ * iteration, no matter how many workers there are.
+ * 
+ * <p>
+ * After all-reduce, only the first worker in the ring sends the reduced result to master, other workers send a message
+ * without result to sync iteration. Master computable gets only one worker result in
+ * {@link ml.shifu.guagua.master.MasterContext#getWorkerResults()} which is the sum of all worker results. Master result
+ * is still broadcast to workers by ZooKeeper.
+ * 
+ * <p>
+ * All workers are needed in each all-reduce, so minimal worker ratio and worker fail-over are not supported in this
+ * mode, a worker failure or a stuck worker fails all-reduce by {@link GuaguaConstants#GUAGUA_RING_ALLREDUCE_TIMEOUT}.
+ * Halt status of the reduced result is from the first worker.
+ * 
+ * <p>
+ * To use it, set {@link GuaguaConstants#GUAGUA_WORKER_SYSTEM_INTERCEPTERS} to
+ * {@link GuaguaConstants#GUAGUA_WORKER_RING_ALLREDUCE_SYSTEM_INTERCEPTERS}.
+ */
+public class RingAllReduceWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> extends
+        NettyWorkerCoordinator<MASTER_RESULT, WORKER_RESULT> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RingAllReduceWorkerCoordinator.class);
+
+    /**
+     * Number of workers in the ring.
+     */
+    private int ringSize;
+
+    /**
+     * Index of current worker in the ring.
+     */
+    private int rank;
+
+    /**
+     * Timeout to wait for ring setup and each chunk.
+     */
+    private long timeout;
+
+    private ServerBootstrap ringServer;
+
+    private Channel ringServerChannel;
+
+    private int ringServerPort;
+
+    private ClientBootstrap ringClient;
+
+    /**
+     * Channel connected to next worker in the ring.
+     */
+    private Channel nextChannel;
+
+    /**
+     * Chunks received from previous worker in the ring, chunks are in sending order as there is only one connection.
+     */
+    private final BlockingQueue<RingChunk> receivedChunks = new LinkedBlockingQueue<RingChunk>();
+
+    @Override
+    public void preApplication(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        super.preApplication(context);
+
+        Properties props = context.getProps();
+        this.ringSize = NumberFormatUtils.getInt(props.getProperty(GuaguaConstants.GUAGUA_WORKER_NUMBER), 1);
+        this.timeout = NumberFormatUtils.getLong(props.getProperty(GuaguaConstants.GUAGUA_RING_ALLREDUCE_TIMEOUT),
+                GuaguaConstants.GUAGUA_RING_ALLREDUCE_DEFAULT_TIMEOUT);
+        if(this.ringSize > 1) {
+            startRingServer(props);
+            joinRing(context);
+        }
+    }
+
+    /**
+     * Start netty server to receive chunks from previous worker.
+     */
+    private void startRingServer(Properties props) {
+        this.ringServerPort = NumberFormatUtils.getInt(
+                props.getProperty(GuaguaConstants.GUAGUA_RING_ALLREDUCE_SERVER_PORT),
+                GuaguaConstants.GUAGUA_RING_ALLREDUCE_DEFAULT_SERVER_PORT);
+        this.ringServerPort = NetworkUtils.getValidServerPort(this.ringServerPort);
+        this.ringServer = getTransport().newServerBootstrap("ring-server");
+        this.ringServer.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() throws Exception {
+                return Channels.pipeline(new NettyBytableEncoder(), new NettyBytableDecoder(), new RingServerHandler());
+            }
+        });
+        try {
+            this.ringServerChannel = this.ringServer.bind(new InetSocketAddress(this.ringServerPort));
+        } catch (ChannelException e) {
+            LOG.warn(e.getMessage() + "; try to rebind again.");
+            this.ringServerPort = NetworkUtils.getValidServerPort(this.ringServerPort);
+            this.ringServerChannel = this.ringServer.bind(new InetSocketAddress(this.ringServerPort));
+        }
+        LOG.info("Ring all-reduce server is started at port {}", this.ringServerPort);
+    }
+
+    /**
+     * Register current worker server address and wait for all workers, then connect to next worker in the ring.
+     */
+    private void joinRing(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        new BasicCoordinatorCommand() {
+            @Override
+            public void doExecute() throws Exception, InterruptedException {
+                final String ringNode = getRingNode(context.getAppId()).toString();
+                String workerRingNode = ringNode + GuaguaConstants.ZOOKEEPER_SEPARATOR + context.getContainerId();
+                String address = InetAddress.getLocalHost().getHostName() + ":"
+                        + RingAllReduceWorkerCoordinator.this.ringServerPort;
+                try {
+                    getZooKeeper().createExt(workerRingNode, address.getBytes(Charset.forName("UTF-8")),
+                            Ids.OPEN_ACL_UNSAFE, CreateMode.EPHEMERAL, true);
+                } catch (KeeperException.NodeExistsException e) {
+                    LOG.warn("Node exists: {}", workerRingNode);
+                }
+
+                final long start = System.nanoTime();
+                new RetryCoordinatorCommand(isFixedTime(), getSleepTime()) {
+                    @Override
+                    public boolean retryExecution() throws KeeperException, InterruptedException {
+                        if(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= getTimeout()) {
+                            throw new GuaguaRuntimeException("Timeout to wait for " + getRingSize()
+                                    + " workers to join ring.");
+                        }
+                        return getZooKeeper().getChildrenExt(ringNode, false, false, false).size() >= getRingSize();
+                    }
+                }.execute();
+
+                // ring order is container id order, which is the same in all workers.
+                List<String> workers = getZooKeeper().getChildrenExt(ringNode, false, false, false);
+                Collections.sort(workers);
+                if(workers.size() != getRingSize()) {
+                    throw new GuaguaRuntimeException("Ring size " + workers.size() + " is not the same as workers "
+                            + getRingSize() + ".");
+                }
+                RingAllReduceWorkerCoordinator.this.rank = workers.indexOf(context.getContainerId());
+                String next = workers.get((RingAllReduceWorkerCoordinator.this.rank + 1) % getRingSize());
+                String nextAddress = new String(getBytesFromZNode(ringNode + GuaguaConstants.ZOOKEEPER_SEPARATOR
+                        + next, null), Charset.forName("UTF-8"));
+                connectNextWorker(nextAddress);
+                LOG.info("Worker {} joins ring with rank {} and next worker {} at {}.", context.getContainerId(),
+                        RingAllReduceWorkerCoordinator.this.rank, next, nextAddress);
+            }
+        }.execute();
+    }
+
+    private void connectNextWorker(String address) {
+        this.ringClient = getTransport().newClientBootstrap("ring-client");
+        this.ringClient.setPipelineFactory(new ChannelPipelineFactory() {
+            public ChannelPipeline getPipeline() throws Exception {
+                return Channels.pipeline(new NettyBytableEncoder(), new NettyBytableDecoder());
+            }
+        });
+        String[] namePort = address.split(":");
+        this.nextChannel = this.ringClient
+                .connect(new InetSocketAddress(namePort[0], NumberFormatUtils.getInt(namePort[1])))
+                .awaitUninterruptibly().getChannel();
+        if(!this.nextChannel.isConnected()) {
+            throw new GuaguaRuntimeException("Cannot connect to next worker at " + address);
+        }
+    }
+
+    /**
+     * Server handler to queue chunks from previous worker.
+     */
+    private class RingServerHandler extends SimpleChannelUpstreamHandler {
+
+        @Override
+        public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+            if(!(e.getMessage() instanceof RingChunk)) {
+                throw new IllegalStateException("Message should be RingChunk instance.");
+            }
+            RingAllReduceWorkerCoordinator.this.receivedChunks.offer((RingChunk) e.getMessage());
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
+            // all-reduce in worker thread will be failed by timeout
+            LOG.error("error in ring server handler", e.getCause());
+            e.getChannel().close();
+        }
+    }
+
+    @Override
+    public void postIteration(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        if(this.ringSize > 1) {
+            long start = System.nanoTime();
+            allReduce(context);
+            context.getMetrics().add(Metric.ALLREDUCE, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        super.postIteration(context);
+    }
+
+    /**
+     * Only the first worker in the ring sends the reduced result to master.
+     */
+    @Override
+    protected boolean isWorkerResultSent(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        return this.ringSize <= 1 || this.rank == 0;
+    }
+
+    private void allReduce(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        WORKER_RESULT workerResult = context.getWorkerResult();
+        if(!(workerResult instanceof AllReducible)) {
+            throw new GuaguaRuntimeException("Worker result " + workerResult
+                    + " should implement AllReducible in ring all-reduce.");
+        }
+        AllReducible reducible = (AllReducible) workerResult;
+        double[] values = reducible.getAllReduceValues();
+        int iteration = context.getCurrentIteration();
+        int n = this.ringSize;
+        MetricsRegistry metrics = context.getMetrics();
+
+        // reduce-scatter: after n-1 steps, chunk (rank+1) in current worker is summed from all workers.
+        for(int step = 0; step < n - 1; step++) {
+            sendChunk(values, iteration, step, mod(this.rank - step, n), metrics);
+            RingChunk chunk = receiveChunk(values, iteration, step, mod(this.rank - step - 1, n), metrics);
+            double[] chunkValues = chunk.getValues();
+            int begin = chunkBegin(values.length, chunk.getIndex());
+            for(int i = 0; i < chunkValues.length; i++) {
+                values[begin + i] += chunkValues[i];
+            }
+        }
+
+        // all-gather: pass summed chunks around the ring.
+        for(int step = 0; step < n - 1; step++) {
+            sendChunk(values, iteration, n - 1 + step, mod(this.rank + 1 - step, n), metrics);
+            RingChunk chunk = receiveChunk(values, iteration, n - 1 + step, mod(this.rank - step, n), metrics);
+            System.arraycopy(chunk.getValues(), 0, values, chunkBegin(values.length, chunk.getIndex()),
+                    chunk.getValues().length);
+        }
+
+        reducible.setAllReduceValues(values);
+    }
+
+    private void sendChunk(double[] values, int iteration, int step, int index, MetricsRegistry metrics) {
+        double[] chunkValues = Arrays.copyOfRange(values, chunkBegin(values.length, index),
+                chunkBegin(values.length, index + 1));
+        this.nextChannel.write(new RingChunk(iteration, step, index, chunkValues));
+        metrics.add(Metric.BYTES_SENT, chunkValues.length * 8L);
+    }
+
+    private RingChunk receiveChunk(double[] values, int iteration, int step, int index, MetricsRegistry metrics) {
+        RingChunk chunk;
+        try {
+            chunk = this.receivedChunks.poll(this.timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+        if(chunk == null) {
+            throw new GuaguaRuntimeException("Timeout to receive chunk of step " + step + " in iteration "
+                    + iteration + " from previous worker.");
+        }
+        if(chunk.getCurrentIteration() != iteration || chunk.getStep() != step || chunk.getIndex() != index) {
+            throw new GuaguaRuntimeException("Unexpected " + chunk + ", expect iteration " + iteration + ", step "
+                    + step + " and index " + index + ".");
+        }
+        if(chunk.getValues().length != chunkBegin(values.length, index + 1) - chunkBegin(values.length, index)) {
+            throw new GuaguaRuntimeException("All-reduce values of workers are not in the same length, " + chunk
+                    + ", local length " + values.length + ".");
+        }
+        metrics.add(Metric.BYTES_RECEIVED, chunk.getValues().length * 8L);
+        return chunk;
+    }
+
+    /**
+     * Begin index of chunk in values, chunk index n is the end of values.
+     */
+    private int chunkBegin(int length, int index) {
+        return (int) ((long) length * index / this.ringSize);
+    }
+
+    private static int mod(int value, int n) {
+        return ((value % n) + n) % n;
+    }
+
+    @Override
+    public void postApplication(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        try {
+            if(this.nextChannel != null) {
+                this.nextChannel.close().awaitUninterruptibly();
+                this.ringClient.releaseExternalResources();
+            }
+            if(this.ringServer != null) {
+                this.ringServerChannel.close().awaitUninterruptibly();
+                this.ringServer.releaseExternalResources();
+            }
+        } finally {
+            super.postApplication(context);
+        }
+    }
+
+    public int getRingSize() {
+        return ringSize;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.Shardable;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link ShardedWorkerCoordinator} is the worker coordinator in sharded parameter-server mode, see
+ * {@link ml.shifu.guagua.master.ShardedMasterCoordinator}.
+ * 
+ * <p>
+ * One {@link NettyWorkerCoordinator} is created for each master shard with its own {@link WorkerContext}. In each
+ * iteration {@link Shardable} worker result is split into slices by {@link Shardable#getShard(int, int)}, slices are
+ * sent to master shards in parallel, and then master result slices of all shards are merged by
+ * {@link Shardable#mergeShards(List)} into {@link WorkerContext#getLastMasterResult()} for next iteration. So traffic
+ * and memory of each master are only about its own range of model.
+ * 
+ * <p>
+ * Data re-partitioning is not supported in this mode.
+ */
+public class ShardedWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> extends
+        AbstractWorkerCoordinator<MASTER_RESULT, WORKER_RESULT> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ShardedWorkerCoordinator.class);
+
+    /**
+     * Number of master shards.
+     */
+    private int shards;
+
+    /**
+     * Coordinator of each shard.
+     */
+    private List<ShardWorkerCoordinator<MASTER_RESULT, WORKER_RESULT>> coordinators;
+
+    /**
+     * Context of each shard, worker result and master result in it are slices of that shard.
+     */
+    private List<WorkerContext<MASTER_RESULT, WORKER_RESULT>> contexts;
+
+    /**
+     * Executor to communicate with all shards in parallel.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Command run for each shard.
+     */
+    private static interface ShardCommand {
+
+        void run(int shard);
+    }
+
+    @Override
+    public void preApplication(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        this.shards = NumberFormatUtils.getInt(context.getProps().getProperty(GuaguaConstants.GUAGUA_MASTER_NUMBER),
+                GuaguaConstants.DEFAULT_MASTER_NUMBER);
+        this.coordinators = new ArrayList<ShardWorkerCoordinator<MASTER_RESULT, WORKER_RESULT>>(this.shards);
+        this.contexts = new ArrayList<WorkerContext<MASTER_RESULT, WORKER_RESULT>>(this.shards);
+        for(int i = 0; i < this.shards; i++) {
+            ShardWorkerCoordinator<MASTER_RESULT, WORKER_RESULT> coordinator = new ShardWorkerCoordinator<MASTER_RESULT, WORKER_RESULT>(
+                    i);
+            coordinator.setMasterSerializer(getMasterSerializer());
+            coordinator.setWorkerSerializer(getWorkerSerializer());
+            this.coordinators.add(coordinator);
+            WorkerContext<MASTER_RESULT, WORKER_RESULT> shardContext = new WorkerContext<MASTER_RESULT, WORKER_RESULT>(
+                    context.getTotalIteration(), context.getAppId(), context.getProps(), context.getContainerId(),
+                    context.getFileSplits(), context.getMasterResultClassName(), context.getWorkerResultClassName());
+            shardContext.setMetrics(context.getMetrics());
+            shardContext.setCurrentIteration(context.getCurrentIteration());
+            this.contexts.add(shardContext);
+        }
+        this.executor = Executors.newFixedThreadPool(this.shards, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "guagua-shard-worker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        LOG.info("Worker {} is started with {} master shards.", context.getContainerId(), this.shards);
+
+        runShards(new ShardCommand() {
+            @Override
+            public void run(int shard) {
+                getCoordinator(shard).preApplication(getContext(shard));
+            }
+        });
+        // iteration and master result slices are recovered in each shard if it is a fail-over worker
+        context.setCurrentIteration(getContext(0).getCurrentIteration());
+        mergeMasterResult(context);
+    }
+
+    @Override
+    public void preIteration(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        syncIteration(context);
+        runShards(new ShardCommand() {
+            @Override
+            public void run(int shard) {
+                getCoordinator(shard).preIteration(getContext(shard));
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void postIteration(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        WORKER_RESULT workerResult = context.getWorkerResult();
+        if(!(workerResult instanceof Shardable)) {
+            throw new GuaguaRuntimeException("Worker result " + workerResult
+                    + " should implement Shardable in sharded mode.");
+        }
+        syncIteration(context);
+        for(int i = 0; i < this.shards; i++) {
+            getContext(i).setWorkerResult(((Shardable<WORKER_RESULT>) workerResult).getShard(i, this.shards));
+        }
+        runShards(new ShardCommand() {
+            @Override
+            public void run(int shard) {
+                getCoordinator(shard).postIteration(getContext(shard));
+            }
+        });
+        context.setCurrentIteration(getContext(0).getCurrentIteration());
+        mergeMasterResult(context);
+    }
+
+    @Override
+    public void postApplication(final WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        try {
+            syncIteration(context);
+            runShards(new ShardCommand() {
+                @Override
+                public void run(int shard) {
+                    getCoordinator(shard).postApplication(getContext(shard));
+                }
+            });
+        } finally {
+            this.executor.shutdownNow();
+        }
+    }
+
+    private void syncIteration(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        for(WorkerContext<MASTER_RESULT, WORKER_RESULT> shardContext: this.contexts) {
+            shardContext.setCurrentIteration(context.getCurrentIteration());
+        }
+    }
+
+    /**
+     * Merge master result slices into context, nothing is done if any slice is not available.
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeMasterResult(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        List<MASTER_RESULT> slices = new ArrayList<MASTER_RESULT>(this.shards);
+        for(WorkerContext<MASTER_RESULT, WORKER_RESULT> shardContext: this.contexts) {
+            MASTER_RESULT slice = shardContext.getLastMasterResult();
+            if(slice == null) {
+                return;
+            }
+            if(!(slice instanceof Shardable)) {
+                throw new GuaguaRuntimeException("Master result " + slice
+                        + " should implement Shardable in sharded mode.");
+            }
+            slices.add(slice);
+        }
+        context.setLastMasterResult(((Shardable<MASTER_RESULT>) slices.get(0)).mergeShards(slices));
+    }
+
+    /**
+     * Run command for all shards in parallel and wait for all of them.
+     */
+    private void runShards(final ShardCommand command) {
+        List<Future<?>> futures = new ArrayList<Future<?>>(this.shards);
+        for(int i = 0; i < this.shards; i++) {
+            final int shard = i;
+            futures.add(this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    command.run(shard);
+                }
+            }));
+        }
+        for(Future<?> future: futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GuaguaRuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(cause instanceof GuaguaRuntimeException) {
+                    throw (GuaguaRuntimeException) cause;
+                } else {
+                    throw new GuaguaRuntimeException(cause);
+                }
+            }
+        }
+    }
+
+    private ShardWorkerCoordinator<MASTER_RESULT, WORKER_RESULT> getCoordinator(int shard) {
+        return this.coordinators.get(shard);
+    }
+
+    private WorkerContext<MASTER_RESULT, WORKER_RESULT> getContext(int shard) {
+        return this.contexts.get(shard);
+    }
+
+    /**
+     * Netty worker coordinator bound to znodes and Netty server of one master shard.
+     */
+    private static class ShardWorkerCoordinator<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> extends
+            NettyWorkerCoordinator<MASTER_RESULT, WORKER_RESULT> {
+
+        private final int shard;
+
+        public ShardWorkerCoordinator(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        protected StringBuilder getMasterBaseNode(final String appId) {
+            return getMasterShardBaseNode(appId, this.shard);
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.util.Arrays;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.Sparsifiable;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SparsifyWorkerInterceptor} is used to only send top-k or threshold-exceeding entries of {@link Sparsifiable}
+ * worker result to master, which can decrease worker to master traffic of wide dense gradients a lot.
+ * 
+ * <p>
+ * Entries not sent are kept as residual in worker and added back to worker result in next iteration (error feedback),
+ * so small gradients are accumulated until they are large enough to be sent. Master decodes results into dense arrays,
+ * so {@link ml.shifu.guagua.master.MasterComputable} needn't be changed.
+ * 
+ * <p>
+ * {@link SparsifyWorkerInterceptor} should be set as customized interceptor by
+ * {@link GuaguaConstants#GUAGUA_WORKER_INTERCEPTERS}, whose postIteration is called before worker coordinator sends
+ * worker result. Ratio of entries sent is reported per iteration by {@link Metric#SPARSIFY_DENSE} and
+ * {@link Metric#SPARSIFY_SENT}.
+ * 
+ * @param <MASTER_RESULT>
+ *            master computation result in each iteration.
+ * @param <WORKER_RESULT>
+ *            worker computation result in each iteration.
+ */
+public class SparsifyWorkerInterceptor<MASTER_RESULT extends Bytable, WORKER_RESULT extends Bytable> extends
+        BasicWorkerInterceptor<MASTER_RESULT, WORKER_RESULT> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SparsifyWorkerInterceptor.class);
+
+    /**
+     * Fraction of entries sent in top-k mode.
+     */
+    private double ratio;
+
+    /**
+     * Absolute value threshold of entries sent, top-k mode is used if it is not positive.
+     */
+    private double threshold;
+
+    /**
+     * Entries not sent in last iterations which are added back to worker result.
+     */
+    private double[] residual;
+
+    @Override
+    public void preApplication(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        this.ratio = NumberFormatUtils.getDouble(context.getProps().getProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO),
+                GuaguaConstants.GUAGUA_DEFAULT_SPARSIFY_RATIO);
+        this.threshold = NumberFormatUtils.getDouble(
+                context.getProps().getProperty(GuaguaConstants.GUAGUA_SPARSIFY_THRESHOLD), 0d);
+        if(this.threshold <= 0d && (this.ratio <= 0d || this.ratio > 1d)) {
+            throw new IllegalArgumentException("Sparsify ratio should be in (0, 1], but is " + this.ratio);
+        }
+        LOG.info("Worker result is sparsified with ratio {} and threshold {}.", this.ratio, this.threshold);
+    }
+
+    @Override
+    public void postIteration(WorkerContext<MASTER_RESULT, WORKER_RESULT> context) {
+        WORKER_RESULT workerResult = context.getWorkerResult();
+        if(!(workerResult instanceof Sparsifiable)) {
+            return;
+        }
+        Sparsifiable sparsifiable = (Sparsifiable) workerResult;
+        double[] values = sparsifiable.getSparsifyValues();
+        if(values == null || values.length == 0) {
+            return;
+        }
+        if(this.residual == null || this.residual.length != values.length) {
+            this.residual = new double[values.length];
+        }
+        for(int i = 0; i < values.length; i++) {
+            values[i] += this.residual[i];
+        }
+
+        double minAbs = this.threshold > 0d ? this.threshold : getTopKThreshold(values);
+        int limit = this.threshold > 0d ? values.length : getTopK(values.length);
+        int sent = 0;
+        for(int i = 0; i < values.length; i++) {
+            if(values[i] != 0d && Math.abs(values[i]) >= minAbs && sent < limit) {
+                this.residual[i] = 0d;
+                sent += 1;
+            } else {
+                this.residual[i] = values[i];
+                values[i] = 0d;
+            }
+        }
+        sparsifiable.setSparse(true);
+
+        context.getMetrics().add(Metric.SPARSIFY_DENSE, values.length);
+        context.getMetrics().add(Metric.SPARSIFY_SENT, sent);
+        LOG.info("Application {} container {} iteration {} sends {} of {} entries, ratio {}.", context.getAppId(),
+                context.getContainerId(), context.getCurrentIteration(), sent, values.length, sent
+                        / (double) values.length);
+    }
+
+    private int getTopK(int length) {
+        return Math.max(1, Math.min(length, (int) Math.ceil(length * this.ratio)));
+    }
+
+    /**
+     * Minimal absolute value of top-k entries.
+     */
+    private double getTopKThreshold(double[] values) {
+        double[] abs = new double[values.length];
+        for(int i = 0; i < values.length; i++) {
+            abs[i] = Math.abs(values[i]);
+        }
+        Arrays.sort(abs);
+        return abs[abs.length - getTopK(abs.length)];
+    }
+
+}
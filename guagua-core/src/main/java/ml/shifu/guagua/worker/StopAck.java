@@ -0,0 +1,59 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StopAck} is the worker side of stop handshake: after stop message is sent, worker waits until master sends it
+ * back as acknowledgement, channel to master is disconnected or timeout.
+ *
+ * <p>
+ * Master doesn't acknowledge a stop message it doesn't accept, in which case worker waits until timeout.
+ */
+class StopAck {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    private volatile boolean isAcknowledged = false;
+
+    /**
+     * Stop message is sent back by master.
+     */
+    void acknowledge() {
+        this.isAcknowledged = true;
+        this.latch.countDown();
+    }
+
+    /**
+     * Channel to master is disconnected, no ack will be received.
+     */
+    void disconnect() {
+        this.latch.countDown();
+    }
+
+    /**
+     * Wait for ack or disconnection at most timeout in milliseconds.
+     *
+     * @return true only if stop message is acknowledged
+     */
+    boolean await(long timeout) throws InterruptedException {
+        this.latch.await(timeout, TimeUnit.MILLISECONDS);
+        return this.isAcknowledged;
+    }
+
+}
@@ -23,6 +23,7 @@ import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.metrics.MetricsRegistry;
 
 /**
  * {@link WorkerContext} is a context to contain all useful info which can be used in worker computation.
@@ -106,6 +107,12 @@ public class WorkerContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
      */
     private Object attachment;
 
+    /**
+     * Metrics registry of current container, {@link WorkerComputable} and {@link WorkerInterceptor} can record their own
+     * metrics into it.
+     */
+    private MetricsRegistry metrics;
+
     /**
      * Call back list
      * 
@@ -184,6 +191,14 @@ public class WorkerContext<MASTER_RESULT extends Bytable, WORKER_RESULT extends
         this.attachment = attachment;
     }
 
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Whether is in first iteration, default first iteration is 1.
      */
@@ -0,0 +1,78 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ResultChunkTest} checks bytes and values chunks are written and read back.
+ */
+public class ResultChunkTest {
+
+    @Test
+    public void testBytesChunk() throws IOException {
+        ResultChunk chunk = new ResultChunk(3, "worker-1", 2, 8, 20, new byte[] { 1, 2, 3, 4 }, null);
+        Assert.assertEquals(4, chunk.getPayloadSize());
+
+        ResultChunk read = roundTrip(chunk);
+        Assert.assertEquals(3, read.getCurrentIteration());
+        Assert.assertEquals("worker-1", read.getContainerId());
+        Assert.assertEquals(2, read.getSequence());
+        Assert.assertEquals(8, read.getOffset());
+        Assert.assertEquals(20, read.getTotalLength());
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3, 4 }, read.getBytes());
+        Assert.assertNull(read.getValues());
+    }
+
+    @Test
+    public void testValuesChunk() throws IOException {
+        ResultChunk chunk = new ResultChunk(1, "worker-2", 0, 0, 3, null, new double[] { 1.5d, -2d, 0d });
+        Assert.assertEquals(24, chunk.getPayloadSize());
+
+        ResultChunk read = roundTrip(chunk);
+        Assert.assertEquals("worker-2", read.getContainerId());
+        Assert.assertEquals(3, read.getTotalLength());
+        Assert.assertArrayEquals(new double[] { 1.5d, -2d, 0d }, read.getValues(), 0d);
+        Assert.assertNull(read.getBytes());
+    }
+
+    @Test
+    public void testReuseChunk() throws IOException {
+        // fields of former chunk are not kept when a chunk instance is read again
+        ResultChunk read = roundTrip(new ResultChunk(1, "worker-1", 0, 0, 1, null, new double[] { 1d }));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new ResultChunk(1, "worker-1", 1, 1, 2, new byte[] { 5 }, null).write(new DataOutputStream(bytes));
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertNull(read.getValues());
+        Assert.assertArrayEquals(new byte[] { 5 }, read.getBytes());
+    }
+
+    private static ResultChunk roundTrip(ResultChunk chunk) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        chunk.write(new DataOutputStream(bytes));
+        ResultChunk read = new ResultChunk();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return read;
+    }
+
+}
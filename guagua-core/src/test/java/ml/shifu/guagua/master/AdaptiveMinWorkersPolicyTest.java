@@ -0,0 +1,67 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.Bytable;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link AdaptiveMinWorkersPolicyTest} checks min workers timeout adjustment of {@link AdaptiveMinWorkersPolicy}.
+ */
+public class AdaptiveMinWorkersPolicyTest {
+
+    @Test
+    public void testDetectionDisabledByDefault() {
+        Assert.assertFalse(StragglerDetector.isEnabled(new Properties()));
+    }
+
+    @Test
+    public void testTimeoutAdjusted() {
+        Properties props = new Properties();
+        MasterContext<?, ?> context = newContext(props, 5000L);
+        AdaptiveMinWorkersPolicy policy = new AdaptiveMinWorkersPolicy();
+        policy.init(props);
+
+        policy.onReport(context, new StragglerReport(1, 20, 3000L, 4000L));
+        Assert.assertEquals(6000L, context.getMinWorkersTimeOut());
+        // not lower than 1s
+        policy.onReport(context, new StragglerReport(2, 20, 100L, 200L));
+        Assert.assertEquals(1000L, context.getMinWorkersTimeOut());
+    }
+
+    @Test
+    public void testConfiguredTimeoutRespected() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_MIN_WORKERS_TIMEOUT, "5000");
+        MasterContext<?, ?> context = newContext(props, 5000L);
+        AdaptiveMinWorkersPolicy policy = new AdaptiveMinWorkersPolicy();
+        policy.init(props);
+
+        policy.onReport(context, new StragglerReport(1, 20, 3000L, 4000L));
+        Assert.assertEquals(5000L, context.getMinWorkersTimeOut());
+        Assert.assertEquals(1d, context.getMinWorkersRatio(), 0d);
+    }
+
+    private static MasterContext<?, ?> newContext(Properties props, long minWorkersTimeOut) {
+        return new MasterContext<Bytable, Bytable>(10, 20, props, "app", "master", null, null, 1d, minWorkersTimeOut);
+    }
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelState;
+import org.jboss.netty.channel.UpstreamChannelStateEvent;
+import org.jboss.netty.channel.UpstreamMessageEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link AdmissionControlHandlerTest} checks frames are charged when their length fields are read, released after
+ * handled, and channels with frames over budget are suspended and resumed in order.
+ */
+public class AdmissionControlHandlerTest {
+
+    @Test
+    public void testChargeAtFrameStart() throws Exception {
+        AdmissionControlHandler handler = new AdmissionControlHandler(1000L);
+        MockChannel channel = new MockChannel();
+
+        // whole frame of 4 + 100 bytes is charged once length field is read
+        handler.messageReceived(channel.context, channel.message(frameHeader(100)));
+        Assert.assertEquals(104L, handler.getInFlight());
+        handler.messageReceived(channel.context, channel.message(ChannelBuffers.wrappedBuffer(new byte[60])));
+        Assert.assertEquals(104L, handler.getInFlight());
+
+        // released when frame is completed and handled, next frame in the same read is charged
+        ChannelBuffer rest = ChannelBuffers.wrappedBuffer(ChannelBuffers.wrappedBuffer(new byte[40]), frameHeader(10));
+        handler.messageReceived(channel.context, channel.message(rest));
+        Assert.assertEquals(14L, handler.getInFlight());
+        Assert.assertTrue(channel.isReadable);
+        Assert.assertEquals(3, channel.forwarded.size());
+    }
+
+    @Test
+    public void testSuspendNewFrameOverBudget() throws Exception {
+        AdmissionControlHandler handler = new AdmissionControlHandler(200L);
+        MockChannel first = new MockChannel();
+        MockChannel second = new MockChannel();
+        MockChannel third = new MockChannel();
+
+        handler.messageReceived(first.context, first.message(frameHeader(150)));
+        Assert.assertEquals(154L, handler.getInFlight());
+        Assert.assertTrue(first.isReadable);
+
+        // frames which cannot be admitted are not charged and their channels are suspended
+        handler.messageReceived(second.context, second.message(frameHeader(100)));
+        handler.messageReceived(third.context, third.message(frameHeader(10)));
+        Assert.assertEquals(154L, handler.getInFlight());
+        Assert.assertFalse(second.isReadable);
+        Assert.assertFalse(third.isReadable);
+
+        // admitted frame is never suspended; after it completes, waiting frames are admitted in order
+        handler.messageReceived(first.context, first.message(ChannelBuffers.wrappedBuffer(new byte[150])));
+        Assert.assertEquals(118L, handler.getInFlight());
+        Assert.assertTrue(first.isReadable);
+        Assert.assertTrue(second.isReadable);
+        Assert.assertTrue(third.isReadable);
+
+        handler.messageReceived(second.context, second.message(ChannelBuffers.wrappedBuffer(new byte[100])));
+        handler.messageReceived(third.context, third.message(ChannelBuffers.wrappedBuffer(new byte[10])));
+        Assert.assertEquals(0L, handler.getInFlight());
+    }
+
+    @Test
+    public void testFrameLargerThanBudget() throws Exception {
+        AdmissionControlHandler handler = new AdmissionControlHandler(10L);
+        MockChannel channel = new MockChannel();
+
+        // admitted if nothing in flight so it is not blocked forever
+        handler.messageReceived(channel.context, channel.message(frameHeader(100)));
+        Assert.assertEquals(104L, handler.getInFlight());
+        Assert.assertTrue(channel.isReadable);
+        handler.messageReceived(channel.context, channel.message(ChannelBuffers.wrappedBuffer(new byte[100])));
+        Assert.assertEquals(0L, handler.getInFlight());
+    }
+
+    @Test
+    public void testReleaseOnClose() throws Exception {
+        AdmissionControlHandler handler = new AdmissionControlHandler(100L);
+        MockChannel first = new MockChannel();
+        MockChannel second = new MockChannel();
+
+        handler.messageReceived(first.context, first.message(frameHeader(80)));
+        handler.messageReceived(second.context, second.message(frameHeader(80)));
+        Assert.assertFalse(second.isReadable);
+
+        // unfinished frame of closed channel is released and suspended channel is resumed
+        handler.channelClosed(first.context, new UpstreamChannelStateEvent(first.channel, ChannelState.OPEN,
+                Boolean.FALSE));
+        Assert.assertEquals(84L, handler.getInFlight());
+        Assert.assertTrue(second.isReadable);
+    }
+
+    private static ChannelBuffer frameHeader(int length) {
+        ChannelBuffer buffer = ChannelBuffers.buffer(4);
+        buffer.writeInt(length);
+        return buffer;
+    }
+
+    /**
+     * Channel and its handler context built by dynamic proxies, only readable flag, attachment and forwarded events
+     * are kept.
+     */
+    private static class MockChannel {
+
+        private boolean isReadable = true;
+
+        private Object attachment;
+
+        private final List<ChannelEvent> forwarded = new ArrayList<ChannelEvent>();
+
+        private final Channel channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(),
+                new Class<?>[] { Channel.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if("setReadable".equals(name)) {
+                            MockChannel.this.isReadable = (Boolean) args[0];
+                            return null;
+                        } else if("isReadable".equals(name)) {
+                            return MockChannel.this.isReadable;
+                        } else if("isOpen".equals(name)) {
+                            return true;
+                        } else if("getRemoteAddress".equals(name)) {
+                            return null;
+                        } else if("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        } else if("equals".equals(name)) {
+                            return proxy == args[0];
+                        } else if("toString".equals(name)) {
+                            return "MockChannel";
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+
+        private final ChannelHandlerContext context = (ChannelHandlerContext) Proxy.newProxyInstance(
+                ChannelHandlerContext.class.getClassLoader(), new Class<?>[] { ChannelHandlerContext.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String name = method.getName();
+                        if("getChannel".equals(name)) {
+                            return MockChannel.this.channel;
+                        } else if("getAttachment".equals(name)) {
+                            return MockChannel.this.attachment;
+                        } else if("setAttachment".equals(name)) {
+                            MockChannel.this.attachment = args[0];
+                            return null;
+                        } else if("sendUpstream".equals(name)) {
+                            MockChannel.this.forwarded.add((ChannelEvent) args[0]);
+                            return null;
+                        } else if("hashCode".equals(name)) {
+                            return System.identityHashCode(proxy);
+                        } else if("equals".equals(name)) {
+                            return proxy == args[0];
+                        }
+                        throw new UnsupportedOperationException(name);
+                    }
+                });
+
+        UpstreamMessageEvent message(ChannelBuffer buffer) {
+            return new UpstreamMessageEvent(this.channel, buffer, null);
+        }
+    }
+
+}
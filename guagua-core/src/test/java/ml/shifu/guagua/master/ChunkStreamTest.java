@@ -0,0 +1,142 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.ResultChunk;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ChunkStreamTest} checks {@link ResultChunk}s split like worker does are assembled back by
+ * {@link ChunkStream}, and broken streams are not completed.
+ */
+public class ChunkStreamTest {
+
+    @Test
+    public void testBytesAssembled() throws IOException {
+        byte[] bytes = newBytes(1000);
+        for(int chunkSize: new int[] { 1, 7, 100, 999, 1000, 4096 }) {
+            List<ResultChunk> chunks = split(bytes, null, chunkSize);
+            ChunkStream stream = new ChunkStream();
+            for(ResultChunk chunk: chunks) {
+                Assert.assertTrue(stream.add(chunk));
+            }
+            Assert.assertTrue(stream.isComplete(chunks.size()));
+            Assert.assertFalse(stream.isValues());
+            Assert.assertEquals(bytes.length, stream.getTotalLength());
+            Assert.assertArrayEquals(bytes, stream.toBytes());
+            Assert.assertArrayEquals(bytes, readAll(stream.toInputStream()));
+        }
+    }
+
+    @Test
+    public void testValuesSummed() {
+        double[] values1 = new double[] { 1d, 2d, 3d, 4d, 5d };
+        double[] values2 = new double[] { 0.5d, -1d, 0d, 2d, 10d };
+        double[] sum = new double[values1.length];
+        for(double[] values: new double[][] { values1, values2 }) {
+            List<ResultChunk> chunks = split(null, values, 16);
+            Assert.assertEquals(3, chunks.size());
+            ChunkStream stream = new ChunkStream();
+            for(ResultChunk chunk: chunks) {
+                Assert.assertTrue(stream.add(chunk));
+            }
+            Assert.assertTrue(stream.isComplete(chunks.size()));
+            Assert.assertTrue(stream.isValues());
+            stream.sumValuesTo(sum);
+        }
+        Assert.assertArrayEquals(new double[] { 1.5d, 1d, 3d, 6d, 15d }, sum, 0d);
+    }
+
+    @Test(expected = GuaguaRuntimeException.class)
+    public void testValuesLengthNotConsistent() {
+        ChunkStream stream = new ChunkStream();
+        for(ResultChunk chunk: split(null, new double[] { 1d, 2d }, 8)) {
+            stream.add(chunk);
+        }
+        stream.sumValuesTo(new double[3]);
+    }
+
+    @Test
+    public void testOutOfSequence() {
+        List<ResultChunk> chunks = split(newBytes(30), null, 10);
+        ChunkStream stream = new ChunkStream();
+        Assert.assertTrue(stream.add(chunks.get(0)));
+        Assert.assertFalse(stream.add(chunks.get(2)));
+        // stream stays broken even if the lost chunk is received late
+        Assert.assertFalse(stream.add(chunks.get(1)));
+        Assert.assertFalse(stream.isComplete(chunks.size()));
+    }
+
+    @Test
+    public void testLostLastChunk() {
+        List<ResultChunk> chunks = split(newBytes(30), null, 10);
+        ChunkStream stream = new ChunkStream();
+        Assert.assertTrue(stream.add(chunks.get(0)));
+        Assert.assertTrue(stream.add(chunks.get(1)));
+        Assert.assertFalse(stream.isComplete(chunks.size()));
+        Assert.assertFalse(new ChunkStream().isComplete(0));
+    }
+
+    private static byte[] newBytes(int length) {
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    /**
+     * Split bytes or values into chunks in the same way as worker coordinator.
+     */
+    private static List<ResultChunk> split(byte[] bytes, double[] values, int chunkSize) {
+        List<ResultChunk> chunks = new ArrayList<ResultChunk>();
+        int length = values != null ? values.length : bytes.length;
+        int step = values != null ? Math.max(1, chunkSize / 8) : chunkSize;
+        for(int offset = 0; offset < length; offset += step) {
+            int size = Math.min(step, length - offset);
+            if(values != null) {
+                double[] slice = new double[size];
+                System.arraycopy(values, offset, slice, 0, size);
+                chunks.add(new ResultChunk(1, "worker-1", chunks.size(), offset, length, null, slice));
+            } else {
+                byte[] slice = new byte[size];
+                System.arraycopy(bytes, offset, slice, 0, size);
+                chunks.add(new ResultChunk(1, "worker-1", chunks.size(), offset, length, slice, null));
+            }
+        }
+        return chunks;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        int read;
+        while((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.netty.channel.Channel;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link DeadWorkerCheckTest} checks heartbeat timeout and early barrier release of {@link NettyMasterCoordinator}.
+ */
+public class DeadWorkerCheckTest {
+
+    @Test
+    public void testTimeoutComparedWithLatestActivity() {
+        Map<String, Long> activities = new HashMap<String, Long>();
+        Map<String, Channel> channels = new HashMap<String, Channel>();
+        // all activities are old compared with current time as if master paused by a long GC, but only worker 1 is
+        // behind the latest activity by more than timeout
+        register(activities, channels, "1", 1000L, true);
+        register(activities, channels, "2", 5000L, true);
+        register(activities, channels, "3", 4500L, true);
+
+        List<String> timedOut = NettyMasterCoordinator.getTimedOutWorkers(activities, channels, 1000L);
+        Assert.assertEquals(Arrays.asList("1"), timedOut);
+        Assert.assertTrue(NettyMasterCoordinator.getTimedOutWorkers(activities, channels, 4000L).isEmpty());
+    }
+
+    @Test
+    public void testSuspendedChannelSkipped() {
+        Map<String, Long> activities = new HashMap<String, Long>();
+        Map<String, Channel> channels = new HashMap<String, Channel>();
+        // reading of worker 1 is suspended by admission control so its heartbeats are not read
+        register(activities, channels, "1", 1000L, false);
+        register(activities, channels, "2", 5000L, true);
+        // worker 3 only has bytes read without heartbeat channel
+        activities.put("3", 1000L);
+
+        Assert.assertTrue(NettyMasterCoordinator.getTimedOutWorkers(activities, channels, 1000L).isEmpty());
+    }
+
+    @Test
+    public void testTimeoutDisabled() {
+        Map<String, Long> activities = new HashMap<String, Long>();
+        Map<String, Channel> channels = new HashMap<String, Channel>();
+        register(activities, channels, "1", 1000L, true);
+        register(activities, channels, "2", 5000L, true);
+
+        Assert.assertTrue(NettyMasterCoordinator.getTimedOutWorkers(activities, channels, 0L).isEmpty());
+        Assert.assertTrue(NettyMasterCoordinator.getTimedOutWorkers(Collections.<String, Long> emptyMap(), channels,
+                1000L).isEmpty());
+    }
+
+    @Test
+    public void testReleaseWithDeadWorkers() {
+        // all workers are done or dead and done workers are enough
+        Assert.assertTrue(NettyMasterCoordinator.canReleaseWithDeadWorkers(8, 2, 10, 0.8d));
+        // no dead worker, released only by min workers ratio and timeout
+        Assert.assertFalse(NettyMasterCoordinator.canReleaseWithDeadWorkers(9, 0, 10, 0.8d));
+        // one worker is neither done nor dead
+        Assert.assertFalse(NettyMasterCoordinator.canReleaseWithDeadWorkers(7, 2, 10, 0.5d));
+        // not enough done workers by min workers ratio
+        Assert.assertFalse(NettyMasterCoordinator.canReleaseWithDeadWorkers(7, 3, 10, 0.8d));
+        Assert.assertTrue(NettyMasterCoordinator.canReleaseWithDeadWorkers(7, 3, 10, 0.7d));
+    }
+
+    private static void register(Map<String, Long> activities, Map<String, Channel> channels, String containerId,
+            long time, boolean readable) {
+        activities.put(containerId, time);
+        channels.put(containerId, channel(readable));
+    }
+
+    private static Channel channel(final boolean readable) {
+        return (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if("isReadable".equals(method.getName())) {
+                            return readable;
+                        }
+                        if("hashCode".equals(method.getName())) {
+                            return System.identityHashCode(proxy);
+                        }
+                        if("equals".equals(method.getName())) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                });
+    }
+
+}
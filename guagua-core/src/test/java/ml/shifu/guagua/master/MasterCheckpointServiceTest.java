@@ -0,0 +1,159 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.LocalCheckpointStorage;
+import ml.shifu.guagua.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link MasterCheckpointServiceTest} writes checkpoints by {@link LocalCheckpointStorage} and reads them back.
+ */
+public class MasterCheckpointServiceTest {
+
+    private File checkpointDir;
+
+    private MasterCheckpointService service;
+
+    @Before
+    public void setUp() {
+        this.checkpointDir = new File(FileUtils.getTempDirectory(), "_guagua_checkpoint_test_" + System.nanoTime());
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_ENABLE, "true");
+        props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_DIR, this.checkpointDir.getPath());
+        props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE, LocalCheckpointStorage.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_INTERVAL, "2");
+        Assert.assertTrue(MasterCheckpointService.isEnabled(props));
+        this.service = new MasterCheckpointService(props, "app");
+    }
+
+    @Test
+    public void testCheckpointIteration() {
+        Assert.assertTrue(this.service.isCheckpointIteration(2));
+        Assert.assertFalse(this.service.isCheckpointIteration(3));
+        Assert.assertTrue(this.service.isCheckpointIteration(4));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        CounterState computable = new CounterState();
+        computable.count = 42L;
+        byte[] state = MasterCheckpointService.snapshotState(computable);
+        byte[] masterResult = new byte[] { 1, 2, 3, 4 };
+
+        String path = submitAndWait(4, masterResult, state);
+        Assert.assertEquals(4, this.service.getLastIteration());
+        Assert.assertFalse(new File(path + ".tmp").exists());
+
+        MasterCheckpointService.Checkpoint checkpoint = this.service.read(path);
+        Assert.assertEquals(4, checkpoint.getIteration());
+        Assert.assertArrayEquals(masterResult, checkpoint.getMasterResult());
+
+        CounterState restored = new CounterState();
+        restored.restoreState(new DataInputStream(new ByteArrayInputStream(checkpoint.getState())));
+        Assert.assertEquals(42L, restored.count);
+    }
+
+    @Test
+    public void testRoundTripWithoutState() throws Exception {
+        Assert.assertNull(MasterCheckpointService.snapshotState(new Object()));
+        String path = submitAndWait(2, new byte[] { 5 }, null);
+
+        MasterCheckpointService.Checkpoint checkpoint = this.service.read(path);
+        Assert.assertEquals(2, checkpoint.getIteration());
+        Assert.assertArrayEquals(new byte[] { 5 }, checkpoint.getMasterResult());
+        Assert.assertNull(checkpoint.getState());
+    }
+
+    @Test
+    public void testOnlyLastCheckpointIsKept() throws Exception {
+        String first = submitAndWait(2, new byte[] { 1 }, null);
+        String second = submitAndWait(4, new byte[] { 2 }, null);
+        // old checkpoint is deleted after the new one is published
+        for(int i = 0; i < 100 && new File(first).exists(); i++) {
+            Thread.sleep(10L);
+        }
+        Assert.assertFalse(new File(first).exists());
+        Assert.assertTrue(new File(second).exists());
+        Assert.assertNull(this.service.read(first));
+        Assert.assertArrayEquals(new byte[] { 2 }, this.service.read(second).getMasterResult());
+
+        this.service.close(1000L);
+        this.service.cleanup();
+        Assert.assertFalse(new File(second).exists());
+    }
+
+    private String submitAndWait(int iteration, byte[] masterResult, byte[] state) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final String[] published = new String[1];
+        MasterCheckpointService.Callback callback = new MasterCheckpointService.Callback() {
+            @Override
+            public void onCheckpoint(int iteration, String path) throws Exception {
+                published[0] = path;
+                latch.countDown();
+            }
+        };
+        // checkpoint is skipped if last writing is still in progress
+        boolean isSubmitted = this.service.submit(iteration, masterResult, state, callback);
+        for(int i = 0; i < 100 && !isSubmitted; i++) {
+            Thread.sleep(10L);
+            isSubmitted = this.service.submit(iteration, masterResult, state, callback);
+        }
+        Assert.assertTrue(isSubmitted);
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for(int i = 0; i < 100 && this.service.getLastIteration() != iteration; i++) {
+            Thread.sleep(10L);
+        }
+        return published[0];
+    }
+
+    @After
+    public void tearDown() {
+        this.service.close(1000L);
+        FileUtils.deleteQuietly(this.checkpointDir);
+    }
+
+    private static class CounterState implements Checkpointable {
+
+        private long count;
+
+        @Override
+        public void saveState(DataOutput out) throws IOException {
+            out.writeLong(this.count);
+        }
+
+        @Override
+        public void restoreState(DataInput in) throws IOException {
+            this.count = in.readLong();
+        }
+    }
+
+}
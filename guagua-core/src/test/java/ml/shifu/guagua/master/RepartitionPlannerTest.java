@@ -0,0 +1,113 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.BytableSerializer;
+import ml.shifu.guagua.io.RepartitionPlan;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.metrics.Metric;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link RepartitionPlannerTest} checks plans made by {@link RepartitionPlanner} on worker metrics.
+ */
+public class RepartitionPlannerTest {
+
+    private RepartitionPlanner planner;
+
+    @Before
+    public void setUp() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_REPARTITION_INTERVAL, "2");
+        this.planner = new RepartitionPlanner(props);
+    }
+
+    @Test
+    public void testSlowWorkerDonatesRecords() {
+        // speed of worker-1 is 0.5 records/ms and worker-2 is 2 records/ms, target records are 400 and 1600
+        report(3, "worker-1", 1000L, 2000L);
+        report(3, "worker-2", 1000L, 500L);
+        RepartitionPlan plan = this.planner.plan(3, 2);
+
+        Assert.assertNotNull(plan);
+        Assert.assertEquals(3, plan.getIteration());
+        Assert.assertEquals(1, plan.getTransfers().size());
+        RepartitionPlan.Transfer transfer = plan.getTransfers().get(0);
+        Assert.assertEquals("worker-1", transfer.getFrom());
+        Assert.assertEquals("worker-2", transfer.getTo());
+        // only half of the difference is moved
+        Assert.assertEquals(300L, transfer.getCount());
+
+        RepartitionPlan copy = new BytableSerializer<RepartitionPlan>().bytesToObject(
+                new BytableSerializer<RepartitionPlan>().objectToBytes(plan), RepartitionPlan.class.getName());
+        Assert.assertEquals(3, copy.getIteration());
+        Assert.assertEquals("worker-1", copy.getTransfers().get(0).getFrom());
+        Assert.assertEquals("worker-2", copy.getTransfers().get(0).getTo());
+        Assert.assertEquals(300L, copy.getTransfers().get(0).getCount());
+    }
+
+    @Test
+    public void testNoPlanForBalancedWorkers() {
+        report(3, "worker-1", 1000L, 1100L);
+        report(3, "worker-2", 1000L, 1000L);
+        Assert.assertNull(this.planner.plan(3, 2));
+    }
+
+    @Test
+    public void testNoPlanBeforeAllWorkersReported() {
+        report(3, "worker-1", 1000L, 2000L);
+        report(3, "worker-2", 1000L, 500L);
+        Assert.assertNull(this.planner.plan(3, 3));
+        // metrics of other iteration are not used
+        Assert.assertNull(this.planner.plan(4, 2));
+    }
+
+    @Test
+    public void testPlanInterval() {
+        report(3, "worker-1", 1000L, 2000L);
+        report(3, "worker-2", 1000L, 500L);
+        Assert.assertNotNull(this.planner.plan(3, 2));
+
+        report(4, "worker-1", 700L, 1400L);
+        report(4, "worker-2", 1300L, 650L);
+        Assert.assertNull(this.planner.plan(4, 2));
+
+        report(5, "worker-1", 700L, 1400L);
+        report(5, "worker-2", 1300L, 650L);
+        Assert.assertNotNull(this.planner.plan(5, 2));
+    }
+
+    @Test
+    public void testNoPlanInFirstIteration() {
+        report(GuaguaConstants.GUAGUA_FIRST_ITERATION, "worker-1", 1000L, 2000L);
+        report(GuaguaConstants.GUAGUA_FIRST_ITERATION, "worker-2", 1000L, 500L);
+        Assert.assertNull(this.planner.plan(GuaguaConstants.GUAGUA_FIRST_ITERATION, 2));
+    }
+
+    private void report(int iteration, String containerId, long records, long computeTime) {
+        IterationMetrics metrics = new IterationMetrics(containerId, iteration);
+        metrics.set(Metric.RECORD_COUNT, records);
+        metrics.set(Metric.COMPUTE, computeTime);
+        this.planner.addWorkerMetrics(metrics);
+    }
+
+}
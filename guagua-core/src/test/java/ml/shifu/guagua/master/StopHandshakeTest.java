@@ -0,0 +1,215 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.master;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.BytableWrapper;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.unit.GuaguaUnitDriver;
+import ml.shifu.guagua.worker.WorkerComputable;
+import ml.shifu.guagua.worker.WorkerContext;
+
+import org.jboss.netty.channel.Channel;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link StopHandshakeTest} checks which stop messages master accepts, and runs {@link GuaguaUnitDriver} in netty
+ * runtime with delayed or lost acks of stop messages.
+ */
+public class StopHandshakeTest {
+
+    private static final int WORKERS = 2;
+
+    private static final AtomicInteger DELAYED_ACKS = new AtomicInteger();
+
+    private static final AtomicInteger LOST_ACKS = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        DELAYED_ACKS.set(0);
+        LOST_ACKS.set(0);
+    }
+
+    @Test
+    public void testStopAccepted() {
+        // unregistered iteration is total iteration + 1
+        Assert.assertTrue(NettyMasterCoordinator.isStopAccepted(11, 10, null));
+        Assert.assertTrue(NettyMasterCoordinator.isStopAccepted(11, 10, new LongResult(1L)));
+
+        HaltResult halt = new HaltResult();
+        halt.setHalt(true);
+        Assert.assertTrue(NettyMasterCoordinator.isStopAccepted(5, 10, halt));
+    }
+
+    @Test
+    public void testStopNotAccepted() {
+        // stop message in the middle of iterations is ignored and not acknowledged
+        Assert.assertFalse(NettyMasterCoordinator.isStopAccepted(5, 10, null));
+        Assert.assertFalse(NettyMasterCoordinator.isStopAccepted(5, 10, new LongResult(1L)));
+        Assert.assertFalse(NettyMasterCoordinator.isStopAccepted(5, 10, new HaltResult()));
+        Assert.assertFalse(NettyMasterCoordinator.isStopAccepted(12, 10, null));
+    }
+
+    @Test
+    public void testDelayedAck() {
+        // workers wait for delayed acks but not until stop ack timeout
+        long elapsed = run(DelayedAckMasterCoordinator.class, 60 * 1000L);
+        Assert.assertEquals(WORKERS, DELAYED_ACKS.get());
+        Assert.assertTrue("elapsed " + elapsed, elapsed < 60 * 1000L);
+    }
+
+    @Test
+    public void testLostAck() {
+        // workers give up at stop ack timeout and application still terminates
+        long elapsed = run(LostAckMasterCoordinator.class, 3000L);
+        Assert.assertEquals(WORKERS, LOST_ACKS.get());
+        Assert.assertTrue("elapsed " + elapsed, elapsed >= 3000L);
+    }
+
+    private static long run(Class<?> masterCoordinatorClass, long stopAckTimeout) {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, SumMaster.class.getName());
+        props.setProperty(GuaguaConstants.WORKER_COMPUTABLE_CLASS, OneWorker.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "2");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS, LongResult.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS, LongResult.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_UNIT_RUNTIME, GuaguaConstants.GUAGUA_UNIT_RUNTIME_NETTY);
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS,
+                GuaguaConstants.GUAGUA_MASTER_DEFAULT_SYSTEM_INTERCEPTERS.replace(
+                        NettyMasterCoordinator.class.getName(), masterCoordinatorClass.getName()));
+        props.setProperty(GuaguaConstants.GUAGUA_NETTY_STOP_ACK_TIMEOUT, stopAckTimeout + "");
+
+        long start = System.nanoTime();
+        new StopAckDriver(props).run();
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Master coordinator sending acks of stop messages after a delay, master is blocked in the delay so acks are sent
+     * before its server is shut down.
+     */
+    public static class DelayedAckMasterCoordinator extends NettyMasterCoordinator<LongResult, LongResult> {
+
+        @Override
+        protected void acknowledgeStop(Channel channel, BytableWrapper stopMessage) {
+            DELAYED_ACKS.incrementAndGet();
+            try {
+                Thread.sleep(500L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.acknowledgeStop(channel, stopMessage);
+        }
+    }
+
+    /**
+     * Master coordinator accepting stop messages without sending acks.
+     */
+    public static class LostAckMasterCoordinator extends NettyMasterCoordinator<LongResult, LongResult> {
+
+        @Override
+        protected void acknowledgeStop(Channel channel, BytableWrapper stopMessage) {
+            LOST_ACKS.incrementAndGet();
+        }
+    }
+
+    public static class SumMaster implements MasterComputable<LongResult, LongResult> {
+
+        @Override
+        public LongResult compute(MasterContext<LongResult, LongResult> context) {
+            long sum = 0L;
+            if(context.getWorkerResults() != null) {
+                for(LongResult result: context.getWorkerResults()) {
+                    if(result != null) {
+                        sum += result.value;
+                    }
+                }
+            }
+            return new LongResult(sum);
+        }
+    }
+
+    public static class OneWorker implements WorkerComputable<LongResult, LongResult> {
+
+        @Override
+        public LongResult compute(WorkerContext<LongResult, LongResult> context) {
+            return new LongResult(1L);
+        }
+    }
+
+    private static class StopAckDriver extends GuaguaUnitDriver<LongResult, LongResult> {
+
+        StopAckDriver(Properties props) {
+            super(props);
+        }
+
+        @Override
+        public List<GuaguaFileSplit[]> generateWorkerSplits(String inputs) {
+            List<GuaguaFileSplit[]> splits = new ArrayList<GuaguaFileSplit[]>();
+            for(int i = 0; i < WORKERS; i++) {
+                splits.add(new GuaguaFileSplit[] { new GuaguaFileSplit("split-" + i, 0L, 0L) });
+            }
+            return splits;
+        }
+    }
+
+    public static class LongResult implements Bytable {
+
+        private long value;
+
+        public LongResult() {
+        }
+
+        public LongResult(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(this.value);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            this.value = in.readLong();
+        }
+    }
+
+    public static class HaltResult extends HaltBytable {
+
+        @Override
+        public void doWrite(DataOutput out) throws IOException {
+        }
+
+        @Override
+        public void doReadFields(DataInput in) throws IOException {
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link HistogramTest} checks statistics and bucket-based percentiles of {@link Histogram}.
+ */
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getMin());
+        Assert.assertEquals(0L, histogram.getMax());
+        Assert.assertEquals(0d, histogram.getMean(), 0d);
+        Assert.assertEquals(0L, histogram.getPercentile(0.5d));
+    }
+
+    @Test
+    public void testStatistics() {
+        Histogram histogram = new Histogram();
+        for(long i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        // negative value is counted as 0
+        histogram.update(-5L);
+        Assert.assertEquals(101L, histogram.getCount());
+        Assert.assertEquals(5050L, histogram.getSum());
+        Assert.assertEquals(0L, histogram.getMin());
+        Assert.assertEquals(100L, histogram.getMax());
+        Assert.assertEquals(5050d / 101, histogram.getMean(), 1e-9);
+    }
+
+    @Test
+    public void testPercentile() {
+        Histogram histogram = new Histogram();
+        for(long i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        // 50th value is in bucket [32, 64), estimated by bucket upper bound
+        Assert.assertEquals(63L, histogram.getPercentile(0.5d));
+        // upper bound of last bucket is capped by max
+        Assert.assertEquals(100L, histogram.getPercentile(0.99d));
+        Assert.assertEquals(100L, histogram.getPercentile(1d));
+        // first value 1 is in bucket [1, 2)
+        Assert.assertEquals(1L, histogram.getPercentile(0.01d));
+
+        histogram.update(0L);
+        Assert.assertEquals(0L, histogram.getPercentile(0.001d));
+        histogram.update(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getPercentile(1d));
+    }
+
+    @Test
+    public void testMergeAndReset() {
+        Histogram first = new Histogram();
+        first.update(3L);
+        first.update(10L);
+        Histogram second = new Histogram();
+        second.update(1L);
+        second.update(1000L);
+
+        first.merge(second);
+        Assert.assertEquals(4L, first.getCount());
+        Assert.assertEquals(1014L, first.getSum());
+        Assert.assertEquals(1L, first.getMin());
+        Assert.assertEquals(1000L, first.getMax());
+        Assert.assertEquals(2L, second.getCount());
+
+        first.merge(new Histogram());
+        Assert.assertEquals(1L, first.getMin());
+        Assert.assertEquals(1000L, first.getMax());
+
+        first.reset();
+        Assert.assertEquals(0L, first.getCount());
+        Assert.assertEquals(0L, first.getSum());
+        first.update(7L);
+        Assert.assertEquals(7L, first.getMin());
+        Assert.assertEquals(7L, first.getMax());
+    }
+
+}
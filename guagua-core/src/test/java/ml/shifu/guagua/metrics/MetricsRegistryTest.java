@@ -0,0 +1,164 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link MetricsRegistryTest} checks per-iteration recording, histograms and reporting of {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testIterations() {
+        MetricsRegistry registry = new MetricsRegistry(new Properties(), "container-1");
+        RecordingReporter reporter = new RecordingReporter();
+        registry.addReporter(reporter);
+        Assert.assertTrue(registry.isEnabled());
+        Assert.assertNull(registry.getLastMetrics());
+
+        registry.startIteration(1);
+        registry.add(Metric.COMPUTE, 10L);
+        registry.add(Metric.COMPUTE, 5L);
+        registry.set(Metric.HEAP_USED, 100L);
+        registry.set(Metric.HEAP_USED, 80L);
+        Assert.assertEquals(15L, registry.get(Metric.COMPUTE));
+        IterationMetrics first = registry.endIteration();
+        Assert.assertEquals("container-1", first.getContainerId());
+        Assert.assertEquals(1, first.getIteration());
+        Assert.assertEquals(15L, first.get(Metric.COMPUTE));
+        Assert.assertEquals(80L, first.get(Metric.HEAP_USED));
+
+        // values are reset in each iteration
+        registry.startIteration(2);
+        Assert.assertEquals(0L, registry.get(Metric.COMPUTE));
+        registry.add(Metric.COMPUTE, 30L);
+        IterationMetrics second = registry.endIteration();
+        Assert.assertEquals(30L, second.get(Metric.COMPUTE));
+        Assert.assertSame(second, registry.getLastMetrics());
+
+        Assert.assertEquals(2, reporter.reported.size());
+        Assert.assertSame(first, reporter.reported.get(0));
+        Histogram compute = registry.getHistogram(Metric.COMPUTE);
+        Assert.assertEquals(2L, compute.getCount());
+        Assert.assertEquals(45L, compute.getSum());
+        Assert.assertEquals(30L, compute.getMax());
+
+        ClusterMetricsSummary summary = new ClusterMetricsSummary(2);
+        summary.add(second);
+        registry.reportSummary(summary);
+        Assert.assertSame(summary, reporter.summary);
+
+        registry.close();
+        Assert.assertTrue(reporter.isClosed);
+    }
+
+    @Test
+    public void testDisabled() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_METRICS_ENABLE, "false");
+        props.setProperty(GuaguaConstants.GUAGUA_METRICS_REPORTERS, RecordingReporter.class.getName());
+        MetricsRegistry registry = new MetricsRegistry(props, "container-1");
+        RecordingReporter reporter = new RecordingReporter();
+        registry.addReporter(reporter);
+        Assert.assertFalse(registry.isEnabled());
+
+        registry.startIteration(1);
+        registry.add(Metric.COMPUTE, 10L);
+        // snapshot is still returned but not reported
+        Assert.assertEquals(10L, registry.endIteration().get(Metric.COMPUTE));
+        registry.reportSummary(new ClusterMetricsSummary(1));
+        Assert.assertTrue(reporter.reported.isEmpty());
+        Assert.assertNull(reporter.summary);
+        Assert.assertEquals(0L, registry.getHistogram(Metric.COMPUTE).getCount());
+    }
+
+    @Test
+    public void testReportersFromProps() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_METRICS_REPORTERS, FailingReporter.class.getName());
+        MetricsRegistry registry = new MetricsRegistry(props, "container-1");
+        RecordingReporter reporter = new RecordingReporter();
+        registry.addReporter(reporter);
+
+        // failure in one reporter doesn't stop others
+        registry.startIteration(1);
+        registry.endIteration();
+        Assert.assertEquals(1, reporter.reported.size());
+    }
+
+    @Test
+    public void testClusterSummary() {
+        IterationMetrics fast = new IterationMetrics("fast", 3);
+        fast.set(Metric.COMPUTE, 10L);
+        IterationMetrics slow = new IterationMetrics("slow", 3);
+        slow.set(Metric.COMPUTE, 30L);
+        ClusterMetricsSummary summary = new ClusterMetricsSummary(3);
+        summary.add(fast);
+        summary.add(slow);
+
+        Assert.assertEquals(2, summary.getWorkers());
+        Assert.assertEquals(10L, summary.getMin(Metric.COMPUTE));
+        Assert.assertEquals(30L, summary.getMax(Metric.COMPUTE));
+        Assert.assertEquals(20d, summary.getMean(Metric.COMPUTE), 0d);
+        Assert.assertEquals("slow", summary.getSlowestContainer());
+    }
+
+    public static class RecordingReporter implements MetricsReporter {
+
+        private final List<IterationMetrics> reported = new ArrayList<IterationMetrics>();
+
+        private ClusterMetricsSummary summary;
+
+        private boolean isClosed;
+
+        @Override
+        public void init(Properties props, String containerId) {
+            // nothing to initialize
+        }
+
+        @Override
+        public void report(IterationMetrics metrics) {
+            this.reported.add(metrics);
+        }
+
+        @Override
+        public void reportSummary(ClusterMetricsSummary summary) {
+            this.summary = summary;
+        }
+
+        @Override
+        public void close() {
+            this.isClosed = true;
+        }
+    }
+
+    public static class FailingReporter extends RecordingReporter {
+
+        @Override
+        public void report(IterationMetrics metrics) {
+            throw new IllegalStateException("failed to report");
+        }
+    }
+
+}
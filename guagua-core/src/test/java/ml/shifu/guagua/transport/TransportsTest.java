@@ -0,0 +1,152 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.transport;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaConstants;
+
+import org.jboss.netty.bootstrap.ClientBootstrap;
+import org.jboss.netty.bootstrap.ServerBootstrap;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.ChannelBuffers;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.ChannelPipeline;
+import org.jboss.netty.channel.ChannelPipelineFactory;
+import org.jboss.netty.channel.Channels;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link TransportsTest} checks custom {@link Transport} set by {@link GuaguaConstants#GUAGUA_NETTY_TRANSPORT} builds
+ * working server and client, and default socket options of {@link NioTransport}.
+ */
+public class TransportsTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    @Test
+    public void testCustomTransport() throws InterruptedException {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_NETTY_TRANSPORT, CountingTransport.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_NETTY_TCP_NODELAY, "true");
+        Transport transport = Transports.newTransport(props);
+        Assert.assertTrue(transport instanceof CountingTransport);
+        CountingTransport counting = (CountingTransport) transport;
+        Assert.assertSame(props, counting.props);
+
+        final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+        ServerBootstrap server = transport.newServerBootstrap("test-server");
+        server.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler() {
+                    @Override
+                    public void messageReceived(ChannelHandlerContext ctx, MessageEvent e) {
+                        received.add(((ChannelBuffer) e.getMessage()).toString(UTF8));
+                    }
+                });
+            }
+        });
+        ClientBootstrap client = transport.newClientBootstrap("test-client");
+        client.setPipelineFactory(new ChannelPipelineFactory() {
+            @Override
+            public ChannelPipeline getPipeline() {
+                return Channels.pipeline(new SimpleChannelUpstreamHandler());
+            }
+        });
+        Assert.assertEquals(1, counting.servers);
+        Assert.assertEquals(1, counting.clients);
+        Assert.assertEquals(Boolean.TRUE, server.getOption("child.tcpNoDelay"));
+        Assert.assertEquals(Boolean.TRUE, client.getOption("tcpNoDelay"));
+
+        Channel serverChannel = server.bind(new InetSocketAddress("127.0.0.1", 0));
+        try {
+            int port = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+            ChannelFuture connect = client.connect(new InetSocketAddress("127.0.0.1", port)).awaitUninterruptibly();
+            Assert.assertTrue(connect.isSuccess());
+            Channel clientChannel = connect.getChannel();
+            clientChannel.write(ChannelBuffers.copiedBuffer("ping", UTF8)).awaitUninterruptibly();
+            Assert.assertEquals("ping", received.poll(10, TimeUnit.SECONDS));
+            clientChannel.close().awaitUninterruptibly();
+        } finally {
+            serverChannel.close().awaitUninterruptibly();
+            client.releaseExternalResources();
+            server.releaseExternalResources();
+        }
+    }
+
+    @Test
+    public void testDefaultSocketOptions() {
+        NioTransport transport = new NioTransport();
+        transport.init(new Properties());
+        ServerBootstrap server = transport.newServerBootstrap("test-server");
+        ClientBootstrap client = transport.newClientBootstrap("test-client");
+        try {
+            // socket defaults are kept
+            Assert.assertNull(server.getOption("child.tcpNoDelay"));
+            Assert.assertNull(server.getOption("child.keepAlive"));
+            Assert.assertNull(client.getOption("tcpNoDelay"));
+            Assert.assertNull(client.getOption("keepAlive"));
+            Assert.assertNull(client.getOption("bufferFactory"));
+        } finally {
+            client.releaseExternalResources();
+            server.releaseExternalResources();
+        }
+    }
+
+    /**
+     * Transport delegating to {@link NioTransport} and counting bootstraps created.
+     */
+    public static class CountingTransport implements Transport {
+
+        private final NioTransport delegate = new NioTransport();
+
+        private Properties props;
+
+        private int servers;
+
+        private int clients;
+
+        @Override
+        public void init(Properties props) {
+            this.props = props;
+            this.delegate.init(props);
+        }
+
+        @Override
+        public ServerBootstrap newServerBootstrap(String name) {
+            this.servers += 1;
+            return this.delegate.newServerBootstrap(name);
+        }
+
+        @Override
+        public ClientBootstrap newClientBootstrap(String name) {
+            this.clients += 1;
+            return this.delegate.newClientBootstrap(name);
+        }
+    }
+
+}
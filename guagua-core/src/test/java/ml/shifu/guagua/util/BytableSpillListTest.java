@@ -0,0 +1,175 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import ml.shifu.guagua.io.Bytable;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link BytableSpillListTest} checks elements over memory threshold are spilled and iterated in append order, and the
+ * list can be cleared and reused after partial iterations.
+ */
+public class BytableSpillListTest {
+
+    private File file;
+
+    private BytableSpillList<LongBytable> list;
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("guagua-spill", ".bin");
+        // three elements in memory, others are spilled through a small queue
+        long maxByteSize = SizeEstimator.estimate(new LongBytable(0L)) * 3;
+        this.list = new BytableSpillList<LongBytable>(maxByteSize, this.file.getAbsolutePath(),
+                LongBytable.class.getName(), 2);
+    }
+
+    @After
+    public void tearDown() {
+        this.list.close();
+        this.file.delete();
+    }
+
+    @Test
+    public void testAppendOverThreshold() {
+        appendRange(0, 10);
+        Assert.assertEquals(10, this.list.size());
+        Assert.assertEquals(3L, this.list.getMemoryCount());
+        Assert.assertEquals(7L, this.list.getDiskCount());
+
+        this.list.switchState();
+        Assert.assertTrue(this.file.length() > 0L);
+    }
+
+    @Test
+    public void testIterateInAppendOrder() {
+        appendRange(0, 100);
+        this.list.switchState();
+        assertRange(this.list.iterator(), 0, 100);
+        // iterated again from the beginning
+        assertRange(this.list.iterator(), 0, 100);
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        appendRange(0, 100);
+        this.list.switchState();
+        assertRange(this.list.iterator(), 0, 100);
+
+        this.list.clear();
+        Assert.assertEquals(0, this.list.size());
+        appendRange(1000, 1020);
+        Assert.assertEquals(20, this.list.size());
+        Assert.assertEquals(17L, this.list.getDiskCount());
+        this.list.switchState();
+        assertRange(this.list.iterator(), 1000, 1020);
+    }
+
+    @Test
+    public void testCancelMidIteration() {
+        appendRange(0, 1000);
+        this.list.switchState();
+
+        // stop in the middle of spilled elements while reader thread is blocked by the small read-ahead queue
+        Iterator<LongBytable> iterator = this.list.iterator();
+        for(int i = 0; i < 10; i++) {
+            Assert.assertEquals(i, iterator.next().value);
+        }
+        assertRange(this.list.iterator(), 0, 1000);
+
+        iterator = this.list.iterator();
+        for(int i = 0; i < 10; i++) {
+            Assert.assertEquals(i, iterator.next().value);
+        }
+        this.list.clear();
+        appendRange(5000, 5010);
+        this.list.switchState();
+        assertRange(this.list.iterator(), 5000, 5010);
+    }
+
+    @Test
+    public void testReuseOverIterationsThenClose() {
+        // master appends, iterates and clears the same list in each iteration, then closes it after the last one
+        for(int iteration = 0; iteration < 5; iteration++) {
+            long from = iteration * 100L;
+            appendRange(from, from + 50 + iteration);
+            this.list.switchState();
+            assertRange(this.list.iterator(), from, from + 50 + iteration);
+            this.list.clear();
+            Assert.assertEquals(0, this.list.size());
+        }
+        this.list.close();
+        Assert.assertFalse(this.file.exists());
+        // closing twice is a no-op
+        this.list.close();
+    }
+
+    @Test
+    public void testAwaitWritable() {
+        appendRange(0, 1000);
+        // never blocked forever since writer thread drains the queue
+        this.list.awaitWritable();
+        this.list.switchState();
+        assertRange(this.list.iterator(), 0, 1000);
+    }
+
+    private void appendRange(long from, long to) {
+        for(long i = from; i < to; i++) {
+            this.list.append(new LongBytable(i));
+        }
+    }
+
+    private static void assertRange(Iterator<LongBytable> iterator, long from, long to) {
+        for(long i = from; i < to; i++) {
+            Assert.assertTrue(iterator.hasNext());
+            Assert.assertEquals(i, iterator.next().value);
+        }
+        Assert.assertFalse(iterator.hasNext());
+    }
+
+    public static class LongBytable implements Bytable {
+
+        private long value;
+
+        public LongBytable() {
+        }
+
+        public LongBytable(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(this.value);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            this.value = in.readLong();
+        }
+    }
+
+}
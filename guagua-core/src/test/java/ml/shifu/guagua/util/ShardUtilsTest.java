@@ -0,0 +1,96 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ShardUtilsTest} checks shards cover arrays without gaps or overlaps and merge back in order.
+ */
+public class ShardUtilsTest {
+
+    @Test
+    public void testShardBounds() {
+        for(int length: new int[] { 0, 1, 7, 10, 101 }) {
+            for(int shards = 1; shards <= 12; shards++) {
+                Assert.assertEquals(0, ShardUtils.getShardBegin(length, 0, shards));
+                Assert.assertEquals(length, ShardUtils.getShardEnd(length, shards - 1, shards));
+                for(int shard = 0; shard < shards; shard++) {
+                    int begin = ShardUtils.getShardBegin(length, shard, shards);
+                    int end = ShardUtils.getShardEnd(length, shard, shards);
+                    Assert.assertTrue(begin <= end);
+                    // shard sizes differ at most by one
+                    Assert.assertTrue(end - begin <= length / shards + 1);
+                    Assert.assertTrue(end - begin >= length / shards);
+                    if(shard > 0) {
+                        Assert.assertEquals(ShardUtils.getShardEnd(length, shard - 1, shards), begin);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShardBoundsOfLargeLength() {
+        // length * shard overflows int
+        int length = Integer.MAX_VALUE - 1;
+        Assert.assertEquals(length / 2, ShardUtils.getShardBegin(length, 1, 2));
+        Assert.assertEquals(length, ShardUtils.getShardEnd(length, 2, 3));
+    }
+
+    @Test
+    public void testGetAndMergeShards() {
+        double[] values = new double[10];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        List<double[]> slices = new ArrayList<double[]>();
+        for(int shard = 0; shard < 3; shard++) {
+            slices.add(ShardUtils.getShard(values, shard, 3));
+        }
+        Assert.assertArrayEquals(new double[] { 0d, 1d, 2d }, slices.get(0), 0d);
+        Assert.assertArrayEquals(new double[] { 3d, 4d, 5d }, slices.get(1), 0d);
+        Assert.assertArrayEquals(new double[] { 6d, 7d, 8d, 9d }, slices.get(2), 0d);
+        Assert.assertArrayEquals(values, ShardUtils.mergeShards(slices), 0d);
+
+        // slices are copies
+        slices.get(0)[0] = -1d;
+        Assert.assertEquals(0d, values[0], 0d);
+    }
+
+    @Test
+    public void testMoreShardsThanValues() {
+        double[] values = new double[] { 1d, 2d };
+        List<double[]> slices = new ArrayList<double[]>();
+        for(int shard = 0; shard < 5; shard++) {
+            slices.add(ShardUtils.getShard(values, shard, 5));
+        }
+        Assert.assertArrayEquals(values, ShardUtils.mergeShards(slices), 0d);
+    }
+
+    @Test
+    public void testNullShards() {
+        Assert.assertEquals(0, ShardUtils.getShard(null, 0, 2).length);
+        Assert.assertArrayEquals(new double[] { 1d, 2d },
+                ShardUtils.mergeShards(Arrays.asList(new double[] { 1d }, null, new double[] { 2d })), 0d);
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link MasterResultCacheTest} checks master result is fetched by one container of a host and read by the others,
+ * and files are cleaned.
+ */
+public class MasterResultCacheTest {
+
+    private static final String APP_ID = "app";
+
+    private File baseDir;
+
+    @Before
+    public void setUp() throws IOException {
+        this.baseDir = File.createTempFile("guagua-cache", "");
+        this.baseDir.delete();
+        this.baseDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File appDir = new File(this.baseDir, APP_ID);
+        File[] files = appDir.listFiles();
+        if(files != null) {
+            for(File file: files) {
+                file.delete();
+            }
+        }
+        appDir.delete();
+        this.baseDir.delete();
+    }
+
+    @Test
+    public void testFetchedOnce() throws Exception {
+        CountingFetcher fetcher = new CountingFetcher(new byte[] { 1, 2, 3 });
+        MasterResultCache cache1 = newCache("container-1", 10 * 1000L);
+        MasterResultCache cache2 = newCache("container-2", 10 * 1000L);
+
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, cache1.get(1, "/guagua/app/master/1", fetcher));
+        // second container reads published file without fetching
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, cache2.get(1, "/guagua/app/master/1", fetcher));
+        Assert.assertEquals(1, fetcher.count.get());
+
+        // new iteration is fetched again
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, cache2.get(2, "/guagua/app/master/2", fetcher));
+        Assert.assertEquals(2, fetcher.count.get());
+    }
+
+    @Test
+    public void testConcurrentContainers() throws Exception {
+        final byte[] data = new byte[64 * 1024];
+        for(int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        final CountingFetcher fetcher = new CountingFetcher(data);
+        int containers = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(containers);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+            for(int i = 0; i < containers; i++) {
+                final MasterResultCache cache = newCache("container-" + i, 10 * 1000L);
+                futures.add(executor.submit(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws Exception {
+                        return cache.get(1, "/guagua/app/master/1", fetcher);
+                    }
+                }));
+            }
+            for(Future<byte[]> future: futures) {
+                Assert.assertArrayEquals(data, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertEquals(1, fetcher.count.get());
+    }
+
+    @Test
+    public void testWaitTimeout() throws Exception {
+        // publisher holds lock file but failed before publishing
+        File appDir = new File(this.baseDir, APP_ID);
+        appDir.mkdirs();
+        Assert.assertTrue(new File(appDir, "1-_guagua_app_master_1.lock").createNewFile());
+
+        CountingFetcher fetcher = new CountingFetcher(new byte[] { 4 });
+        MasterResultCache cache = newCache("container-2", 200L);
+        long start = System.currentTimeMillis();
+        Assert.assertArrayEquals(new byte[] { 4 }, cache.get(1, "/guagua/app/master/1", fetcher));
+        Assert.assertTrue(System.currentTimeMillis() - start >= 200L);
+        Assert.assertEquals(1, fetcher.count.get());
+    }
+
+    @Test
+    public void testStaleFilesCleaned() throws Exception {
+        MasterResultCache cache = newCache("container-1", 10 * 1000L);
+        CountingFetcher fetcher = new CountingFetcher(new byte[] { 5 });
+        for(int iteration = 1; iteration <= 3; iteration++) {
+            cache.get(iteration, "/guagua/app/master/" + iteration, fetcher);
+        }
+        File appDir = new File(this.baseDir, APP_ID);
+        // files of iterations before last iteration are deleted
+        Assert.assertFalse(new File(appDir, "1-_guagua_app_master_1").exists());
+        Assert.assertFalse(new File(appDir, "1-_guagua_app_master_1.lock").exists());
+        Assert.assertTrue(new File(appDir, "2-_guagua_app_master_2").exists());
+        Assert.assertTrue(new File(appDir, "3-_guagua_app_master_3").exists());
+
+        cache.close();
+        Assert.assertFalse(appDir.exists());
+    }
+
+    @Test
+    public void testCloseOnlyDeletesPublishedFiles() throws Exception {
+        MasterResultCache cache1 = newCache("container-1", 10 * 1000L);
+        MasterResultCache cache2 = newCache("container-2", 10 * 1000L);
+        CountingFetcher fetcher = new CountingFetcher(new byte[] { 6 });
+        cache1.get(1, "/guagua/app/master/1", fetcher);
+        cache2.get(2, "/guagua/app/master/2", fetcher);
+
+        cache1.close();
+        File appDir = new File(this.baseDir, APP_ID);
+        Assert.assertFalse(new File(appDir, "1-_guagua_app_master_1").exists());
+        Assert.assertTrue(new File(appDir, "2-_guagua_app_master_2").exists());
+
+        // container 1 fetches again after published file is deleted
+        Assert.assertArrayEquals(new byte[] { 6 }, cache1.get(1, "/guagua/app/master/1", fetcher));
+        Assert.assertEquals(3, fetcher.count.get());
+        cache1.close();
+        cache2.close();
+        Assert.assertFalse(appDir.exists());
+    }
+
+    private MasterResultCache newCache(String containerId, long waitTimeout) {
+        return new MasterResultCache(this.baseDir.getAbsolutePath(), APP_ID, containerId, waitTimeout);
+    }
+
+    private static class CountingFetcher implements MasterResultCache.Fetcher {
+
+        private final byte[] data;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        CountingFetcher(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public byte[] fetch() {
+            this.count.incrementAndGet();
+            return this.data;
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.io.GuaguaRecordReader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link PreloadTest} checks data preloaded by {@link AbstractWorkerComputable} in background is loaded only once, and
+ * errors in loading are thrown in computation.
+ */
+public class PreloadTest {
+
+    @Test
+    public void testPreload() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        LoadingComputable computable = new LoadingComputable(5, null, started, release);
+        WorkerContext<LongBytable, LongBytable> context = newContext();
+
+        computable.preload(context);
+        // loading is in background, preload returns at once
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, computable.loaded.get());
+        release.countDown();
+
+        Assert.assertEquals(5L, computable.compute(context).getValue());
+        Assert.assertEquals(5L, computable.compute(context).getValue());
+        // neither a second preload nor later computation loads data again
+        computable.preload(context);
+        Assert.assertEquals(5L, computable.compute(context).getValue());
+        Assert.assertEquals(1, computable.inits.get());
+    }
+
+    @Test
+    public void testLoadInComputation() throws Exception {
+        LoadingComputable computable = new LoadingComputable(3, null, null, null);
+        WorkerContext<LongBytable, LongBytable> context = newContext();
+        Assert.assertEquals(3L, computable.compute(context).getValue());
+        computable.preload(context);
+        Assert.assertEquals(3L, computable.compute(context).getValue());
+        Assert.assertEquals(1, computable.inits.get());
+    }
+
+    @Test
+    public void testIOExceptionRethrown() {
+        IOException error = new IOException("cannot read split");
+        LoadingComputable computable = new LoadingComputable(3, error, null, null);
+        WorkerContext<LongBytable, LongBytable> context = newContext();
+        computable.preload(context);
+        assertThrown(computable, context, error);
+        // failed loading is not taken as loaded in later iterations
+        assertThrown(computable, context, error);
+    }
+
+    @Test
+    public void testRuntimeExceptionRethrown() {
+        IllegalStateException error = new IllegalStateException("bad record");
+        LoadingComputable computable = new LoadingComputable(3, error, null, null);
+        WorkerContext<LongBytable, LongBytable> context = newContext();
+        computable.preload(context);
+        assertThrown(computable, context, error);
+    }
+
+    @Test
+    public void testErrorWrapped() {
+        OutOfMemoryError error = new OutOfMemoryError("too many records");
+        LoadingComputable computable = new LoadingComputable(3, error, null, null);
+        WorkerContext<LongBytable, LongBytable> context = newContext();
+        computable.preload(context);
+        try {
+            computable.compute(context);
+            Assert.fail("Error in loading should be thrown.");
+        } catch (GuaguaRuntimeException e) {
+            Assert.assertSame(error, e.getCause());
+        } catch (IOException e) {
+            Assert.fail("Error should be wrapped in GuaguaRuntimeException.");
+        }
+    }
+
+    private static void assertThrown(LoadingComputable computable, WorkerContext<LongBytable, LongBytable> context,
+            Throwable error) {
+        try {
+            computable.compute(context);
+            Assert.fail("Error in loading should be thrown.");
+        } catch (Throwable e) {
+            Assert.assertSame(error, e);
+        }
+    }
+
+    private static WorkerContext<LongBytable, LongBytable> newContext() {
+        return new WorkerContext<LongBytable, LongBytable>(10, "app", new Properties(), "worker-1",
+                Arrays.asList(new GuaguaFileSplit("split-0", 0L, 0L)), null, null);
+    }
+
+    /**
+     * Computable summing records of a reader with given number of records, loading fails at the last record if error is
+     * set.
+     */
+    private static class LoadingComputable extends
+            AbstractWorkerComputable<LongBytable, LongBytable, LongBytable, LongBytable> {
+
+        private final int records;
+
+        private final Throwable error;
+
+        private final CountDownLatch started;
+
+        private final CountDownLatch release;
+
+        private final AtomicInteger inits = new AtomicInteger();
+
+        private final AtomicInteger loaded = new AtomicInteger();
+
+        LoadingComputable(int records, Throwable error, CountDownLatch started, CountDownLatch release) {
+            this.records = records;
+            this.error = error;
+            this.started = started;
+            this.release = release;
+        }
+
+        @Override
+        public void init(WorkerContext<LongBytable, LongBytable> context) {
+            this.inits.incrementAndGet();
+        }
+
+        @Override
+        public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
+            setRecordReader(new GuaguaRecordReader<LongBytable, LongBytable>() {
+
+                private int index = 0;
+
+                @Override
+                public void initialize(GuaguaFileSplit split) {
+                }
+
+                @Override
+                public boolean nextKeyValue() throws IOException {
+                    if(this.index == 0 && LoadingComputable.this.started != null) {
+                        LoadingComputable.this.started.countDown();
+                        try {
+                            LoadingComputable.this.release.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    if(this.index == LoadingComputable.this.records - 1) {
+                        throwError();
+                    }
+                    this.index += 1;
+                    return this.index <= LoadingComputable.this.records;
+                }
+
+                @Override
+                public LongBytable getCurrentKey() {
+                    return new LongBytable(this.index);
+                }
+
+                @Override
+                public LongBytable getCurrentValue() {
+                    return new LongBytable(1L);
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+        }
+
+        private void throwError() throws IOException {
+            if(this.error instanceof IOException) {
+                throw (IOException) this.error;
+            } else if(this.error instanceof RuntimeException) {
+                throw (RuntimeException) this.error;
+            } else if(this.error instanceof Error) {
+                throw (Error) this.error;
+            }
+        }
+
+        @Override
+        public void load(LongBytable currentKey, LongBytable currentValue,
+                WorkerContext<LongBytable, LongBytable> context) {
+            this.loaded.incrementAndGet();
+        }
+
+        @Override
+        public LongBytable doCompute(WorkerContext<LongBytable, LongBytable> context) {
+            return new LongBytable(this.loaded.get());
+        }
+    }
+
+    public static class LongBytable implements Bytable {
+
+        private long value;
+
+        public LongBytable() {
+        }
+
+        public LongBytable(long value) {
+            this.value = value;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeLong(this.value);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            this.value = in.readLong();
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.LocalCheckpointStorage;
+import ml.shifu.guagua.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link RepartitionTest} checks records handed off between two workers through re-partitioning storage.
+ */
+public class RepartitionTest {
+
+    private File dir;
+
+    private LocalCheckpointStorage storage;
+
+    @Before
+    public void setUp() throws IOException {
+        this.dir = new File(FileUtils.getTempDirectory(), "_guagua_repartition_test_" + System.nanoTime());
+        this.storage = new LocalCheckpointStorage();
+        this.storage.init(new Properties());
+    }
+
+    @Test
+    public void testExportAndImport() throws IOException {
+        LongListWorker donor = new LongListWorker(1L, 2L, 3L, 4L, 5L);
+        LongListWorker receiver = new LongListWorker(10L);
+        String path = new File(this.dir, "2-donor-receiver").getPath();
+
+        Assert.assertEquals(3L, AbstractWorkerCoordinator.exportRecords(this.storage, path, donor, 3L));
+        Assert.assertFalse(new File(path + ".tmp").exists());
+        Assert.assertTrue(new File(path).exists());
+        Assert.assertEquals(2L, donor.getRecordCount());
+
+        Assert.assertEquals(3L, AbstractWorkerCoordinator.importRecords(this.storage, path, receiver));
+        Assert.assertFalse(new File(path).exists());
+        Assert.assertEquals(4L, receiver.getRecordCount());
+
+        // no record is lost or duplicated
+        List<Long> all = new ArrayList<Long>(donor.records);
+        all.addAll(receiver.records);
+        long sum = 0L;
+        for(long value: all) {
+            sum += value;
+        }
+        Assert.assertEquals(6, all.size());
+        Assert.assertEquals(25L, sum);
+    }
+
+    @Test
+    public void testExportMoreThanOwned() throws IOException {
+        LongListWorker donor = new LongListWorker(1L, 2L);
+        LongListWorker receiver = new LongListWorker();
+        String path = new File(this.dir, "3-donor-receiver").getPath();
+
+        Assert.assertEquals(2L, AbstractWorkerCoordinator.exportRecords(this.storage, path, donor, 10L));
+        Assert.assertEquals(2L, AbstractWorkerCoordinator.importRecords(this.storage, path, receiver));
+        Assert.assertEquals(0L, donor.getRecordCount());
+        Assert.assertEquals(2L, receiver.getRecordCount());
+    }
+
+    @Test
+    public void testNotRepartitionableDonor() throws IOException {
+        LongListWorker receiver = new LongListWorker(1L);
+        String path = new File(this.dir, "4-donor-receiver").getPath();
+
+        // receiver is released by a file without records
+        Assert.assertEquals(0L, AbstractWorkerCoordinator.exportRecords(this.storage, path, new Object(), 10L));
+        Assert.assertTrue(new File(path).exists());
+        Assert.assertEquals(0L, AbstractWorkerCoordinator.importRecords(this.storage, path, receiver));
+        Assert.assertEquals(1L, receiver.getRecordCount());
+    }
+
+    @Test(expected = GuaguaRuntimeException.class)
+    public void testLocalStorageWithoutSharedDir() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, "true");
+        newCoordinator().initRepartition(newContext(props));
+    }
+
+    @Test
+    public void testLocalStorageWithSharedDir() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, "true");
+        props.setProperty(GuaguaConstants.GUAGUA_REPARTITION_DIR, this.dir.getPath());
+        newCoordinator().initRepartition(newContext(props));
+    }
+
+    @Test
+    public void testRepartitionDisabled() {
+        newCoordinator().initRepartition(newContext(new Properties()));
+    }
+
+    private static WorkerContext<Bytable, Bytable> newContext(Properties props) {
+        return new WorkerContext<Bytable, Bytable>(10, "app", props, "worker-1", null, null, null);
+    }
+
+    private static AbstractWorkerCoordinator<Bytable, Bytable> newCoordinator() {
+        return new AbstractWorkerCoordinator<Bytable, Bytable>() {
+            @Override
+            public void preApplication(WorkerContext<Bytable, Bytable> context) {
+            }
+
+            @Override
+            public void preIteration(WorkerContext<Bytable, Bytable> context) {
+            }
+
+            @Override
+            public void postIteration(WorkerContext<Bytable, Bytable> context) {
+            }
+
+            @Override
+            public void postApplication(WorkerContext<Bytable, Bytable> context) {
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(this.dir);
+    }
+
+    private static class LongListWorker implements Repartitionable {
+
+        private final List<Long> records = new ArrayList<Long>();
+
+        public LongListWorker(long... values) {
+            for(long value: values) {
+                this.records.add(value);
+            }
+        }
+
+        @Override
+        public long getRecordCount() {
+            return this.records.size();
+        }
+
+        @Override
+        public long exportRecords(long count, DataOutput out) throws IOException {
+            int size = (int) Math.min(count, this.records.size());
+            out.writeInt(size);
+            for(int i = 0; i < size; i++) {
+                out.writeLong(this.records.remove(this.records.size() - 1));
+            }
+            return size;
+        }
+
+        @Override
+        public long importRecords(DataInput in) throws IOException {
+            int size = in.readInt();
+            for(int i = 0; i < size; i++) {
+                this.records.add(in.readLong());
+            }
+            return size;
+        }
+    }
+
+}
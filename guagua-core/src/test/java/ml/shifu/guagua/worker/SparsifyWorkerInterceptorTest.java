@@ -0,0 +1,217 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Random;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.io.Bytable;
+import ml.shifu.guagua.io.Sparsifiable;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsRegistry;
+import ml.shifu.guagua.util.SparseUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link SparsifyWorkerInterceptorTest} checks entries sent in top-k and threshold modes and residual fed back in next
+ * iterations.
+ */
+public class SparsifyWorkerInterceptorTest {
+
+    @Test
+    public void testTopK() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "0.25");
+        WorkerContext<Bytable, Bytable> context = newContext(props);
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = newInterceptor(context);
+
+        Gradients gradients = iterate(interceptor, context, new double[] { 0.1d, -4d, 0.2d, 3d });
+        Assert.assertArrayEquals(new double[] { 0d, -4d, 0d, 0d }, gradients.values, 0d);
+        Assert.assertTrue(gradients.sparse);
+        Assert.assertEquals(4L, context.getMetrics().get(Metric.SPARSIFY_DENSE));
+        Assert.assertEquals(1L, context.getMetrics().get(Metric.SPARSIFY_SENT));
+
+        // residual of 3 is added back and sent in next iteration
+        gradients = iterate(interceptor, context, new double[] { 0.1d, 0d, 0.2d, 0.5d });
+        Assert.assertArrayEquals(new double[] { 0d, 0d, 0d, 3.5d }, gradients.values, 1e-12);
+
+        gradients = iterate(interceptor, context, new double[] { 0d, 0d, 0d, 0d });
+        Assert.assertArrayEquals(new double[] { 0d, 0d, 0.4d, 0d }, gradients.values, 1e-12);
+    }
+
+    @Test
+    public void testThreshold() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_THRESHOLD, "1");
+        WorkerContext<Bytable, Bytable> context = newContext(props);
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = newInterceptor(context);
+
+        Gradients gradients = iterate(interceptor, context, new double[] { 0.6d, 2d, -0.5d });
+        Assert.assertArrayEquals(new double[] { 0d, 2d, 0d }, gradients.values, 0d);
+
+        // small entries are accumulated until they exceed threshold
+        gradients = iterate(interceptor, context, new double[] { 0.6d, 0d, -0.6d });
+        Assert.assertArrayEquals(new double[] { 1.2d, 0d, -1.1d }, gradients.values, 1e-12);
+        Assert.assertEquals(2L, context.getMetrics().get(Metric.SPARSIFY_SENT));
+    }
+
+    @Test
+    public void testNothingLost() {
+        // entries sent over iterations plus final residual equal to sum of dense gradients
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "0.1");
+        WorkerContext<Bytable, Bytable> context = newContext(props);
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = newInterceptor(context);
+
+        Random random = new Random(7L);
+        int length = 50;
+        double[] dense = new double[length];
+        double[] sent = new double[length];
+        for(int iteration = 0; iteration < 20; iteration++) {
+            double[] values = new double[length];
+            for(int i = 0; i < length; i++) {
+                values[i] = random.nextGaussian();
+                dense[i] += values[i];
+            }
+            Gradients gradients = iterate(interceptor, context, values);
+            Assert.assertEquals(5, SparseUtils.countNonZeros(gradients.values));
+            for(int i = 0; i < length; i++) {
+                sent[i] += gradients.values[i];
+            }
+        }
+        // flush residual by sending everything
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "1");
+        interceptor.preApplication(context);
+        Gradients gradients = iterate(interceptor, context, new double[length]);
+        for(int i = 0; i < length; i++) {
+            sent[i] += gradients.values[i];
+        }
+        Assert.assertArrayEquals(dense, sent, 1e-9);
+    }
+
+    @Test
+    public void testSparseRoundTrip() throws IOException {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "0.5");
+        WorkerContext<Bytable, Bytable> context = newContext(props);
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = newInterceptor(context);
+        Gradients gradients = iterate(interceptor, context, new double[] { 1d, -2d, 3d, -4d });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        gradients.write(new DataOutputStream(bytes));
+        Gradients read = new Gradients(null);
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        Assert.assertArrayEquals(new double[] { 0d, 0d, 3d, -4d }, read.values, 0d);
+    }
+
+    @Test
+    public void testNotSparsifiable() {
+        Properties props = new Properties();
+        WorkerContext<Bytable, Bytable> context = newContext(props);
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = newInterceptor(context);
+        Gradients empty = new Gradients(new double[0]);
+        context.setWorkerResult(empty);
+        interceptor.postIteration(context);
+        Assert.assertFalse(empty.sparse);
+
+        context.setWorkerResult(new Bytable() {
+            @Override
+            public void write(DataOutput out) throws IOException {
+            }
+
+            @Override
+            public void readFields(DataInput in) throws IOException {
+            }
+        });
+        interceptor.postIteration(context);
+        Assert.assertEquals(0L, context.getMetrics().get(Metric.SPARSIFY_DENSE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRatio() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "1.5");
+        newInterceptor(newContext(props));
+    }
+
+    private static WorkerContext<Bytable, Bytable> newContext(Properties props) {
+        WorkerContext<Bytable, Bytable> context = new WorkerContext<Bytable, Bytable>(10, "app", props, "worker-1",
+                null, null, null);
+        context.setMetrics(new MetricsRegistry(props, "worker-1"));
+        return context;
+    }
+
+    private static SparsifyWorkerInterceptor<Bytable, Bytable> newInterceptor(WorkerContext<Bytable, Bytable> context) {
+        SparsifyWorkerInterceptor<Bytable, Bytable> interceptor = new SparsifyWorkerInterceptor<Bytable, Bytable>();
+        interceptor.preApplication(context);
+        return interceptor;
+    }
+
+    private static Gradients iterate(SparsifyWorkerInterceptor<Bytable, Bytable> interceptor,
+            WorkerContext<Bytable, Bytable> context, double[] values) {
+        Gradients gradients = new Gradients(values.clone());
+        context.getMetrics().startIteration(context.getCurrentIteration());
+        context.setWorkerResult(gradients);
+        interceptor.postIteration(context);
+        return gradients;
+    }
+
+    private static class Gradients implements Bytable, Sparsifiable {
+
+        private double[] values;
+
+        private boolean sparse;
+
+        Gradients(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public double[] getSparsifyValues() {
+            return this.values;
+        }
+
+        @Override
+        public void setSparse(boolean sparse) {
+            this.sparse = sparse;
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            if(this.sparse) {
+                SparseUtils.writeSparse(out, this.values);
+            } else {
+                SparseUtils.writeDense(out, this.values);
+            }
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            this.values = SparseUtils.readDoubles(in);
+        }
+    }
+
+}
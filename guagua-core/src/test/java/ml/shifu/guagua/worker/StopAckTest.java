@@ -0,0 +1,82 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.worker;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link StopAckTest} checks worker side of stop handshake is released by ack, disconnection or timeout.
+ */
+public class StopAckTest {
+
+    @Test(timeout = 10000L)
+    public void testAckReceived() throws InterruptedException {
+        StopAck ack = new StopAck();
+        releaseLater(ack, true, 100L);
+        long start = System.nanoTime();
+        Assert.assertTrue(ack.await(60 * 1000L));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 30 * 1000L);
+    }
+
+    @Test(timeout = 10000L)
+    public void testAckReceivedBeforeWaiting() throws InterruptedException {
+        StopAck ack = new StopAck();
+        ack.acknowledge();
+        Assert.assertTrue(ack.await(60 * 1000L));
+    }
+
+    @Test(timeout = 10000L)
+    public void testAckTimeout() throws InterruptedException {
+        // master doesn't acknowledge a stop message it doesn't accept
+        StopAck ack = new StopAck();
+        long start = System.nanoTime();
+        Assert.assertFalse(ack.await(200L));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200L);
+    }
+
+    @Test(timeout = 10000L)
+    public void testDisconnectWhileWaiting() throws InterruptedException {
+        StopAck ack = new StopAck();
+        releaseLater(ack, false, 100L);
+        long start = System.nanoTime();
+        Assert.assertFalse(ack.await(60 * 1000L));
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 30 * 1000L);
+    }
+
+    private static void releaseLater(final StopAck ack, final boolean acknowledge, final long delay) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if(acknowledge) {
+                    ack.acknowledge();
+                } else {
+                    ack.disconnect();
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ml.shifu.guagua.master.MasterContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FastKMeansMaster} is the master of {@link FastKMeansWorker}.
+ * 
+ * <p>
+ * Initial centers are selected the same as {@link KMeansMaster}. In other iterations sums and counts are accumulated
+ * into primitive arrays and a center without any record keeps its position of last iteration instead of being NaN.
+ */
+public class FastKMeansMaster extends KMeansMaster {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FastKMeansMaster.class);
+
+    @Override
+    public KMeansMasterParams compute(MasterContext<KMeansMasterParams, KMeansWorkerParams> context) {
+        if(context.getCurrentIteration() == 1 || context.getWorkerResults() == null) {
+            return super.compute(context);
+        }
+
+        int k = 0, c = 0;
+        double[] sums = null;
+        long[] counts = null;
+        for(KMeansWorkerParams workerResult: context.getWorkerResults()) {
+            if(sums == null) {
+                k = workerResult.getK();
+                c = workerResult.getC();
+                sums = new double[k * c];
+                counts = new long[k];
+            }
+            int i = 0;
+            for(double[] sum: workerResult.getPointList()) {
+                int offset = i * c;
+                for(int j = 0; j < c; j++) {
+                    sums[offset + j] += sum[j];
+                }
+                i++;
+            }
+            i = 0;
+            for(Integer count: workerResult.getCountList()) {
+                counts[i++] += count;
+            }
+        }
+
+        List<double[]> lastCenters = context.getMasterResult() == null ? null : context.getMasterResult()
+                .getPointList();
+        List<double[]> meanList = new ArrayList<double[]>(k);
+        for(int i = 0; i < k; i++) {
+            double[] means = new double[c];
+            if(counts[i] == 0L && lastCenters != null) {
+                LOG.warn("No record in category {}, keep center of last iteration.", i);
+                System.arraycopy(lastCenters.get(i), 0, means, 0, c);
+            } else {
+                for(int j = 0; j < c; j++) {
+                    means[j] = sums[i * c + j] / counts[i];
+                }
+            }
+            meanList.add(means);
+        }
+
+        KMeansMasterParams masterResult = new KMeansMasterParams();
+        masterResult.setK(k);
+        masterResult.setC(c);
+        masterResult.setPointList(meanList);
+        return masterResult;
+    }
+
+}
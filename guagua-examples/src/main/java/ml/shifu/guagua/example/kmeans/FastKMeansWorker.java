@@ -0,0 +1,639 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.kmeans;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.GuaguaLineRecordReader;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.worker.AbstractWorkerComputable;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.guagua.worker.WorkerContext.WorkerCompletionCallBack;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+
+/**
+ * {@link FastKMeansWorker} is an accelerated version of {@link KMeansWorker} with euclidean distance.
+ * 
+ * <p>
+ * Records are packed into primitive {@link PointBlock}s of {@link #BLOCK_ROWS} rows together with squared norms, tags
+ * and distance bounds, so distance is computed by norms and one dot product: |x-c|^2 = |x|^2 + |c|^2 - 2x.c. Center
+ * norms are computed once in each iteration.
+ * 
+ * <p>
+ * Since 3rd iteration, triangle inequality bounds are used to skip most of distance computing:
+ * <ul>
+ * <li>'hamerly' (default): one upper bound to assigned center and one lower bound to all other centers per record;</li>
+ * <li>'elkan': one upper bound and k lower bounds per record, skips more distance computing with O(n*k) memory.</li>
+ * </ul>
+ * Bounds are updated by how far each center moves between two iterations, which is computed in worker by keeping
+ * centers of last iteration.
+ * 
+ * <p>
+ * Blocks are assigned to {@link KMeansContants#KMEANS_THREAD_COUNT} threads, each thread accumulates sums and counts
+ * into its own buffers which are merged after all blocks are processed.
+ * 
+ * <p>
+ * Worker result is the same as {@link KMeansWorker}, {@link FastKMeansMaster} is the master with array based
+ * accumulation.
+ */
+public class FastKMeansWorker
+        extends
+        AbstractWorkerComputable<KMeansMasterParams, KMeansWorkerParams, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<Text>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FastKMeansWorker.class);
+
+    /**
+     * Rows in each point block.
+     */
+    private static final int BLOCK_ROWS = 4096;
+
+    /**
+     * Squared distance smaller than this fraction of norms is re-computed directly to avoid cancellation error.
+     */
+    private static final double CANCELLATION_EPSILON = 1e-6;
+
+    /**
+     * Points of current worker.
+     */
+    private final List<PointBlock> blocks = new ArrayList<PointBlock>();
+
+    /**
+     * Number of points.
+     */
+    private int size;
+
+    /**
+     * K categories pre-defined
+     */
+    private int k;
+
+    /**
+     * Columns (dimensions) for each record
+     */
+    private int c;
+
+    /**
+     * Separator to split data for each record
+     */
+    private String separator;
+
+    /**
+     * Whether to use elkan bounds, if not hamerly bounds are used.
+     */
+    private boolean isElkan;
+
+    /**
+     * Number of assignment threads.
+     */
+    private int threadCount;
+
+    /**
+     * Thread pool for assignment, null if only one thread.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Packed centers of last iteration, null if bounds are not initialized.
+     */
+    private double[] lastCenters;
+
+    /**
+     * Reading input line by line
+     */
+    @Override
+    public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
+        this.setRecordReader(new GuaguaLineRecordReader());
+        this.getRecordReader().initialize(fileSplit);
+    }
+
+    @Override
+    public void init(WorkerContext<KMeansMasterParams, KMeansWorkerParams> context) {
+        this.k = Integer.parseInt(context.getProps().getProperty(KMeansContants.KMEANS_K_NUMBER));
+        this.c = Integer.parseInt(context.getProps().getProperty(KMeansContants.KMEANS_COLUMN_NUMBER));
+        this.separator = context.getProps().getProperty(KMeansContants.KMEANS_DATA_SEPERATOR);
+        this.isElkan = KMeansContants.KMEANS_BOUND_ELKAN.equalsIgnoreCase(context.getProps().getProperty(
+                KMeansContants.KMEANS_BOUND, KMeansContants.KMEANS_BOUND_HAMERLY));
+        this.threadCount = Math.max(1, NumberFormatUtils.getInt(
+                context.getProps().getProperty(KMeansContants.KMEANS_THREAD_COUNT), Runtime.getRuntime()
+                        .availableProcessors()));
+        if(this.threadCount > 1) {
+            this.executor = Executors.newFixedThreadPool(this.threadCount, new ThreadFactory() {
+                private final AtomicInteger index = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "guagua-kmeans-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // stop assignment threads after last iteration, worker may be halted before total iteration
+            context.addCompletionCallBack(new WorkerCompletionCallBack<KMeansMasterParams, KMeansWorkerParams>() {
+                @Override
+                public void callback(WorkerContext<KMeansMasterParams, KMeansWorkerParams> context) {
+                    FastKMeansWorker.this.executor.shutdownNow();
+                }
+            });
+        }
+        LOG.info("FastKMeansWorker with k {}, {} bounds and {} threads.", new Object[] { this.k,
+                this.isElkan ? KMeansContants.KMEANS_BOUND_ELKAN : KMeansContants.KMEANS_BOUND_HAMERLY,
+                this.threadCount });
+
+        // just set into worker context for data output interceptor usage.
+        context.setAttachment(new TaggedRecords());
+    }
+
+    /**
+     * Using the new k centers to tag each record with index denoting the record belongs to which category.
+     */
+    @Override
+    public KMeansWorkerParams doCompute(WorkerContext<KMeansMasterParams, KMeansWorkerParams> context) {
+        if(context.getCurrentIteration() == 1) {
+            return doFirstIteration();
+        } else {
+            return doOtherIterations(context);
+        }
+    }
+
+    private KMeansWorkerParams doFirstIteration() {
+        KMeansWorkerParams workerResult = new KMeansWorkerParams();
+        workerResult.setK(this.k);
+        workerResult.setC(this.c);
+        workerResult.setFirstIteration(true);
+        List<double[]> pointList = new ArrayList<double[]>(Math.min(this.k, this.size));
+        int step = this.k >= this.size ? 1 : this.size / this.k;
+        for(int i = 0; i < this.size; i += step) {
+            PointBlock block = this.blocks.get(i / BLOCK_ROWS);
+            int offset = (i % BLOCK_ROWS) * this.c;
+            pointList.add(Arrays.copyOfRange(block.values, offset, offset + this.c));
+        }
+        workerResult.setPointList(pointList);
+        return workerResult;
+    }
+
+    private KMeansWorkerParams doOtherIterations(WorkerContext<KMeansMasterParams, KMeansWorkerParams> context) {
+        List<double[]> centerList = context.getLastMasterResult().getPointList();
+        final Centers centers = new Centers(centerList, this.lastCenters);
+
+        List<Accumulator> accumulators = new ArrayList<Accumulator>(this.threadCount);
+        if(this.executor == null) {
+            Accumulator accumulator = new Accumulator();
+            for(PointBlock block: this.blocks) {
+                assign(block, centers, accumulator);
+            }
+            accumulators.add(accumulator);
+        } else {
+            List<Future<Accumulator>> futures = new ArrayList<Future<Accumulator>>(this.threadCount);
+            for(int t = 0; t < this.threadCount; t++) {
+                final int first = t;
+                futures.add(this.executor.submit(new Callable<Accumulator>() {
+                    @Override
+                    public Accumulator call() {
+                        Accumulator accumulator = new Accumulator();
+                        List<PointBlock> blocks = FastKMeansWorker.this.blocks;
+                        for(int b = first; b < blocks.size(); b += FastKMeansWorker.this.threadCount) {
+                            assign(blocks.get(b), centers, accumulator);
+                        }
+                        return accumulator;
+                    }
+                }));
+            }
+            try {
+                for(Future<Accumulator> future: futures) {
+                    accumulators.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GuaguaRuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new GuaguaRuntimeException(e.getCause());
+            }
+        }
+        this.lastCenters = centers.values;
+
+        Accumulator result = accumulators.get(0);
+        for(int i = 1; i < accumulators.size(); i++) {
+            result.merge(accumulators.get(i));
+        }
+        LOG.info("FastKMeansWorker iteration {} computed {} distances for {} records.", new Object[] {
+                context.getCurrentIteration(), result.distances, this.size });
+
+        List<double[]> sumList = new ArrayList<double[]>(this.k);
+        List<Integer> countList = new ArrayList<Integer>(this.k);
+        for(int i = 0; i < this.k; i++) {
+            sumList.add(Arrays.copyOfRange(result.sums, i * this.c, (i + 1) * this.c));
+            countList.add(result.counts[i]);
+        }
+
+        KMeansWorkerParams workerResult = new KMeansWorkerParams();
+        workerResult.setK(this.k);
+        workerResult.setC(this.c);
+        workerResult.setFirstIteration(false);
+        workerResult.setPointList(sumList);
+        workerResult.setCountList(countList);
+        return workerResult;
+    }
+
+    /**
+     * Assign all points in one block to closest centers and accumulate them.
+     */
+    private void assign(PointBlock block, Centers centers, Accumulator accumulator) {
+        boolean initBounds = centers.drifts == null || block.lower == null;
+        if(block.lower == null) {
+            block.lower = new double[BLOCK_ROWS * (this.isElkan ? this.k : 1)];
+        }
+        for(int i = 0; i < block.size; i++) {
+            int offset = i * this.c;
+            if(initBounds) {
+                assignAll(block, i, offset, centers, accumulator);
+            } else if(this.isElkan) {
+                assignElkan(block, i, offset, centers, accumulator);
+            } else {
+                assignHamerly(block, i, offset, centers, accumulator);
+            }
+
+            int tag = block.tags[i];
+            accumulator.counts[tag] += 1;
+            int sumOffset = tag * this.c;
+            for(int j = 0; j < this.c; j++) {
+                accumulator.sums[sumOffset + j] += block.values[offset + j];
+            }
+        }
+    }
+
+    /**
+     * Compute distances to all centers and initialize bounds.
+     */
+    private void assignAll(PointBlock block, int i, int offset, Centers centers, Accumulator accumulator) {
+        double best = Double.POSITIVE_INFINITY, second = Double.POSITIVE_INFINITY;
+        int bestIndex = 0;
+        for(int j = 0; j < this.k; j++) {
+            double d = distance(block, i, offset, centers, j, accumulator);
+            if(this.isElkan) {
+                block.lower[i * this.k + j] = d;
+            }
+            if(d < best) {
+                second = best;
+                best = d;
+                bestIndex = j;
+            } else if(d < second) {
+                second = d;
+            }
+        }
+        block.tags[i] = bestIndex;
+        block.upper[i] = best;
+        if(!this.isElkan) {
+            block.lower[i] = second;
+        }
+    }
+
+    private void assignHamerly(PointBlock block, int i, int offset, Centers centers, Accumulator accumulator) {
+        int tag = block.tags[i];
+        double upper = block.upper[i] + centers.drifts[tag];
+        double lower = block.lower[i] - (tag == centers.maxDriftIndex ? centers.secondMaxDrift : centers.maxDrift);
+        double bound = Math.max(lower, centers.halfMinDistances[tag]);
+        if(upper > bound) {
+            // tighten upper bound at first
+            upper = distance(block, i, offset, centers, tag, accumulator);
+            if(upper > bound) {
+                assignAll(block, i, offset, centers, accumulator);
+                return;
+            }
+        }
+        block.upper[i] = upper;
+        block.lower[i] = lower;
+    }
+
+    private void assignElkan(PointBlock block, int i, int offset, Centers centers, Accumulator accumulator) {
+        int tag = block.tags[i];
+        double upper = block.upper[i] + centers.drifts[tag];
+        int lowerOffset = i * this.k;
+        for(int j = 0; j < this.k; j++) {
+            block.lower[lowerOffset + j] = Math.max(0d, block.lower[lowerOffset + j] - centers.drifts[j]);
+        }
+        if(upper > centers.halfMinDistances[tag]) {
+            boolean isUpperTight = false;
+            for(int j = 0; j < this.k; j++) {
+                if(j == tag || upper <= block.lower[lowerOffset + j]
+                        || upper <= centers.halfCenterDistances[tag * this.k + j]) {
+                    continue;
+                }
+                if(!isUpperTight) {
+                    upper = distance(block, i, offset, centers, tag, accumulator);
+                    block.lower[lowerOffset + tag] = upper;
+                    isUpperTight = true;
+                    if(upper <= block.lower[lowerOffset + j]
+                            || upper <= centers.halfCenterDistances[tag * this.k + j]) {
+                        continue;
+                    }
+                }
+                double d = distance(block, i, offset, centers, j, accumulator);
+                block.lower[lowerOffset + j] = d;
+                if(d < upper) {
+                    tag = j;
+                    upper = d;
+                }
+            }
+        }
+        block.tags[i] = tag;
+        block.upper[i] = upper;
+    }
+
+    /**
+     * Euclidean distance from point i in block to center j.
+     */
+    private double distance(PointBlock block, int i, int offset, Centers centers, int j, Accumulator accumulator) {
+        accumulator.distances += 1;
+        double[] values = block.values;
+        double[] center = centers.values;
+        int centerOffset = j * this.c;
+        double dot = 0d;
+        for(int d = 0; d < this.c; d++) {
+            dot += values[offset + d] * center[centerOffset + d];
+        }
+        double norms = block.squaredNorms[i] + centers.squaredNorms[j];
+        double squared = norms - 2 * dot;
+        if(squared < CANCELLATION_EPSILON * norms) {
+            squared = 0d;
+            for(int d = 0; d < this.c; d++) {
+                double diff = values[offset + d] - center[centerOffset + d];
+                squared += diff * diff;
+            }
+        }
+        return Math.sqrt(squared);
+    }
+
+    @Override
+    protected void postLoad(WorkerContext<KMeansMasterParams, KMeansWorkerParams> context) {
+        LOG.info("FastKMeansWorker loaded {} records in {} blocks.", this.size, this.blocks.size());
+    }
+
+    /**
+     * Loading data into point blocks. any invalid data will be set to 0 and marked as missing.
+     */
+    @Override
+    public void load(GuaguaWritableAdapter<LongWritable> currentKey, GuaguaWritableAdapter<Text> currentValue,
+            WorkerContext<KMeansMasterParams, KMeansWorkerParams> workerContext) {
+        PointBlock block = this.blocks.isEmpty() ? null : this.blocks.get(this.blocks.size() - 1);
+        if(block == null || block.size == BLOCK_ROWS) {
+            block = new PointBlock(this.c);
+            this.blocks.add(block);
+        }
+        int offset = block.size * this.c;
+        String line = currentValue.getWritable().toString();
+        int i = 0;
+        double squaredNorm = 0d;
+        for(String input: Splitter.on(this.separator).split(line)) {
+            if(i >= this.c) {
+                break;
+            }
+            try {
+                double value = Double.parseDouble(input);
+                block.values[offset + i] = value;
+                squaredNorm += value * value;
+            } catch (NumberFormatException e) {
+                block.missing.set(offset + i);
+            }
+            i++;
+        }
+        for(; i < this.c; i++) {
+            block.missing.set(offset + i);
+        }
+        block.squaredNorms[block.size] = squaredNorm;
+        block.size += 1;
+        this.size += 1;
+    }
+
+    /**
+     * Packed points with per-point tags and distance bounds.
+     */
+    private static final class PointBlock {
+
+        /**
+         * Row-major values of points.
+         */
+        private final double[] values;
+
+        /**
+         * Squared norm of each point.
+         */
+        private final double[] squaredNorms;
+
+        /**
+         * Invalid values which are set to 0 in {@link #values}.
+         */
+        private final BitSet missing = new BitSet();
+
+        /**
+         * Center index of each point.
+         */
+        private final int[] tags;
+
+        /**
+         * Upper bound of distance to assigned center.
+         */
+        private final double[] upper;
+
+        /**
+         * Lower bounds of distance to other centers, one per point (hamerly) or k per point (elkan).
+         */
+        private double[] lower;
+
+        private int size;
+
+        public PointBlock(int c) {
+            this.values = new double[BLOCK_ROWS * c];
+            this.squaredNorms = new double[BLOCK_ROWS];
+            this.tags = new int[BLOCK_ROWS];
+            Arrays.fill(this.tags, TaggedRecord.INVALID_TAG);
+            this.upper = new double[BLOCK_ROWS];
+        }
+    }
+
+    /**
+     * Packed centers of current iteration with norms, center distances and drifts from last iteration.
+     */
+    private final class Centers {
+
+        private final double[] values;
+
+        private final double[] squaredNorms;
+
+        /**
+         * Half distance to the closest other center.
+         */
+        private final double[] halfMinDistances;
+
+        /**
+         * Half distances between centers, only for elkan bounds.
+         */
+        private final double[] halfCenterDistances;
+
+        /**
+         * Distance of each center moved from last iteration, null if no last centers.
+         */
+        private final double[] drifts;
+
+        private int maxDriftIndex = -1;
+
+        private double maxDrift;
+
+        private double secondMaxDrift;
+
+        public Centers(List<double[]> centerList, double[] last) {
+            int k = FastKMeansWorker.this.k, c = FastKMeansWorker.this.c;
+            this.values = new double[k * c];
+            this.squaredNorms = new double[k];
+            int i = 0;
+            for(double[] center: centerList) {
+                System.arraycopy(center, 0, this.values, i * c, c);
+                double squaredNorm = 0d;
+                for(int j = 0; j < c; j++) {
+                    squaredNorm += center[j] * center[j];
+                }
+                this.squaredNorms[i] = squaredNorm;
+                i++;
+            }
+
+            this.halfMinDistances = new double[k];
+            Arrays.fill(this.halfMinDistances, Double.POSITIVE_INFINITY);
+            this.halfCenterDistances = FastKMeansWorker.this.isElkan ? new double[k * k] : null;
+            for(int a = 0; a < k; a++) {
+                for(int b = a + 1; b < k; b++) {
+                    double half = 0.5 * Math.sqrt(squaredDistance(this.values, a * c, this.values, b * c, c));
+                    this.halfMinDistances[a] = Math.min(this.halfMinDistances[a], half);
+                    this.halfMinDistances[b] = Math.min(this.halfMinDistances[b], half);
+                    if(this.halfCenterDistances != null) {
+                        this.halfCenterDistances[a * k + b] = half;
+                        this.halfCenterDistances[b * k + a] = half;
+                    }
+                }
+            }
+
+            if(last == null) {
+                this.drifts = null;
+            } else {
+                this.drifts = new double[k];
+                for(int j = 0; j < k; j++) {
+                    double drift = Math.sqrt(squaredDistance(this.values, j * c, last, j * c, c));
+                    this.drifts[j] = drift;
+                    if(drift > this.maxDrift || this.maxDriftIndex < 0) {
+                        this.secondMaxDrift = this.maxDriftIndex < 0 ? 0d : this.maxDrift;
+                        this.maxDrift = drift;
+                        this.maxDriftIndex = j;
+                    } else if(drift > this.secondMaxDrift) {
+                        this.secondMaxDrift = drift;
+                    }
+                }
+            }
+        }
+    }
+
+    private static double squaredDistance(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double squared = 0d;
+        for(int i = 0; i < length; i++) {
+            double diff = a[aOffset + i] - b[bOffset + i];
+            squared += diff * diff;
+        }
+        return squared;
+    }
+
+    /**
+     * Sums, counts and number of distance computing of one thread.
+     */
+    private final class Accumulator {
+
+        private final double[] sums = new double[FastKMeansWorker.this.k * FastKMeansWorker.this.c];
+
+        private final int[] counts = new int[FastKMeansWorker.this.k];
+
+        private long distances;
+
+        void merge(Accumulator other) {
+            for(int i = 0; i < this.sums.length; i++) {
+                this.sums[i] += other.sums[i];
+            }
+            for(int i = 0; i < this.counts.length; i++) {
+                this.counts[i] += other.counts[i];
+            }
+            this.distances += other.distances;
+        }
+    }
+
+    /**
+     * View of points as {@link TaggedRecord}s for {@link KMeansDataOutput}.
+     */
+    private final class TaggedRecords implements Iterable<TaggedRecord> {
+
+        @Override
+        public Iterator<TaggedRecord> iterator() {
+            return new Iterator<TaggedRecord>() {
+
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return this.index < FastKMeansWorker.this.size;
+                }
+
+                @Override
+                public TaggedRecord next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    int c = FastKMeansWorker.this.c;
+                    PointBlock block = FastKMeansWorker.this.blocks.get(this.index / BLOCK_ROWS);
+                    int row = this.index % BLOCK_ROWS;
+                    Double[] record = new Double[c];
+                    for(int i = 0; i < c; i++) {
+                        int offset = row * c + i;
+                        record[i] = block.missing.get(offset) ? null : block.values[offset];
+                    }
+                    this.index += 1;
+                    return new TaggedRecord(record, block.tags[row]);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+}
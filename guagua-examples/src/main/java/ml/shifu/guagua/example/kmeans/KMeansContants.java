@@ -32,4 +32,12 @@ public final class KMeansContants {
     public static final String KMEANS_COLUMN_NUMBER = "kmeans.column.number";
 
     public static final String KMEANS_K_NUMBER = "kmeans.k.number";
+
+    public static final String KMEANS_THREAD_COUNT = "kmeans.thread.count";
+
+    public static final String KMEANS_BOUND = "kmeans.bound";
+
+    public static final String KMEANS_BOUND_HAMERLY = "hamerly";
+
+    public static final String KMEANS_BOUND_ELKAN = "elkan";
 }
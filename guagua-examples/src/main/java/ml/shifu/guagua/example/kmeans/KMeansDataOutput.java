@@ -32,6 +32,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * {@link KMeansDataOutput} is used to save tagged data into HDFS.
+ * 
+ * <p>
+ * Worker attachment should be an {@link Iterable} of {@link TaggedRecord}s, like {@link MemoryDiskList} set in
+ * {@link KMeansWorker} or the point view set in {@link FastKMeansWorker}.
  */
 public class KMeansDataOutput extends BasicWorkerInterceptor<KMeansMasterParams, KMeansWorkerParams> {
 
@@ -44,10 +48,10 @@ public class KMeansDataOutput extends BasicWorkerInterceptor<KMeansMasterParams,
                 "part-g-" + context.getContainerId()));
         String separator = context.getProps().getProperty(KMeansContants.KMEANS_DATA_SEPERATOR);
 
-        MemoryDiskList<TaggedRecord> dataList = null;
+        Iterable<TaggedRecord> dataList = null;
         PrintWriter pw = null;
         try {
-            dataList = (MemoryDiskList<TaggedRecord>) context.getAttachment();
+            dataList = (Iterable<TaggedRecord>) context.getAttachment();
             FileSystem fileSystem = FileSystem.get(new Configuration());
             fileSystem.mkdirs(outFolder);
 
@@ -63,8 +67,8 @@ public class KMeansDataOutput extends BasicWorkerInterceptor<KMeansMasterParams,
             LOG.error("Error in writing output.", e);
         } finally {
             IOUtils.closeStream(pw);
-            if(dataList != null) {
-                dataList.close();
+            if(dataList instanceof MemoryDiskList) {
+                ((MemoryDiskList<TaggedRecord>) dataList).close();
             }
         }
     }
@@ -18,7 +18,7 @@ package ml.shifu.guagua.example.kmeans;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import ml.shifu.guagua.io.HaltBytable;
@@ -96,7 +96,7 @@ public class KMeansWorkerParams extends HaltBytable {
         validateK();
         this.c = in.readInt();
         validateC();
-        this.pointList = new LinkedList<double[]>();
+        this.pointList = new ArrayList<double[]>(this.k);
         for(int i = 0; i < this.k; i++) {
             double[] units = new double[this.c];
             for(int j = 0; j < this.c; j++) {
@@ -106,7 +106,7 @@ public class KMeansWorkerParams extends HaltBytable {
         }
         boolean isFirstIteration = in.readBoolean();
         if(!isFirstIteration) {
-            this.countList = new LinkedList<Integer>();
+            this.countList = new ArrayList<Integer>(this.k);
             for(int i = 0; i < this.k; i++) {
                 this.countList.add(in.readInt());
             }
@@ -0,0 +1,467 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.lbfgs;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * {@link LbfgsOptimizer} is a <a href=http://en.wikipedia.org/wiki/Limited-memory_BFGS>L-BFGS</a> optimizer driven by
+ * one loss and gradient evaluation in each step, which fits guagua master-workers iteration: master sends a point to
+ * workers, workers send back loss and gradient sums of their data at this point, master calls {@link #next} to get the
+ * next point to evaluate.
+ * 
+ * <p>
+ * History pairs and line search state are all kept in master. Backtracking line search with Armijo condition is used:
+ * a rejected trial point costs one more iteration with a halved step, an accepted one updates history and starts a new
+ * search direction with step 1.
+ * 
+ * <p>
+ * Objective is loss + l2 / 2 * |w|^2 + l1 * |w|_1, in which the first parameter is regarded as intercept and is not
+ * regularized. If l1 is positive, <a href=http://research.microsoft.com/apps/pubs/default.aspx?id=78900>OWL-QN</a> is
+ * used: search direction and trial points are constrained into the orthant of pseudo gradient.
+ */
+public class LbfgsOptimizer {
+
+    /**
+     * Armijo sufficient decrease constant.
+     */
+    private static final double ARMIJO = 1e-4;
+
+    /**
+     * Minimal step before line search is regarded as failed.
+     */
+    private static final double MIN_STEP = 1e-10;
+
+    private int dimension;
+
+    private int historySize;
+
+    private double l1;
+
+    private double l2;
+
+    /**
+     * Converged if relative objective decrease or relative pseudo gradient norm is smaller than tolerance.
+     */
+    private double tolerance;
+
+    /**
+     * Accepted point, null if no point evaluated.
+     */
+    private double[] point;
+
+    /**
+     * Objective value at {@link #point}.
+     */
+    private double value;
+
+    /**
+     * Gradient of smooth part (loss and l2) at {@link #point}.
+     */
+    private double[] gradient;
+
+    /**
+     * Search direction from {@link #point}.
+     */
+    private double[] direction;
+
+    /**
+     * Current step along {@link #direction}.
+     */
+    private double step;
+
+    /**
+     * Point under evaluation.
+     */
+    private double[] trial;
+
+    /**
+     * History of point differences, ring buffer of {@link #historySize}.
+     */
+    private double[][] sHistory;
+
+    /**
+     * History of gradient differences, ring buffer of {@link #historySize}.
+     */
+    private double[][] yHistory;
+
+    /**
+     * 1 / (s * y) of each history pair.
+     */
+    private double[] rhoHistory;
+
+    /**
+     * Index of oldest history pair.
+     */
+    private int historyStart;
+
+    private int historyCount;
+
+    private boolean isConverged;
+
+    /**
+     * Number of accepted points.
+     */
+    private int iterations;
+
+    public LbfgsOptimizer(int dimension, int historySize, double l1, double l2, double tolerance) {
+        this.dimension = dimension;
+        this.historySize = Math.max(1, historySize);
+        this.l1 = l1;
+        this.l2 = l2;
+        this.tolerance = tolerance;
+        this.sHistory = new double[this.historySize][];
+        this.yHistory = new double[this.historySize][];
+        this.rhoHistory = new double[this.historySize];
+    }
+
+    /**
+     * Start from initial point, return the point to be evaluated.
+     */
+    public double[] start(double[] initial) {
+        if(initial.length != this.dimension) {
+            throw new IllegalArgumentException("Initial point size " + initial.length + " is not " + this.dimension);
+        }
+        this.point = null;
+        this.historyCount = 0;
+        this.isConverged = false;
+        this.trial = initial.clone();
+        return this.trial;
+    }
+
+    /**
+     * Accept loss and loss gradient at point returned by last {@link #start} or {@link #next} call, return the next
+     * point to be evaluated. If converged, accepted point is returned.
+     */
+    public double[] next(double loss, double[] lossGradient) {
+        if(this.trial == null) {
+            throw new IllegalStateException("Optimizer is not started.");
+        }
+        if(this.isConverged) {
+            return this.point;
+        }
+        double[] trialGradient = lossGradient.clone();
+        double trialValue = loss;
+        for(int i = 1; i < this.dimension; i++) {
+            trialGradient[i] += this.l2 * this.trial[i];
+            trialValue += 0.5 * this.l2 * this.trial[i] * this.trial[i] + this.l1 * Math.abs(this.trial[i]);
+        }
+
+        if(this.point == null) {
+            accept(trialValue, trialGradient);
+            return this.isConverged ? this.point : searchFromPoint();
+        }
+
+        double expected = 0d;
+        double[] pseudo = pseudoGradient(this.point, this.gradient);
+        for(int i = 0; i < this.dimension; i++) {
+            expected += pseudo[i] * (this.trial[i] - this.point[i]);
+        }
+        if(trialValue <= this.value + ARMIJO * expected) {
+            double decrease = this.value - trialValue;
+            addHistory(trialGradient);
+            accept(trialValue, trialGradient);
+            if(decrease <= this.tolerance * Math.max(1d, Math.abs(trialValue))) {
+                this.isConverged = true;
+            }
+            return this.isConverged ? this.point : searchFromPoint();
+        }
+
+        // backtracking
+        this.step *= 0.5;
+        if(this.step < MIN_STEP) {
+            if(this.historyCount == 0) {
+                // even steepest descent cannot decrease objective
+                this.isConverged = true;
+                return this.point;
+            }
+            // restart from steepest descent
+            this.historyCount = 0;
+            return searchFromPoint();
+        }
+        return trialPoint();
+    }
+
+    private void accept(double trialValue, double[] trialGradient) {
+        this.point = this.trial;
+        this.value = trialValue;
+        this.gradient = trialGradient;
+        this.iterations += 1;
+        double[] pseudo = pseudoGradient(this.point, this.gradient);
+        if(norm(pseudo) <= this.tolerance * Math.max(1d, norm(this.point))) {
+            this.isConverged = true;
+        }
+    }
+
+    private void addHistory(double[] trialGradient) {
+        double[] s = new double[this.dimension];
+        double[] y = new double[this.dimension];
+        double sy = 0d;
+        for(int i = 0; i < this.dimension; i++) {
+            s[i] = this.trial[i] - this.point[i];
+            y[i] = trialGradient[i] - this.gradient[i];
+            sy += s[i] * y[i];
+        }
+        // skip pair which breaks positive definiteness
+        if(sy <= 1e-12) {
+            return;
+        }
+        int index;
+        if(this.historyCount < this.historySize) {
+            index = (this.historyStart + this.historyCount) % this.historySize;
+            this.historyCount += 1;
+        } else {
+            index = this.historyStart;
+            this.historyStart = (this.historyStart + 1) % this.historySize;
+        }
+        this.sHistory[index] = s;
+        this.yHistory[index] = y;
+        this.rhoHistory[index] = 1d / sy;
+    }
+
+    /**
+     * Compute search direction at accepted point by two-loop recursion and return first trial point.
+     */
+    private double[] searchFromPoint() {
+        double[] pseudo = pseudoGradient(this.point, this.gradient);
+        double[] q = pseudo.clone();
+        double[] alpha = new double[this.historyCount];
+        for(int k = this.historyCount - 1; k >= 0; k--) {
+            int index = (this.historyStart + k) % this.historySize;
+            alpha[k] = this.rhoHistory[index] * dot(this.sHistory[index], q);
+            axpy(-alpha[k], this.yHistory[index], q);
+        }
+        if(this.historyCount > 0) {
+            int newest = (this.historyStart + this.historyCount - 1) % this.historySize;
+            double gamma = dot(this.sHistory[newest], this.yHistory[newest])
+                    / dot(this.yHistory[newest], this.yHistory[newest]);
+            for(int i = 0; i < this.dimension; i++) {
+                q[i] *= gamma;
+            }
+        }
+        for(int k = 0; k < this.historyCount; k++) {
+            int index = (this.historyStart + k) % this.historySize;
+            double beta = this.rhoHistory[index] * dot(this.yHistory[index], q);
+            axpy(alpha[k] - beta, this.sHistory[index], q);
+        }
+
+        this.direction = new double[this.dimension];
+        for(int i = 0; i < this.dimension; i++) {
+            double d = -q[i];
+            // OWL-QN: direction should be in the same orthant of negative pseudo gradient
+            if(this.l1 > 0d && d * pseudo[i] >= 0d) {
+                d = 0d;
+            }
+            this.direction[i] = d;
+        }
+        if(dot(this.direction, pseudo) >= 0d) {
+            // not a descent direction, fall back to steepest descent
+            this.historyCount = 0;
+            for(int i = 0; i < this.dimension; i++) {
+                this.direction[i] = -pseudo[i];
+            }
+        }
+        // without curvature information, first step is scaled to unit length
+        this.step = this.historyCount == 0 ? Math.min(1d, 1d / Math.max(norm(pseudo), 1e-12)) : 1d;
+        return trialPoint();
+    }
+
+    private double[] trialPoint() {
+        double[] pseudo = this.l1 > 0d ? pseudoGradient(this.point, this.gradient) : null;
+        this.trial = new double[this.dimension];
+        for(int i = 0; i < this.dimension; i++) {
+            double t = this.point[i] + this.step * this.direction[i];
+            if(pseudo != null && i > 0) {
+                double orthant = this.point[i] != 0d ? Math.signum(this.point[i]) : Math.signum(-pseudo[i]);
+                if(Math.signum(t) != orthant) {
+                    t = 0d;
+                }
+            }
+            this.trial[i] = t;
+        }
+        return this.trial;
+    }
+
+    /**
+     * Pseudo gradient of objective with l1 term, which is the gradient if l1 is 0.
+     */
+    private double[] pseudoGradient(double[] x, double[] g) {
+        if(this.l1 <= 0d) {
+            return g;
+        }
+        double[] pseudo = g.clone();
+        for(int i = 1; i < this.dimension; i++) {
+            if(x[i] > 0d) {
+                pseudo[i] = g[i] + this.l1;
+            } else if(x[i] < 0d) {
+                pseudo[i] = g[i] - this.l1;
+            } else if(g[i] + this.l1 < 0d) {
+                pseudo[i] = g[i] + this.l1;
+            } else if(g[i] - this.l1 > 0d) {
+                pseudo[i] = g[i] - this.l1;
+            } else {
+                pseudo[i] = 0d;
+            }
+        }
+        return pseudo;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0d;
+        for(int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static void axpy(double a, double[] x, double[] y) {
+        for(int i = 0; i < x.length; i++) {
+            y[i] += a * x[i];
+        }
+    }
+
+    private static double norm(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     * Whether converged, if true {@link #next} always returns the accepted point.
+     */
+    public boolean isConverged() {
+        return this.isConverged;
+    }
+
+    /**
+     * @return objective value at accepted point
+     */
+    public double getValue() {
+        return this.value;
+    }
+
+    /**
+     * @return accepted point, null if no point is evaluated
+     */
+    public double[] getPoint() {
+        return this.point;
+    }
+
+    /**
+     * @return number of parameters
+     */
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * @return current line search step
+     */
+    public double getStep() {
+        return this.step;
+    }
+
+    /**
+     * @return number of accepted points
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Write all optimizer state for master checkpoint.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(this.dimension);
+        out.writeInt(this.historySize);
+        out.writeDouble(this.l1);
+        out.writeDouble(this.l2);
+        out.writeDouble(this.tolerance);
+        writeArray(out, this.point);
+        out.writeDouble(this.value);
+        writeArray(out, this.gradient);
+        writeArray(out, this.direction);
+        out.writeDouble(this.step);
+        writeArray(out, this.trial);
+        out.writeInt(this.historyCount);
+        for(int k = 0; k < this.historyCount; k++) {
+            int index = (this.historyStart + k) % this.historySize;
+            writeArray(out, this.sHistory[index]);
+            writeArray(out, this.yHistory[index]);
+            out.writeDouble(this.rhoHistory[index]);
+        }
+        out.writeBoolean(this.isConverged);
+        out.writeInt(this.iterations);
+    }
+
+    /**
+     * Read optimizer state written by {@link #write(DataOutput)}.
+     */
+    public void readFields(DataInput in) throws IOException {
+        this.dimension = in.readInt();
+        this.historySize = in.readInt();
+        this.l1 = in.readDouble();
+        this.l2 = in.readDouble();
+        this.tolerance = in.readDouble();
+        this.point = readArray(in);
+        this.value = in.readDouble();
+        this.gradient = readArray(in);
+        this.direction = readArray(in);
+        this.step = in.readDouble();
+        this.trial = readArray(in);
+        this.sHistory = new double[this.historySize][];
+        this.yHistory = new double[this.historySize][];
+        this.rhoHistory = new double[this.historySize];
+        this.historyStart = 0;
+        this.historyCount = in.readInt();
+        for(int k = 0; k < this.historyCount; k++) {
+            this.sHistory[k] = readArray(in);
+            this.yHistory[k] = readArray(in);
+            this.rhoHistory[k] = in.readDouble();
+        }
+        this.isConverged = in.readBoolean();
+        this.iterations = in.readInt();
+    }
+
+    private static void writeArray(DataOutput out, double[] array) throws IOException {
+        out.writeInt(array == null ? -1 : array.length);
+        if(array != null) {
+            for(double d: array) {
+                out.writeDouble(d);
+            }
+        }
+    }
+
+    private static double[] readArray(DataInput in) throws IOException {
+        int length = in.readInt();
+        if(length < 0) {
+            return null;
+        }
+        double[] array = new double[length];
+        for(int i = 0; i < length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return "LbfgsOptimizer [iterations=" + iterations + ", value=" + value + ", step=" + step + ", point="
+                + Arrays.toString(point) + "]";
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * Distributed L-BFGS and OWL-QN optimizer shared by regression examples.
+ * 
+ * <p>
+ * Check ml.shifu.guagua.example.lr.LogisticRegressionLbfgsMaster and
+ * ml.shifu.guagua.example.lnr.LinearRegressionLbfgsMaster.
+ */
+package ml.shifu.guagua.example.lbfgs;
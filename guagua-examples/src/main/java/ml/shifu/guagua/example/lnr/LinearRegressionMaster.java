@@ -54,10 +54,10 @@ public class LinearRegressionMaster extends AbstractMasterComputable<LinearRegre
 
     @Override
     public void init(MasterContext<LinearRegressionParams, LinearRegressionParams> context) {
-        this.inputNum = NumberFormatUtils.getInt(LinearRegressionContants.LR_INPUT_NUM,
-                LinearRegressionContants.LR_INPUT_DEFAULT_NUM);
-        this.learnRate = NumberFormatUtils.getDouble(LinearRegressionContants.LR_LEARNING_RATE,
-                LinearRegressionContants.LR_LEARNING_DEFAULT_RATE);
+        this.inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(
+                LinearRegressionContants.LR_INPUT_NUM), LinearRegressionContants.LR_INPUT_DEFAULT_NUM);
+        this.learnRate = NumberFormatUtils.getDouble(context.getProps().getProperty(
+                LinearRegressionContants.LR_LEARNING_RATE), LinearRegressionContants.LR_LEARNING_DEFAULT_RATE);
 
         // not initialized and not first iteration, should be fault tolerence, recover state in LogisticRegressionMaster
         if(!context.isFirstIteration()) {
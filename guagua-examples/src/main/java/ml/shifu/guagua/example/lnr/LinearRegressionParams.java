@@ -45,6 +45,11 @@ public class LinearRegressionParams extends HaltBytable {
      */
     private double error;
 
+    /**
+     * Sum of loss in one worker one iteration, consistent with gradients, used by L-BFGS master line search.
+     */
+    private double loss;
+
     public LinearRegressionParams() {
     }
 
@@ -57,6 +62,12 @@ public class LinearRegressionParams extends HaltBytable {
         this.error = error;
     }
 
+    public LinearRegressionParams(double[] parameters, double error, double loss) {
+        this.parameters = parameters;
+        this.error = error;
+        this.loss = loss;
+    }
+
     public double[] getParameters() {
         return parameters;
     }
@@ -73,6 +84,14 @@ public class LinearRegressionParams extends HaltBytable {
         this.error = error;
     }
 
+    public double getLoss() {
+        return loss;
+    }
+
+    public void setLoss(double loss) {
+        this.loss = loss;
+    }
+
     @Override
     public void doWrite(DataOutput out) throws IOException {
         if(parameters != null) {
@@ -80,8 +99,11 @@ public class LinearRegressionParams extends HaltBytable {
             for(int i = 0; i < this.parameters.length; i++) {
                 out.writeDouble(this.parameters[i]);
             }
+        } else {
+            out.writeInt(0);
         }
         out.writeDouble(this.error);
+        out.writeDouble(this.loss);
     }
 
     @Override
@@ -92,6 +114,7 @@ public class LinearRegressionParams extends HaltBytable {
             parameters[i] = in.readDouble();
         }
         this.error = in.readDouble();
+        this.loss = in.readDouble();
     }
 
 }
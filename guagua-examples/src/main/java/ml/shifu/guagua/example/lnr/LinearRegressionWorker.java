@@ -89,8 +89,8 @@ public class LinearRegressionWorker
 
     @Override
     public void init(WorkerContext<LinearRegressionParams, LinearRegressionParams> context) {
-        this.inputNum = NumberFormatUtils.getInt(LinearRegressionContants.LR_INPUT_NUM,
-                LinearRegressionContants.LR_INPUT_DEFAULT_NUM);
+        this.inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(
+                LinearRegressionContants.LR_INPUT_NUM), LinearRegressionContants.LR_INPUT_DEFAULT_NUM);
         this.outputNum = 1;
         double memoryFraction = Double.valueOf(context.getProps().getProperty("guagua.data.memoryFraction", "0.5"));
         String tmpFolder = context.getProps().getProperty("guagua.data.tmpfolder", System.getProperty("user.dir"));
@@ -125,7 +125,8 @@ public class LinearRegressionWorker
                 size++;
             }
             LOG.info("Iteration {} with error {}", context.getCurrentIteration(), finalError / size);
-            return new LinearRegressionParams(gradients, finalError / size);
+            // sum of squared error / 2 is the loss of accumulated gradients
+            return new LinearRegressionParams(gradients, finalError / size, finalError);
         }
     }
 
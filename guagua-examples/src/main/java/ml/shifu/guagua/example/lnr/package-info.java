@@ -15,6 +15,6 @@
  */
 
 /**
- * Linear regression example by using batch gradient descent.
+ * Linear regression example by using batch gradient descent or L-BFGS.
  */
 package ml.shifu.guagua.example.lnr;
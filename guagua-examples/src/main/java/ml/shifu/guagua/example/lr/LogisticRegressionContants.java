@@ -29,4 +29,23 @@ public final class LogisticRegressionContants {
 
     public static final double LR_LEARNING_DEFAULT_RATE = 0.1d;
 
+    /**
+     * Seed of random initial weights, weights are initialized without a fixed seed if not set.
+     */
+    public static final String LR_RANDOM_SEED = "lr.random.seed";
+
+    public static final String LR_LBFGS_HISTORY = "lr.lbfgs.history";
+
+    public static final int LR_LBFGS_DEFAULT_HISTORY = 10;
+
+    public static final String LR_LBFGS_TOLERANCE = "lr.lbfgs.tolerance";
+
+    public static final double LR_LBFGS_DEFAULT_TOLERANCE = 1e-6d;
+
+    public static final String LR_L1 = "lr.l1";
+
+    public static final String LR_L2 = "lr.l2";
+
+    public static final double LR_DEFAULT_REGULARIZATION = 0d;
+
 }
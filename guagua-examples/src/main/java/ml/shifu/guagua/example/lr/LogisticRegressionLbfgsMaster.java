@@ -0,0 +1,131 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.lr;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import ml.shifu.guagua.example.lbfgs.LbfgsOptimizer;
+import ml.shifu.guagua.master.AbstractMasterComputable;
+import ml.shifu.guagua.master.Checkpointable;
+import ml.shifu.guagua.master.MasterContext;
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link LogisticRegressionLbfgsMaster} trains <a href=http://en.wikipedia.org/wiki/Logistic_regression >logistic
+ * regression</a> model by {@link LbfgsOptimizer} instead of gradient descent in {@link LogisticRegressionMaster}.
+ * 
+ * <p>
+ * {@link LogisticRegressionWorker} is reused: in each iteration master sends a point (model weights) and workers send
+ * back log loss sum and gradient sum at this point. A point is either a new L-BFGS step or a backtracking step of line
+ * search, history pairs and line search state are all kept in master. Loss of master result is objective value at
+ * accepted point. Master result is halted once optimizer is converged.
+ * 
+ * <p>
+ * L2 and L1 (OWL-QN) regularization are set by {@link LogisticRegressionContants#LR_L2} and
+ * {@link LogisticRegressionContants#LR_L1}, intercept is not regularized.
+ * 
+ * <p>
+ * Optimizer state is saved in master checkpoint by {@link Checkpointable}. Without checkpoint, a fail-over master
+ * restarts optimizer from last master result.
+ */
+public class LogisticRegressionLbfgsMaster extends
+        AbstractMasterComputable<LogisticRegressionParams, LogisticRegressionParams> implements Checkpointable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogisticRegressionLbfgsMaster.class);
+
+    private LbfgsOptimizer optimizer;
+
+    @Override
+    public void init(MasterContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        if(this.optimizer != null) {
+            // restored from checkpoint
+            return;
+        }
+        int inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(LogisticRegressionContants.LR_INPUT_NUM),
+                LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
+        int history = NumberFormatUtils.getInt(
+                context.getProps().getProperty(LogisticRegressionContants.LR_LBFGS_HISTORY),
+                LogisticRegressionContants.LR_LBFGS_DEFAULT_HISTORY);
+        double tolerance = NumberFormatUtils.getDouble(
+                context.getProps().getProperty(LogisticRegressionContants.LR_LBFGS_TOLERANCE),
+                LogisticRegressionContants.LR_LBFGS_DEFAULT_TOLERANCE);
+        double l1 = NumberFormatUtils.getDouble(context.getProps().getProperty(LogisticRegressionContants.LR_L1),
+                LogisticRegressionContants.LR_DEFAULT_REGULARIZATION);
+        double l2 = NumberFormatUtils.getDouble(context.getProps().getProperty(LogisticRegressionContants.LR_L2),
+                LogisticRegressionContants.LR_DEFAULT_REGULARIZATION);
+        this.optimizer = new LbfgsOptimizer(inputNum + 1, history, l1, l2, tolerance);
+
+        // if not first iteration, means this is fail-over and optimizer restarts from last master result.
+        if(!context.isFirstIteration()) {
+            LogisticRegressionParams masterResult = context.getMasterResult();
+            this.optimizer.start(masterResult != null && masterResult.getParameters() != null ? masterResult
+                    .getParameters() : new double[inputNum + 1]);
+        }
+    }
+
+    @Override
+    public LogisticRegressionParams doCompute(MasterContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+        if(context.isFirstIteration()) {
+            // start from zero weights which are the same for all workers
+            return new LogisticRegressionParams(this.optimizer.start(new double[this.getDimension()]));
+        }
+
+        double[] gradients = new double[this.getDimension()];
+        double loss = 0.0d;
+        for(LogisticRegressionParams param: context.getWorkerResults()) {
+            if(param != null) {
+                for(int i = 0; i < gradients.length; i++) {
+                    gradients[i] += param.getParameters()[i];
+                }
+                loss += param.getLoss();
+            }
+        }
+        double[] point = this.optimizer.next(loss, gradients);
+        LOG.info("Iteration {} with loss {}, objective {}, step {} and {} L-BFGS steps.", new Object[] {
+                context.getCurrentIteration(), loss, this.optimizer.getValue(), this.optimizer.getStep(),
+                this.optimizer.getIterations() });
+
+        LogisticRegressionParams result = new LogisticRegressionParams(point);
+        // objective at accepted point, never increased by line search
+        result.setLoss(this.optimizer.getValue());
+        if(this.optimizer.isConverged()) {
+            LOG.info("L-BFGS is converged at iteration {}.", context.getCurrentIteration());
+            result.setHalt(true);
+        }
+        return result;
+    }
+
+    private int getDimension() {
+        return this.optimizer.getDimension();
+    }
+
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        this.optimizer.write(out);
+    }
+
+    @Override
+    public void restoreState(DataInput in) throws IOException {
+        this.optimizer = new LbfgsOptimizer(0, 1, 0d, 0d, 0d);
+        this.optimizer.readFields(in);
+    }
+
+}
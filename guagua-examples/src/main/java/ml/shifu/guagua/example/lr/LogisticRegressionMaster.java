@@ -21,6 +21,7 @@ import java.util.Random;
 import ml.shifu.guagua.master.AbstractMasterComputable;
 import ml.shifu.guagua.master.MasterContext;
 import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.util.ShardUtils;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,9 @@ import org.slf4j.LoggerFactory;
  * <li>2. Update global models by using accumulated gradients.</li>
  * <li>3. Send new global model to workers by returning model parameters.</li>
  * </ul>
+ * 
+ * <p>
+ * In sharded mode, master only updates its own range of weights.
  */
 // FIXME miss one parameter: size, the formula should be weights[i] -= learnRate * (1/size) * gradients[i]; pass from
 // workers
@@ -52,16 +56,36 @@ public class LogisticRegressionMaster extends
 
     private int inputNum;
 
+    /**
+     * Index of first weight owned by current master, 0 if not sharded.
+     */
+    private int weightsBegin;
+
+    /**
+     * Length of weights owned by current master, all weights if not sharded.
+     */
+    private int weightsLength;
+
     private double[] weights;
 
     private double learnRate;
 
+    /**
+     * Seed of initial weights, null if not set.
+     */
+    private Long seed;
+
     @Override
     public void init(MasterContext<LogisticRegressionParams, LogisticRegressionParams> context) {
-        this.inputNum = NumberFormatUtils.getInt(LogisticRegressionContants.LR_INPUT_NUM,
-                LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
-        this.learnRate = NumberFormatUtils.getDouble(LogisticRegressionContants.LR_LEARNING_RATE,
-                LogisticRegressionContants.LR_LEARNING_DEFAULT_RATE);
+        this.inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(
+                LogisticRegressionContants.LR_INPUT_NUM), LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
+        this.weightsBegin = ShardUtils.getShardBegin(this.inputNum + 1, context.getShard(), context.getShards());
+        this.weightsLength = ShardUtils.getShardEnd(this.inputNum + 1, context.getShard(), context.getShards())
+                - this.weightsBegin;
+        this.learnRate = NumberFormatUtils.getDouble(context.getProps().getProperty(
+                LogisticRegressionContants.LR_LEARNING_RATE), LogisticRegressionContants.LR_LEARNING_DEFAULT_RATE);
+        String randomSeed = context.getProps().getProperty(LogisticRegressionContants.LR_RANDOM_SEED);
+        this.seed = randomSeed == null ? null : Long.valueOf(randomSeed);
 
         // if not first iteration, means this is fail-over and should be recovered for state in master.
         if(!context.isFirstIteration()) {
@@ -79,8 +103,9 @@ public class LogisticRegressionMaster extends
         if(context.isFirstIteration()) {
             initWeights();
         } else {
-            double[] gradients = new double[this.inputNum + 1];
+            double[] gradients = new double[this.weightsLength];
             double sumError = 0.0d;
+            // results may be combined by master or summed in ring all-reduce mode, workers are counted by params
             int size = 0;
             for(LogisticRegressionParams param: context.getWorkerResults()) {
                 if(param != null) {
@@ -88,22 +113,30 @@ public class LogisticRegressionMaster extends
                         gradients[i] += param.getParameters()[i];
                     }
                     sumError += param.getError();
+                    size += param.getWorkers();
                 }
-                size++;
             }
             for(int i = 0; i < weights.length; i++) {
                 weights[i] -= learnRate * gradients[i];
             }
             LOG.debug("DEBUG: Weights: {}", Arrays.toString(this.weights));
-            LOG.info("Iteration {} with error {}", context.getCurrentIteration(), sumError / size);
+            LOG.info("Iteration {} with error {}", context.getCurrentIteration(), size == 0 ? 0d : sumError / size);
         }
         return new LogisticRegressionParams(weights);
     }
 
     private void initWeights() {
-        weights = new double[this.inputNum + 1];
+        Random random = RANDOM;
+        if(this.seed != null) {
+            random = new Random(this.seed);
+            // skip weights of former shards, sharded masters start from the same weights as one master
+            for(int i = 0; i < this.weightsBegin; i++) {
+                random.nextDouble();
+            }
+        }
+        weights = new double[this.weightsLength];
         for(int i = 0; i < weights.length; i++) {
-            weights[i] = RANDOM.nextDouble();
+            weights[i] = random.nextDouble();
         }
     }
 
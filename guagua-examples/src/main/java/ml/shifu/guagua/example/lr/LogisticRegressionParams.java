@@ -18,8 +18,16 @@ package ml.shifu.guagua.example.lr;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
+import ml.shifu.guagua.io.AllReducible;
+import ml.shifu.guagua.io.Combinable;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.io.Shardable;
+import ml.shifu.guagua.io.Sparsifiable;
+import ml.shifu.guagua.util.ShardUtils;
+import ml.shifu.guagua.util.SparseUtils;
 
 /**
  * A model class to store logistic regression weight on first iteration by using {@link #parameters}, while in other
@@ -32,8 +40,28 @@ import ml.shifu.guagua.io.HaltBytable;
  * <p>
  * Workers are responsible to compute local accumulated gradients and send to master while master accumulates all
  * gradients together to build a global model.
+ * 
+ * <p>
+ * Gradients, error, loss and number of workers are {@link AllReducible} to be summed among workers in ring all-reduce
+ * mode, in which error and loss received by master are sums of all workers and {@link #getWorkers()} is the number of
+ * workers summed.
+ * 
+ * <p>
+ * Worker results are also {@link Combinable} by the same sums, so that master combines them when received and large
+ * worker results streamed in chunks are summed into one result, {@link #getWorkers()} still counts all workers. With
+ * default {@link ml.shifu.guagua.GuaguaConstants#GUAGUA_MASTER_RESULT_NONSPILL} master computable then iterates merged
+ * results instead of one result per worker, set it to false to keep one result per worker in master.
+ * 
+ * <p>
+ * In sharded mode parameters are range-partitioned by {@link Shardable}, error and loss are only kept in the first
+ * shard.
+ * 
+ * <p>
+ * Gradients are {@link Sparsifiable} to only send top-k entries if
+ * {@link ml.shifu.guagua.worker.SparsifyWorkerInterceptor} is set.
  */
-public class LogisticRegressionParams extends HaltBytable {
+public class LogisticRegressionParams extends HaltBytable implements AllReducible,
+        Combinable<LogisticRegressionParams>, Shardable<LogisticRegressionParams>, Sparsifiable {
 
     /**
      * Model weights in the first iteration, gradients in other iterations.
@@ -45,6 +73,21 @@ public class LogisticRegressionParams extends HaltBytable {
      */
     private double error;
 
+    /**
+     * Sum of loss in one worker one iteration, consistent with gradients, used by L-BFGS master line search.
+     */
+    private double loss;
+
+    /**
+     * Number of worker results summed into this result, 1 for result of one worker.
+     */
+    private int workers = 1;
+
+    /**
+     * Whether to write non-zero parameters only, serialized so that a read result is written in the same format.
+     */
+    private boolean sparse;
+
     public LogisticRegressionParams() {
     }
 
@@ -57,6 +100,12 @@ public class LogisticRegressionParams extends HaltBytable {
         this.error = error;
     }
 
+    public LogisticRegressionParams(double[] parameters, double error, double loss) {
+        this.parameters = parameters;
+        this.error = error;
+        this.loss = loss;
+    }
+
     public double[] getParameters() {
         return parameters;
     }
@@ -73,25 +122,123 @@ public class LogisticRegressionParams extends HaltBytable {
         this.error = error;
     }
 
+    public double getLoss() {
+        return loss;
+    }
+
+    public void setLoss(double loss) {
+        this.loss = loss;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
     @Override
-    public void doWrite(DataOutput out) throws IOException {
-        if(parameters != null) {
-            out.writeInt(this.parameters.length);
+    public double[] getAllReduceValues() {
+        int length = this.parameters == null ? 0 : this.parameters.length;
+        double[] values = new double[length + 3];
+        if(length > 0) {
+            System.arraycopy(this.parameters, 0, values, 0, length);
+        }
+        values[length] = this.error;
+        values[length + 1] = this.loss;
+        values[length + 2] = this.workers;
+        return values;
+    }
+
+    @Override
+    public void setAllReduceValues(double[] values) {
+        int length = values.length - 3;
+        this.parameters = new double[length];
+        System.arraycopy(values, 0, this.parameters, 0, length);
+        this.error = values[length];
+        this.loss = values[length + 1];
+        this.workers = (int) Math.round(values[length + 2]);
+    }
+
+    @Override
+    public LogisticRegressionParams combine(LogisticRegressionParams from) {
+        if(this.parameters == null) {
+            // copy to not sum other results into array of 'from'
+            this.parameters = from.getParameters() == null ? null : from.getParameters().clone();
+        } else if(from.getParameters() != null) {
             for(int i = 0; i < this.parameters.length; i++) {
-                out.writeDouble(this.parameters[i]);
+                this.parameters[i] += from.getParameters()[i];
             }
         }
+        this.error += from.getError();
+        this.loss += from.getLoss();
+        this.workers += from.getWorkers();
+        setHalt(isHalt() || from.isHalt());
+        return this;
+    }
+
+    @Override
+    public LogisticRegressionParams getShard(int shard, int shards) {
+        LogisticRegressionParams slice = new LogisticRegressionParams(ShardUtils.getShard(this.parameters, shard,
+                shards));
+        if(shard == 0) {
+            slice.setError(this.error);
+            slice.setLoss(this.loss);
+        }
+        slice.setWorkers(this.workers);
+        slice.setHalt(isHalt());
+        return slice;
+    }
+
+    @Override
+    public LogisticRegressionParams mergeShards(List<LogisticRegressionParams> shards) {
+        List<double[]> slices = new ArrayList<double[]>(shards.size());
+        for(LogisticRegressionParams shard: shards) {
+            slices.add(shard.getParameters());
+        }
+        LogisticRegressionParams first = shards.get(0);
+        LogisticRegressionParams params = new LogisticRegressionParams(ShardUtils.mergeShards(slices),
+                first.getError(), first.getLoss());
+        params.setWorkers(first.getWorkers());
+        params.setHalt(first.isHalt());
+        return params;
+    }
+
+    @Override
+    public double[] getSparsifyValues() {
+        return this.parameters;
+    }
+
+    @Override
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    @Override
+    public void doWrite(DataOutput out) throws IOException {
+        out.writeBoolean(this.sparse);
+        if(this.sparse) {
+            SparseUtils.writeSparse(out, this.parameters);
+        } else {
+            SparseUtils.writeDense(out, this.parameters);
+        }
         out.writeDouble(this.error);
+        out.writeDouble(this.loss);
+        out.writeInt(this.workers);
     }
 
     @Override
     public void doReadFields(DataInput in) throws IOException {
-        int length = in.readInt();
-        parameters = new double[length];
-        for(int i = 0; i < length; i++) {
-            parameters[i] = in.readDouble();
-        }
+        this.sparse = in.readBoolean();
+        this.parameters = SparseUtils.readDoubles(in);
         this.error = in.readDouble();
+        this.loss = in.readDouble();
+        this.workers = in.readInt();
     }
 
 }
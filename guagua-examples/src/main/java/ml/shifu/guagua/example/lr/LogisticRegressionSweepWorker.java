@@ -0,0 +1,137 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.lr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import ml.shifu.guagua.hadoop.io.GuaguaLineRecordReader;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.sweep.AbstractSweepWorkerComputable;
+import ml.shifu.guagua.sweep.SweepResult;
+import ml.shifu.guagua.util.NumberFormatUtils;
+import ml.shifu.guagua.worker.WorkerContext;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Splitter;
+
+/**
+ * {@link LogisticRegressionSweepWorker} computes logistic regression gradients of several configurations (for example
+ * different learning rates or regularization in {@link LogisticRegressionMaster} or
+ * {@link LogisticRegressionLbfgsMaster}) on data loaded only once.
+ * 
+ * <p>
+ * Use it with {@link ml.shifu.guagua.sweep.SweepMasterComputable} as master and
+ * {@link ml.shifu.guagua.sweep.SweepResult} as master and worker result class.
+ */
+public class LogisticRegressionSweepWorker
+        extends
+        AbstractSweepWorkerComputable<LogisticRegressionParams, LogisticRegressionParams, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<Text>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogisticRegressionSweepWorker.class);
+
+    /**
+     * Input column number
+     */
+    private int inputNum;
+
+    /**
+     * Inputs of each record with bias input 1 at first.
+     */
+    private List<double[]> inputs;
+
+    /**
+     * Output of each record.
+     */
+    private List<Double> outputs;
+
+    /**
+     * A splitter to split data with specified delimiter.
+     */
+    private Splitter splitter = Splitter.on(",");
+
+    @Override
+    public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
+        this.setRecordReader(new GuaguaLineRecordReader(fileSplit));
+    }
+
+    @Override
+    public void init(WorkerContext<SweepResult, SweepResult> context) {
+        this.inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(
+                LogisticRegressionContants.LR_INPUT_NUM), LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
+        this.inputs = new ArrayList<double[]>();
+        this.outputs = new ArrayList<Double>();
+    }
+
+    @Override
+    public void load(GuaguaWritableAdapter<LongWritable> currentKey, GuaguaWritableAdapter<Text> currentValue,
+            WorkerContext<SweepResult, SweepResult> context) {
+        String line = currentValue.getWritable().toString();
+        double[] inputData = new double[this.inputNum + 1];
+        int count = 0, inputIndex = 0;
+        inputData[inputIndex++] = 1.0d;
+        for(String unit: this.splitter.split(line)) {
+            if(count < this.inputNum) {
+                inputData[inputIndex++] = Double.valueOf(unit);
+            } else {
+                this.outputs.add(Double.valueOf(unit));
+                break;
+            }
+            count++;
+        }
+        this.inputs.add(inputData);
+    }
+
+    @Override
+    public LogisticRegressionParams computeConfig(int index, Properties configProps,
+            LogisticRegressionParams lastMasterResult, WorkerContext<SweepResult, SweepResult> context) {
+        if(lastMasterResult == null) {
+            // wait for master to initialize weights of this configuration
+            return new LogisticRegressionParams();
+        }
+        double[] weights = lastMasterResult.getParameters();
+        double[] gradients = new double[this.inputNum + 1];
+        double finalError = 0.0d;
+        double loss = 0.0d;
+        int size = this.inputs.size();
+        for(int r = 0; r < size; r++) {
+            double[] data = this.inputs.get(r);
+            double output = this.outputs.get(r);
+            double value = 0.0d;
+            for(int i = 0; i < weights.length; i++) {
+                value += weights[i] * data[i];
+            }
+            double error = 1.0d / (1.0d + Math.exp(-value)) - output;
+            finalError += error * error / 2;
+            double softplus = value > 0 ? value + Math.log1p(Math.exp(-value)) : Math.log1p(Math.exp(value));
+            loss += softplus - output * value;
+            for(int i = 0; i < gradients.length; i++) {
+                gradients[i] += error * data[i];
+            }
+        }
+        LOG.info("Configuration {} iteration {} with error {}", index, context.getCurrentIteration(), finalError
+                / size);
+        return new LogisticRegressionParams(gradients, finalError / size, loss);
+    }
+
+}
@@ -87,8 +87,8 @@ public class LogisticRegressionWorker
 
     @Override
     public void init(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
-        this.inputNum = NumberFormatUtils.getInt(LogisticRegressionContants.LR_INPUT_NUM,
-                LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
+        this.inputNum = NumberFormatUtils.getInt(context.getProps().getProperty(
+                LogisticRegressionContants.LR_INPUT_NUM), LogisticRegressionContants.LR_INPUT_DEFAULT_NUM);
         this.outputNum = 1;
         double memoryFraction = Double.valueOf(context.getProps().getProperty("guagua.data.memoryFraction", "0.5"));
         String tmpFolder = context.getProps().getProperty("guagua.data.tmpfolder", System.getProperty("user.dir"));
@@ -112,30 +112,42 @@ public class LogisticRegressionWorker
             this.weights = context.getLastMasterResult().getParameters();
             double[] gradients = new double[this.inputNum + 1];
             double finalError = 0.0d;
+            double loss = 0.0d;
             int size = 0;
             this.dataList.reOpen();
             for(Data data: dataList) {
-                double error = sigmoid(data.inputs, this.weights) - data.outputs[0];
+                double value = dot(data.inputs, this.weights);
+                double error = 1.0d / (1.0d + Math.exp(-value)) - data.outputs[0];
                 finalError += error * error / 2;
+                loss += logLoss(value, data.outputs[0]);
                 for(int i = 0; i < gradients.length; i++) {
                     gradients[i] += error * data.inputs[i];
                 }
                 size++;
             }
             LOG.info("Iteration {} with error {}", context.getCurrentIteration(), finalError / size);
-            return new LogisticRegressionParams(gradients, finalError / size);
+            return new LogisticRegressionParams(gradients, finalError / size, loss);
         }
     }
 
     /**
-     * Compute sigmoid value by dot operation of two vectors.
+     * Compute dot value of two vectors.
      */
-    private double sigmoid(double[] inputs, double[] weights) {
+    private double dot(double[] inputs, double[] weights) {
         double value = 0.0d;
         for(int i = 0; i < weights.length; i++) {
             value += weights[i] * inputs[i];
         }
-        return 1.0d / (1.0d + Math.exp(-value));
+        return value;
+    }
+
+    /**
+     * Log loss of sigmoid(value) to output, its gradient to weights is accumulated gradient (sigmoid(value) - output)
+     * * inputs. Computed as log(1 + exp(value)) - output * value in a numerically stable way.
+     */
+    private double logLoss(double value, double output) {
+        double softplus = value > 0 ? value + Math.log1p(Math.exp(-value)) : Math.log1p(Math.exp(value));
+        return softplus - output * value;
     }
 
     @Override
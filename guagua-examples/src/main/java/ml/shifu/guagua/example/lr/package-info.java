@@ -15,6 +15,6 @@
  */
 
 /**
- * Logistic regression example by using batch gradient descent.
+ * Logistic regression example by using batch gradient descent or L-BFGS.
  */
 package ml.shifu.guagua.example.lr;
@@ -25,6 +25,7 @@ public final class NNConstants {
 
     public static final String GUAGUA_NN_LEARNING_RATE = "guagua.nn.learning.rate";
     public static final String GUAGUA_NN_THREAD_COUNT = "guagua.nn.thread.count";
+    public static final String GUAGUA_NN_BATCH_SIZE = "guagua.nn.batch.size";
     public static final String GUAGUA_NN_ALGORITHM = "guagua.nn.algorithm";
     public static final String GUAGUA_NN_OUTPUT_NODES = "guagua.nn.output.nodes";
     public static final String GUAGUA_NN_HIDDEN_NODES = "guagua.nn.hidden.nodes";
@@ -32,6 +33,7 @@ public final class NNConstants {
 
     public static final String GUAGUA_NN_DEFAULT_LEARNING_RATE = "0.1";
     public static final int GUAGUA_NN_DEFAULT_THREAD_COUNT = 1;
+    public static final int GUAGUA_NN_DEFAULT_BATCH_SIZE = 128;
     public static final String GUAGUA_NN_DEFAULT_ALGORITHM = "Q";
     public static final int GUAGUA_NN_DEFAULT_OUTPUT_NODES = 1;
     public static final int GUAGUA_NN_DEFAULT_HIDDEN_NODES = 2;
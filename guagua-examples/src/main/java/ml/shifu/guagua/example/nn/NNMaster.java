@@ -15,9 +15,13 @@
  */
 package ml.shifu.guagua.example.nn;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import ml.shifu.guagua.example.nn.meta.NNParams;
+import ml.shifu.guagua.master.Checkpointable;
 import ml.shifu.guagua.master.MasterComputable;
 import ml.shifu.guagua.master.MasterContext;
 import ml.shifu.guagua.util.NumberFormatUtils;
@@ -39,8 +43,12 @@ import org.slf4j.LoggerFactory;
  * <p>
  * To make sure workers and master use the same initialization weights, first iteration of this guagua application is
  * used to compute initial weights which are then sent to works for their initial weights.
+ * 
+ * <p>
+ * {@link NNMaster} is {@link Checkpointable}: global weights and {@link Weight} updating state are saved in master
+ * checkpoint, so a fail-over master continues training instead of re-initializing weights.
  */
-public class NNMaster implements MasterComputable<NNParams, NNParams> {
+public class NNMaster implements MasterComputable<NNParams, NNParams>, Checkpointable {
 
     private static final Logger LOG = LoggerFactory.getLogger(NNMaster.class);
 
@@ -148,4 +156,41 @@ public class NNMaster implements MasterComputable<NNParams, NNParams> {
         return params;
     }
 
-}
\ No newline at end of file
+    @Override
+    public void saveState(DataOutput out) throws IOException {
+        out.writeBoolean(this.isInitialized.get());
+        out.writeDouble(this.learningRate);
+        // gradients are accumulated from scratch in each iteration, only weights are needed
+        double[] weights = this.globalNNParams.getWeights();
+        out.writeInt(weights == null ? -1 : weights.length);
+        if(weights != null) {
+            for(double weight: weights) {
+                out.writeDouble(weight);
+            }
+        }
+        out.writeBoolean(this.weightCalculator != null);
+        if(this.weightCalculator != null) {
+            this.weightCalculator.write(out);
+        }
+    }
+
+    @Override
+    public void restoreState(DataInput in) throws IOException {
+        this.isInitialized.set(in.readBoolean());
+        this.learningRate = in.readDouble();
+        this.globalNNParams = new NNParams();
+        int len = in.readInt();
+        if(len >= 0) {
+            double[] weights = new double[len];
+            for(int i = 0; i < len; i++) {
+                weights[i] = in.readDouble();
+            }
+            this.globalNNParams.setWeights(weights);
+        }
+        if(in.readBoolean()) {
+            this.weightCalculator = new Weight(0, 1d, this.learningRate, NNConstants.QUICK_PROPAGATION);
+            this.weightCalculator.readFields(in);
+        }
+    }
+
+}
@@ -48,6 +48,10 @@ import com.google.common.base.Splitter;
  * <p>
  * Gradients in each worker will be sent to master to update weights of model in worker, which follows Encog's
  * multi-core implementation.
+ * 
+ * <p>
+ * Gradients are computed by {@link ParallelGradient} in mini-batches of {@link NNConstants#GUAGUA_NN_BATCH_SIZE}
+ * records with {@link NNConstants#GUAGUA_NN_THREAD_COUNT} threads.
  */
 public class NNWorker extends
         AbstractWorkerComputable<NNParams, NNParams, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<Text>> {
@@ -67,7 +71,7 @@ public class NNWorker extends
     /**
      * NN algorithm runner instance.
      */
-    private Gradient gradient;
+    private ParallelGradient gradient;
 
     /**
      * input record size, inc one by one.
@@ -80,6 +84,10 @@ public class NNWorker extends
 
     private int outputs;
 
+    private int threadCount;
+
+    private int batchSize;
+
     @Override
     public void init(WorkerContext<NNParams, NNParams> context) {
         inputs = NumberFormatUtils.getInt(context.getProps().getProperty(NNConstants.GUAGUA_NN_INPUT_NODES),
@@ -88,6 +96,10 @@ public class NNWorker extends
                 NNConstants.GUAGUA_NN_DEFAULT_HIDDEN_NODES);
         outputs = NumberFormatUtils.getInt(context.getProps().getProperty(NNConstants.GUAGUA_NN_OUTPUT_NODES),
                 NNConstants.GUAGUA_NN_DEFAULT_OUTPUT_NODES);
+        threadCount = NumberFormatUtils.getInt(context.getProps().getProperty(NNConstants.GUAGUA_NN_THREAD_COUNT),
+                NNConstants.GUAGUA_NN_DEFAULT_THREAD_COUNT);
+        batchSize = NumberFormatUtils.getInt(context.getProps().getProperty(NNConstants.GUAGUA_NN_BATCH_SIZE),
+                NNConstants.GUAGUA_NN_DEFAULT_BATCH_SIZE);
 
         LOG.info("NNWorker is loading data into memory and disk.");
 
@@ -103,6 +115,9 @@ public class NNWorker extends
             public void run() {
                 ((MemoryDiskMLDataSet) (NNWorker.this.trainingData)).close();
                 ((MemoryDiskMLDataSet) (NNWorker.this.testingData)).close();
+                if(NNWorker.this.gradient != null) {
+                    NNWorker.this.gradient.close();
+                }
             }
         }));
     }
@@ -161,7 +176,8 @@ public class NNWorker extends
             flatSpot[i] = flat.getActivationFunctions()[i] instanceof ActivationSigmoid ? 0.1 : 0.0;
         }
 
-        this.gradient = new Gradient(flat, training, flatSpot, new LinearErrorFunction());
+        this.gradient = new ParallelGradient(flat, training, flatSpot, new LinearErrorFunction(), this.threadCount,
+                this.batchSize);
     }
 
     private NNParams buildEmptyNNParams(WorkerContext<NNParams, NNParams> workerContext) {
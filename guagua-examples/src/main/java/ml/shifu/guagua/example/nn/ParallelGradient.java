@@ -0,0 +1,518 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.example.nn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+
+import org.encog.engine.network.activation.ActivationFunction;
+import org.encog.mathutil.error.ErrorCalculation;
+import org.encog.ml.data.MLDataPair;
+import org.encog.ml.data.MLDataSet;
+import org.encog.neural.error.ErrorFunction;
+import org.encog.neural.flat.FlatNetwork;
+
+/**
+ * {@link ParallelGradient} computes gradients and train error of all training records like Encog's gradient worker,
+ * but splits per-row work over multiple threads.
+ *
+ * <p>
+ * Records are iterated sequentially over training data set (which is not thread-safe if part of it is on disk) into
+ * batches of {@link #batchSize} rows. A batch only references input and ideal arrays of records, records in memory are
+ * never copied. Filled batches are consumed by {@link Kernel}s, each kernel has its own cloned {@link FlatNetwork}
+ * buffers, delta and gradient arrays, so no synchronization is needed in forward and backward pass. Kernel gradients
+ * are summed after all batches are consumed. Batches are recycled between reader and kernels to avoid allocation in
+ * each iteration.
+ *
+ * <p>
+ * A batch is only the unit handed over to kernel threads: each row in it is still propagated forward and backward on
+ * its own, there is no matrix kernel over a whole batch. Batch size only trades queue overhead against load balance.
+ *
+ * <p>
+ * With one thread, batches are computed in caller thread and no thread pool is created.
+ *
+ * <p>
+ * Only feed-forward network without context layers is supported, which is the network built by
+ * {@link NNUtils#generateNetwork(int, int, int)}.
+ */
+public class ParallelGradient {
+
+    /**
+     * Marker to stop kernel tasks of current run.
+     */
+    private static final Batch END = new Batch(0);
+
+    /**
+     * The network to train, weights of it are kept the same as {@link #weights} for validation error computing.
+     */
+    private final FlatNetwork network;
+
+    /**
+     * The training data.
+     */
+    private final MLDataSet training;
+
+    /**
+     * Number of records in each batch.
+     */
+    private final int batchSize;
+
+    /**
+     * Kernels, one for each thread.
+     */
+    private final Kernel[] kernels;
+
+    /**
+     * Thread pool to run kernels, null if only one thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Batches to be filled.
+     */
+    private final BlockingQueue<Batch> freeBatches;
+
+    /**
+     * Batches to be computed.
+     */
+    private final BlockingQueue<Batch> filledBatches;
+
+    /**
+     * Summed gradients of all kernels.
+     */
+    private final double[] gradients;
+
+    /**
+     * The weights and thresholds, shared by all kernels as read-only.
+     */
+    private volatile double[] weights;
+
+    /**
+     * Train error of last run.
+     */
+    private double error;
+
+    /**
+     * First error thrown in kernel tasks of current run.
+     */
+    private volatile Throwable failure;
+
+    public ParallelGradient(FlatNetwork network, MLDataSet training, double[] flatSpot, ErrorFunction errorFunction,
+            int threadCount, int batchSize) {
+        if(network.getHasContext()) {
+            throw new IllegalArgumentException("Network with context layers is not supported.");
+        }
+        this.network = network;
+        this.training = training;
+        this.batchSize = Math.max(1, batchSize);
+        this.weights = network.getWeights();
+        this.gradients = new double[network.getWeights().length];
+
+        int threads = Math.max(1, threadCount);
+        this.kernels = new Kernel[threads];
+        for(int i = 0; i < threads; i++) {
+            this.kernels[i] = new Kernel(network.clone(), flatSpot, errorFunction);
+        }
+
+        // two batches for each kernel, one in computing and one in filling
+        int batches = threads == 1 ? 1 : threads * 2;
+        this.freeBatches = new ArrayBlockingQueue<Batch>(batches);
+        this.filledBatches = new ArrayBlockingQueue<Batch>(batches + threads);
+        for(int i = 0; i < batches; i++) {
+            this.freeBatches.add(new Batch(this.batchSize));
+        }
+
+        if(threads == 1) {
+            this.executor = null;
+        } else {
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger index = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "guagua-nn-gradient-" + index.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+    }
+
+    /**
+     * Perform the gradient calculation over all training records.
+     */
+    public final void run() {
+        for(Kernel kernel: this.kernels) {
+            kernel.reset();
+        }
+        try {
+            if(this.executor == null) {
+                runInCurrentThread();
+            } else {
+                runInThreads();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GuaguaRuntimeException(e);
+        }
+
+        Arrays.fill(this.gradients, 0d);
+        double errorSum = 0d;
+        long records = 0L;
+        for(Kernel kernel: this.kernels) {
+            double[] kernelGradients = kernel.gradients;
+            for(int i = 0; i < kernelGradients.length; i++) {
+                this.gradients[i] += kernelGradients[i];
+            }
+            if(kernel.records > 0) {
+                errorSum += kernel.errorCalculation.calculate() * kernel.records;
+                records += kernel.records;
+            }
+        }
+        // each record has the same output size, weighted mean of kernel errors is the error of all records
+        this.error = records == 0 ? 0d : errorSum / records;
+    }
+
+    private void runInCurrentThread() throws InterruptedException {
+        Batch batch = this.freeBatches.take();
+        try {
+            Iterator<MLDataPair> iterator = this.training.iterator();
+            while(iterator.hasNext()) {
+                fill(batch, iterator.next());
+                if(batch.size == this.batchSize) {
+                    this.kernels[0].process(batch);
+                    batch.size = 0;
+                }
+            }
+            if(batch.size > 0) {
+                this.kernels[0].process(batch);
+                batch.size = 0;
+            }
+        } finally {
+            this.freeBatches.put(batch);
+        }
+    }
+
+    private void runInThreads() throws InterruptedException {
+        this.failure = null;
+        List<Future<?>> futures = new ArrayList<Future<?>>(this.kernels.length);
+        for(final Kernel kernel: this.kernels) {
+            futures.add(this.executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    consume(kernel);
+                }
+            }));
+        }
+
+        try {
+            Iterator<MLDataPair> iterator = this.training.iterator();
+            Batch batch = null;
+            while(this.failure == null && iterator.hasNext()) {
+                if(batch == null) {
+                    batch = this.freeBatches.take();
+                }
+                fill(batch, iterator.next());
+                if(batch.size == this.batchSize) {
+                    this.filledBatches.put(batch);
+                    batch = null;
+                }
+            }
+            if(batch != null) {
+                if(batch.size > 0) {
+                    this.filledBatches.put(batch);
+                } else {
+                    this.freeBatches.put(batch);
+                }
+            }
+        } finally {
+            for(int i = 0; i < this.kernels.length; i++) {
+                this.filledBatches.put(END);
+            }
+            for(Future<?> future: futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new GuaguaRuntimeException(e.getCause());
+                }
+            }
+        }
+
+        if(this.failure != null) {
+            throw new GuaguaRuntimeException(this.failure);
+        }
+    }
+
+    /**
+     * Compute batches until {@link #END}, after a failure batches are still recycled to not block reader.
+     */
+    private void consume(Kernel kernel) {
+        while(true) {
+            Batch batch;
+            try {
+                batch = this.filledBatches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.failure = e;
+                return;
+            }
+            if(batch == END) {
+                return;
+            }
+            try {
+                if(this.failure == null) {
+                    kernel.process(batch);
+                }
+            } catch (Throwable t) {
+                this.failure = t;
+            } finally {
+                batch.size = 0;
+                // never blocks as number of batches is the capacity of free queue
+                this.freeBatches.offer(batch);
+            }
+        }
+    }
+
+    /**
+     * Append record to the end of batch. Arrays of the record are referenced, in memory records are iterated as they
+     * are stored and records on disk are read into new pairs by data set iterator, so no copy is needed.
+     */
+    private void fill(Batch batch, MLDataPair record) {
+        batch.input[batch.size] = record.getInputArray();
+        batch.ideal[batch.size] = record.getIdealArray();
+        batch.significance[batch.size] = record.getSignificance();
+        batch.size += 1;
+    }
+
+    /**
+     * Stop kernel threads.
+     */
+    public void close() {
+        if(this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the gradients
+     */
+    public double[] getGradients() {
+        return this.gradients;
+    }
+
+    /**
+     * @return the error
+     */
+    public double getError() {
+        return this.error;
+    }
+
+    /**
+     * @return the weights
+     */
+    public double[] getWeights() {
+        return this.weights;
+    }
+
+    /**
+     * @param weights
+     *            the weights to set
+     */
+    public void setWeights(double[] weights) {
+        this.weights = weights;
+        this.network.setWeights(weights);
+    }
+
+    public FlatNetwork getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * Input and ideal rows of a mini-batch.
+     */
+    private static class Batch {
+
+        private final double[][] input;
+
+        private final double[][] ideal;
+
+        private final double[] significance;
+
+        private int size;
+
+        public Batch(int capacity) {
+            this.input = new double[capacity][];
+            this.ideal = new double[capacity][];
+            this.significance = new double[capacity];
+        }
+    }
+
+    /**
+     * Forward and backward pass of one thread, layout and computation follow {@link FlatNetwork#compute} and Encog's
+     * gradient worker, while inputs and ideals are read from batch rows directly.
+     */
+    private final class Kernel {
+
+        private final ErrorCalculation errorCalculation = new ErrorCalculation();
+
+        private final ErrorFunction errorFunction;
+
+        private final double[] flatSpot;
+
+        private final ActivationFunction[] activationFunctions;
+
+        private final int[] layerCounts;
+
+        private final int[] layerFeedCounts;
+
+        private final int[] layerIndex;
+
+        private final int[] weightIndex;
+
+        private final double[] layerOutput;
+
+        private final double[] layerSums;
+
+        private final double[] layerDelta;
+
+        private final double[] actual;
+
+        private final double[] gradients;
+
+        private final int inputCount;
+
+        private final int beginTraining;
+
+        private final int endTraining;
+
+        private long records;
+
+        public Kernel(FlatNetwork flat, double[] flatSpot, ErrorFunction errorFunction) {
+            this.errorFunction = errorFunction;
+            this.flatSpot = flatSpot;
+            // set bias activation into cloned layer output
+            flat.clearContext();
+            this.activationFunctions = flat.getActivationFunctions();
+            this.layerCounts = flat.getLayerCounts();
+            this.layerFeedCounts = flat.getLayerFeedCounts();
+            this.layerIndex = flat.getLayerIndex();
+            this.weightIndex = flat.getWeightIndex();
+            this.layerOutput = flat.getLayerOutput();
+            this.layerSums = flat.getLayerSums();
+            this.layerDelta = new double[this.layerOutput.length];
+            this.actual = new double[flat.getOutputCount()];
+            this.gradients = new double[flat.getWeights().length];
+            this.inputCount = flat.getInputCount();
+            this.beginTraining = flat.getBeginTraining();
+            this.endTraining = flat.getEndTraining();
+        }
+
+        void reset() {
+            this.errorCalculation.reset();
+            Arrays.fill(this.gradients, 0d);
+            this.records = 0L;
+        }
+
+        void process(Batch batch) {
+            double[] weights = ParallelGradient.this.weights;
+            for(int r = 0; r < batch.size; r++) {
+                compute(weights, batch.input[r]);
+                double[] ideal = batch.ideal[r];
+                double s = batch.significance[r];
+
+                this.errorCalculation.updateError(this.actual, ideal, s);
+                this.errorFunction.calculateError(ideal, this.actual, this.layerDelta);
+
+                ActivationFunction outputActivation = this.activationFunctions[0];
+                for(int i = 0; i < this.actual.length; i++) {
+                    this.layerDelta[i] = (outputActivation.derivativeFunction(this.layerSums[i],
+                            this.layerOutput[i]) + this.flatSpot[0]) * (this.layerDelta[i] * s);
+                }
+                for(int i = this.beginTraining; i < this.endTraining; i++) {
+                    processLevel(weights, i);
+                }
+            }
+            this.records += batch.size;
+        }
+
+        private void compute(double[] weights, double[] input) {
+            int sourceIndex = this.layerOutput.length - this.layerCounts[this.layerCounts.length - 1];
+            System.arraycopy(input, 0, this.layerOutput, sourceIndex, this.inputCount);
+
+            for(int layer = this.layerIndex.length - 1; layer > 0; layer--) {
+                final int inputIndex = this.layerIndex[layer];
+                final int outputIndex = this.layerIndex[layer - 1];
+                final int limitY = inputIndex + this.layerCounts[layer];
+                final int outputSize = this.layerFeedCounts[layer - 1];
+                final int limitX = outputIndex + outputSize;
+                int index = this.weightIndex[layer - 1];
+                for(int x = outputIndex; x < limitX; x++) {
+                    double sum = 0d;
+                    for(int y = inputIndex; y < limitY; y++) {
+                        sum += weights[index++] * this.layerOutput[y];
+                    }
+                    this.layerSums[x] = sum;
+                    this.layerOutput[x] = sum;
+                }
+                this.activationFunctions[layer - 1].activationFunction(this.layerOutput, outputIndex, outputSize);
+            }
+
+            System.arraycopy(this.layerOutput, 0, this.actual, 0, this.actual.length);
+        }
+
+        private void processLevel(double[] weights, int currentLevel) {
+            final int fromLayerIndex = this.layerIndex[currentLevel + 1];
+            final int toLayerIndex = this.layerIndex[currentLevel];
+            final int fromLayerSize = this.layerCounts[currentLevel + 1];
+            final int toLayerSize = this.layerFeedCounts[currentLevel];
+
+            final int index = this.weightIndex[currentLevel];
+            final ActivationFunction activation = this.activationFunctions[currentLevel + 1];
+            final double currentFlatSpot = this.flatSpot[currentLevel + 1];
+
+            int yi = fromLayerIndex;
+            for(int y = 0; y < fromLayerSize; y++) {
+                final double output = this.layerOutput[yi];
+                double sum = 0;
+                int xi = toLayerIndex;
+                int wi = index + y;
+                for(int x = 0; x < toLayerSize; x++) {
+                    this.gradients[wi] += output * this.layerDelta[xi];
+                    sum += weights[wi] * this.layerDelta[xi];
+                    wi += fromLayerSize;
+                    xi++;
+                }
+
+                this.layerDelta[yi] = sum
+                        * (activation.derivativeFunction(this.layerSums[yi], this.layerOutput[yi]) + currentFlatSpot);
+                yi++;
+            }
+        }
+    }
+
+}
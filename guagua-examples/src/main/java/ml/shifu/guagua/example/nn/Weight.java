@@ -15,6 +15,10 @@
  */
 package ml.shifu.guagua.example.nn;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * {@link Weight} is used to update NN weights according to propagation option. Which is also copied from Encog.
  * 
@@ -190,4 +194,45 @@ public class Weight {
         return weightChange;
     }
 
+    /**
+     * Write weight updating state, which is used in master checkpoint.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeDouble(this.learningRate);
+        out.writeUTF(this.algorithm);
+        out.writeDouble(this.eps);
+        out.writeDouble(this.shrink);
+        writeDoubleArray(out, this.lastDelta);
+        writeDoubleArray(out, this.lastGradient);
+        writeDoubleArray(out, this.updateValues);
+    }
+
+    /**
+     * Read weight updating state written by {@link #write(DataOutput)}.
+     */
+    public void readFields(DataInput in) throws IOException {
+        this.learningRate = in.readDouble();
+        this.algorithm = in.readUTF();
+        this.eps = in.readDouble();
+        this.shrink = in.readDouble();
+        this.lastDelta = readDoubleArray(in);
+        this.lastGradient = readDoubleArray(in);
+        this.updateValues = readDoubleArray(in);
+    }
+
+    private static void writeDoubleArray(DataOutput out, double[] array) throws IOException {
+        out.writeInt(array.length);
+        for(double d: array) {
+            out.writeDouble(d);
+        }
+    }
+
+    private static double[] readDoubleArray(DataInput in) throws IOException {
+        double[] array = new double[in.readInt()];
+        for(int i = 0; i < array.length; i++) {
+            array[i] = in.readDouble();
+        }
+        return array;
+    }
+
 }
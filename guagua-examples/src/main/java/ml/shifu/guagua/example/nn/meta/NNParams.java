@@ -22,6 +22,8 @@ import java.util.Arrays;
 
 import ml.shifu.guagua.example.nn.NNUtils;
 import ml.shifu.guagua.io.HaltBytable;
+import ml.shifu.guagua.io.Sparsifiable;
+import ml.shifu.guagua.util.SparseUtils;
 
 /**
  * NNParams are used to save NN model info which can also be stored into ZooKeeper.
@@ -32,8 +34,12 @@ import ml.shifu.guagua.io.HaltBytable;
  * <p>
  * {@link #gradients} is used to accumulate all workers' gradients together in master and then use the accumulated
  * gradients to update neural network weights.
+ * 
+ * <p>
+ * {@link #gradients} are {@link Sparsifiable} to only send top-k entries if
+ * {@link ml.shifu.guagua.worker.SparsifyWorkerInterceptor} is set.
  */
-public class NNParams extends HaltBytable {
+public class NNParams extends HaltBytable implements Sparsifiable {
 
     /**
      * Weights used for NN model
@@ -60,6 +66,11 @@ public class NNParams extends HaltBytable {
      */
     private long trainSize = 0;
 
+    /**
+     * Whether to write non-zero gradients only, serialized so that a read result is written in the same format.
+     */
+    private boolean sparse;
+
     public double[] getWeights() {
         return weights;
     }
@@ -134,6 +145,20 @@ public class NNParams extends HaltBytable {
         }
     }
 
+    @Override
+    public double[] getSparsifyValues() {
+        return this.gradients;
+    }
+
+    @Override
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    public boolean isSparse() {
+        return this.sparse;
+    }
+
     @Override
     public void doWrite(DataOutput out) throws IOException {
         out.writeDouble(getTrainError());
@@ -146,9 +171,11 @@ public class NNParams extends HaltBytable {
             out.writeDouble(weight);
         }
 
-        out.writeInt(getGradients().length);
-        for(double gradient: getGradients()) {
-            out.writeDouble(gradient);
+        out.writeBoolean(this.sparse);
+        if(this.sparse) {
+            SparseUtils.writeSparse(out, getGradients());
+        } else {
+            SparseUtils.writeDense(out, getGradients());
         }
     }
 
@@ -165,12 +192,8 @@ public class NNParams extends HaltBytable {
         }
         this.weights = weights;
 
-        len = in.readInt();
-        double[] gradients = new double[len];
-        for(int i = 0; i < len; i++) {
-            gradients[i] = in.readDouble();
-        }
-        this.gradients = gradients;
+        this.sparse = in.readBoolean();
+        this.gradients = SparseUtils.readDoubles(in);
     }
 
     @Override
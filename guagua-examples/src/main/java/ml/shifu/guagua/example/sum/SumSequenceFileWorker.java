@@ -15,6 +15,8 @@
  */
 package ml.shifu.guagua.example.sum;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
@@ -23,6 +25,7 @@ import ml.shifu.guagua.hadoop.io.GuaguaSequenceRecordReader;
 import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.worker.AbstractWorkerComputable;
+import ml.shifu.guagua.worker.Repartitionable;
 import ml.shifu.guagua.worker.WorkerContext;
 
 import org.apache.hadoop.io.LongWritable;
@@ -38,10 +41,14 @@ import org.slf4j.LoggerFactory;
  * 
  * <p>
  * The master's sum value will be added to current iteration.
+ * 
+ * <p>
+ * Loaded values can be moved to other workers by data re-partitioning as sum is not changed by that.
  */
 public class SumSequenceFileWorker
         extends
-        AbstractWorkerComputable<GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<Text>, GuaguaWritableAdapter<Text>> {
+        AbstractWorkerComputable<GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<Text>, GuaguaWritableAdapter<Text>>
+        implements Repartitionable {
 
     private static final Logger LOG = LoggerFactory.getLogger(SumSequenceFileWorker.class);
 
@@ -71,6 +78,30 @@ public class SumSequenceFileWorker
         this.list.add(Long.parseLong(currentValue.getWritable().toString()));
     }
 
+    @Override
+    public long getRecordCount() {
+        return this.list.size();
+    }
+
+    @Override
+    public long exportRecords(long count, DataOutput out) throws IOException {
+        int size = (int) Math.min(count, this.list.size());
+        out.writeInt(size);
+        for(int i = 0; i < size; i++) {
+            out.writeLong(this.list.remove(this.list.size() - 1));
+        }
+        return size;
+    }
+
+    @Override
+    public long importRecords(DataInput in) throws IOException {
+        int size = in.readInt();
+        for(int i = 0; i < size; i++) {
+            this.list.add(in.readLong());
+        }
+        return size;
+    }
+
     @Override
     public void initRecordReader(GuaguaFileSplit fileSplit) throws IOException {
         this.setRecordReader(new GuaguaSequenceRecordReader<Text, Text>(fileSplit, Text.class, Text.class));
@@ -0,0 +1,174 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce.example.kmeans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import ml.shifu.guagua.example.kmeans.FastKMeansWorker;
+import ml.shifu.guagua.example.kmeans.KMeansContants;
+import ml.shifu.guagua.example.kmeans.KMeansMasterParams;
+import ml.shifu.guagua.example.kmeans.KMeansWorkerParams;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableAdapter;
+import ml.shifu.guagua.worker.WorkerContext;
+import ml.shifu.guagua.worker.WorkerContext.WorkerCompletionCallBack;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link FastKMeansWorkerTest} checks sums and counts computed with hamerly and elkan bounds are the same as assigning
+ * each point to its closest center by brute force.
+ */
+public class FastKMeansWorkerTest {
+
+    private static final int K = 5;
+
+    private static final int C = 3;
+
+    private static final int ITERATIONS = 10;
+
+    @Test
+    public void testHamerlyBounds() {
+        assertSameAsBruteForce(KMeansContants.KMEANS_BOUND_HAMERLY, 1);
+    }
+
+    @Test
+    public void testElkanBounds() {
+        assertSameAsBruteForce(KMeansContants.KMEANS_BOUND_ELKAN, 1);
+    }
+
+    @Test
+    public void testHamerlyBoundsInThreads() {
+        assertSameAsBruteForce(KMeansContants.KMEANS_BOUND_HAMERLY, 3);
+    }
+
+    @Test
+    public void testElkanBoundsInThreads() {
+        assertSameAsBruteForce(KMeansContants.KMEANS_BOUND_ELKAN, 3);
+    }
+
+    private void assertSameAsBruteForce(String bound, int threads) {
+        // more than one point block of 4096 rows
+        List<double[]> points = generatePoints(10000);
+
+        Properties props = new Properties();
+        props.setProperty(KMeansContants.KMEANS_K_NUMBER, K + "");
+        props.setProperty(KMeansContants.KMEANS_COLUMN_NUMBER, C + "");
+        props.setProperty(KMeansContants.KMEANS_DATA_SEPERATOR, ",");
+        props.setProperty(KMeansContants.KMEANS_BOUND, bound);
+        props.setProperty(KMeansContants.KMEANS_THREAD_COUNT, threads + "");
+        WorkerContext<KMeansMasterParams, KMeansWorkerParams> context = new WorkerContext<KMeansMasterParams, KMeansWorkerParams>(
+                ITERATIONS, "app", props, "0", null, KMeansMasterParams.class.getName(),
+                KMeansWorkerParams.class.getName());
+
+        FastKMeansWorker worker = new FastKMeansWorker();
+        worker.init(context);
+        for(int i = 0; i < points.size(); i++) {
+            double[] point = points.get(i);
+            worker.load(new GuaguaWritableAdapter<LongWritable>(new LongWritable(i)),
+                    new GuaguaWritableAdapter<Text>(new Text(point[0] + "," + point[1] + "," + point[2])), context);
+        }
+
+        context.setCurrentIteration(1);
+        List<double[]> centers = worker.doCompute(context).getPointList();
+        Assert.assertEquals(K, centers.size());
+
+        for(int iteration = 2; iteration <= ITERATIONS; iteration++) {
+            KMeansMasterParams masterResult = new KMeansMasterParams();
+            masterResult.setK(K);
+            masterResult.setC(C);
+            masterResult.setPointList(centers);
+            context.setLastMasterResult(masterResult);
+            context.setCurrentIteration(iteration);
+            KMeansWorkerParams workerResult = worker.doCompute(context);
+
+            double[][] expectedSums = new double[K][C];
+            int[] expectedCounts = new int[K];
+            for(double[] point: points) {
+                int closest = closest(point, centers);
+                expectedCounts[closest] += 1;
+                for(int j = 0; j < C; j++) {
+                    expectedSums[closest][j] += point[j];
+                }
+            }
+
+            List<double[]> nextCenters = new ArrayList<double[]>(K);
+            for(int i = 0; i < K; i++) {
+                Assert.assertEquals(expectedCounts[i], workerResult.getCountList().get(i).intValue());
+                Assert.assertArrayEquals(expectedSums[i], workerResult.getPointList().get(i), 1e-6);
+                double[] center = centers.get(i).clone();
+                if(expectedCounts[i] > 0) {
+                    for(int j = 0; j < C; j++) {
+                        center[j] = expectedSums[i][j] / expectedCounts[i];
+                    }
+                }
+                nextCenters.add(center);
+            }
+            centers = nextCenters;
+        }
+
+        for(WorkerCompletionCallBack<KMeansMasterParams, KMeansWorkerParams> callBack: context.getCallBackList()) {
+            callBack.callback(context);
+        }
+    }
+
+    private static int closest(double[] point, List<double[]> centers) {
+        int closest = 0;
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < centers.size(); i++) {
+            double squared = 0d;
+            for(int j = 0; j < C; j++) {
+                double diff = point[j] - centers.get(i)[j];
+                squared += diff * diff;
+            }
+            if(squared < min) {
+                min = squared;
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Points around K gaussian clusters, centers start from points not in the same cluster so they move for several
+     * iterations and bounds are updated by drifts.
+     */
+    private static List<double[]> generatePoints(int size) {
+        Random random = new Random(20131014L);
+        double[][] clusters = new double[K][C];
+        for(int i = 0; i < K; i++) {
+            for(int j = 0; j < C; j++) {
+                clusters[i][j] = random.nextDouble() * 20d;
+            }
+        }
+        List<double[]> points = new ArrayList<double[]>(size);
+        for(int i = 0; i < size; i++) {
+            double[] cluster = clusters[random.nextInt(K)];
+            double[] point = new double[C];
+            for(int j = 0; j < C; j++) {
+                point[j] = cluster[j] + random.nextGaussian() * 3d;
+            }
+            points.add(point);
+        }
+        return points;
+    }
+
+}
@@ -16,15 +16,21 @@
 package ml.shifu.guagua.mapreduce.example.lnr;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.example.lnr.LinearRegressionMaster;
+import ml.shifu.guagua.example.lnr.LinearRegressionLbfgsMaster;
 import ml.shifu.guagua.example.lnr.LinearRegressionParams;
 import ml.shifu.guagua.example.lnr.LinearRegressionWorker;
 import ml.shifu.guagua.hadoop.GuaguaMRUnitDriver;
+import ml.shifu.guagua.master.BasicMasterInterceptor;
+import ml.shifu.guagua.master.MasterContext;
 import ml.shifu.guagua.unit.GuaguaUnitDriver;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -49,4 +55,58 @@ public class LnrTest {
         driver.run();
     }
 
+    @Test
+    public void testLnrLbfgsApp() throws IOException {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, LinearRegressionLbfgsMaster.class.getName());
+        props.setProperty(GuaguaConstants.WORKER_COMPUTABLE_CLASS, LinearRegressionWorker.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "20");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS, LinearRegressionParams.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS, LinearRegressionParams.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS, LnrLossCollector.class.getName());
+
+        props.setProperty(GuaguaConstants.GUAGUA_INPUT_DIR, getClass().getResource("/lnr").toString());
+
+        GuaguaUnitDriver<LinearRegressionParams, LinearRegressionParams> driver = new GuaguaMRUnitDriver<LinearRegressionParams, LinearRegressionParams>(
+                props);
+
+        LnrLossCollector.reset();
+        driver.run();
+
+        // objective is evaluated from the second iteration and never increased by line search
+        List<Double> losses = LnrLossCollector.getLosses();
+        Assert.assertTrue(losses.size() > 2);
+        for(int i = 2; i < losses.size(); i++) {
+            Assert.assertTrue(losses.get(i) <= losses.get(i - 1));
+        }
+        Assert.assertTrue(losses.get(losses.size() - 1) < losses.get(1));
+    }
+
+    /**
+     * Records loss of master results of all iterations.
+     */
+    public static class LnrLossCollector extends BasicMasterInterceptor<LinearRegressionParams, LinearRegressionParams> {
+
+        private static final List<Double> LOSSES = new ArrayList<Double>();
+
+        @Override
+        public void postIteration(MasterContext<LinearRegressionParams, LinearRegressionParams> context) {
+            synchronized(LOSSES) {
+                LOSSES.add(context.getMasterResult().getLoss());
+            }
+        }
+
+        public static void reset() {
+            synchronized(LOSSES) {
+                LOSSES.clear();
+            }
+        }
+
+        public static List<Double> getLosses() {
+            synchronized(LOSSES) {
+                return new ArrayList<Double>(LOSSES);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce.example.lr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import ml.shifu.guagua.example.lr.LogisticRegressionParams;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link LogisticRegressionParamsTest} checks combining and dense/sparse serialization of
+ * {@link LogisticRegressionParams}.
+ */
+public class LogisticRegressionParamsTest {
+
+    @Test
+    public void testCombineSums() {
+        LogisticRegressionParams to = new LogisticRegressionParams(new double[] { 1d, 2d }, 0.5d, 1d);
+        to.combine(new LogisticRegressionParams(new double[] { 3d, 4d }, 0.25d, 2d));
+
+        Assert.assertArrayEquals(new double[] { 4d, 6d }, to.getParameters(), 0d);
+        Assert.assertEquals(0.75d, to.getError(), 0d);
+        Assert.assertEquals(3d, to.getLoss(), 0d);
+        Assert.assertEquals(2, to.getWorkers());
+    }
+
+    @Test
+    public void testFirstCombineCopiesParameters() {
+        double[] first = new double[] { 1d, 2d };
+        LogisticRegressionParams to = new LogisticRegressionParams();
+        to.combine(new LogisticRegressionParams(first));
+        to.combine(new LogisticRegressionParams(new double[] { 3d, 4d }));
+
+        Assert.assertArrayEquals(new double[] { 4d, 6d }, to.getParameters(), 0d);
+        // parameters of combined result are not changed
+        Assert.assertArrayEquals(new double[] { 1d, 2d }, first, 0d);
+    }
+
+    @Test
+    public void testCombineKeepsHalt() {
+        LogisticRegressionParams halted = new LogisticRegressionParams(new double[] { 1d });
+        halted.setHalt(true);
+
+        LogisticRegressionParams to = new LogisticRegressionParams(new double[] { 1d });
+        to.combine(halted);
+        Assert.assertTrue(to.isHalt());
+        to.combine(new LogisticRegressionParams(new double[] { 1d }));
+        Assert.assertTrue(to.isHalt());
+
+        LogisticRegressionParams notHalted = new LogisticRegressionParams(new double[] { 1d });
+        notHalted.combine(new LogisticRegressionParams(new double[] { 1d }));
+        Assert.assertFalse(notHalted.isHalt());
+    }
+
+    @Test
+    public void testSparseRoundTrip() throws IOException {
+        LogisticRegressionParams params = new LogisticRegressionParams(new double[] { 0d, 1.5d, 0d, 0d, -2d }, 0.5d,
+                3d);
+        params.setWorkers(2);
+        params.setSparse(true);
+        byte[] bytes = toBytes(params);
+        Assert.assertTrue(bytes.length < toBytes(dense(params)).length);
+
+        LogisticRegressionParams read = fromBytes(bytes);
+        Assert.assertTrue(read.isSparse());
+        Assert.assertArrayEquals(params.getParameters(), read.getParameters(), 0d);
+        Assert.assertEquals(0.5d, read.getError(), 0d);
+        Assert.assertEquals(3d, read.getLoss(), 0d);
+        Assert.assertEquals(2, read.getWorkers());
+        // read result is written in the same sparse format
+        Assert.assertArrayEquals(bytes, toBytes(read));
+    }
+
+    @Test
+    public void testDenseRoundTrip() throws IOException {
+        LogisticRegressionParams params = new LogisticRegressionParams(new double[] { 0d, 1.5d, 0d }, 0.5d, 3d);
+        byte[] bytes = toBytes(params);
+
+        LogisticRegressionParams read = fromBytes(bytes);
+        Assert.assertFalse(read.isSparse());
+        Assert.assertArrayEquals(params.getParameters(), read.getParameters(), 0d);
+        Assert.assertArrayEquals(bytes, toBytes(read));
+    }
+
+    private static LogisticRegressionParams dense(LogisticRegressionParams params) {
+        LogisticRegressionParams dense = new LogisticRegressionParams(params.getParameters(), params.getError(),
+                params.getLoss());
+        dense.setWorkers(params.getWorkers());
+        return dense;
+    }
+
+    private static byte[] toBytes(LogisticRegressionParams params) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        params.write(out);
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static LogisticRegressionParams fromBytes(byte[] bytes) throws IOException {
+        LogisticRegressionParams params = new LogisticRegressionParams();
+        params.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+        return params;
+    }
+
+}
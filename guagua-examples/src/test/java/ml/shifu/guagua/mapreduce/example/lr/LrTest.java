@@ -15,16 +15,36 @@
  */
 package ml.shifu.guagua.mapreduce.example.lr;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.example.lr.LogisticRegressionMaster;
+import ml.shifu.guagua.example.lr.LogisticRegressionLbfgsMaster;
 import ml.shifu.guagua.example.lr.LogisticRegressionParams;
+import ml.shifu.guagua.example.lr.LogisticRegressionContants;
+import ml.shifu.guagua.example.lr.LogisticRegressionSweepWorker;
 import ml.shifu.guagua.example.lr.LogisticRegressionWorker;
 import ml.shifu.guagua.hadoop.GuaguaMRUnitDriver;
+import ml.shifu.guagua.master.BasicMasterInterceptor;
+import ml.shifu.guagua.master.MasterContext;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.sweep.SweepMasterComputable;
+import ml.shifu.guagua.sweep.SweepResult;
 import ml.shifu.guagua.unit.GuaguaUnitDriver;
+import ml.shifu.guagua.worker.BasicWorkerInterceptor;
+import ml.shifu.guagua.worker.SparsifyWorkerInterceptor;
+import ml.shifu.guagua.worker.WorkerContext;
 
+import org.junit.Assert;
 import org.junit.Test;
 
 /**
@@ -32,6 +52,11 @@ import org.junit.Test;
  */
 public class LrTest {
 
+    /**
+     * Weights of {@link #newLrProps()} in master mode, run only once and compared with weights of other modes.
+     */
+    private static double[] baselineWeights;
+
     @Test
     public void testLrApp() throws IOException {
         Properties props = new Properties();
@@ -49,4 +74,338 @@ public class LrTest {
         driver.run();
     }
 
+    @Test
+    public void testLrLbfgsApp() throws IOException {
+        Properties props = newLrProps();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, LogisticRegressionLbfgsMaster.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "20");
+        runLr(props);
+
+        // objective is evaluated from the second iteration and never increased by line search
+        List<LogisticRegressionParams> results = LrResultCollector.getResults(0);
+        Assert.assertTrue(results.size() > 2);
+        for(int i = 2; i < results.size(); i++) {
+            Assert.assertTrue(results.get(i).getLoss() <= results.get(i - 1).getLoss());
+        }
+        Assert.assertTrue(results.get(results.size() - 1).getLoss() < results.get(1).getLoss());
+    }
+
+    @Test
+    public void testLrRingAllReduceApp() throws IOException {
+        Properties props = newLrProps();
+        // gradients are summed among workers and master only receives the reduced result
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS,
+                GuaguaConstants.GUAGUA_WORKER_RING_ALLREDUCE_SYSTEM_INTERCEPTERS);
+        double[] ringWeights = runLr(props);
+
+        double[] weights = getBaselineWeights();
+        Assert.assertArrayEquals(weights, ringWeights, 1e-8);
+    }
+
+    @Test
+    public void testLrShardedApp() throws IOException {
+        Properties props = newLrProps();
+        // weights are range-partitioned over two masters
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_NUMBER, "2");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_SYSTEM_INTERCEPTERS,
+                GuaguaConstants.GUAGUA_MASTER_SHARDED_SYSTEM_INTERCEPTERS);
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_SYSTEM_INTERCEPTERS,
+                GuaguaConstants.GUAGUA_WORKER_SHARDED_SYSTEM_INTERCEPTERS);
+        double[] shardedWeights = runLr(props);
+
+        double[] weights = getBaselineWeights();
+        Assert.assertArrayEquals(weights, shardedWeights, 1e-8);
+    }
+
+    @Test
+    public void testLrSparsifyApp() throws IOException {
+        Properties props = newLrProps();
+        // only top half gradients are sent by netty, others are kept as residual in workers
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_INTERCEPTERS, ResidualCheckInterceptor.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_SPARSIFY_RATIO, "0.5");
+
+        ResidualCheckInterceptor.reset();
+        runLr(props);
+
+        // every sent entry is gradient plus residual of former iterations
+        Assert.assertEquals(0, ResidualCheckInterceptor.MISMATCHES.get());
+        Assert.assertTrue(ResidualCheckInterceptor.CARRIED.get() > 0);
+    }
+
+    /**
+     * Checks {@link SparsifyWorkerInterceptor} against residual computed in the same way: sent entries should be
+     * gradients plus residual carried from former iterations.
+     */
+    public static class ResidualCheckInterceptor extends
+            SparsifyWorkerInterceptor<LogisticRegressionParams, LogisticRegressionParams> {
+
+        private static final AtomicInteger MISMATCHES = new AtomicInteger();
+
+        private static final AtomicInteger CARRIED = new AtomicInteger();
+
+        private double[] residual;
+
+        @Override
+        public void postIteration(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+            double[] gradients = context.getWorkerResult().getParameters();
+            if(gradients == null || gradients.length == 0) {
+                super.postIteration(context);
+                return;
+            }
+            if(this.residual == null) {
+                this.residual = new double[gradients.length];
+            }
+            double[] expected = gradients.clone();
+            for(int i = 0; i < expected.length; i++) {
+                expected[i] += this.residual[i];
+            }
+            super.postIteration(context);
+            double[] sent = context.getWorkerResult().getParameters();
+            for(int i = 0; i < sent.length; i++) {
+                if(sent[i] != 0d) {
+                    if(sent[i] != expected[i]) {
+                        MISMATCHES.incrementAndGet();
+                    }
+                    if(this.residual[i] != 0d) {
+                        CARRIED.incrementAndGet();
+                    }
+                }
+                this.residual[i] = expected[i] - sent[i];
+            }
+        }
+
+        public static void reset() {
+            MISMATCHES.set(0);
+            CARRIED.set(0);
+        }
+    }
+
+    @Test
+    public void testLrChunkedApp() throws IOException {
+        Properties props = newLrProps();
+        // worker results are streamed to master in 64 bytes chunks and summed into one result
+        props.setProperty(GuaguaConstants.GUAGUA_NETTY_CHUNK_SIZE, "64");
+        double[] chunkedWeights = runLr(props);
+
+        double[] weights = getBaselineWeights();
+        Assert.assertArrayEquals(weights, chunkedWeights, 1e-8);
+    }
+
+    @Test
+    public void testLrMasterResultCacheApp() throws IOException {
+        Properties props = newLrProps();
+        // workers in unit driver are on the same host, master result is fetched by one of them in each iteration
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CACHE_ENABLE, "true");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CACHE_DIR, System.getProperty("java.io.tmpdir")
+                + File.separator + "_guagua_result_cache");
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_INTERCEPTERS, CacheHitCounter.class.getName());
+
+        CacheHitCounter.reset();
+        double[] cachedWeights = runLr(props);
+        Assert.assertTrue(CacheHitCounter.HITS.get() > 0);
+
+        double[] weights = getBaselineWeights();
+        Assert.assertArrayEquals(weights, cachedWeights, 1e-8);
+    }
+
+    /**
+     * Counts master results read from cache by all workers.
+     */
+    public static class CacheHitCounter extends
+            BasicWorkerInterceptor<LogisticRegressionParams, LogisticRegressionParams> {
+
+        private static final AtomicLong HITS = new AtomicLong();
+
+        @Override
+        public void postIteration(WorkerContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+            HITS.addAndGet(context.getMetrics().get(Metric.RESULT_CACHE_HIT));
+        }
+
+        public static void reset() {
+            HITS.set(0L);
+        }
+    }
+
+    @Test
+    public void testLrPreloadApp() throws IOException {
+        Properties props = newLrProps();
+        // data is loaded in background while workers are waiting for master
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_PRELOAD_ENABLE, "true");
+        double[] preloadWeights = runLr(props);
+
+        double[] weights = getBaselineWeights();
+        Assert.assertArrayEquals(weights, preloadWeights, 1e-8);
+    }
+
+    /**
+     * Properties of {@link LogisticRegressionMaster} in netty runtime with fixed initial weights to compare results of
+     * different modes.
+     */
+    private Properties newLrProps() {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, LogisticRegressionMaster.class.getName());
+        props.setProperty(GuaguaConstants.WORKER_COMPUTABLE_CLASS, LogisticRegressionWorker.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "10");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS, LogisticRegressionParams.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS, LogisticRegressionParams.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_UNIT_RUNTIME, GuaguaConstants.GUAGUA_UNIT_RUNTIME_NETTY);
+        props.setProperty(LogisticRegressionContants.LR_RANDOM_SEED, "20150101");
+        props.setProperty(GuaguaConstants.GUAGUA_INPUT_DIR, getClass().getResource("/lr").toString());
+        return props;
+    }
+
+    /**
+     * Weights of the last iteration of {@link #newLrProps()}, shared by tests of all modes.
+     */
+    private double[] getBaselineWeights() throws IOException {
+        if(baselineWeights == null) {
+            baselineWeights = runLr(newLrProps());
+        }
+        return baselineWeights;
+    }
+
+    /**
+     * Run logistic regression and return weights of the last iteration.
+     */
+    private double[] runLr(Properties props) throws IOException {
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS, LrResultCollector.class.getName());
+        LrResultCollector.reset();
+        GuaguaUnitDriver<LogisticRegressionParams, LogisticRegressionParams> driver = new GuaguaMRUnitDriver<LogisticRegressionParams, LogisticRegressionParams>(
+                props);
+        driver.run();
+        return LrResultCollector.getLastWeights();
+    }
+
+    @Test
+    public void testLrSweepApp() throws IOException {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, SweepMasterComputable.class.getName());
+        props.setProperty(GuaguaConstants.WORKER_COMPUTABLE_CLASS, LogisticRegressionSweepWorker.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "10");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS, SweepResult.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS, SweepResult.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS, SweepResultCollector.class.getName());
+        props.setProperty(LogisticRegressionContants.LR_RANDOM_SEED, "20150101");
+
+        // three learning rates trained together on data loaded once
+        String[] learningRates = new String[] { "0.01",
+                Double.toString(LogisticRegressionContants.LR_LEARNING_DEFAULT_RATE), "0.5" };
+        props.setProperty(GuaguaConstants.GUAGUA_SWEEP_SIZE, Integer.toString(learningRates.length));
+        props.setProperty(GuaguaConstants.GUAGUA_SWEEP_MASTER_COMPUTABLE_CLASS,
+                LogisticRegressionMaster.class.getName());
+        for(int i = 0; i < learningRates.length; i++) {
+            String prefix = GuaguaConstants.GUAGUA_SWEEP_PREFIX + i + ".";
+            props.setProperty(prefix + LogisticRegressionContants.LR_LEARNING_RATE, learningRates[i]);
+        }
+
+        props.setProperty(GuaguaConstants.GUAGUA_INPUT_DIR, getClass().getResource("/lr").toString());
+
+        GuaguaUnitDriver<SweepResult, SweepResult> driver = new GuaguaMRUnitDriver<SweepResult, SweepResult>(props);
+
+        SweepResultCollector.reset();
+        driver.run();
+        List<double[]> sweepWeights = SweepResultCollector.getLastWeights();
+
+        // configuration of default learning rate is trained the same as it is trained alone, other configurations
+        // don't interfere with it
+        Assert.assertEquals(learningRates.length, sweepWeights.size());
+        Assert.assertArrayEquals(getBaselineWeights(), sweepWeights.get(1), 1e-8);
+        Assert.assertFalse(Arrays.equals(sweepWeights.get(1), sweepWeights.get(0)));
+        Assert.assertFalse(Arrays.equals(sweepWeights.get(1), sweepWeights.get(2)));
+    }
+
+    /**
+     * Records weights of all configurations in the last sweep master result.
+     */
+    public static class SweepResultCollector extends BasicMasterInterceptor<SweepResult, SweepResult> {
+
+        private static final List<double[]> LAST_WEIGHTS = new ArrayList<double[]>();
+
+        @Override
+        public void postIteration(MasterContext<SweepResult, SweepResult> context) {
+            SweepResult result = context.getMasterResult();
+            synchronized(LAST_WEIGHTS) {
+                LAST_WEIGHTS.clear();
+                for(int i = 0; i < result.size(); i++) {
+                    // weights array is updated in place by master, copy it
+                    LAST_WEIGHTS.add(((LogisticRegressionParams) result.get(i)).getParameters().clone());
+                }
+            }
+        }
+
+        public static void reset() {
+            synchronized(LAST_WEIGHTS) {
+                LAST_WEIGHTS.clear();
+            }
+        }
+
+        public static List<double[]> getLastWeights() {
+            synchronized(LAST_WEIGHTS) {
+                return new ArrayList<double[]>(LAST_WEIGHTS);
+            }
+        }
+    }
+
+    /**
+     * Records master results of all iterations, results of sharded masters are recorded by shard.
+     */
+    public static class LrResultCollector extends
+            BasicMasterInterceptor<LogisticRegressionParams, LogisticRegressionParams> {
+
+        private static final Map<Integer, List<LogisticRegressionParams>> RESULTS = new TreeMap<Integer, List<LogisticRegressionParams>>();
+
+        @Override
+        public void postIteration(MasterContext<LogisticRegressionParams, LogisticRegressionParams> context) {
+            LogisticRegressionParams result = context.getMasterResult();
+            // weights array is updated in place by master, copy it
+            LogisticRegressionParams copy = new LogisticRegressionParams(result.getParameters().clone(),
+                    result.getError(), result.getLoss());
+            synchronized(RESULTS) {
+                List<LogisticRegressionParams> results = RESULTS.get(context.getShard());
+                if(results == null) {
+                    results = new ArrayList<LogisticRegressionParams>();
+                    RESULTS.put(context.getShard(), results);
+                }
+                results.add(copy);
+            }
+        }
+
+        public static void reset() {
+            synchronized(RESULTS) {
+                RESULTS.clear();
+            }
+        }
+
+        /**
+         * Master results of all iterations of the given shard.
+         */
+        public static List<LogisticRegressionParams> getResults(int shard) {
+            synchronized(RESULTS) {
+                return new ArrayList<LogisticRegressionParams>(RESULTS.get(shard));
+            }
+        }
+
+        /**
+         * Weights of the last iteration, weights of sharded masters are concatenated by shard.
+         */
+        public static double[] getLastWeights() {
+            synchronized(RESULTS) {
+                List<double[]> slices = new ArrayList<double[]>();
+                int length = 0;
+                for(List<LogisticRegressionParams> results: RESULTS.values()) {
+                    double[] slice = results.get(results.size() - 1).getParameters();
+                    slices.add(slice);
+                    length += slice.length;
+                }
+                double[] weights = new double[length];
+                int offset = 0;
+                for(double[] slice: slices) {
+                    System.arraycopy(slice, 0, weights, offset, slice.length);
+                    offset += slice.length;
+                }
+                return weights;
+            }
+        }
+    }
+
 }
@@ -13,10 +13,12 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package ml.shifu.guagua.example.nn;
+package ml.shifu.guagua.mapreduce.example.nn;
 
 import java.util.Arrays;
 
+import ml.shifu.guagua.example.nn.ParallelGradient;
+
 import org.encog.engine.network.activation.ActivationFunction;
 import org.encog.mathutil.error.ErrorCalculation;
 import org.encog.ml.data.MLDataPair;
@@ -28,7 +30,10 @@ import org.encog.neural.networks.BasicNetwork;
 
 /**
  * {@link Gradient} is copied from Encog framework. The reason is that we original Gradient don't pop up
- * {@link #gradients} outside. While we need gradients accumulated into {@link NNMaster} to update NN weights.
+ * {@link #gradients} outside. While we need gradients accumulated into master to update NN weights.
+ * 
+ * <p>
+ * It computes all records serially in one thread and is kept as the reference result of {@link ParallelGradient}.
  */
 public class Gradient {
 
@@ -0,0 +1,91 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce.example.nn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import ml.shifu.guagua.example.nn.NNMaster;
+import ml.shifu.guagua.example.nn.meta.NNParams;
+import ml.shifu.guagua.master.MasterContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link NNMasterTest} checks a master restored from checkpoint state continues training as the original one.
+ */
+public class NNMasterTest {
+
+    @Test
+    public void testSaveAndRestoreState() throws IOException {
+        MasterContext<NNParams, NNParams> context = new MasterContext<NNParams, NNParams>(10, 2, new Properties(),
+                "app", "master", NNParams.class.getName(), NNParams.class.getName(), 1d, 0L);
+
+        NNMaster master = new NNMaster();
+        // first iteration initializes weights, second one initializes weight updater state
+        context.setCurrentIteration(1);
+        int weightSize = master.compute(context).getWeights().length;
+        context.setCurrentIteration(2);
+        context.setWorkerResults(workerResults(weightSize, 1));
+        master.compute(context);
+
+        byte[] state = saveState(master);
+        NNMaster restored = new NNMaster();
+        restored.restoreState(new DataInputStream(new ByteArrayInputStream(state)));
+        Assert.assertArrayEquals(state, saveState(restored));
+
+        // both masters compute the same weights in next iterations
+        for(int i = 3; i < 5; i++) {
+            context.setCurrentIteration(i);
+            context.setWorkerResults(workerResults(weightSize, i));
+            double[] expected = master.compute(context).getWeights().clone();
+            context.setWorkerResults(workerResults(weightSize, i));
+            double[] actual = restored.compute(context).getWeights();
+            Assert.assertArrayEquals(expected, actual, 1e-12);
+        }
+    }
+
+    private static byte[] saveState(NNMaster master) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        master.saveState(out);
+        out.flush();
+        return bos.toByteArray();
+    }
+
+    private static Iterable<NNParams> workerResults(int weightSize, int iteration) {
+        NNParams[] results = new NNParams[2];
+        for(int i = 0; i < results.length; i++) {
+            double[] gradients = new double[weightSize];
+            for(int j = 0; j < weightSize; j++) {
+                gradients[j] = ((j + i * iteration) % 7 - 3) * 0.01;
+            }
+            results[i] = new NNParams();
+            results[i].setGradients(gradients);
+            results[i].setTrainSize(100L);
+            results[i].setTrainError(0.1);
+            results[i].setTestError(0.2);
+        }
+        return Arrays.asList(results);
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce.example.nn;
+
+import java.util.Random;
+
+import ml.shifu.guagua.example.nn.NNUtils;
+import ml.shifu.guagua.example.nn.ParallelGradient;
+
+import org.encog.engine.network.activation.ActivationSigmoid;
+import org.encog.ml.data.MLDataSet;
+import org.encog.ml.data.basic.BasicMLDataSet;
+import org.encog.neural.error.LinearErrorFunction;
+import org.encog.neural.flat.FlatNetwork;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * {@link ParallelGradientTest} checks {@link ParallelGradient} computes the same gradients and train error as the
+ * serial {@link Gradient} with one and more threads and different batch sizes.
+ */
+public class ParallelGradientTest {
+
+    private static final double EPSILON = 1e-10;
+
+    private static final int RECORDS = 203;
+
+    private static final int INPUTS = 5;
+
+    private static final int HIDDENS = 4;
+
+    private static final int OUTPUTS = 2;
+
+    @Test
+    public void testOneThread() {
+        assertSameAsGradient(1, 1);
+        assertSameAsGradient(1, 7);
+        assertSameAsGradient(1, 128);
+        assertSameAsGradient(1, 1000);
+    }
+
+    @Test
+    public void testMultipleThreads() {
+        assertSameAsGradient(4, 1);
+        assertSameAsGradient(4, 7);
+        assertSameAsGradient(4, 128);
+        assertSameAsGradient(4, 1000);
+    }
+
+    private void assertSameAsGradient(int threads, int batchSize) {
+        MLDataSet training = randomDataSet(new Random(threads * 31 + batchSize));
+        FlatNetwork flat = NNUtils.generateNetwork(INPUTS, HIDDENS, OUTPUTS).getFlat();
+        double[] flatSpot = flatSpot(flat);
+
+        Gradient expected = new Gradient(flat.clone(), training, flatSpot, new LinearErrorFunction());
+        ParallelGradient actual = new ParallelGradient(flat.clone(), training, flatSpot, new LinearErrorFunction(),
+                threads, batchSize);
+        try {
+            // second run with updated weights checks kernel state is reset between runs
+            for(int run = 0; run < 2; run++) {
+                if(run > 0) {
+                    double[] weights = expected.getWeights().clone();
+                    for(int i = 0; i < weights.length; i++) {
+                        weights[i] -= 0.1 * expected.getGradients()[i];
+                    }
+                    expected.setWeights(weights);
+                    actual.setWeights(weights.clone());
+                }
+                expected.run();
+                actual.run();
+                String message = "threads " + threads + ", batch size " + batchSize + ", run " + run;
+                Assert.assertArrayEquals(message, expected.getGradients(), actual.getGradients(), EPSILON);
+                Assert.assertEquals(message, expected.getError(), actual.getError(), EPSILON);
+            }
+        } finally {
+            actual.close();
+        }
+    }
+
+    private static MLDataSet randomDataSet(Random random) {
+        double[][] input = new double[RECORDS][INPUTS];
+        double[][] ideal = new double[RECORDS][OUTPUTS];
+        for(int i = 0; i < RECORDS; i++) {
+            for(int j = 0; j < INPUTS; j++) {
+                input[i][j] = random.nextDouble();
+            }
+            for(int j = 0; j < OUTPUTS; j++) {
+                ideal[i][j] = random.nextInt(2);
+            }
+        }
+        return new BasicMLDataSet(input, ideal);
+    }
+
+    /**
+     * Same flat spot as NNWorker builds for sigmoid layers.
+     */
+    private static double[] flatSpot(FlatNetwork flat) {
+        double[] flatSpot = new double[flat.getActivationFunctions().length];
+        for(int i = 0; i < flatSpot.length; i++) {
+            flatSpot[i] = flat.getActivationFunctions()[i] instanceof ActivationSigmoid ? 0.1 : 0.0;
+        }
+        return flatSpot;
+    }
+
+}
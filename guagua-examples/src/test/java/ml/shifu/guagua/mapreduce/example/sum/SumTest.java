@@ -65,6 +65,33 @@ public class SumTest {
                 FileUtils.readLines(new File(System.getProperty("user.dir") + File.separator + SUM_OUTPUT)).get(0));
     }
 
+    @Test
+    public void testSumAppWithNettyRuntime() throws IOException {
+        Properties props = new Properties();
+        props.setProperty(GuaguaConstants.MASTER_COMPUTABLE_CLASS, SumMaster.class.getName());
+        props.setProperty(GuaguaConstants.WORKER_COMPUTABLE_CLASS, SumWorker.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_ITERATION_COUNT, "3");
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS, LongWritable.class.getName());
+        props.setProperty(GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS, LongWritable.class.getName());
+
+        props.setProperty(GuaguaConstants.GUAGUA_MASTER_INTERCEPTERS, SumOutput.class.getName());
+
+        props.setProperty(GuaguaConstants.GUAGUA_INPUT_DIR, getClass().getResource("/sum").toString());
+
+        props.setProperty("guagua.sum.output", SUM_OUTPUT);
+
+        // real zookeeper and netty coordinators in local threads
+        props.setProperty(GuaguaConstants.GUAGUA_UNIT_RUNTIME, GuaguaConstants.GUAGUA_UNIT_RUNTIME_NETTY);
+
+        GuaguaUnitDriver<GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<LongWritable>> driver = new GuaguaMRUnitDriver<GuaguaWritableAdapter<LongWritable>, GuaguaWritableAdapter<LongWritable>>(
+                props);
+
+        driver.run();
+
+        Assert.assertEquals(105 + "",
+                FileUtils.readLines(new File(System.getProperty("user.dir") + File.separator + SUM_OUTPUT)).get(0));
+    }
+
     @After
     public void tearDown() {
         FileUtils.deleteQuietly(new File(System.getProperty("user.dir") + File.separator + SUM_OUTPUT));
@@ -20,6 +20,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.GuaguaWritableSerializer;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.mapreduce.GuaguaMapReduceConstants;
@@ -30,6 +33,7 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
 import org.apache.hadoop.mapreduce.lib.input.InvalidInputException;
@@ -59,6 +63,25 @@ public class GuaguaMRUnitDriver<MASTER_RESULT extends Bytable, WORKER_RESULT ext
      */
     public GuaguaMRUnitDriver(Properties props) {
         super(props);
+        // like GuaguaMapReduceClient, writable results are serialized by GuaguaWritableSerializer in netty runtime.
+        setWritableSerializer(props, GuaguaConstants.GUAGUA_MASTER_RESULT_CLASS,
+                GuaguaConstants.GUAGUA_MASTER_IO_SERIALIZER);
+        setWritableSerializer(props, GuaguaConstants.GUAGUA_WORKER_RESULT_CLASS,
+                GuaguaConstants.GUAGUA_WORKER_IO_SERIALIZER);
+    }
+
+    private static void setWritableSerializer(Properties props, String resultClassKey, String serializerKey) {
+        String resultClassName = props.getProperty(resultClassKey);
+        if(resultClassName == null || props.getProperty(serializerKey) != null) {
+            return;
+        }
+        try {
+            if(Writable.class.isAssignableFrom(Class.forName(resultClassName))) {
+                props.setProperty(serializerKey, GuaguaWritableSerializer.class.getName());
+            }
+        } catch (ClassNotFoundException e) {
+            throw new GuaguaRuntimeException(e);
+        }
     }
 
     /**
@@ -0,0 +1,154 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.ColumnType;
+
+/**
+ * Values of one column in a row group, stored in primitive arrays which are reused among row groups.
+ */
+public class ColumnVector {
+
+    private final ColumnType type;
+
+    private double[] doubles;
+
+    private long[] longs;
+
+    private String[] strings;
+
+    private int size;
+
+    public ColumnVector(ColumnType type, int capacity) {
+        this.type = type;
+        ensureCapacity(capacity);
+    }
+
+    private void ensureCapacity(int capacity) {
+        switch(this.type) {
+            case DOUBLE:
+                if(this.doubles == null || this.doubles.length < capacity) {
+                    this.doubles = new double[capacity];
+                }
+                break;
+            case LONG:
+                if(this.longs == null || this.longs.length < capacity) {
+                    this.longs = new long[capacity];
+                }
+                break;
+            default:
+                if(this.strings == null || this.strings.length < capacity) {
+                    this.strings = new String[capacity];
+                }
+                break;
+        }
+    }
+
+    /**
+     * Decode a plain encoded column chunk with given rows.
+     */
+    public void decode(byte[] bytes, int length, int rows) throws IOException {
+        ensureCapacity(rows);
+        switch(this.type) {
+            case DOUBLE:
+                ByteBuffer.wrap(bytes, 0, length).asDoubleBuffer().get(this.doubles, 0, rows);
+                break;
+            case LONG:
+                ByteBuffer.wrap(bytes, 0, length).asLongBuffer().get(this.longs, 0, rows);
+                break;
+            default:
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+                for(int i = 0; i < rows; i++) {
+                    this.strings[i] = in.readUTF();
+                }
+                break;
+        }
+        this.size = rows;
+    }
+
+    public ColumnType getType() {
+        return type;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Numeric value at row, long values are converted to double.
+     */
+    public double getDouble(int row) {
+        switch(this.type) {
+            case DOUBLE:
+                return this.doubles[row];
+            case LONG:
+                return this.longs[row];
+            default:
+                return Double.parseDouble(this.strings[row]);
+        }
+    }
+
+    public long getLong(int row) {
+        switch(this.type) {
+            case LONG:
+                return this.longs[row];
+            case DOUBLE:
+                return (long) this.doubles[row];
+            default:
+                return Long.parseLong(this.strings[row]);
+        }
+    }
+
+    public String getString(int row) {
+        switch(this.type) {
+            case DOUBLE:
+                return Double.toString(this.doubles[row]);
+            case LONG:
+                return Long.toString(this.longs[row]);
+            default:
+                return this.strings[row];
+        }
+    }
+
+    /**
+     * Backing array of {@link ColumnType#DOUBLE} column for vectorized access, only the first {@link #size()} values
+     * are valid.
+     */
+    public double[] getDoubles() {
+        return doubles;
+    }
+
+    /**
+     * Backing array of {@link ColumnType#LONG} column for vectorized access, only the first {@link #size()} values are
+     * valid.
+     */
+    public long[] getLongs() {
+        return longs;
+    }
+
+    /**
+     * Backing array of {@link ColumnType#STRING} column, only the first {@link #size()} values are valid.
+     */
+    public String[] getStrings() {
+        return strings;
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Guagua columnar file format, a light-weight Parquet/ORC-style layout to load only selected columns of wide tables.
+ * 
+ * <pre>
+ * MAGIC
+ * row group 1: column chunk 1, column chunk 2, ..., column chunk n
+ * ...
+ * row group m
+ * footer: schema (column names and types), row group index (offset, rows, chunk offset/length/min/max)
+ * footer length (int)
+ * MAGIC
+ * </pre>
+ * 
+ * <p>
+ * Column chunks are plain encoded: 8 bytes per value for {@link ColumnType#DOUBLE} and {@link ColumnType#LONG},
+ * {@link DataOutput#writeUTF(String)} for {@link ColumnType#STRING}. Min and max statistics of numeric chunks are stored
+ * in footer for predicate pushdown. Since each chunk offset is in footer, reader only seeks to and reads chunks of
+ * selected columns.
+ * 
+ * <p>
+ * A row group belongs to the file split which contains its start offset, so any byte range split can be read
+ * correctly, while {@link #getRowGroupRanges(FileSystem, Path, long, long)} generates splits aligned to row groups.
+ * 
+ * @see GuaguaColumnarWriter
+ * @see GuaguaColumnarRecordReader
+ */
+public final class ColumnarFormat {
+
+    /**
+     * File extension of guagua columnar files.
+     */
+    public static final String EXTENSION = ".gcf";
+
+    static final byte[] MAGIC = new byte[] { 'G', 'C', 'F', '1' };
+
+    /**
+     * Footer length and tail magic.
+     */
+    static final int TAIL_LENGTH = 4 + MAGIC.length;
+
+    // To avoid somebody new ColumnarFormat
+    private ColumnarFormat() {
+    }
+
+    /**
+     * Column value types.
+     */
+    public static enum ColumnType {
+        DOUBLE, LONG, STRING;
+
+        public boolean isNumeric() {
+            return this != STRING;
+        }
+    }
+
+    /**
+     * Whether the file is a guagua columnar file by file extension.
+     */
+    public static boolean isColumnarFile(Path path) {
+        return path.getName().endsWith(EXTENSION);
+    }
+
+    /**
+     * Byte ranges of splits aligned to row group boundaries, each range is {offset, length} with about splitSize bytes.
+     */
+    public static List<long[]> getRowGroupRanges(FileSystem fs, Path path, long fileLength, long splitSize)
+            throws IOException {
+        List<long[]> ranges = new ArrayList<long[]>();
+        FSDataInputStream in = fs.open(path);
+        Footer footer;
+        try {
+            footer = readFooter(in, fileLength);
+        } finally {
+            in.close();
+        }
+        List<RowGroup> rowGroups = footer.getRowGroups();
+        if(rowGroups.isEmpty()) {
+            return ranges;
+        }
+        long rangeStart = rowGroups.get(0).getOffset();
+        for(int i = 0; i < rowGroups.size(); i++) {
+            long groupEnd = i + 1 < rowGroups.size() ? rowGroups.get(i + 1).getOffset() : footer.getOffset();
+            if(groupEnd - rangeStart >= splitSize || i == rowGroups.size() - 1) {
+                ranges.add(new long[] { rangeStart, groupEnd - rangeStart });
+                rangeStart = groupEnd;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Read footer from the tail of a columnar file.
+     */
+    public static Footer readFooter(FSDataInputStream in, long fileLength) throws IOException {
+        if(fileLength < MAGIC.length + TAIL_LENGTH) {
+            throw new IOException("Not a guagua columnar file, file is too short: " + fileLength);
+        }
+        in.seek(fileLength - TAIL_LENGTH);
+        int footerLength = in.readInt();
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for(int i = 0; i < MAGIC.length; i++) {
+            if(magic[i] != MAGIC[i]) {
+                throw new IOException("Not a guagua columnar file, invalid magic number.");
+            }
+        }
+        long footerOffset = fileLength - TAIL_LENGTH - footerLength;
+        in.seek(footerOffset);
+        Footer footer = new Footer();
+        footer.readFields(in);
+        footer.offset = footerOffset;
+        return footer;
+    }
+
+    /**
+     * Schema and row group index of a columnar file.
+     */
+    public static class Footer {
+
+        private String[] columnNames;
+
+        private ColumnType[] columnTypes;
+
+        private List<RowGroup> rowGroups = new ArrayList<RowGroup>();
+
+        private Map<String, Integer> columnIndexes;
+
+        /**
+         * Offset of footer in file, which is also the end of the last row group.
+         */
+        private long offset;
+
+        public Footer() {
+        }
+
+        public Footer(String[] columnNames, ColumnType[] columnTypes) {
+            if(columnNames.length != columnTypes.length) {
+                throw new IllegalArgumentException("Column names and types are not matched.");
+            }
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+            buildIndexes();
+        }
+
+        private void buildIndexes() {
+            this.columnIndexes = new HashMap<String, Integer>();
+            for(int i = 0; i < this.columnNames.length; i++) {
+                if(this.columnIndexes.put(this.columnNames[i], i) != null) {
+                    throw new IllegalArgumentException("Duplicated column name " + this.columnNames[i]);
+                }
+            }
+        }
+
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(this.columnNames.length);
+            for(int i = 0; i < this.columnNames.length; i++) {
+                out.writeUTF(this.columnNames[i]);
+                out.writeByte(this.columnTypes[i].ordinal());
+            }
+            out.writeInt(this.rowGroups.size());
+            for(RowGroup rowGroup: this.rowGroups) {
+                out.writeLong(rowGroup.offset);
+                out.writeInt(rowGroup.rows);
+                for(int i = 0; i < this.columnNames.length; i++) {
+                    out.writeLong(rowGroup.chunkOffsets[i]);
+                    out.writeInt(rowGroup.chunkLengths[i]);
+                    out.writeDouble(rowGroup.mins[i]);
+                    out.writeDouble(rowGroup.maxs[i]);
+                }
+            }
+        }
+
+        public void readFields(DataInput in) throws IOException {
+            int columns = in.readInt();
+            this.columnNames = new String[columns];
+            this.columnTypes = new ColumnType[columns];
+            for(int i = 0; i < columns; i++) {
+                this.columnNames[i] = in.readUTF();
+                this.columnTypes[i] = ColumnType.values()[in.readByte()];
+            }
+            buildIndexes();
+            int size = in.readInt();
+            this.rowGroups = new ArrayList<RowGroup>(size);
+            long firstRow = 0L;
+            for(int j = 0; j < size; j++) {
+                RowGroup rowGroup = new RowGroup(columns);
+                rowGroup.offset = in.readLong();
+                rowGroup.rows = in.readInt();
+                rowGroup.firstRow = firstRow;
+                for(int i = 0; i < columns; i++) {
+                    rowGroup.chunkOffsets[i] = in.readLong();
+                    rowGroup.chunkLengths[i] = in.readInt();
+                    rowGroup.mins[i] = in.readDouble();
+                    rowGroup.maxs[i] = in.readDouble();
+                }
+                firstRow += rowGroup.rows;
+                this.rowGroups.add(rowGroup);
+            }
+        }
+
+        /**
+         * Index of column by name, -1 if no such column.
+         */
+        public int getColumnIndex(String name) {
+            Integer index = this.columnIndexes.get(name);
+            return index == null ? -1 : index;
+        }
+
+        public String[] getColumnNames() {
+            return columnNames;
+        }
+
+        public ColumnType[] getColumnTypes() {
+            return columnTypes;
+        }
+
+        public List<RowGroup> getRowGroups() {
+            return Collections.unmodifiableList(rowGroups);
+        }
+
+        void addRowGroup(RowGroup rowGroup) {
+            this.rowGroups.add(rowGroup);
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+    }
+
+    /**
+     * Row group index with offset, length and min/max statistics of each column chunk.
+     */
+    public static class RowGroup {
+
+        private long offset;
+
+        private int rows;
+
+        /**
+         * Index of the first row of this row group in file, not persisted.
+         */
+        private long firstRow;
+
+        private final long[] chunkOffsets;
+
+        private final int[] chunkLengths;
+
+        private final double[] mins;
+
+        private final double[] maxs;
+
+        public RowGroup(int columns) {
+            this.chunkOffsets = new long[columns];
+            this.chunkLengths = new int[columns];
+            this.mins = new double[columns];
+            this.maxs = new double[columns];
+        }
+
+        void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        void setRows(int rows) {
+            this.rows = rows;
+        }
+
+        void setChunk(int column, long chunkOffset, int chunkLength, double min, double max) {
+            this.chunkOffsets[column] = chunkOffset;
+            this.chunkLengths[column] = chunkLength;
+            this.mins[column] = min;
+            this.maxs[column] = max;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getFirstRow() {
+            return firstRow;
+        }
+
+        public long getChunkOffset(int column) {
+            return chunkOffsets[column];
+        }
+
+        public int getChunkLength(int column) {
+            return chunkLengths[column];
+        }
+
+        /**
+         * Min value of numeric column in this row group, NaN if no statistics.
+         */
+        public double getMin(int column) {
+            return mins[column];
+        }
+
+        /**
+         * Max value of numeric column in this row group, NaN if no statistics.
+         */
+        public double getMax(int column) {
+            return maxs[column];
+        }
+    }
+
+}
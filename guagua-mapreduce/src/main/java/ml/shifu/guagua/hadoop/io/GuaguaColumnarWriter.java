@@ -0,0 +1,185 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.ColumnType;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.Footer;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.RowGroup;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * Writer of guagua columnar file, see {@link ColumnarFormat} for file layout.
+ * 
+ * <p>
+ * Rows are buffered in memory column by column and flushed as a row group every {@code rowGroupSize} rows.
+ * 
+ * <pre>
+ * GuaguaColumnarWriter writer = new GuaguaColumnarWriter(conf, new Path("data.gcf"), names, types, 10000);
+ * try {
+ *     writer.write(new Object[] { 1.0d, 2L, "a" });
+ * } finally {
+ *     writer.close();
+ * }
+ * </pre>
+ */
+public class GuaguaColumnarWriter {
+
+    private final FSDataOutputStream out;
+
+    private final Footer footer;
+
+    private final ColumnType[] types;
+
+    private final int rowGroupSize;
+
+    private final double[][] doubles;
+
+    private final long[][] longs;
+
+    private final String[][] strings;
+
+    private int rows;
+
+    private final ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream chunkOut = new DataOutputStream(chunkBytes);
+
+    public GuaguaColumnarWriter(Configuration conf, Path path, String[] columnNames, ColumnType[] columnTypes,
+            int rowGroupSize) throws IOException {
+        if(rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Row group size should be positive, but is " + rowGroupSize);
+        }
+        this.footer = new Footer(columnNames, columnTypes);
+        this.types = columnTypes;
+        this.rowGroupSize = rowGroupSize;
+        this.doubles = new double[columnTypes.length][];
+        this.longs = new long[columnTypes.length][];
+        this.strings = new String[columnTypes.length][];
+        for(int i = 0; i < columnTypes.length; i++) {
+            switch(columnTypes[i]) {
+                case DOUBLE:
+                    this.doubles[i] = new double[rowGroupSize];
+                    break;
+                case LONG:
+                    this.longs[i] = new long[rowGroupSize];
+                    break;
+                default:
+                    this.strings[i] = new String[rowGroupSize];
+                    break;
+            }
+        }
+        FileSystem fs = path.getFileSystem(conf);
+        this.out = fs.create(path, true, GuaguaConstants.DEFAULT_IO_BUFFER_SIZE);
+        this.out.write(ColumnarFormat.MAGIC);
+    }
+
+    /**
+     * Append one row, values should be {@link Number} for numeric columns and not null.
+     */
+    public void write(Object[] values) throws IOException {
+        if(values.length != this.types.length) {
+            throw new IllegalArgumentException("Expect " + this.types.length + " values but got " + values.length);
+        }
+        for(int i = 0; i < values.length; i++) {
+            switch(this.types[i]) {
+                case DOUBLE:
+                    this.doubles[i][this.rows] = ((Number) values[i]).doubleValue();
+                    break;
+                case LONG:
+                    this.longs[i][this.rows] = ((Number) values[i]).longValue();
+                    break;
+                default:
+                    this.strings[i][this.rows] = values[i].toString();
+                    break;
+            }
+        }
+        this.rows += 1;
+        if(this.rows == this.rowGroupSize) {
+            flushRowGroup();
+        }
+    }
+
+    private void flushRowGroup() throws IOException {
+        if(this.rows == 0) {
+            return;
+        }
+        RowGroup rowGroup = new RowGroup(this.types.length);
+        rowGroup.setOffset(this.out.getPos());
+        rowGroup.setRows(this.rows);
+        for(int i = 0; i < this.types.length; i++) {
+            this.chunkBytes.reset();
+            double min = Double.NaN, max = Double.NaN;
+            switch(this.types[i]) {
+                case DOUBLE:
+                    min = Double.POSITIVE_INFINITY;
+                    max = Double.NEGATIVE_INFINITY;
+                    for(int j = 0; j < this.rows; j++) {
+                        double value = this.doubles[i][j];
+                        this.chunkOut.writeDouble(value);
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                    break;
+                case LONG:
+                    min = Double.POSITIVE_INFINITY;
+                    max = Double.NEGATIVE_INFINITY;
+                    for(int j = 0; j < this.rows; j++) {
+                        long value = this.longs[i][j];
+                        this.chunkOut.writeLong(value);
+                        min = Math.min(min, value);
+                        max = Math.max(max, value);
+                    }
+                    break;
+                default:
+                    for(int j = 0; j < this.rows; j++) {
+                        this.chunkOut.writeUTF(this.strings[i][j]);
+                        this.strings[i][j] = null;
+                    }
+                    break;
+            }
+            this.chunkOut.flush();
+            rowGroup.setChunk(i, this.out.getPos(), this.chunkBytes.size(), min, max);
+            this.chunkBytes.writeTo(this.out);
+        }
+        this.footer.addRowGroup(rowGroup);
+        this.rows = 0;
+    }
+
+    /**
+     * Flush buffered rows and write footer.
+     */
+    public void close() throws IOException {
+        try {
+            flushRowGroup();
+            long footerOffset = this.out.getPos();
+            this.footer.write(this.out);
+            this.out.writeInt((int) (this.out.getPos() - footerOffset));
+            this.out.write(ColumnarFormat.MAGIC);
+        } finally {
+            this.out.close();
+        }
+    }
+
+}
@@ -16,19 +16,24 @@
 package ml.shifu.guagua.hadoop.io;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.io.GuaguaRecordReader;
+import ml.shifu.guagua.io.ReadAheadInputStream;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Seekable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionCodec;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
 import org.apache.hadoop.util.LineReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -64,6 +69,11 @@ public class GuaguaLineRecordReader implements
     private long pos;
     private long end;
     private LineReader in;
+    private Decompressor decompressor;
+    /**
+     * Position in compressed file if file is compressed by a splittable codec, else null.
+     */
+    private Seekable filePosition;
     private int maxLineLength;
     private GuaguaWritableAdapter<LongWritable> key = null;
     private GuaguaWritableAdapter<Text> value = null;
@@ -89,31 +99,62 @@ public class GuaguaLineRecordReader implements
      */
     @Override
     public void initialize(GuaguaFileSplit split) throws IOException {
+        // release stream and decompressor of last split if this reader is reused
+        close();
         this.maxLineLength = this.conf.getInt("mapred.linerecordreader.maxlength", Integer.MAX_VALUE);
-        int ioBufferSize = this.conf.getInt("io.file.buffer.size", GuaguaConstants.DEFAULT_IO_BUFFER_SIZE);
+        int bufferSize = this.conf.getInt(GuaguaConstants.GUAGUA_READER_BUFFER_SIZE,
+                GuaguaConstants.GUAGUA_DEFAULT_READER_BUFFER_SIZE);
+        int readAheadDepth = this.conf.getInt(GuaguaConstants.GUAGUA_READER_READAHEAD_DEPTH,
+                GuaguaConstants.GUAGUA_DEFAULT_READER_READAHEAD_DEPTH);
         start = split.getOffset();
         end = start + split.getLength();
         final Path file = new Path(split.getPath());
-        compressionCodecs = new CompressionCodecFactory(this.conf);
+        if(compressionCodecs == null) {
+            compressionCodecs = new CompressionCodecFactory(this.conf);
+        }
         final CompressionCodec codec = compressionCodecs.getCodec(file);
 
-        // open the file and seek to the start of the split
-        FileSystem fs = file.getFileSystem(new Configuration());
-        FSDataInputStream fileIn = fs.open(file);
+        // open the file and seek to the start of the split, file system instance is cached by hadoop
+        FileSystem fs = file.getFileSystem(this.conf);
+        FSDataInputStream fileIn = fs.open(file, bufferSize);
         boolean skipFirstLine = false;
+        InputStream stream;
         if(codec != null) {
-            in = new LineReader(codec.createInputStream(fileIn), GuaguaConstants.DEFAULT_IO_BUFFER_SIZE);
-            end = Long.MAX_VALUE;
+            // decompressor is borrowed from pool and returned in close to be reused by next split
+            decompressor = CodecPool.getDecompressor(codec);
+            if(SplitCompressionUtils.isSplittable(codec)) {
+                // only decompress blocks of current split like bzip2 split reading in hadoop LineRecordReader
+                SplitCompressionUtils.SplitInput splitInput = SplitCompressionUtils.createInputStream(codec, fileIn,
+                        decompressor, start, end);
+                stream = splitInput.getStream();
+                filePosition = splitInput.getPosition();
+                start = splitInput.getStart();
+                end = splitInput.getEnd();
+                skipFirstLine = start != 0;
+            } else {
+                stream = codec.createInputStream(fileIn, decompressor);
+                // whole file is read by the split starting from 0, other splits of the same file have no records
+                end = start == 0 ? Long.MAX_VALUE : start;
+                if(readAheadDepth > 0 && start == 0) {
+                    // non-splittable codec like gzip is inflated in read-ahead thread while lines are parsed here
+                    stream = new ReadAheadInputStream(stream, bufferSize, readAheadDepth);
+                }
+            }
         } else {
             if(start != 0) {
                 skipFirstLine = true;
                 --start;
                 fileIn.seek(start);
             }
-            in = new LineReader(fileIn, ioBufferSize);
+            stream = fileIn;
+            if(readAheadDepth > 0) {
+                // only read ahead bytes of current split, last line crossing split end is read in this thread
+                stream = new ReadAheadInputStream(fileIn, bufferSize, readAheadDepth, end - start);
+            }
         }
+        in = new LineReader(stream, bufferSize);
         if(skipFirstLine) { // skip first line and re-establish "start".
-            start += in.readLine(new Text(), 0, (int) Math.min((long) Integer.MAX_VALUE, end - start));
+            start += in.readLine(new Text(), 0, maxBytesToConsume(start));
         }
         this.pos = start;
     }
@@ -128,14 +169,26 @@ public class GuaguaLineRecordReader implements
         if(key == null) {
             key = new GuaguaWritableAdapter<LongWritable>(new LongWritable());
         }
-        key.getWritable().set(pos);
         if(value == null) {
             value = new GuaguaWritableAdapter<Text>(new Text());
         }
+        if(readLine(key.getWritable(), value.getWritable())) {
+            return true;
+        } else {
+            key = null;
+            value = null;
+            return false;
+        }
+    }
+
+    /**
+     * Read next line into value with its start position as key, return false if no more lines in this split.
+     */
+    private boolean readLine(LongWritable lineKey, Text lineValue) throws IOException {
+        lineKey.set(pos);
         int newSize = 0;
-        while(pos < end) {
-            newSize = in.readLine(value.getWritable(), maxLineLength,
-                    Math.max((int) Math.min(Integer.MAX_VALUE, end - pos), maxLineLength));
+        while(filePosition == null ? pos < end : filePosition.getPos() <= end) {
+            newSize = in.readLine(lineValue, maxLineLength, Math.max(maxBytesToConsume(pos), maxLineLength));
             if(newSize == 0) {
                 break;
             }
@@ -147,13 +200,15 @@ public class GuaguaLineRecordReader implements
             // line too long. try again
             LOG.info("Skipped line of size {} at pos {}", newSize, (pos - newSize));
         }
-        if(newSize == 0) {
-            key = null;
-            value = null;
-            return false;
-        } else {
-            return true;
-        }
+        return newSize != 0;
+    }
+
+    /**
+     * Bytes limit of next line. Decompressed bytes cannot be compared with split end in compressed file, so no limit
+     * for split compressed input.
+     */
+    private int maxBytesToConsume(long position) {
+        return filePosition != null ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, end - position);
     }
 
     /*
@@ -183,7 +238,15 @@ public class GuaguaLineRecordReader implements
         if(start == end) {
             return 0.0f;
         } else {
-            return Math.min(1.0f, (pos - start) / (float) (end - start));
+            long position = pos;
+            if(filePosition != null) {
+                try {
+                    position = filePosition.getPos();
+                } catch (IOException e) {
+                    LOG.debug("Error in getting compressed file position.", e);
+                }
+            }
+            return Math.min(1.0f, (position - start) / (float) (end - start));
         }
     }
 
@@ -194,8 +257,17 @@ public class GuaguaLineRecordReader implements
      */
     @Override
     public synchronized void close() throws IOException {
-        if(in != null) {
-            in.close();
+        try {
+            if(in != null) {
+                in.close();
+            }
+        } finally {
+            in = null;
+            filePosition = null;
+            if(decompressor != null) {
+                CodecPool.returnDecompressor(decompressor);
+                decompressor = null;
+            }
         }
     }
 }
\ No newline at end of file
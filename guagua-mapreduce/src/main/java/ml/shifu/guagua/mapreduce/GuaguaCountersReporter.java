@@ -0,0 +1,99 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce;
+
+import java.util.Properties;
+
+import ml.shifu.guagua.metrics.ClusterMetricsSummary;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.metrics.Metric;
+import ml.shifu.guagua.metrics.MetricsReporter;
+
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+/**
+ * {@link GuaguaCountersReporter} exports guagua metrics to Hadoop counters in group
+ * {@link GuaguaMapReduceConstants#GUAGUA_METRICS}, which is registered by {@link GuaguaMapper}.
+ * 
+ * <p>
+ * Counters are aggregated by Hadoop over all tasks, so time, io and spill metrics are accumulated over iterations.
+ * Gauge metrics like {@link Metric#HEAP_USED} cannot be summed over tasks, they are only set by master task with the max
+ * value in {@link ClusterMetricsSummary}s and master itself, workers' gauge counters are left as 0. Then job counter
+ * which is the sum over all tasks is the max value in the whole cluster.
+ */
+public class GuaguaCountersReporter implements MetricsReporter {
+
+    private final TaskInputOutputContext<?, ?, ?, ?> context;
+
+    /**
+     * Max values of gauge metrics.
+     */
+    private final long[] maxGauges = new long[Metric.values().length];
+
+    /**
+     * Whether cluster summary is received, which means this task is master and should set gauge counters.
+     */
+    private boolean isSummaryReceived = false;
+
+    public GuaguaCountersReporter(TaskInputOutputContext<?, ?, ?, ?> context) {
+        this.context = context;
+    }
+
+    @Override
+    public void init(Properties props, String containerId) {
+        // context is set in constructor
+    }
+
+    @Override
+    public synchronized void report(IterationMetrics metrics) {
+        for(Metric metric: Metric.values()) {
+            if(metric.isGauge()) {
+                updateGauge(metric, metrics.get(metric));
+            } else {
+                getCounter(metric).increment(metrics.get(metric));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reportSummary(ClusterMetricsSummary summary) {
+        // non-gauge metrics of workers are aggregated by Hadoop counters already.
+        this.isSummaryReceived = true;
+        for(Metric metric: Metric.values()) {
+            if(metric.isGauge()) {
+                updateGauge(metric, summary.getMax(metric));
+            }
+        }
+    }
+
+    private void updateGauge(Metric metric, long value) {
+        this.maxGauges[metric.ordinal()] = Math.max(this.maxGauges[metric.ordinal()], value);
+        if(this.isSummaryReceived) {
+            getCounter(metric).setValue(this.maxGauges[metric.ordinal()]);
+        }
+    }
+
+    private Counter getCounter(Metric metric) {
+        return this.context.getCounter(GuaguaMapReduceConstants.GUAGUA_METRICS, metric.name());
+    }
+
+    @Override
+    public void close() {
+        // nothing to close
+    }
+
+}
@@ -28,8 +28,11 @@ import java.util.Set;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat;
+import ml.shifu.guagua.hadoop.io.CostBalancedSplitCombiner;
 import ml.shifu.guagua.hadoop.io.GuaguaInputSplit;
 
+import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.BlockLocation;
 import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
@@ -92,9 +95,13 @@ public class GuaguaInputFormat extends TextInputFormat {
             // in hadoop 2.0 such keys are changed
             job.getConfiguration().setLong("mapreduce.input.fileinputformat.split.minsize", 1);
             job.getConfiguration().setLong("mapreduce.input.fileinputformat.split.maxsize", combineSize);
-            List<InputSplit> splits = super.getSplits(job);
+            List<InputSplit> splits = alignColumnarSplits(job, super.getSplits(job), combineSize);
             LOG.debug("combine size:{}, splits:{}", combineSize, splits);
-            newSplits = getFinalCombineGuaguaSplits(splits, combineSize);
+            if(job.getConfiguration().getBoolean(GuaguaConstants.GUAGUA_SPLIT_COST_BALANCED, false)) {
+                newSplits = getCostBalancedGuaguaSplits(job.getConfiguration(), splits, combineSize);
+            } else {
+                newSplits = getFinalCombineGuaguaSplits(splits, combineSize);
+            }
         } else {
             newSplits = getGuaguaSplits(job);
         }
@@ -122,8 +129,21 @@ public class GuaguaInputFormat extends TextInputFormat {
             Thread.currentThread().interrupt();
             throw new GuaguaRuntimeException(e);
         }
-        newSplits = new ArrayList<InputSplit>();
-        for(List<InputSplit> inputSplits: combinePigSplits) {
+        return toGuaguaSplits(combinePigSplits);
+    }
+
+    /**
+     * Combine splits by estimated load cost (compression codec, file format and record density) instead of on-disk
+     * bytes, see {@link CostBalancedSplitCombiner}.
+     */
+    protected List<InputSplit> getCostBalancedGuaguaSplits(Configuration conf, List<InputSplit> splits,
+            long combineSize) throws IOException {
+        return toGuaguaSplits(new CostBalancedSplitCombiner(conf).combine(splits, combineSize));
+    }
+
+    private List<InputSplit> toGuaguaSplits(List<List<InputSplit>> combinedSplits) {
+        List<InputSplit> newSplits = new ArrayList<InputSplit>();
+        for(List<InputSplit> inputSplits: combinedSplits) {
             FileSplit[] fss = new FileSplit[inputSplits.size()];
             for(int i = 0; i < inputSplits.size(); i++) {
                 fss[i] = (FileSplit) (inputSplits.get(i));
@@ -133,6 +153,33 @@ public class GuaguaInputFormat extends TextInputFormat {
         return newSplits;
     }
 
+    /**
+     * Replace byte range splits of columnar files with splits aligned to row groups.
+     */
+    private List<InputSplit> alignColumnarSplits(JobContext job, List<InputSplit> splits, long splitSize)
+            throws IOException {
+        List<InputSplit> alignedSplits = new ArrayList<InputSplit>();
+        Set<Path> columnarFiles = new HashSet<Path>();
+        for(InputSplit split: splits) {
+            Path path = ((FileSplit) split).getPath();
+            if(!ColumnarFormat.isColumnarFile(path) || ((FileSplit) split).getLength() == 0) {
+                alignedSplits.add(split);
+                continue;
+            }
+            if(!columnarFiles.add(path)) {
+                continue;
+            }
+            FileSystem fs = path.getFileSystem(job.getConfiguration());
+            FileStatus file = fs.getFileStatus(path);
+            BlockLocation[] blkLocations = fs.getFileBlockLocations(file, 0, file.getLen());
+            for(long[] range: ColumnarFormat.getRowGroupRanges(fs, path, file.getLen(), splitSize)) {
+                alignedSplits.add(new FileSplit(path, range[0], range[1],
+                        blkLocations[getBlockIndex(blkLocations, range[0])].getHosts()));
+            }
+        }
+        return alignedSplits;
+    }
+
     /**
      * Generate the list of files and make them into FileSplits.
      */
@@ -151,7 +198,14 @@ public class GuaguaInputFormat extends TextInputFormat {
             FileSystem fs = path.getFileSystem(job.getConfiguration());
             long length = file.getLen();
             BlockLocation[] blkLocations = fs.getFileBlockLocations(file, 0, length);
-            if((length != 0) && isSplitable(job, path)) {
+            if((length != 0) && ColumnarFormat.isColumnarFile(path)) {
+                // columnar file is split at row group boundaries
+                long splitSize = computeSplitSize(file.getBlockSize(), minSize, maxSize);
+                for(long[] range: ColumnarFormat.getRowGroupRanges(fs, path, length, splitSize)) {
+                    splits.add(new GuaguaInputSplit(false, new FileSplit(path, range[0], range[1],
+                            blkLocations[getBlockIndex(blkLocations, range[0])].getHosts())));
+                }
+            } else if((length != 0) && isSplitable(job, path)) {
                 long blockSize = file.getBlockSize();
                 long splitSize = computeSplitSize(blockSize, minSize, maxSize);
 
@@ -30,6 +30,7 @@ import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.coordinator.zk.ZooKeeperUtils;
 import ml.shifu.guagua.hadoop.io.GuaguaOptionsParser;
 import ml.shifu.guagua.hadoop.io.GuaguaWritableSerializer;
+import ml.shifu.guagua.hadoop.io.HdfsCheckpointStorage;
 import ml.shifu.guagua.hadoop.util.HDPUtils;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.HaltBytable;
@@ -433,6 +434,7 @@ public class GuaguaMapReduceClient {
         checkMasterClassSetting(conf, cmdLine);
         checkIterationCountSetting(conf, cmdLine);
         checkResultClassSetting(conf, cmdLine);
+        checkRepartitionSetting(conf);
         String name = checkMapReduceNameSetting(cmdLine);
         @SuppressWarnings("rawtypes")
         Class<? extends InputFormat> inputFormatClass = checkInputFormatSetting(cmdLine);
@@ -505,6 +507,18 @@ public class GuaguaMapReduceClient {
         return name;
     }
 
+    /**
+     * Records are handed off between workers on different hosts by files, so HDFS is used for data re-partitioning if
+     * no storage is set.
+     */
+    private static void checkRepartitionSetting(Configuration conf) {
+        if(conf.getBoolean(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, false)
+                && conf.get(GuaguaConstants.GUAGUA_REPARTITION_STORAGE) == null
+                && conf.get(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE) == null) {
+            conf.set(GuaguaConstants.GUAGUA_REPARTITION_STORAGE, HdfsCheckpointStorage.class.getName());
+        }
+    }
+
     private static void checkResultClassSetting(Configuration conf, CommandLine cmdLine) {
         Class<?> masterResultClass;
         if(!cmdLine.hasOption("-mr")) {
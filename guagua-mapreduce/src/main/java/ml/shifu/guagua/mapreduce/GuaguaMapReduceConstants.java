@@ -81,4 +81,6 @@ public final class GuaguaMapReduceConstants {
 
     public static final String GUAGUA_STATUS = "GUAGUA_STATUS";
 
+    public static final String GUAGUA_METRICS = "GUAGUA_METRICS";
+
 }
@@ -102,6 +102,8 @@ public class GuaguaMapper<MASTER_RESULT extends Bytable, WORKER_RESULT extends B
         this.getGuaguaService().setContainerId(
                 context.getConfiguration().get(GuaguaMapReduceConstants.MAPRED_TASK_PARTITION));
         this.getGuaguaService().init(props);
+        // export guagua metrics to hadoop counters
+        this.getGuaguaService().getMetricsRegistry().addReporter(new GuaguaCountersReporter(context));
         this.getGuaguaService().start();
     }
 
@@ -194,13 +196,21 @@ public class GuaguaMapper<MASTER_RESULT extends Bytable, WORKER_RESULT extends B
         }
     }
 
+    /**
+     * Check whether all workers are done by job counters. Counters are checked at once and then with increasing sleep
+     * time up to 5s, so a finished job is not delayed by a fixed sleep.
+     */
     public static boolean isJobFinised(Configuration conf, int retryCount) throws InterruptedException, IOException {
+        org.apache.hadoop.mapred.JobClient jobClient = new org.apache.hadoop.mapred.JobClient(
+                (org.apache.hadoop.mapred.JobConf) conf);
+        JobID jobId = JobID.forName(conf.get(GuaguaMapReduceConstants.MAPRED_JOB_ID));
+        long sleepTime = 500L;
         int i = 0;
         while(i < retryCount) {
-            Thread.sleep(5000);
-            org.apache.hadoop.mapred.JobClient jobClient = new org.apache.hadoop.mapred.JobClient(
-                    (org.apache.hadoop.mapred.JobConf) conf);
-            JobID jobId = JobID.forName(conf.get(GuaguaMapReduceConstants.MAPRED_JOB_ID));
+            if(i > 0) {
+                Thread.sleep(sleepTime);
+                sleepTime = Math.min(sleepTime * 2, 5000L);
+            }
             RunningJob job = jobClient.getJob(jobId);
             Counter counter = job.getCounters().findCounter(GuaguaMapReduceConstants.GUAGUA_STATUS,
                     GuaguaMapReduceConstants.DONE_WORKERS);
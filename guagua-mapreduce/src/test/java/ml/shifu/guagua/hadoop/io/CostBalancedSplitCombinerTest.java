@@ -0,0 +1,175 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.util.FileUtils;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link CostBalancedSplitCombinerTest} checks cost estimation and LPT packing of {@link CostBalancedSplitCombiner}.
+ */
+public class CostBalancedSplitCombinerTest {
+
+    private File dir;
+
+    private Configuration conf;
+
+    @Before
+    public void setUp() {
+        this.dir = new File(FileUtils.getTempDirectory(), "_guagua_split_cost_test_" + System.nanoTime());
+        this.dir.mkdirs();
+        this.conf = new Configuration();
+        this.conf.set("fs.default.name", "file:///");
+    }
+
+    @Test
+    public void testCompressedCost() throws IOException {
+        FileSplit plain = newSplit("plain.txt", 0L, 100L);
+        FileSplit gzip = newSplit("data.gz", 0L, 100L);
+        FileSplit bzip2 = newSplit("data.bz2", 0L, 100L);
+        List<InputSplit> splits = new ArrayList<InputSplit>();
+        splits.add(plain);
+        splits.add(gzip);
+        splits.add(bzip2);
+
+        Map<InputSplit, Double> costs = new CostBalancedSplitCombiner(this.conf).estimate(splits);
+        Assert.assertEquals(100d, costs.get(plain), 1e-6);
+        Assert.assertEquals(100d * GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_GZIP_RATIO, costs.get(gzip), 1e-6);
+        Assert.assertEquals(100d * GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_BZIP2_RATIO, costs.get(bzip2), 1e-6);
+
+        this.conf.setFloat(GuaguaConstants.GUAGUA_SPLIT_COST_GZIP_RATIO, 2f);
+        Assert.assertEquals(200d, new CostBalancedSplitCombiner(this.conf).estimate(splits).get(gzip), 1e-6);
+    }
+
+    @Test
+    public void testCompressedSplitHasOwnWorker() throws IOException {
+        // 100 gzip bytes are 500 plain bytes, which is as much as all plain splits
+        List<InputSplit> splits = new ArrayList<InputSplit>();
+        for(int i = 0; i < 5; i++) {
+            splits.add(newSplit("plain.txt", i * 100L, 100L));
+        }
+        FileSplit gzip = newSplit("data.gz", 0L, 100L);
+        splits.add(gzip);
+
+        List<List<InputSplit>> groups = new CostBalancedSplitCombiner(this.conf).combine(splits, 500L);
+        Assert.assertEquals(2, groups.size());
+        assertAllAssignedOnce(splits, groups);
+        for(List<InputSplit> group: groups) {
+            if(group.contains(gzip)) {
+                Assert.assertEquals(1, group.size());
+            } else {
+                Assert.assertEquals(5, group.size());
+            }
+        }
+    }
+
+    @Test
+    public void testLptBins() throws IOException {
+        long[] lengths = new long[] { 30L, 70L, 40L, 60L, 50L };
+        List<InputSplit> splits = new ArrayList<InputSplit>();
+        long start = 0L;
+        for(long length: lengths) {
+            splits.add(newSplit("plain.txt", start, length));
+            start += length;
+        }
+
+        // bins = ceil(250 / 125)
+        List<List<InputSplit>> groups = new CostBalancedSplitCombiner(this.conf).combine(splits, 125L);
+        Assert.assertEquals(2, groups.size());
+        assertAllAssignedOnce(splits, groups);
+        // LPT: 70 and 60 open two bins, 50 goes to 60, 40 to 70, then 30 to the first bin of a tie
+        long max = 0L, min = Long.MAX_VALUE;
+        for(List<InputSplit> group: groups) {
+            long load = 0L;
+            for(InputSplit split: group) {
+                load += ((FileSplit) split).getLength();
+            }
+            max = Math.max(max, load);
+            min = Math.min(min, load);
+        }
+        Assert.assertEquals(140L, max);
+        Assert.assertEquals(110L, min);
+
+        // bins = ceil(250 / 1000)
+        Assert.assertEquals(1, new CostBalancedSplitCombiner(this.conf).combine(splits, 1000L).size());
+    }
+
+    @Test
+    public void testBinsCappedBySplits() throws IOException {
+        List<InputSplit> splits = new ArrayList<InputSplit>();
+        splits.add(newSplit("plain.txt", 0L, 100L));
+        splits.add(newSplit("data.gz", 0L, 100L));
+
+        // cost is 600 with combine size 1, but no worker should be empty
+        List<List<InputSplit>> groups = new CostBalancedSplitCombiner(this.conf).combine(splits, 1L);
+        Assert.assertEquals(2, groups.size());
+        for(List<InputSplit> group: groups) {
+            Assert.assertEquals(1, group.size());
+        }
+
+        Assert.assertTrue(new CostBalancedSplitCombiner(this.conf).combine(new ArrayList<InputSplit>(), 1L).isEmpty());
+    }
+
+    private static void assertAllAssignedOnce(List<InputSplit> splits, List<List<InputSplit>> groups) {
+        Map<InputSplit, Integer> counts = new IdentityHashMap<InputSplit, Integer>();
+        for(List<InputSplit> group: groups) {
+            for(InputSplit split: group) {
+                Integer count = counts.get(split);
+                counts.put(split, count == null ? 1 : count + 1);
+            }
+        }
+        Assert.assertEquals(splits.size(), counts.size());
+        for(Integer count: counts.values()) {
+            Assert.assertEquals(1, count.intValue());
+        }
+    }
+
+    private FileSplit newSplit(String name, long start, long length) throws IOException {
+        File file = new File(this.dir, name);
+        if(!file.exists()) {
+            FileOutputStream out = new FileOutputStream(file);
+            try {
+                out.write("1\n2\n3\n".getBytes("UTF-8"));
+            } finally {
+                out.close();
+            }
+        }
+        return new FileSplit(new Path(file.toURI()), start, length, new String[0]);
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(this.dir);
+    }
+
+}
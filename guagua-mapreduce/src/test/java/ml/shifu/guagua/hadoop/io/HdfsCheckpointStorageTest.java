@@ -0,0 +1,116 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.master.MasterCheckpointService;
+import ml.shifu.guagua.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link HdfsCheckpointStorageTest} checks {@link HdfsCheckpointStorage} on Hadoop local file system.
+ */
+public class HdfsCheckpointStorageTest {
+
+    private File checkpointDir;
+
+    private Properties props;
+
+    @Before
+    public void setUp() {
+        this.checkpointDir = new File(FileUtils.getTempDirectory(), "_guagua_hdfs_checkpoint_test_" + System.nanoTime());
+        this.props = new Properties();
+        this.props.setProperty("fs.default.name", "file:///");
+        this.props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_ENABLE, "true");
+        this.props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_DIR, this.checkpointDir.getPath());
+        this.props.setProperty(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE, HdfsCheckpointStorage.class.getName());
+    }
+
+    @Test
+    public void testStorageOperations() throws IOException {
+        HdfsCheckpointStorage storage = new HdfsCheckpointStorage();
+        storage.init(this.props);
+        String src = this.checkpointDir.getPath() + "/a.tmp";
+        String dst = this.checkpointDir.getPath() + "/a";
+
+        OutputStream out = storage.create(src);
+        out.write(new byte[] { 1, 2, 3 });
+        out.close();
+        Assert.assertTrue(storage.exists(src));
+
+        // rename overwrites existing destination
+        OutputStream old = storage.create(dst);
+        old.write(9);
+        old.close();
+        Assert.assertTrue(storage.rename(src, dst));
+        Assert.assertFalse(storage.exists(src));
+
+        InputStream in = storage.open(dst);
+        byte[] bytes = new byte[3];
+        Assert.assertEquals(3, in.read(bytes));
+        Assert.assertEquals(-1, in.read());
+        in.close();
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, bytes);
+
+        Assert.assertTrue(storage.delete(this.checkpointDir.getPath()));
+        Assert.assertFalse(storage.exists(dst));
+    }
+
+    @Test
+    public void testCheckpointRoundTrip() throws Exception {
+        MasterCheckpointService service = new MasterCheckpointService(this.props, "app");
+        try {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final String[] published = new String[1];
+            Assert.assertTrue(service.submit(3, new byte[] { 4, 5 }, new byte[] { 6 },
+                    new MasterCheckpointService.Callback() {
+                        @Override
+                        public void onCheckpoint(int iteration, String path) throws Exception {
+                            published[0] = path;
+                            latch.countDown();
+                        }
+                    }));
+            Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+            MasterCheckpointService.Checkpoint checkpoint = service.read(published[0]);
+            Assert.assertEquals(3, checkpoint.getIteration());
+            Assert.assertArrayEquals(new byte[] { 4, 5 }, checkpoint.getMasterResult());
+            Assert.assertArrayEquals(new byte[] { 6 }, checkpoint.getState());
+        } finally {
+            service.close(1000L);
+            service.cleanup();
+        }
+        Assert.assertFalse(this.checkpointDir.exists());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(this.checkpointDir);
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.mapreduce;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import ml.shifu.guagua.hadoop.io.ColumnPredicate;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.ColumnType;
+import ml.shifu.guagua.hadoop.io.ColumnarRecord;
+import ml.shifu.guagua.hadoop.io.GuaguaColumnarRecordReader;
+import ml.shifu.guagua.hadoop.io.GuaguaColumnarWriter;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GuaguaColumnarRecordReaderTest {
+
+    private static final int ROWS = 1000;
+
+    private Configuration conf;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        this.conf = new Configuration();
+        this.file = File.createTempFile("guagua", ColumnarFormat.EXTENSION);
+        GuaguaColumnarWriter writer = new GuaguaColumnarWriter(this.conf, new Path(this.file.toURI()), new String[] {
+                "id", "weight", "name", "score" }, new ColumnType[] { ColumnType.LONG, ColumnType.DOUBLE,
+                ColumnType.STRING, ColumnType.DOUBLE }, 64);
+        try {
+            for(int i = 0; i < ROWS; i++) {
+                writer.write(new Object[] { (long) i, i * 0.5d, "name" + i, i % 10 * 1d });
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testProjectionAndPredicate() throws IOException {
+        GuaguaColumnarRecordReader reader = new GuaguaColumnarRecordReader();
+        reader.setProjection(new String[] { "name", "id" });
+        reader.setPredicates(ColumnPredicate.parse("id>=500,score=3"));
+        reader.initialize(new GuaguaFileSplit(this.file.toURI().toString(), 0, this.file.length()));
+        int count = 0;
+        try {
+            while(reader.nextKeyValue()) {
+                ColumnarRecord record = reader.getCurrentValue();
+                Assert.assertEquals(2, record.getColumnCount());
+                long id = record.getLong(1);
+                Assert.assertTrue(id >= 500 && id % 10 == 3);
+                Assert.assertEquals("name" + id, record.getString(0));
+                Assert.assertEquals(id, reader.getCurrentKey().getWritable().get());
+                count += 1;
+            }
+        } finally {
+            reader.close();
+        }
+        Assert.assertEquals(50, count);
+    }
+
+    @Test
+    public void testRowGroupAlignedSplits() throws IOException {
+        Path path = new Path(this.file.toURI());
+        FileSystem fs = path.getFileSystem(this.conf);
+        List<long[]> ranges = ColumnarFormat.getRowGroupRanges(fs, path, this.file.length(), 4096);
+        Assert.assertTrue(ranges.size() > 1);
+        Assert.assertEquals(ROWS * (ROWS - 1L) / 2, sumIds(ranges));
+    }
+
+    @Test
+    public void testByteRangeSplits() throws IOException {
+        long length = this.file.length();
+        List<long[]> ranges = new ArrayList<long[]>();
+        ranges.add(new long[] { 0, length / 3 });
+        ranges.add(new long[] { length / 3, length / 3 });
+        ranges.add(new long[] { 2 * (length / 3), length - 2 * (length / 3) });
+        Assert.assertEquals(ROWS * (ROWS - 1L) / 2, sumIds(ranges));
+    }
+
+    private long sumIds(List<long[]> ranges) throws IOException {
+        long sum = 0L;
+        for(long[] range: ranges) {
+            GuaguaColumnarRecordReader reader = new GuaguaColumnarRecordReader();
+            reader.setProjection(new String[] { "id" });
+            reader.initialize(new GuaguaFileSplit(this.file.toURI().toString(), range[0], range[1]));
+            try {
+                while(reader.nextKeyValue()) {
+                    sum += reader.getCurrentValue().getLong(0);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return sum;
+    }
+
+    @After
+    public void tearDown() {
+        if(this.file != null) {
+            this.file.delete();
+        }
+    }
+
+}
@@ -15,11 +15,24 @@
  */
 package ml.shifu.guagua.mapreduce;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
+import ml.shifu.guagua.hadoop.io.GuaguaLineRecordReader;
+import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.mapreduce.GuaguaMRRecordReader;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.util.ReflectionUtils;
 import org.junit.After;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -50,6 +63,62 @@ public class GuaguaRecordReaderTest {
         }
     }
 
+    @Test
+    public void testBzip2SplitsReadEachLineOnce() throws IOException {
+        // more than one bzip2 block of 900k so split boundaries fall inside the file
+        assertSplitsReadEachLineOnce(BZip2Codec.class, ".bz2", 200000);
+    }
+
+    @Test
+    public void testGzipSplitsReadEachLineOnce() throws IOException {
+        assertSplitsReadEachLineOnce(GzipCodec.class, ".gz", 20000);
+    }
+
+    private void assertSplitsReadEachLineOnce(Class<? extends CompressionCodec> codecClass, String suffix, int lines)
+            throws IOException {
+        Configuration conf = new Configuration();
+        CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+        File file = File.createTempFile("guagua-reader", suffix);
+        try {
+            OutputStream os = codec.createOutputStream(new FileOutputStream(file));
+            try {
+                for(int i = 0; i < lines; i++) {
+                    os.write((lineOf(i) + "\n").getBytes("UTF-8"));
+                }
+            } finally {
+                os.close();
+            }
+
+            int splits = 4;
+            long splitLength = (file.length() + splits - 1) / splits;
+            List<String> readLines = new ArrayList<String>(lines);
+            for(int i = 0; i < splits; i++) {
+                long offset = i * splitLength;
+                long length = Math.min(splitLength, file.length() - offset);
+                GuaguaLineRecordReader reader = new GuaguaLineRecordReader(conf, new GuaguaFileSplit(file.toURI()
+                        .toString(), offset, length));
+                try {
+                    while(reader.nextKeyValue()) {
+                        readLines.add(reader.getCurrentValue().getWritable().toString());
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+
+            Assert.assertEquals(lines, readLines.size());
+            for(int i = 0; i < lines; i++) {
+                Assert.assertEquals(lineOf(i), readLines.get(i));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static String lineOf(int index) {
+        return "line-" + index;
+    }
+
     @After
     public void tearDown() {
         guaguaRecordReader = null;
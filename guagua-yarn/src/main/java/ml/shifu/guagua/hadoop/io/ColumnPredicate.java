@@ -0,0 +1,154 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ml.shifu.guagua.util.NumberFormatUtils;
+
+/**
+ * A comparison between a numeric column and a constant, like {@code age>=18}, used to filter rows in
+ * {@link GuaguaColumnarRecordReader}.
+ * 
+ * <p>
+ * Predicates are pushed down to row groups: a row group is skipped without reading any column if its min/max
+ * statistics show no row can match.
+ */
+public class ColumnPredicate {
+
+    /**
+     * Comparison operators, longer operators first for parsing.
+     */
+    public static enum Operator {
+        GE(">="), LE("<="), NE("!="), EQ("="), GT(">"), LT("<");
+
+        private final String symbol;
+
+        private Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    private final String column;
+
+    private final Operator operator;
+
+    private final double value;
+
+    public ColumnPredicate(String column, Operator operator, double value) {
+        this.column = column;
+        this.operator = operator;
+        this.value = value;
+    }
+
+    /**
+     * Parse predicates separated by comma like 'age>=18,score<0.5', all predicates should be matched.
+     */
+    public static List<ColumnPredicate> parse(String expressions) {
+        List<ColumnPredicate> predicates = new ArrayList<ColumnPredicate>();
+        if(expressions == null || expressions.trim().length() == 0) {
+            return predicates;
+        }
+        for(String expression: expressions.split(",")) {
+            expression = expression.trim();
+            if(expression.length() == 0) {
+                continue;
+            }
+            ColumnPredicate predicate = null;
+            for(Operator operator: Operator.values()) {
+                int index = expression.indexOf(operator.getSymbol());
+                if(index > 0) {
+                    String column = expression.substring(0, index).trim();
+                    String value = expression.substring(index + operator.getSymbol().length()).trim();
+                    predicate = new ColumnPredicate(column, operator, NumberFormatUtils.getDouble(value, Double.NaN));
+                    break;
+                }
+            }
+            if(predicate == null || Double.isNaN(predicate.value)) {
+                throw new IllegalArgumentException("Invalid column predicate: " + expression);
+            }
+            predicates.add(predicate);
+        }
+        return predicates;
+    }
+
+    /**
+     * Whether some value in [min, max] may match this predicate. NaN statistics means unknown and always may match.
+     */
+    public boolean mightMatch(double min, double max) {
+        if(Double.isNaN(min) || Double.isNaN(max)) {
+            return true;
+        }
+        switch(this.operator) {
+            case EQ:
+                return min <= this.value && this.value <= max;
+            case NE:
+                return !(min == this.value && max == this.value);
+            case GT:
+                return max > this.value;
+            case GE:
+                return max >= this.value;
+            case LT:
+                return min < this.value;
+            case LE:
+                return min <= this.value;
+            default:
+                return true;
+        }
+    }
+
+    public boolean matches(double columnValue) {
+        switch(this.operator) {
+            case EQ:
+                return columnValue == this.value;
+            case NE:
+                return columnValue != this.value;
+            case GT:
+                return columnValue > this.value;
+            case GE:
+                return columnValue >= this.value;
+            case LT:
+                return columnValue < this.value;
+            case LE:
+                return columnValue <= this.value;
+            default:
+                return true;
+        }
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return this.column + this.operator.getSymbol() + this.value;
+    }
+
+}
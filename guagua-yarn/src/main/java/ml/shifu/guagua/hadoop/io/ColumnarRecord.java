@@ -0,0 +1,153 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.ColumnType;
+import ml.shifu.guagua.io.Bytable;
+
+/**
+ * One row of selected columns read by {@link GuaguaColumnarRecordReader}. Column index is the index in projection, not
+ * in file schema.
+ * 
+ * <p>
+ * For efficiency the record read from reader is a view of column vectors of current row group, which is only valid
+ * before next record is read. Call {@link #copy()} if the record should be kept.
+ */
+public class ColumnarRecord implements Bytable {
+
+    private ColumnVector[] vectors;
+
+    private int row;
+
+    public ColumnarRecord() {
+    }
+
+    public ColumnarRecord(ColumnVector[] vectors) {
+        this.vectors = vectors;
+    }
+
+    void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getColumnCount() {
+        return this.vectors == null ? 0 : this.vectors.length;
+    }
+
+    public ColumnType getColumnType(int column) {
+        return this.vectors[column].getType();
+    }
+
+    public double getDouble(int column) {
+        return this.vectors[column].getDouble(this.row);
+    }
+
+    public long getLong(int column) {
+        return this.vectors[column].getLong(this.row);
+    }
+
+    public String getString(int column) {
+        return this.vectors[column].getString(this.row);
+    }
+
+    /**
+     * Copy values of current row to a standalone record.
+     */
+    public ColumnarRecord copy() {
+        ColumnVector[] copied = new ColumnVector[getColumnCount()];
+        for(int i = 0; i < copied.length; i++) {
+            copied[i] = copyValue(this.vectors[i], this.row);
+        }
+        return new ColumnarRecord(copied);
+    }
+
+    private static ColumnVector copyValue(ColumnVector vector, int row) {
+        ColumnVector copied = new ColumnVector(vector.getType(), 1);
+        switch(vector.getType()) {
+            case DOUBLE:
+                copied.getDoubles()[0] = vector.getDouble(row);
+                break;
+            case LONG:
+                copied.getLongs()[0] = vector.getLong(row);
+                break;
+            default:
+                copied.getStrings()[0] = vector.getString(row);
+                break;
+        }
+        return copied;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        int columns = getColumnCount();
+        out.writeInt(columns);
+        for(int i = 0; i < columns; i++) {
+            ColumnType type = getColumnType(i);
+            out.writeByte(type.ordinal());
+            switch(type) {
+                case DOUBLE:
+                    out.writeDouble(getDouble(i));
+                    break;
+                case LONG:
+                    out.writeLong(getLong(i));
+                    break;
+                default:
+                    out.writeUTF(getString(i));
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int columns = in.readInt();
+        this.vectors = new ColumnVector[columns];
+        this.row = 0;
+        for(int i = 0; i < columns; i++) {
+            ColumnType type = ColumnType.values()[in.readByte()];
+            ColumnVector vector = new ColumnVector(type, 1);
+            switch(type) {
+                case DOUBLE:
+                    vector.getDoubles()[0] = in.readDouble();
+                    break;
+                case LONG:
+                    vector.getLongs()[0] = in.readLong();
+                    break;
+                default:
+                    vector.getStrings()[0] = in.readUTF();
+                    break;
+            }
+            this.vectors[i] = vector;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for(int i = 0; i < getColumnCount(); i++) {
+            if(i > 0) {
+                sb.append(',');
+            }
+            sb.append(getString(i));
+        }
+        return sb.append(']').toString();
+    }
+
+}
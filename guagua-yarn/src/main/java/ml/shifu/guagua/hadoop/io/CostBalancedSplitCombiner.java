@@ -0,0 +1,377 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import ml.shifu.guagua.GuaguaConstants;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link CostBalancedSplitCombiner} combines file splits into worker splits with balanced estimated load rather than
+ * balanced on-disk bytes.
+ *
+ * <p>
+ * On-disk length is a bad proxy of worker load: 128MB gzip text is nearly 1GB of records to parse while 128MB plain
+ * text is 128MB. Cost of each split is estimated in plain-text byte equivalents:
+ * 
+ * <pre>
+ * cost = length * expansion(codec) * formatFactor * density
+ * </pre>
+ * 
+ * <ul>
+ * <li>expansion: configured compression ratio per codec, see {@link GuaguaConstants#GUAGUA_SPLIT_COST_GZIP_RATIO},
+ * {@link GuaguaConstants#GUAGUA_SPLIT_COST_BZIP2_RATIO} and {@link GuaguaConstants#GUAGUA_SPLIT_COST_CODEC_RATIO}.
+ * Sequence file codec is read from file header.</li>
+ * <li>formatFactor: {@link GuaguaConstants#GUAGUA_SPLIT_COST_SEQUENCE_FACTOR} for sequence files, 1 for text.</li>
+ * <li>density: only if {@link GuaguaConstants#GUAGUA_SPLIT_COST_SAMPLE_BYTES} is set, a decompressed prefix of each file
+ * is sampled to measure the real expansion ratio and lines per byte, which is normalized by the mean density of all
+ * sampled files.</li>
+ * </ul>
+ * 
+ * <p>
+ * Splits are then packed by LPT (longest processing time first): sort by cost descending and always put next split
+ * into the bin with the least load. Bin number is total cost divided by max combined split size, so one worker still
+ * reads about {@link GuaguaConstants#GUAGUA_SPLIT_MAX_COMBINED_SPLIT_SIZE} plain-text bytes. Different with the pig
+ * combine logic, node locality is not considered, which is fine since guagua workers load data only once.
+ */
+public class CostBalancedSplitCombiner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CostBalancedSplitCombiner.class);
+
+    private final Configuration conf;
+
+    private final CompressionCodecFactory codecFactory;
+
+    private final double gzipRatio;
+
+    private final double bzip2Ratio;
+
+    private final double codecRatio;
+
+    private final double sequenceFactor;
+
+    private final int sampleBytes;
+
+    /**
+     * Cost per on-disk byte of each file, cached to estimate all splits of the same file only once.
+     */
+    private final Map<Path, FileCost> fileCosts = new HashMap<Path, FileCost>();
+
+    public CostBalancedSplitCombiner(Configuration conf) {
+        this.conf = conf;
+        this.codecFactory = new CompressionCodecFactory(conf);
+        this.gzipRatio = conf.getFloat(GuaguaConstants.GUAGUA_SPLIT_COST_GZIP_RATIO,
+                GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_GZIP_RATIO);
+        this.bzip2Ratio = conf.getFloat(GuaguaConstants.GUAGUA_SPLIT_COST_BZIP2_RATIO,
+                GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_BZIP2_RATIO);
+        this.codecRatio = conf.getFloat(GuaguaConstants.GUAGUA_SPLIT_COST_CODEC_RATIO,
+                GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_CODEC_RATIO);
+        this.sequenceFactor = conf.getFloat(GuaguaConstants.GUAGUA_SPLIT_COST_SEQUENCE_FACTOR,
+                GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_SEQUENCE_FACTOR);
+        this.sampleBytes = conf.getInt(GuaguaConstants.GUAGUA_SPLIT_COST_SAMPLE_BYTES,
+                GuaguaConstants.GUAGUA_DEFAULT_SPLIT_COST_SAMPLE_BYTES);
+    }
+
+    /**
+     * Combine file splits into groups with balanced estimated cost, each group is one worker.
+     */
+    public List<List<InputSplit>> combine(List<InputSplit> splits, long combineSize) throws IOException {
+        List<List<InputSplit>> result = new ArrayList<List<InputSplit>>();
+        if(splits == null || splits.isEmpty()) {
+            return result;
+        }
+        final Map<InputSplit, Double> costs = estimate(splits);
+        double totalCost = 0d;
+        for(Double cost: costs.values()) {
+            totalCost += cost;
+        }
+
+        int bins = (int) Math.ceil(totalCost / Math.max(1L, combineSize));
+        bins = Math.min(splits.size(), Math.max(1, bins));
+
+        List<InputSplit> sorted = new ArrayList<InputSplit>(splits);
+        Collections.sort(sorted, new Comparator<InputSplit>() {
+            @Override
+            public int compare(InputSplit o1, InputSplit o2) {
+                return Double.compare(costs.get(o2), costs.get(o1));
+            }
+        });
+
+        PriorityQueue<Bin> queue = new PriorityQueue<Bin>(bins);
+        for(int i = 0; i < bins; i++) {
+            Bin bin = new Bin(i);
+            queue.add(bin);
+            result.add(bin.splits);
+        }
+        for(InputSplit split: sorted) {
+            Bin bin = queue.poll();
+            bin.add(split, costs.get(split));
+            queue.add(bin);
+        }
+
+        double minLoad = Double.MAX_VALUE, maxLoad = 0d;
+        for(Bin bin: queue) {
+            minLoad = Math.min(minLoad, bin.load);
+            maxLoad = Math.max(maxLoad, bin.load);
+        }
+        LOG.info("Combine {} splits into {} workers by estimated cost, total cost {}, min worker cost {}, "
+                + "max worker cost {}.", splits.size(), bins, (long) totalCost, (long) minLoad, (long) maxLoad);
+        return result;
+    }
+
+    /**
+     * Estimate cost of each split in plain-text byte equivalents.
+     */
+    public Map<InputSplit, Double> estimate(List<InputSplit> splits) throws IOException {
+        for(InputSplit split: splits) {
+            Path path = ((FileSplit) split).getPath();
+            if(!this.fileCosts.containsKey(path)) {
+                this.fileCosts.put(path, estimateFile(path));
+            }
+        }
+
+        // normalize records density by mean density of sampled files, un-sampled files are taken as average
+        double densitySum = 0d;
+        int sampled = 0;
+        for(FileCost fileCost: this.fileCosts.values()) {
+            if(fileCost.density > 0d) {
+                densitySum += fileCost.density;
+                sampled += 1;
+            }
+        }
+        double meanDensity = sampled == 0 ? 0d : densitySum / sampled;
+
+        Map<InputSplit, Double> costs = new HashMap<InputSplit, Double>();
+        for(InputSplit split: splits) {
+            FileSplit fileSplit = (FileSplit) split;
+            FileCost fileCost = this.fileCosts.get(fileSplit.getPath());
+            double cost = fileSplit.getLength() * fileCost.costPerByte;
+            if(meanDensity > 0d && fileCost.density > 0d) {
+                cost *= fileCost.density / meanDensity;
+            }
+            costs.put(split, cost);
+        }
+        return costs;
+    }
+
+    private FileCost estimateFile(Path path) throws IOException {
+        FileSystem fs = path.getFileSystem(this.conf);
+        CompressionCodec codec = this.codecFactory.getCodec(path);
+        double formatFactor = 1d;
+        if(codec == null && isSequenceFile(fs, path)) {
+            formatFactor = this.sequenceFactor;
+            SequenceFile.Reader reader = null;
+            try {
+                reader = new SequenceFile.Reader(fs, path, this.conf);
+                codec = reader.isCompressed() ? reader.getCompressionCodec() : null;
+            } catch (IOException e) {
+                LOG.warn("Error in reading sequence file header of {}, take it as uncompressed.", path);
+            } finally {
+                if(reader != null) {
+                    reader.close();
+                }
+            }
+        }
+
+        FileCost fileCost = new FileCost();
+        fileCost.costPerByte = getExpansion(codec) * formatFactor;
+        // sequence file records are not delimited by line, only sample text files
+        if(this.sampleBytes > 0 && formatFactor == 1d) {
+            sample(fs, path, codec, fileCost);
+        }
+        LOG.debug("Estimated cost per byte of {} is {} with density {}.", path, fileCost.costPerByte,
+                fileCost.density);
+        return fileCost;
+    }
+
+    private double getExpansion(CompressionCodec codec) {
+        if(codec == null) {
+            return 1d;
+        }
+        String name = codec.getClass().getSimpleName().toLowerCase();
+        if(name.contains("gzip") || name.contains("default")) {
+            return this.gzipRatio;
+        }
+        if(name.contains("bzip2")) {
+            return this.bzip2Ratio;
+        }
+        return this.codecRatio;
+    }
+
+    private boolean isSequenceFile(FileSystem fs, Path path) {
+        FSDataInputStream in = null;
+        try {
+            in = fs.open(path);
+            byte[] magic = new byte[3];
+            in.readFully(magic);
+            return magic[0] == 'S' && magic[1] == 'E' && magic[2] == 'Q';
+        } catch (IOException e) {
+            // empty or unreadable file is taken as text
+            return false;
+        } finally {
+            if(in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Read at most {@link #sampleBytes} decompressed bytes to measure real expansion ratio and lines per byte.
+     */
+    private void sample(FileSystem fs, Path path, CompressionCodec codec, FileCost fileCost) {
+        CountingInputStream raw = null;
+        InputStream in = null;
+        try {
+            raw = new CountingInputStream(fs.open(path));
+            in = codec == null ? raw : codec.createInputStream(raw);
+            byte[] buffer = new byte[GuaguaConstants.DEFAULT_IO_BUFFER_SIZE];
+            long bytes = 0L, lines = 0L;
+            while(bytes < this.sampleBytes) {
+                int len = in.read(buffer, 0, (int) Math.min(buffer.length, this.sampleBytes - bytes));
+                if(len < 0) {
+                    break;
+                }
+                for(int i = 0; i < len; i++) {
+                    if(buffer[i] == '\n') {
+                        lines += 1;
+                    }
+                }
+                bytes += len;
+            }
+            if(bytes == 0L) {
+                return;
+            }
+            if(codec != null && raw.getCount() > 0L) {
+                // decompressor may read ahead a buffer, which makes measured ratio a bit smaller than real
+                fileCost.costPerByte = (double) bytes / raw.getCount();
+            }
+            fileCost.density = (double) Math.max(1L, lines) / bytes;
+        } catch (IOException e) {
+            LOG.warn("Error in sampling {}, use configured compression ratio.", path);
+        } finally {
+            try {
+                if(in != null) {
+                    in.close();
+                } else if(raw != null) {
+                    raw.close();
+                }
+            } catch (IOException ignore) {
+                // ignore
+            }
+        }
+    }
+
+    private static class FileCost {
+
+        /**
+         * Plain-text bytes per on-disk byte.
+         */
+        private double costPerByte;
+
+        /**
+         * Lines per plain-text byte, 0 if not sampled.
+         */
+        private double density;
+    }
+
+    private static class Bin implements Comparable<Bin> {
+
+        private final int index;
+
+        private final List<InputSplit> splits = new ArrayList<InputSplit>();
+
+        private double load;
+
+        public Bin(int index) {
+            this.index = index;
+        }
+
+        public void add(InputSplit split, double cost) {
+            this.splits.add(split);
+            this.load += cost;
+        }
+
+        @Override
+        public int compareTo(Bin o) {
+            int result = Double.compare(this.load, o.load);
+            return result != 0 ? result : (this.index < o.index ? -1 : (this.index == o.index ? 0 : 1));
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if(result >= 0) {
+                this.count += 1;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if(result > 0) {
+                this.count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long result = super.skip(n);
+            this.count += result;
+            return result;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ml.shifu.guagua.GuaguaConstants;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.ColumnType;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.Footer;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat.RowGroup;
+import ml.shifu.guagua.io.GuaguaFileSplit;
+import ml.shifu.guagua.io.GuaguaRecordReader;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A reader read guagua columnar file ({@link ColumnarFormat}) with column projection and predicate pushdown.
+ * 
+ * <p>
+ * Only chunks of projected columns and columns in predicates are read and decoded into {@link ColumnVector}s, so I/O
+ * and parsing cost scale with the number of selected columns rather than table width. Row groups whose min/max
+ * statistics cannot match predicates are skipped without reading any chunk.
+ * 
+ * <p>
+ * Projection and predicates can be set by {@link #setProjection(String[])} and {@link #setPredicates(List)} before
+ * {@link #initialize(GuaguaFileSplit)}, or by {@link GuaguaConstants#GUAGUA_COLUMNAR_PROJECTION} and
+ * {@link GuaguaConstants#GUAGUA_COLUMNAR_FILTER} in configuration:
+ * 
+ * <pre>
+ * GuaguaColumnarRecordReader reader = new GuaguaColumnarRecordReader();
+ * reader.setProjection(new String[] { "age", "income" });
+ * reader.setPredicates(ColumnPredicate.parse("age&gt;=18"));
+ * this.setRecordReader(reader);
+ * this.getRecordReader().initialize(fileSplit);
+ * </pre>
+ * 
+ * <p>
+ * Key is row number in file, value is a {@link ColumnarRecord} view of projected columns in projection order.
+ */
+public class GuaguaColumnarRecordReader implements
+        GuaguaRecordReader<GuaguaWritableAdapter<LongWritable>, ColumnarRecord> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GuaguaColumnarRecordReader.class);
+
+    private Configuration conf;
+
+    private String[] projection;
+
+    private List<ColumnPredicate> predicates;
+
+    private FSDataInputStream in;
+
+    /**
+     * Row groups whose start offsets are in current split.
+     */
+    private List<RowGroup> rowGroups;
+
+    private int rowGroupIndex;
+
+    /**
+     * Column indexes in file schema which should be read, in ascending order to read chunks sequentially.
+     */
+    private int[] readColumns;
+
+    /**
+     * Column index in file schema of each predicate.
+     */
+    private int[] predicateColumns;
+
+    /**
+     * Vectors indexed by column index in file schema, null for columns not read.
+     */
+    private ColumnVector[] vectors;
+
+    private RowGroup current;
+
+    private int row;
+
+    private byte[] buffer = new byte[0];
+
+    private GuaguaWritableAdapter<LongWritable> key;
+
+    private ColumnarRecord value;
+
+    private int skippedRowGroups;
+
+    public GuaguaColumnarRecordReader() {
+        this.conf = new Configuration();
+    }
+
+    public GuaguaColumnarRecordReader(GuaguaFileSplit split) throws IOException {
+        this(new Configuration(), split);
+    }
+
+    public GuaguaColumnarRecordReader(Configuration conf, GuaguaFileSplit split) throws IOException {
+        this.conf = conf;
+        initialize(split);
+    }
+
+    /**
+     * Columns to read, null or empty to read all columns.
+     */
+    public void setProjection(String[] projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Predicates should be all matched by returned rows.
+     */
+    public void setPredicates(List<ColumnPredicate> predicates) {
+        this.predicates = predicates;
+    }
+
+    @Override
+    public void initialize(GuaguaFileSplit split) throws IOException {
+        close();
+        if(this.projection == null) {
+            String columns = this.conf.get(GuaguaConstants.GUAGUA_COLUMNAR_PROJECTION);
+            if(columns != null && columns.trim().length() > 0) {
+                this.projection = columns.trim().split("\\s*,\\s*");
+            }
+        }
+        if(this.predicates == null) {
+            this.predicates = ColumnPredicate.parse(this.conf.get(GuaguaConstants.GUAGUA_COLUMNAR_FILTER));
+        }
+
+        Path file = new Path(split.getPath());
+        FileSystem fs = file.getFileSystem(this.conf);
+        long fileLength = fs.getFileStatus(file).getLen();
+        this.in = fs.open(file, this.conf.getInt(GuaguaConstants.GUAGUA_READER_BUFFER_SIZE,
+                GuaguaConstants.GUAGUA_DEFAULT_READER_BUFFER_SIZE));
+        Footer footer = ColumnarFormat.readFooter(this.in, fileLength);
+
+        int[] projectedColumns = resolveProjection(footer);
+        this.predicateColumns = new int[this.predicates.size()];
+        boolean[] read = new boolean[footer.getColumnNames().length];
+        for(int column: projectedColumns) {
+            read[column] = true;
+        }
+        for(int i = 0; i < this.predicates.size(); i++) {
+            String name = this.predicates.get(i).getColumn();
+            int column = footer.getColumnIndex(name);
+            if(column < 0 || !footer.getColumnTypes()[column].isNumeric()) {
+                throw new IOException("Predicate column " + name + " is not a numeric column in " + file);
+            }
+            this.predicateColumns[i] = column;
+            read[column] = true;
+        }
+
+        List<Integer> columns = new ArrayList<Integer>();
+        this.vectors = new ColumnVector[read.length];
+        for(int i = 0; i < read.length; i++) {
+            if(read[i]) {
+                columns.add(i);
+                this.vectors[i] = new ColumnVector(footer.getColumnTypes()[i], 0);
+            }
+        }
+        this.readColumns = new int[columns.size()];
+        for(int i = 0; i < this.readColumns.length; i++) {
+            this.readColumns[i] = columns.get(i);
+        }
+        ColumnVector[] projectedVectors = new ColumnVector[projectedColumns.length];
+        for(int i = 0; i < projectedColumns.length; i++) {
+            projectedVectors[i] = this.vectors[projectedColumns[i]];
+        }
+
+        long start = split.getOffset(), end = split.getOffset() + split.getLength();
+        this.rowGroups = new ArrayList<RowGroup>();
+        for(RowGroup rowGroup: footer.getRowGroups()) {
+            if(rowGroup.getOffset() >= start && rowGroup.getOffset() < end) {
+                this.rowGroups.add(rowGroup);
+            }
+        }
+        this.rowGroupIndex = 0;
+        this.skippedRowGroups = 0;
+        this.current = null;
+        this.key = new GuaguaWritableAdapter<LongWritable>(new LongWritable());
+        this.value = new ColumnarRecord(projectedVectors);
+        LOG.debug("Read {} of {} columns and {} row groups in {}.", this.readColumns.length,
+                footer.getColumnNames().length, this.rowGroups.size(), split);
+    }
+
+    private int[] resolveProjection(Footer footer) throws IOException {
+        if(this.projection == null || this.projection.length == 0) {
+            int[] columns = new int[footer.getColumnNames().length];
+            for(int i = 0; i < columns.length; i++) {
+                columns[i] = i;
+            }
+            return columns;
+        }
+        int[] columns = new int[this.projection.length];
+        for(int i = 0; i < columns.length; i++) {
+            columns[i] = footer.getColumnIndex(this.projection[i]);
+            if(columns[i] < 0) {
+                throw new IOException("Projected column " + this.projection[i] + " is not found, columns in file: "
+                        + Arrays.toString(footer.getColumnNames()));
+            }
+        }
+        return columns;
+    }
+
+    @Override
+    public boolean nextKeyValue() throws IOException {
+        while(true) {
+            if(this.current != null) {
+                while(++this.row < this.current.getRows()) {
+                    if(matches(this.row)) {
+                        this.value.setRow(this.row);
+                        this.key.getWritable().set(this.current.getFirstRow() + this.row);
+                        return true;
+                    }
+                }
+            }
+            if(!nextRowGroup()) {
+                return false;
+            }
+        }
+    }
+
+    private boolean matches(int index) {
+        for(int i = 0; i < this.predicateColumns.length; i++) {
+            if(!this.predicates.get(i).matches(this.vectors[this.predicateColumns[i]].getDouble(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean mightMatch(RowGroup rowGroup) {
+        for(int i = 0; i < this.predicateColumns.length; i++) {
+            int column = this.predicateColumns[i];
+            if(!this.predicates.get(i).mightMatch(rowGroup.getMin(column), rowGroup.getMax(column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read chunks of selected columns of next row group which may match predicates.
+     */
+    private boolean nextRowGroup() throws IOException {
+        while(this.rowGroupIndex < this.rowGroups.size()) {
+            RowGroup rowGroup = this.rowGroups.get(this.rowGroupIndex++);
+            if(!mightMatch(rowGroup)) {
+                this.skippedRowGroups += 1;
+                continue;
+            }
+            for(int column: this.readColumns) {
+                int length = rowGroup.getChunkLength(column);
+                if(this.buffer.length < length) {
+                    this.buffer = new byte[length];
+                }
+                this.in.seek(rowGroup.getChunkOffset(column));
+                this.in.readFully(this.buffer, 0, length);
+                this.vectors[column].decode(this.buffer, length, rowGroup.getRows());
+            }
+            this.current = rowGroup;
+            this.row = -1;
+            return true;
+        }
+        this.current = null;
+        return false;
+    }
+
+    @Override
+    public GuaguaWritableAdapter<LongWritable> getCurrentKey() {
+        return this.key;
+    }
+
+    @Override
+    public ColumnarRecord getCurrentValue() {
+        return this.value;
+    }
+
+    /**
+     * Type of projected column.
+     */
+    public ColumnType getColumnType(int column) {
+        return this.value.getColumnType(column);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if(this.in != null) {
+            LOG.debug("{} of {} row groups are skipped by predicates {}.", this.skippedRowGroups,
+                    this.rowGroups.size(), this.predicates);
+            this.in.close();
+            this.in = null;
+        }
+    }
+
+}
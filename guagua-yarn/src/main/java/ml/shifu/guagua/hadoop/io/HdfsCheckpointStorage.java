@@ -0,0 +1,80 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map.Entry;
+import java.util.Properties;
+
+import ml.shifu.guagua.io.CheckpointStorage;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+/**
+ * {@link CheckpointStorage} implementation on HDFS (or any Hadoop {@link FileSystem}).
+ *
+ * <p>
+ * To use it, set 'guagua.checkpoint.storage' to this class name and set 'guagua.checkpoint.dir' to a HDFS folder. Guagua
+ * properties are copied into Hadoop {@link Configuration} to make sure the same file system as the job is used.
+ */
+public class HdfsCheckpointStorage implements CheckpointStorage {
+
+    private FileSystem fs;
+
+    @Override
+    public void init(Properties props) throws IOException {
+        Configuration conf = new Configuration();
+        for(Entry<Object, Object> entry: props.entrySet()) {
+            conf.set(entry.getKey().toString(), entry.getValue().toString());
+        }
+        this.fs = FileSystem.get(conf);
+    }
+
+    @Override
+    public OutputStream create(String path) throws IOException {
+        return this.fs.create(new Path(path), true);
+    }
+
+    @Override
+    public InputStream open(String path) throws IOException {
+        return this.fs.open(new Path(path));
+    }
+
+    @Override
+    public boolean rename(String src, String dst) throws IOException {
+        Path dstPath = new Path(dst);
+        // HDFS rename doesn't overwrite existing file
+        if(this.fs.exists(dstPath)) {
+            this.fs.delete(dstPath, false);
+        }
+        return this.fs.rename(new Path(src), dstPath);
+    }
+
+    @Override
+    public boolean delete(String path) throws IOException {
+        return this.fs.delete(new Path(path), true);
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        return this.fs.exists(new Path(path));
+    }
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright [2013-2015] PayPal Software Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ml.shifu.guagua.hadoop.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import ml.shifu.guagua.GuaguaRuntimeException;
+
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.Decompressor;
+
+/**
+ * Helper class to read a split of a file compressed by a splittable codec like bzip2.
+ * 
+ * <p>
+ * SplittableCompressionCodec only exists since hadoop 0.21 while guagua still supports hadoop 0.20.2 and 1.x, so it is
+ * accessed by reflection. In hadoop 1 no codec is splittable and compressed files are read as a whole.
+ */
+public final class SplitCompressionUtils {
+
+    private static final String SPLITTABLE_CODEC_CLASS = "org.apache.hadoop.io.compress.SplittableCompressionCodec";
+
+    private static final String SPLIT_INPUT_STREAM_CLASS = "org.apache.hadoop.io.compress.SplitCompressionInputStream";
+
+    private static Class<?> splittableCodecClass;
+
+    private static Object readModeByBlock;
+
+    private static Method createInputStream;
+
+    private static Method getAdjustedStart;
+
+    private static Method getAdjustedEnd;
+
+    static {
+        try {
+            splittableCodecClass = Class.forName(SPLITTABLE_CODEC_CLASS);
+            Class<?> readModeClass = Class.forName(SPLITTABLE_CODEC_CLASS + "$READ_MODE");
+            for(Object mode: readModeClass.getEnumConstants()) {
+                if("BYBLOCK".equals(mode.toString())) {
+                    readModeByBlock = mode;
+                }
+            }
+            createInputStream = splittableCodecClass.getMethod("createInputStream", InputStream.class,
+                    Decompressor.class, long.class, long.class, readModeClass);
+            Class<?> splitInputStreamClass = Class.forName(SPLIT_INPUT_STREAM_CLASS);
+            getAdjustedStart = splitInputStreamClass.getMethod("getAdjustedStart");
+            getAdjustedEnd = splitInputStreamClass.getMethod("getAdjustedEnd");
+        } catch (ClassNotFoundException e) {
+            splittableCodecClass = null;
+        } catch (NoSuchMethodException e) {
+            splittableCodecClass = null;
+        }
+    }
+
+    // To avoid somebody new SplitCompressionUtils
+    private SplitCompressionUtils() {
+    }
+
+    /**
+     * Whether codec can decompress from the middle of a file.
+     */
+    public static boolean isSplittable(CompressionCodec codec) {
+        return codec != null && splittableCodecClass != null && splittableCodecClass.isInstance(codec);
+    }
+
+    /**
+     * Open a decompression stream on [start, end) of a seekable file stream. Start and end are adjusted to compression
+     * block boundaries, check {@link SplitInput#getStart()} and {@link SplitInput#getEnd()}.
+     */
+    public static SplitInput createInputStream(CompressionCodec codec, InputStream in, Decompressor decompressor,
+            long start, long end) throws IOException {
+        if(!isSplittable(codec)) {
+            throw new IllegalArgumentException("Codec " + codec + " is not splittable.");
+        }
+        try {
+            InputStream stream = (InputStream) createInputStream.invoke(codec, in, decompressor, start, end,
+                    readModeByBlock);
+            return new SplitInput(stream, (Long) getAdjustedStart.invoke(stream),
+                    (Long) getAdjustedEnd.invoke(stream));
+        } catch (IllegalAccessException e) {
+            throw new GuaguaRuntimeException(e);
+        } catch (InvocationTargetException e) {
+            if(e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new GuaguaRuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Decompression stream of a split with adjusted start and end in compressed file.
+     */
+    public static class SplitInput {
+
+        private final InputStream stream;
+
+        private final long start;
+
+        private final long end;
+
+        public SplitInput(InputStream stream, long start, long end) {
+            this.stream = stream;
+            this.start = start;
+            this.end = end;
+        }
+
+        public InputStream getStream() {
+            return stream;
+        }
+
+        /**
+         * Position in compressed file, split compression stream is always {@link Seekable}.
+         */
+        public Seekable getPosition() {
+            return (Seekable) stream;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+    }
+
+}
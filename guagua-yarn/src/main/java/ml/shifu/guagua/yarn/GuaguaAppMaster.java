@@ -16,7 +16,6 @@
 package ml.shifu.guagua.yarn;
 
 import java.io.IOException;
-import java.lang.Thread.UncaughtExceptionHandler;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -28,18 +27,21 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import ml.shifu.guagua.GuaguaConstants;
 import ml.shifu.guagua.GuaguaRuntimeException;
 import ml.shifu.guagua.hadoop.io.GuaguaInputSplit;
+import ml.shifu.guagua.metrics.ClusterMetricsSummary;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.transport.Transports;
 import ml.shifu.guagua.yarn.util.GsonUtils;
 import ml.shifu.guagua.yarn.util.YarnUtils;
 
@@ -85,7 +87,6 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.socket.nio.NioServerSocketChannelFactory;
 import org.jboss.netty.handler.codec.serialization.ClassResolvers;
 import org.jboss.netty.handler.codec.serialization.ObjectDecoder;
 import org.jboss.netty.handler.codec.serialization.ObjectEncoder;
@@ -252,6 +253,11 @@ public class GuaguaAppMaster {
 
     private Map<Integer, GuaguaIterationStatus> partitionProgress;
 
+    /**
+     * Metrics summary per iteration, a summary is logged and removed after all partitions reported that iteration.
+     */
+    private Map<Integer, ClusterMetricsSummary> iterationMetrics;
+
     private ServerBootstrap rpcServer;
 
     static {
@@ -307,6 +313,7 @@ public class GuaguaAppMaster {
                 GuaguaYarnConstants.DEFAULT_STATUS_RPC_PORT);
 
         this.partitionProgress = new ConcurrentHashMap<Integer, GuaguaIterationStatus>();
+        this.iterationMetrics = new HashMap<Integer, ClusterMetricsSummary>();
 
         this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
         this.taskTimeoutExecutor = Executors.newSingleThreadExecutor();
@@ -420,9 +427,11 @@ public class GuaguaAppMaster {
      * Start rpc server which is used to update progress.
      */
     private void startRPCServer() {
-        this.rpcServer = new ServerBootstrap(new NioServerSocketChannelFactory(
-                Executors.newFixedThreadPool(GuaguaYarnConstants.DEFAULT_STATUS_RPC_SERVER_THREAD_COUNT),
-                Executors.newCachedThreadPool(new MasterThreadFactory())));
+        Properties props = new Properties();
+        for(Entry<String, String> entry: this.yarnConf) {
+            props.put(entry.getKey(), entry.getValue());
+        }
+        this.rpcServer = Transports.newTransport(props).newServerBootstrap("rpc-server");
 
         // Set up the pipeline factory.
         this.rpcServer.setPipelineFactory(new ChannelPipelineFactory() {
@@ -437,41 +446,6 @@ public class GuaguaAppMaster {
         this.rpcServer.bind(new InetSocketAddress(rpcPort));
     }
 
-    /**
-     * The master thread factory. Main feature is to print error log of worker thread.
-     */
-    private static class MasterThreadFactory implements ThreadFactory {
-        static final AtomicInteger poolNumber = new AtomicInteger(1);
-        final ThreadGroup group;
-        final AtomicInteger threadNumber = new AtomicInteger(1);
-        final String namePrefix;
-
-        MasterThreadFactory() {
-            SecurityManager s = System.getSecurityManager();
-            group = (s != null) ? s.getThreadGroup() : Thread.currentThread().getThreadGroup();
-            namePrefix = "pool-" + poolNumber.getAndIncrement() + "-thread-";
-        }
-
-        public Thread newThread(Runnable r) {
-            Thread t = new Thread(group, r, namePrefix + threadNumber.getAndIncrement(), 0);
-            if(t.isDaemon()) {
-                t.setDaemon(false);
-            }
-            if(t.getPriority() != Thread.NORM_PRIORITY) {
-                t.setPriority(Thread.NORM_PRIORITY);
-            }
-            t.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
-                @Override
-                public void uncaughtException(Thread t, Throwable e) {
-                    LOG.warn("Error message in thread {} with error message {}, error root cause {}.", t, e,
-                            e.getCause());
-                    // print stack???
-                }
-            });
-            return t;
-        }
-    }
-
     /**
      * {@link ServerHandler} is used to receive message and update progress for this yarn app.
      */
@@ -491,6 +465,9 @@ public class GuaguaAppMaster {
             LOG.info("Receive RPC status:{}", status);
             synchronized(LOCK) {
                 GuaguaAppMaster.this.partitionProgress.put(status.getPartition(), status);
+                if(status.getMetrics() != null) {
+                    aggregateMetrics(status);
+                }
             }
             if(status.isKillContainer()) {
                 List<Container> containers;
@@ -505,6 +482,20 @@ public class GuaguaAppMaster {
             }
         }
 
+        private void aggregateMetrics(GuaguaIterationStatus status) {
+            int iteration = status.getCurrentIteration();
+            ClusterMetricsSummary summary = GuaguaAppMaster.this.iterationMetrics.get(iteration);
+            if(summary == null) {
+                summary = new ClusterMetricsSummary(iteration);
+                GuaguaAppMaster.this.iterationMetrics.put(iteration, summary);
+            }
+            summary.add(IterationMetrics.fromMap(status.getPartition() + "", iteration, status.getMetrics()));
+            if(summary.getWorkers() >= GuaguaAppMaster.this.partitionProgress.size()) {
+                LOG.info("Cluster metrics: {}", summary.toJson());
+                GuaguaAppMaster.this.iterationMetrics.remove(iteration);
+            }
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) {
             e.getChannel().close();
@@ -15,6 +15,8 @@
  */
 package ml.shifu.guagua.yarn;
 
+import java.util.Map;
+
 /**
  * {@link GuaguaIterationStatus} is used to send iteration status from master and worker to Guagua application master.
  */
@@ -46,6 +48,11 @@ public class GuaguaIterationStatus {
      */
     private boolean isKillContainer;
 
+    /**
+     * Metrics of last finished iteration in that container, keyed by metric name.
+     */
+    private Map<String, Long> metrics;
+
     /**
      * Default constructor.
      */
@@ -109,11 +116,19 @@ public class GuaguaIterationStatus {
         this.isKillContainer = isKillContainer;
     }
 
+    public Map<String, Long> getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(Map<String, Long> metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public String toString() {
         return String
-                .format("GuaguaIterationStatus [partition=%s, currentIteration=%s, totalIteration=%s, time=%s, isKillContainer=%s]",
-                        partition, currentIteration, totalIteration, time, isKillContainer);
+                .format("GuaguaIterationStatus [partition=%s, currentIteration=%s, totalIteration=%s, time=%s, isKillContainer=%s, metrics=%s]",
+                        partition, currentIteration, totalIteration, time, isKillContainer, metrics);
     }
 
 }
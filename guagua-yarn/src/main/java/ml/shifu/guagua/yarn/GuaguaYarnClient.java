@@ -39,6 +39,7 @@ import ml.shifu.guagua.coordinator.zk.ZooKeeperUtils;
 import ml.shifu.guagua.hadoop.io.GuaguaOptionsParser;
 import ml.shifu.guagua.hadoop.io.GuaguaWritableSerializer;
 import ml.shifu.guagua.hadoop.io.GuaguaInputSplit;
+import ml.shifu.guagua.hadoop.io.HdfsCheckpointStorage;
 import ml.shifu.guagua.hadoop.util.HDPUtils;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.HaltBytable;
@@ -228,7 +229,11 @@ public class GuaguaYarnClient extends Configured {
         if(combinable) {
             List<InputSplit> splits = InputSplitUtils.getFileSplits(getConf(), combineSize);
             LOG.info("combine size:{}, splits:{}", combineSize, splits);
-            newSplits = InputSplitUtils.getFinalCombineGuaguaSplits(splits, combineSize);
+            if(getConf().getBoolean(GuaguaConstants.GUAGUA_SPLIT_COST_BALANCED, false)) {
+                newSplits = InputSplitUtils.getCostBalancedGuaguaSplits(getConf(), splits, combineSize);
+            } else {
+                newSplits = InputSplitUtils.getFinalCombineGuaguaSplits(splits, combineSize);
+            }
         } else {
             newSplits = new ArrayList<InputSplit>();
             for(InputSplit inputSplit: InputSplitUtils.getFileSplits(getConf(), combineSize)) {
@@ -287,6 +292,7 @@ public class GuaguaYarnClient extends Configured {
         checkMasterClassName(conf, cmdLine);
         checkIterationCountSetting(conf, cmdLine);
         checkResultClassSetting(conf, cmdLine);
+        checkRepartitionSetting(conf);
         checkAppName(conf, cmdLine);
         return parser;
     }
@@ -299,6 +305,18 @@ public class GuaguaYarnClient extends Configured {
         conf.set(GuaguaYarnConstants.GUAGUA_YARN_APP_NAME, name);
     }
 
+    /**
+     * Records are handed off between workers on different hosts by files, so HDFS is used for data re-partitioning if
+     * no storage is set.
+     */
+    private static void checkRepartitionSetting(Configuration conf) {
+        if(conf.getBoolean(GuaguaConstants.GUAGUA_REPARTITION_ENABLE, false)
+                && conf.get(GuaguaConstants.GUAGUA_REPARTITION_STORAGE) == null
+                && conf.get(GuaguaConstants.GUAGUA_CHECKPOINT_STORAGE) == null) {
+            conf.set(GuaguaConstants.GUAGUA_REPARTITION_STORAGE, HdfsCheckpointStorage.class.getName());
+        }
+    }
+
     private static void checkResultClassSetting(Configuration conf, CommandLine cmdLine) {
         Class<?> masterResultClass;
         if(!cmdLine.hasOption("-mr")) {
@@ -23,7 +23,6 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import ml.shifu.guagua.GuaguaConstants;
@@ -33,6 +32,8 @@ import ml.shifu.guagua.hadoop.io.GuaguaInputSplit;
 import ml.shifu.guagua.io.Bytable;
 import ml.shifu.guagua.io.GuaguaFileSplit;
 import ml.shifu.guagua.master.GuaguaMasterService;
+import ml.shifu.guagua.metrics.IterationMetrics;
+import ml.shifu.guagua.transport.Transports;
 import ml.shifu.guagua.util.Progressable;
 import ml.shifu.guagua.worker.GuaguaWorkerService;
 import ml.shifu.guagua.yarn.util.GsonUtils;
@@ -69,7 +70,6 @@ import org.jboss.netty.channel.Channels;
 import org.jboss.netty.channel.ExceptionEvent;
 import org.jboss.netty.channel.MessageEvent;
 import org.jboss.netty.channel.SimpleChannelUpstreamHandler;
-import org.jboss.netty.channel.socket.nio.NioClientSocketChannelFactory;
 import org.jboss.netty.handler.codec.serialization.ClassResolvers;
 import org.jboss.netty.handler.codec.serialization.ObjectDecoder;
 import org.jboss.netty.handler.codec.serialization.ObjectEncoder;
@@ -197,15 +197,14 @@ public class GuaguaYarnTask<MASTER_RESULT extends Bytable, WORKER_RESULT extends
         this.getGuaguaService().init(props);
         this.getGuaguaService().start();
 
-        initRPCClient();
+        initRPCClient(props);
     }
 
     /**
      * Connect to app master for status RPC report.
      */
-    private void initRPCClient() {
-        this.rpcClient = new ClientBootstrap(new NioClientSocketChannelFactory(Executors.newSingleThreadExecutor(),
-                Executors.newSingleThreadExecutor()));
+    private void initRPCClient(Properties props) {
+        this.rpcClient = Transports.newTransport(props).newClientBootstrap("rpc-client");
 
         // Set up the pipeline factory.
         this.rpcClient.setPipelineFactory(new ChannelPipelineFactory() {
@@ -308,6 +307,10 @@ public class GuaguaYarnTask<MASTER_RESULT extends Bytable, WORKER_RESULT extends
                         GuaguaIterationStatus gi = new GuaguaIterationStatus(GuaguaYarnTask.this.partition,
                                 currentIteration, totalIteration);
                         gi.setKillContainer(isKill);
+                        IterationMetrics metrics = getGuaguaService().getMetricsRegistry().getLastMetrics();
+                        if(metrics != null && metrics.getIteration() == currentIteration) {
+                            gi.setMetrics(metrics.toMap());
+                        }
                         LOG.info("Send GuaguaIterationStatus: {}.", gi);
                         ChannelFuture channelFuture = rpcClientChannel.write(GsonUtils.toJson(gi));
                         try {
@@ -25,7 +25,10 @@ import java.util.HashSet;
 import java.util.List;
 
 import ml.shifu.guagua.GuaguaRuntimeException;
+import ml.shifu.guagua.hadoop.io.ColumnarFormat;
+import ml.shifu.guagua.hadoop.io.CostBalancedSplitCombiner;
 import ml.shifu.guagua.hadoop.io.GuaguaInputSplit;
+import ml.shifu.guagua.hadoop.io.SplitCompressionUtils;
 import ml.shifu.guagua.yarn.GuaguaYarnConstants;
 
 import org.apache.hadoop.conf.Configuration;
@@ -63,8 +66,21 @@ public final class InputSplitUtils {
         } catch (InterruptedException e) {
             throw new GuaguaRuntimeException(e);
         }
-        newSplits = new ArrayList<InputSplit>();
-        for(List<InputSplit> inputSplits: combinePigSplits) {
+        return toGuaguaSplits(combinePigSplits);
+    }
+
+    /**
+     * Combine splits by estimated load cost (compression codec, file format and record density) instead of on-disk
+     * bytes, see {@link CostBalancedSplitCombiner}.
+     */
+    public static List<InputSplit> getCostBalancedGuaguaSplits(Configuration conf, List<InputSplit> splits,
+            long combineSize) throws IOException {
+        return toGuaguaSplits(new CostBalancedSplitCombiner(conf).combine(splits, combineSize));
+    }
+
+    private static List<InputSplit> toGuaguaSplits(List<List<InputSplit>> combinedSplits) {
+        List<InputSplit> newSplits = new ArrayList<InputSplit>();
+        for(List<InputSplit> inputSplits: combinedSplits) {
             FileSplit[] fss = new FileSplit[inputSplits.size()];
             for(int i = 0; i < inputSplits.size(); i++) {
                 fss[i] = (FileSplit) (inputSplits.get(i));
@@ -113,7 +129,13 @@ public final class InputSplitUtils {
             FileSystem fs = path.getFileSystem(conf);
             long length = file.getLen();
             BlockLocation[] blkLocations = fs.getFileBlockLocations(file, 0, length);
-            if((length != 0) && isSplitable(conf, path)) {
+            if((length != 0) && ColumnarFormat.isColumnarFile(path)) {
+                // columnar file is split at row group boundaries
+                for(long[] range: ColumnarFormat.getRowGroupRanges(fs, path, length, splitSize)) {
+                    splits.add(new FileSplit(path, range[0], range[1], blkLocations[getBlockIndex(blkLocations,
+                            range[0])].getHosts()));
+                }
+            } else if((length != 0) && isSplitable(conf, path)) {
                 long bytesRemaining = length;
                 while(((double) bytesRemaining) / splitSize > GuaguaYarnConstants.SPLIT_SLOP) {
                     int blkIndex = getBlockIndex(blkLocations, length - bytesRemaining);
@@ -153,7 +175,13 @@ public final class InputSplitUtils {
             FileSystem fs = path.getFileSystem(conf);
             long length = file.getLen();
             BlockLocation[] blkLocations = fs.getFileBlockLocations(file, 0, length);
-            if((length != 0) && isSplitable(conf, path)) {
+            if((length != 0) && ColumnarFormat.isColumnarFile(path)) {
+                // columnar file is split at row group boundaries
+                for(long[] range: ColumnarFormat.getRowGroupRanges(fs, path, length, splitSize)) {
+                    splits.add(new GuaguaInputSplit(false, new FileSplit[] { new FileSplit(path, range[0], range[1],
+                            blkLocations[getBlockIndex(blkLocations, range[0])].getHosts()) }));
+                }
+            } else if((length != 0) && isSplitable(conf, path)) {
                 long bytesRemaining = length;
                 while(((double) bytesRemaining) / splitSize > GuaguaYarnConstants.SPLIT_SLOP) {
                     int blkIndex = getBlockIndex(blkLocations, length - bytesRemaining);
@@ -505,9 +533,9 @@ public final class InputSplitUtils {
     }
 
     private static boolean isSplitable(Configuration conf, Path file) {
-        // other compression can not be split, maybe for lzo I should add it to split list.
+        // splittable codec like bzip2 can be split, other compression can not be split.
         CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
-        return codec == null;
+        return codec == null || SplitCompressionUtils.isSplittable(codec);
     }
 
 }